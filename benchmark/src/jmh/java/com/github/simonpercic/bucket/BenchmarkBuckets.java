@@ -0,0 +1,31 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Creates Buckets for the benchmarks, each in its own temp directory.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class BenchmarkBuckets {
+
+    // large enough for the key pools of the largest payload, so the benchmarks do not measure evictions
+    static final long MAX_SIZE_BYTES = 512L * 1024 * 1024;
+
+    private BenchmarkBuckets() {
+        // no instance
+    }
+
+    static Bucket create() throws IOException {
+        return create(1);
+    }
+
+    static Bucket create(int shards) throws IOException {
+        File dir = Files.createTempDirectory("bucket-benchmark").toFile();
+        return Bucket.builder(new Context(dir), MAX_SIZE_BYTES).withShards(shards).build();
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.simonpercic.bucket;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the read, write and shard benchmarks with 1 to 16 threads and the clear benchmark, with the GC profiler
+ * to report the allocation rate. Writes a JSON result file per thread count to build/reports/jmh.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class BenchmarkSuite {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    private static final String RESULTS_DIR = "build/reports/jmh";
+
+    private BenchmarkSuite() {
+        // no instance
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        if (!new File(RESULTS_DIR).mkdirs() && !new File(RESULTS_DIR).isDirectory()) {
+            throw new IllegalStateException(String.format("Failed to create %s", RESULTS_DIR));
+        }
+
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(ReadBenchmark.class.getSimpleName())
+                    .include(WriteBenchmark.class.getSimpleName())
+                    .include(ShardBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .forks(1)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(String.format("%s/suite-%d-threads.json", RESULTS_DIR, threads))
+                    .build();
+
+            new Runner(options).run();
+        }
+
+        Options clearOptions = new OptionsBuilder()
+                .include(ClearBenchmark.class.getSimpleName())
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULTS_DIR + "/suite-clear.json")
+                .build();
+
+        new Runner(clearOptions).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.simonpercic.bucket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of clear, by the number of entries in the cache. The cache is filled before every clear,
+ * outside of the measurement. Single-threaded, clear affects the whole cache.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 50)
+public class ClearBenchmark {
+
+    private static final int PAYLOAD_BYTES = 1024;
+
+    @Param({"10", "1000"})
+    int entries;
+
+    private Bucket bucket;
+    private Map<String, Payload> values;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bucket = BenchmarkBuckets.create();
+
+        Payload payload = Payload.ofSize(PAYLOAD_BYTES);
+
+        values = new HashMap<>(entries);
+        for (int i = 0; i < entries; i++) {
+            values.put("clear-" + i, payload);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bucket.cache.destroy();
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() throws IOException {
+        bucket.putAll(values);
+    }
+
+    @Benchmark
+    public void clear() throws IOException {
+        bucket.clear();
+    }
+}
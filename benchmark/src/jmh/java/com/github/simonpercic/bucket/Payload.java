@@ -0,0 +1,46 @@
+package com.github.simonpercic.bucket;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark payload - a list of small items, serialized to roughly the requested number of json bytes.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class Payload {
+
+    List<Item> items;
+
+    static Payload ofSize(int jsonBytes) {
+        Gson gson = new Gson();
+        int itemBytes = gson.toJson(createItem(0)).length() + 1;
+
+        int count = Math.max(1, jsonBytes / itemBytes);
+
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(createItem(i));
+        }
+
+        Payload payload = new Payload();
+        payload.items = items;
+        return payload;
+    }
+
+    private static Item createItem(int index) {
+        Item item = new Item();
+        item.id = 1000000 + index;
+        item.name = String.format("item-%08d", index);
+        item.value = index / 7.0;
+        return item;
+    }
+
+    static class Item {
+        long id;
+        String name;
+        double value;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.simonpercic.bucket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency percentiles of get and contains, by payload size and hit ratio.
+ * Run with more threads with -t, or through {@link BenchmarkSuite}.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadBenchmark {
+
+    static final int KEYS = 16;
+
+    // hits and misses are interleaved in a fixed pattern of this length
+    private static final int PATTERN_LENGTH = 100;
+
+    @Param({"100", "10240", "1048576", "5242880"})
+    int payloadBytes;
+
+    @Param({"1.0", "0.5", "0.0"})
+    double hitRatio;
+
+    Bucket bucket;
+
+    private String[] hitKeys;
+    private String[] missKeys;
+    private boolean[] hitPattern;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bucket = BenchmarkBuckets.create();
+
+        Payload payload = Payload.ofSize(payloadBytes);
+
+        hitKeys = new String[KEYS];
+        missKeys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            hitKeys[i] = "hit-" + i;
+            missKeys[i] = "miss-" + i;
+            bucket.put(hitKeys[i], payload);
+        }
+
+        // spread the hits evenly over the pattern
+        hitPattern = new boolean[PATTERN_LENGTH];
+        int hits = (int) Math.round(hitRatio * PATTERN_LENGTH);
+        for (int i = 0; i < PATTERN_LENGTH; i++) {
+            hitPattern[i] = (i + 1) * hits / PATTERN_LENGTH > i * hits / PATTERN_LENGTH;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bucket.cache.destroy();
+    }
+
+    @Benchmark
+    public Payload get(ThreadState state) throws IOException {
+        return bucket.get(nextKey(state), Payload.class);
+    }
+
+    @Benchmark
+    public boolean contains(ThreadState state) throws IOException {
+        return bucket.contains(nextKey(state));
+    }
+
+    private String nextKey(ThreadState state) {
+        int i = state.next();
+        if (hitPattern[i % PATTERN_LENGTH]) {
+            return hitKeys[i % KEYS];
+        }
+        return missKeys[i % KEYS];
+    }
+
+    /**
+     * Per-thread position in the key pool.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private int counter;
+
+        int next() {
+            int next = counter;
+            counter = (counter + 1) & Integer.MAX_VALUE;
+            return next;
+        }
+    }
+}
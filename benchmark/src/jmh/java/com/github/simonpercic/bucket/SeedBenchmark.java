@@ -0,0 +1,84 @@
+package com.github.simonpercic.bucket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of seeding an empty cache with a number of entries, importing a pack compared to putting
+ * the values one by one. The pack is exported once, the cache is cleared before every seed,
+ * outside of the measurement. Single-threaded, like seeding at startup.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class SeedBenchmark {
+
+    private static final int PAYLOAD_BYTES = 1024;
+
+    @Param({"100", "5000"})
+    int entries;
+
+    private Bucket bucket;
+    private Payload payload;
+    private String[] keys;
+    private byte[] pack;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bucket = BenchmarkBuckets.create();
+        payload = Payload.ofSize(PAYLOAD_BYTES);
+
+        keys = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = "seed-" + i;
+            bucket.put(keys[i], payload);
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bucket.exportTo(bos);
+        pack = bos.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bucket.cache.destroy();
+    }
+
+    @Setup(Level.Invocation)
+    public void empty() throws IOException {
+        bucket.clear();
+    }
+
+    @Benchmark
+    public void putEach() throws IOException {
+        for (String key : keys) {
+            bucket.put(key, payload);
+        }
+    }
+
+    @Benchmark
+    public void importPack() throws IOException {
+        bucket.importFrom(new ByteArrayInputStream(pack));
+    }
+}
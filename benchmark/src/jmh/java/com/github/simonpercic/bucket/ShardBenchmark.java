@@ -0,0 +1,87 @@
+package com.github.simonpercic.bucket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of get and put of small values by number of shards, to compare how it scales with the number
+ * of threads. Small values keep the time spent holding the cache lock large compared to the I/O.
+ * Run with more threads with -t, or through {@link BenchmarkSuite}.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ShardBenchmark {
+
+    private static final int KEYS_PER_THREAD = 16;
+    private static final int PAYLOAD_BYTES = 1024;
+
+    @Param({"1", "4", "16"})
+    int shards;
+
+    Bucket bucket;
+    Payload payload;
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bucket = BenchmarkBuckets.create(shards);
+        payload = Payload.ofSize(PAYLOAD_BYTES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bucket.cache.destroy();
+    }
+
+    @Benchmark
+    public Payload get(ThreadState state) throws IOException {
+        return bucket.get(state.nextKey(), Payload.class);
+    }
+
+    @Benchmark
+    public void put(ThreadState state) throws IOException {
+        bucket.put(state.nextKey(), payload);
+    }
+
+    /**
+     * Per-thread keys, put before the measurement.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private String[] keys;
+        private int counter;
+
+        @Setup(Level.Trial)
+        public void setUp(ShardBenchmark benchmark) throws IOException {
+            int thread = benchmark.threads.getAndIncrement();
+
+            keys = new String[KEYS_PER_THREAD];
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                keys[i] = "key-" + thread + "-" + i;
+                benchmark.bucket.put(keys[i], benchmark.payload);
+            }
+        }
+
+        String nextKey() {
+            counter = (counter + 1) % KEYS_PER_THREAD;
+            return keys[counter];
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a value by first reading the whole file into a String and parsing it,
+ * with streaming the snapshot InputStream straight into Gson, as done by {@link Bucket#get}.
+ * The String path reads the same json, put as raw bytes, with {@link Bucket#getBytes}.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StreamingReadBenchmark {
+
+    private static final String KEY = "BENCHMARK_KEY";
+    private static final String RAW_KEY = "BENCHMARK_RAW_KEY";
+
+    @Param({"1024", "102400", "5242880"})
+    int payloadBytes;
+
+    private Bucket bucket;
+    private Gson gson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = Files.createTempDirectory("bucket-benchmark").toFile();
+
+        bucket = Bucket.builder(new Context(dir), 64 * 1024 * 1024).build();
+        gson = bucket.gson;
+
+        Payload payload = Payload.ofSize(payloadBytes);
+        bucket.put(KEY, payload);
+        bucket.putBytes(RAW_KEY, gson.toJson(payload).getBytes(SimpleDiskCache.ENCODING));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bucket.cache.destroy();
+    }
+
+    @Benchmark
+    public Payload readString() throws IOException {
+        String value = new String(bucket.getBytes(RAW_KEY), SimpleDiskCache.ENCODING);
+        return gson.fromJson(value, Payload.class);
+    }
+
+    @Benchmark
+    public Payload readStream() throws IOException {
+        return bucket.get(KEY, Payload.class);
+    }
+}
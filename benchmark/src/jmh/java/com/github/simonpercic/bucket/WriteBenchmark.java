@@ -0,0 +1,104 @@
+package com.github.simonpercic.bucket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput and latency percentiles of put and remove, by payload size.
+ * Every thread writes its own keys, DiskLruCache does not allow concurrent edits of the same key.
+ * Run with more threads with -t, or through {@link BenchmarkSuite}.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WriteBenchmark {
+
+    private static final int KEYS_PER_THREAD = 4;
+
+    @Param({"100", "10240", "1048576", "5242880"})
+    int payloadBytes;
+
+    Bucket bucket;
+    Payload payload;
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bucket = BenchmarkBuckets.create();
+        payload = Payload.ofSize(payloadBytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bucket.cache.destroy();
+    }
+
+    @Benchmark
+    public void put(ThreadState state) throws IOException {
+        bucket.put(state.nextKey(), payload);
+    }
+
+    @Benchmark
+    public void remove(RemoveState state) throws IOException {
+        bucket.remove(state.key);
+    }
+
+    /**
+     * Per-thread keys to put.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private String[] keys;
+        private int counter;
+
+        @Setup(Level.Trial)
+        public void setUp(WriteBenchmark benchmark) {
+            int thread = benchmark.threads.getAndIncrement();
+
+            keys = new String[KEYS_PER_THREAD];
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                keys[i] = "put-" + thread + "-" + i;
+            }
+        }
+
+        String nextKey() {
+            counter = (counter + 1) % KEYS_PER_THREAD;
+            return keys[counter];
+        }
+    }
+
+    /**
+     * Per-thread key that is put before every remove, outside of the measurement.
+     */
+    @State(Scope.Thread)
+    public static class RemoveState {
+
+        String key;
+
+        @Setup(Level.Trial)
+        public void setUp(WriteBenchmark benchmark) {
+            key = "remove-" + benchmark.threads.getAndIncrement();
+        }
+
+        @Setup(Level.Invocation)
+        public void putValue(WriteBenchmark benchmark) throws IOException {
+            benchmark.bucket.put(key, benchmark.payload);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * Minimal stand-in for the Android Context, provides only what Bucket uses.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class Context {
+
+    private final File cacheDir;
+
+    public Context(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+}
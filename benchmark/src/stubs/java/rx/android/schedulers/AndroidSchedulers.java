@@ -0,0 +1,20 @@
+package rx.android.schedulers;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Stand-in for RxAndroid schedulers, there is no main thread looper on a plain JVM.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class AndroidSchedulers {
+
+    private AndroidSchedulers() {
+        // no instance
+    }
+
+    public static Scheduler mainThread() {
+        return Schedulers.immediate();
+    }
+}
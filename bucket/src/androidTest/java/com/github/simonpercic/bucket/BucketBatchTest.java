@@ -0,0 +1,137 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketBatchTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    private static Map<String, SimpleObject> createValues(int count) {
+        Map<String, SimpleObject> values = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            values.put("TEST_KEY_" + i, new SimpleObject("TEST_VALUE_" + i));
+        }
+        return values;
+    }
+
+    @Test
+    public void testPutAllGetAll() throws Exception {
+        bucket = createCache();
+
+        Map<String, SimpleObject> values = createValues(50);
+        bucket.putAll(values);
+
+        List<String> keys = Arrays.asList("TEST_KEY_3", "MISSING_KEY", "TEST_KEY_1");
+        Map<String, SimpleObject> cached = bucket.getAll(keys, SimpleObject.class);
+
+        assertEquals(2, cached.size());
+        assertEquals(Arrays.asList("TEST_KEY_3", "TEST_KEY_1"), Arrays.asList(cached.keySet().toArray()));
+        assertEquals("TEST_VALUE_3", cached.get("TEST_KEY_3").getValue());
+        assertEquals("TEST_VALUE_1", cached.get("TEST_KEY_1").getValue());
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        bucket = createCache();
+
+        bucket.putAll(createValues(3));
+        bucket.removeAll(Arrays.asList("TEST_KEY_0", "TEST_KEY_2", "MISSING_KEY"));
+
+        assertFalse(bucket.contains("TEST_KEY_0"));
+        assertTrue(bucket.contains("TEST_KEY_1"));
+        assertFalse(bucket.contains("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testPutAllChecksArgsBeforeWriting() throws Exception {
+        bucket = createCache();
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("TEST_KEY_1", new SimpleObject("TEST_VALUE_1"));
+        values.put("TEST_KEY_2", null);
+
+        try {
+            bucket.putAll(values);
+            fail("Should throw an exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("object is null", e.getMessage());
+        }
+
+        assertFalse(bucket.contains("TEST_KEY_1"));
+    }
+
+    @Test
+    public void testGetAllEmpty() throws Exception {
+        bucket = createCache();
+
+        Map<String, SimpleObject> cached = bucket.getAll(Collections.<String>emptyList(), SimpleObject.class);
+        assertTrue(cached.isEmpty());
+    }
+
+    @Test
+    public void testBatchRx() throws Exception {
+        bucket = createCache();
+
+        TestSubscriber<Boolean> putSubscriber = new TestSubscriber<>();
+        bucket.putAllRx(createValues(2)).subscribe(putSubscriber);
+        putSubscriber.assertNoErrors();
+        putSubscriber.assertValue(true);
+
+        TestSubscriber<Map<String, SimpleObject>> getSubscriber = new TestSubscriber<>();
+        bucket.<SimpleObject>getAllRx(Arrays.asList("TEST_KEY_0", "TEST_KEY_1"), SimpleObject.class)
+                .subscribe(getSubscriber);
+        getSubscriber.assertNoErrors();
+        assertEquals(2, getSubscriber.getOnNextEvents().get(0).size());
+
+        TestSubscriber<Boolean> removeSubscriber = new TestSubscriber<>();
+        bucket.removeAllRx(Arrays.asList("TEST_KEY_0", "TEST_KEY_1")).subscribe(removeSubscriber);
+        removeSubscriber.assertNoErrors();
+        assertFalse(bucket.contains("TEST_KEY_0"));
+        assertFalse(bucket.contains("TEST_KEY_1"));
+    }
+}
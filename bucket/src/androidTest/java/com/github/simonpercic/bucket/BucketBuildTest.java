@@ -8,6 +8,7 @@ import com.google.gson.Gson;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.internal.matchers.InstanceOf;
 
 import java.io.File;
 import java.io.IOException;
@@ -17,6 +18,8 @@ import rx.schedulers.Schedulers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
 
 /**
  * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
@@ -104,13 +107,59 @@ public class BucketBuildTest {
         assertNotNull(bucket.observeScheduler);
     }
 
+    @Test
+    public void testBuildNoMemoryCache() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).build();
+
+        assertNotNull(bucket);
+        assertNull(bucket.memoryCache);
+    }
+
+    @Test
+    public void testBuildMemoryCache() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withMemoryCache(10).build();
+
+        assertNotNull(bucket);
+        assertNotNull(bucket.memoryCache);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildMemoryCacheInvalidSize() throws Exception {
+        Bucket.builder(context, 1024 * 1024).withMemoryCache(0);
+    }
+
+    @Test
+    public void testBuildDefaultKeyHasher() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).build();
+
+        assertNotNull(bucket);
+        assertThat(((SimpleDiskCache) bucket.cache).keyHasher, new InstanceOf(Murmur3KeyHasher.class));
+    }
+
+    @Test
+    public void testBuildKeyHasher() throws Exception {
+        KeyHasher keyHasher = new Md5KeyHasher();
+        bucket = Bucket.builder(context, 1024 * 1024).withKeyHasher(keyHasher).build();
+
+        assertNotNull(bucket);
+        assertEquals(keyHasher, ((SimpleDiskCache) bucket.cache).keyHasher);
+    }
+
+    @Test
+    public void testBuildKeyHashMemo() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withKeyHashMemo(100).build();
+
+        assertNotNull(bucket);
+        assertThat(((SimpleDiskCache) bucket.cache).keyHasher, new InstanceOf(MemoizingKeyHasher.class));
+    }
+
     @Test
     public void testBuildSize() throws Exception {
         int maxSizeBytes = 1024 * 1024;
         bucket = Bucket.builder(context, maxSizeBytes).build();
 
         assertNotNull(bucket);
-        assertEquals(maxSizeBytes, bucket.cache.maxSizeBytes);
+        assertEquals(maxSizeBytes, bucket.cache.getMaxSize());
     }
 
     @Test
@@ -120,6 +169,6 @@ public class BucketBuildTest {
         File path = new File(context.getCacheDir() + Bucket.CACHE_DIR);
 
         assertNotNull(bucket);
-        assertEquals(path, bucket.cache.cacheDir);
+        assertEquals(path, ((SimpleDiskCache) bucket.cache).cacheDir);
     }
 }
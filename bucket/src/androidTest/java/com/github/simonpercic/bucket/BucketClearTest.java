@@ -0,0 +1,182 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+import com.jakewharton.disklrucache.DiskLruCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketClearTest {
+
+    private static final int THREADS = 8;
+    private static final int CLEARS = 50;
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    @Test
+    public void testClearDeletesPreviousGeneration() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withSubscribeScheduler(Schedulers.immediate()).build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        File previousDir = ((SimpleDiskCache) bucket.cache).generation.dir;
+        bucket.clear();
+
+        assertFalse(previousDir.exists());
+        assertTrue(((SimpleDiskCache) bucket.cache).generation.dir.exists());
+        assertFalse(bucket.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testClearKeepsOpenStream() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withSubscribeScheduler(Schedulers.immediate()).build();
+
+        File previousDir = ((SimpleDiskCache) bucket.cache).generation.dir;
+
+        CacheOutputStream os = bucket.cache.openStream("TEST_KEY");
+        bucket.clear();
+
+        // still in use by the open stream
+        assertTrue(previousDir.exists());
+
+        os.write(new byte[]{1, 2, 3});
+        os.close();
+
+        assertFalse(previousDir.exists());
+        assertFalse(bucket.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testOpensLegacyCache() throws Exception {
+        File cacheDir = new File(context.getCacheDir() + Bucket.CACHE_DIR);
+        assertTrue(cacheDir.mkdirs() || cacheDir.isDirectory());
+
+        DiskLruCache legacyCache = DiskLruCache.open(cacheDir, 1, 1, 1024 * 1024);
+        DiskLruCache.Editor editor = legacyCache.edit(new Murmur3KeyHasher().hash("TEST_KEY"));
+        editor.set(0, "{\"value\":\"TEST_VALUE\"}");
+        editor.commit();
+        legacyCache.close();
+
+        bucket = Bucket.builder(context, 1024 * 1024).build();
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+
+    @Test
+    public void testConcurrentClear() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).build();
+        assertNoFailuresDuringClear();
+    }
+
+    @Test
+    public void testConcurrentClearLogStructured() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withStorage(Storage.LOG_STRUCTURED).build();
+        assertNoFailuresDuringClear();
+    }
+
+    @Test
+    public void testConcurrentClearMemoryCache() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withMemoryCache(100).build();
+        assertNoFailuresDuringClear();
+    }
+
+    private void assertNoFailuresDuringClear() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch started = new CountDownLatch(THREADS);
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override public Integer call() throws Exception {
+                    started.countDown();
+
+                    int operations = 0;
+                    while (running.get()) {
+                        // keys are not shared between threads, concurrent edits of the same key fail on their own
+                        String key = "KEY_" + thread + "_" + operations % 10;
+
+                        bucket.put(key, new SimpleObject("VALUE_" + operations));
+                        bucket.get(key, SimpleObject.class);
+                        bucket.contains(key);
+
+                        if (operations % 3 == 0) {
+                            bucket.remove(key);
+                        }
+
+                        operations++;
+                    }
+
+                    return operations;
+                }
+            }));
+        }
+
+        started.await();
+
+        for (int i = 0; i < CLEARS; i++) {
+            bucket.clear();
+            Thread.sleep(2);
+        }
+
+        running.set(false);
+
+        for (Future<Integer> future : futures) {
+            // rethrows any failed operation
+            assertTrue(future.get() > 0);
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketCompressionTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache(Storage storage) throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withStorage(storage)
+                .withCompression(1024)
+                .build();
+    }
+
+    @Test
+    public void testSmallValue() throws Exception {
+        bucket = createCache(Storage.DISK_LRU_CACHE);
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+
+        // header byte + {"value":"TEST_VALUE"}
+        assertEquals(23, bucket.cache.size());
+    }
+
+    @Test
+    public void testLargeValue() throws Exception {
+        bucket = createCache(Storage.DISK_LRU_CACHE);
+        assertLargeValue();
+    }
+
+    @Test
+    public void testLargeValueLogStructured() throws Exception {
+        bucket = createCache(Storage.LOG_STRUCTURED);
+        assertLargeValue();
+    }
+
+    @Test
+    public void testLargerThanCacheUncompressed() throws Exception {
+        bucket = Bucket.builder(context, 64 * 1024).withCompression(Compression.DEFLATE, 0, Deflater.BEST_COMPRESSION)
+                .build();
+
+        String value = repeat("TEST_VALUE", 20 * 1024);
+        bucket.put("TEST_KEY", new SimpleObject(value));
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals(value, cached.getValue());
+    }
+
+    @Test
+    public void testMixedEntries() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).build();
+
+        String value = repeat("TEST_VALUE", 1000);
+
+        // written uncompressed, before compression was enabled
+        bucket.put("UNCOMPRESSED", new SimpleObject(value));
+
+        ValueCodec compressingCodec = new ValueCodec(new GsonSerializer(bucket.gson),
+                Collections.<BucketSerializer>emptyList(), Compression.DEFLATE,
+                Deflater.DEFAULT_COMPRESSION, 0);
+
+        CacheOutputStream os = bucket.cache.openStream("COMPRESSED");
+        try {
+            compressingCodec.write(os, new SimpleObject(value));
+        } finally {
+            os.close();
+        }
+
+        SimpleObject uncompressed = bucket.get("UNCOMPRESSED", SimpleObject.class);
+        assertEquals(value, uncompressed.getValue());
+
+        SimpleObject compressed = bucket.get("COMPRESSED", SimpleObject.class);
+        assertEquals(value, compressed.getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreshold() throws Exception {
+        Bucket.builder(context, 1024 * 1024).withCompression(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() throws Exception {
+        Bucket.builder(context, 1024 * 1024).withCompression(Compression.DEFLATE, 1024, 10);
+    }
+
+    private void assertLargeValue() throws IOException {
+        String value = repeat("TEST_VALUE", 1000);
+
+        bucket.put("TEST_KEY", new SimpleObject(value));
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals(value, cached.getValue());
+
+        assertTrue(bucket.cache.size() < value.length() / 10);
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder sb = new StringBuilder(value.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(value);
+        }
+
+        return sb.toString();
+    }
+}
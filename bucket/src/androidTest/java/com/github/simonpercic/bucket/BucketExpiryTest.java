@@ -0,0 +1,242 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketExpiryTest {
+
+    private static final long SHORT_TTL_MILLIS = 50;
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 1024 * 1024).build();
+    }
+
+    @Test
+    public void testNotExpired() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), 1, TimeUnit.HOURS);
+
+        assertTrue(bucket.contains("TEST_KEY"));
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), SHORT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        waitForExpiry();
+
+        assertFalse(bucket.contains("TEST_KEY"));
+        assertNull(bucket.get("TEST_KEY", SimpleObject.class));
+    }
+
+    @Test
+    public void testExpiredLogStructured() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withStorage(Storage.LOG_STRUCTURED).build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), SHORT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        waitForExpiry();
+
+        assertFalse(bucket.contains("TEST_KEY"));
+        assertNull(bucket.get("TEST_KEY", SimpleObject.class));
+    }
+
+    @Test
+    public void testExpiredMemoryCache() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withMemoryCache(10).build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), SHORT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull(bucket.get("TEST_KEY", SimpleObject.class));
+
+        waitForExpiry();
+
+        assertNull(bucket.get("TEST_KEY", SimpleObject.class));
+        assertEquals(0, bucket.memoryCache.size());
+    }
+
+    @Test
+    public void testOverwriteWithoutTtl() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), SHORT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        bucket.put("TEST_KEY", new SimpleObject("NEW_VALUE"));
+        waitForExpiry();
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("NEW_VALUE", cached.getValue());
+    }
+
+    @Test
+    public void testDiscardedTtlPutKeepsValue() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        CacheOutputStream os = bucket.cache.openStream("TEST_KEY", System.currentTimeMillis() + SHORT_TTL_MILLIS);
+        os.abort();
+        os.close();
+
+        waitForExpiry();
+
+        assertEquals(CacheInputStream.NO_EXPIRY, bucket.cache.getExpiresAt("TEST_KEY"));
+        assertTrue(bucket.contains("TEST_KEY"));
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        long size = bucket.cache.size();
+
+        for (int i = 0; i < 100; i++) {
+            bucket.put("EXPIRING_" + i, new SimpleObject("TEST_VALUE"), SHORT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        waitForExpiry();
+        bucket.cache.sweepExpired();
+
+        assertEquals(size, bucket.cache.size());
+        assertTrue(bucket.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testStaleSavedExpiry() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withSubscribeScheduler(Schedulers.immediate()).build();
+        SimpleDiskCache cache = (SimpleDiskCache) bucket.cache;
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        // saved by a previous process before it overwrote the value without an expiry time
+        ExpiryIndex saved = new ExpiryIndex(new File(cache.cacheDir, "expiry-index"));
+        saved.put(cache.keyHasher.hash("TEST_KEY"), 1);
+        saved.save();
+        cache.expiryIndex.load();
+
+        assertTrue(bucket.contains("TEST_KEY"));
+        assertEquals(Collections.singletonList("TEST_KEY"), bucket.keys());
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+
+    @Test
+    public void testOverwriteSavesExpiryIndex() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).withSubscribeScheduler(Schedulers.immediate()).build();
+        SimpleDiskCache cache = (SimpleDiskCache) bucket.cache;
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), 1, TimeUnit.HOURS);
+        bucket.put("OTHER_KEY", new SimpleObject("TEST_VALUE"), 1, TimeUnit.HOURS);
+        bucket.cache.sweepExpired();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        bucket.remove("OTHER_KEY");
+
+        ExpiryIndex saved = new ExpiryIndex(new File(cache.cacheDir, "expiry-index"));
+        saved.load();
+        assertTrue(saved.expiredKeys(Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testSweeper() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+
+        bucket = Bucket.builder(context, 1024 * 1024)
+                .withSubscribeScheduler(scheduler)
+                .withExpirySweeper(1, TimeUnit.MINUTES)
+                .build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), SHORT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        waitForExpiry();
+
+        assertTrue(bucket.cache.size() > 0);
+
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+
+        assertEquals(0, bucket.cache.size());
+    }
+
+    @Test
+    public void testPutRx() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.putRx("TEST_KEY", new SimpleObject("TEST_VALUE"), SHORT_TTL_MILLIS, TimeUnit.MILLISECONDS)
+                .subscribe(subscriber);
+
+        subscriber.assertNoErrors();
+        subscriber.assertValue(true);
+
+        waitForExpiry();
+        assertNull(bucket.get("TEST_KEY", SimpleObject.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTtl() throws Exception {
+        bucket = createCache();
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), 0, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullTtlUnit() throws Exception {
+        bucket = createCache();
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), 1, null);
+    }
+
+    private static void waitForExpiry() throws InterruptedException {
+        Thread.sleep(SHORT_TTL_MILLIS * 2);
+    }
+}
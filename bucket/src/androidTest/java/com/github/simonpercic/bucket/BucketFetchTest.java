@@ -0,0 +1,267 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketFetchTest {
+
+    private static final FetchPolicy FRESH_POLICY = FetchPolicy.maxAge(1, TimeUnit.HOURS);
+
+    private static final FetchPolicy STALE_POLICY = FetchPolicy.maxAge(1, TimeUnit.MILLISECONDS)
+            .staleWhileRevalidate(1, TimeUnit.HOURS);
+
+    Context context;
+    Bucket bucket;
+    TestScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        scheduler = new TestScheduler();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withSubscribeScheduler(scheduler)
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    private SimpleObject getOrFetch(CountingLoader loader, FetchPolicy policy) throws IOException {
+        return bucket.getOrFetch("TEST_KEY", SimpleObject.class, loader, policy);
+    }
+
+    @Test
+    public void testFetchMissing() throws Exception {
+        bucket = createCache();
+        CountingLoader loader = new CountingLoader("TEST_VALUE");
+
+        SimpleObject object = getOrFetch(loader, FRESH_POLICY);
+
+        assertNotNull(object);
+        assertEquals("TEST_VALUE", object.getValue());
+        assertEquals(1, loader.calls.get());
+        assertTrue(bucket.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testFreshValueNotFetched() throws Exception {
+        bucket = createCache();
+        CountingLoader loader = new CountingLoader("TEST_VALUE");
+
+        getOrFetch(loader, FRESH_POLICY);
+        SimpleObject object = getOrFetch(loader, FRESH_POLICY);
+
+        assertEquals("TEST_VALUE", object.getValue());
+        assertEquals(1, loader.calls.get());
+
+        scheduler.triggerActions();
+        assertEquals(1, loader.calls.get());
+    }
+
+    @Test
+    public void testStaleValueServedAndRefreshed() throws Exception {
+        bucket = createCache();
+        CountingLoader loader = new CountingLoader("TEST_VALUE_1");
+
+        getOrFetch(loader, STALE_POLICY);
+        Thread.sleep(5);
+
+        loader.value = "TEST_VALUE_2";
+
+        // served stale, the refresh is queued on the scheduler
+        assertEquals("TEST_VALUE_1", getOrFetch(loader, STALE_POLICY).getValue());
+        assertEquals("TEST_VALUE_1", getOrFetch(loader, STALE_POLICY).getValue());
+        assertEquals(1, loader.calls.get());
+
+        scheduler.triggerActions();
+
+        assertEquals(2, loader.calls.get());
+        assertEquals("TEST_VALUE_2", bucket.<SimpleObject>get("TEST_KEY", SimpleObject.class).getValue());
+    }
+
+    @Test
+    public void testValueWithoutExpiryIsStale() throws Exception {
+        bucket = createCache();
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE_1"));
+
+        CountingLoader loader = new CountingLoader("TEST_VALUE_2");
+
+        assertEquals("TEST_VALUE_1", getOrFetch(loader, STALE_POLICY).getValue());
+
+        scheduler.triggerActions();
+
+        assertEquals(1, loader.calls.get());
+        assertEquals("TEST_VALUE_2", getOrFetch(loader, STALE_POLICY).getValue());
+    }
+
+    @Test
+    public void testValueWithoutExpiryFetchedWithoutStalePeriod() throws Exception {
+        bucket = createCache();
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE_1"));
+
+        CountingLoader loader = new CountingLoader("TEST_VALUE_2");
+
+        assertEquals("TEST_VALUE_2", getOrFetch(loader, FRESH_POLICY).getValue());
+        assertEquals(1, loader.calls.get());
+    }
+
+    @Test
+    public void testExpiredValueFetched() throws Exception {
+        bucket = createCache();
+        CountingLoader loader = new CountingLoader("TEST_VALUE_1");
+
+        FetchPolicy policy = FetchPolicy.maxAge(1, TimeUnit.MILLISECONDS);
+        getOrFetch(loader, policy);
+        Thread.sleep(5);
+
+        loader.value = "TEST_VALUE_2";
+
+        assertEquals("TEST_VALUE_2", getOrFetch(loader, policy).getValue());
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void testNullNotCached() throws Exception {
+        bucket = createCache();
+        CountingLoader loader = new CountingLoader(null);
+
+        assertNull(getOrFetch(loader, FRESH_POLICY));
+        assertFalse(bucket.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testConcurrentFetchesShareLoader() throws Exception {
+        bucket = createCache();
+
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        final BucketLoader<SimpleObject> loader = new BucketLoader<SimpleObject>() {
+            @Override public SimpleObject load(String key) throws Exception {
+                calls.incrementAndGet();
+                loading.countDown();
+                release.await();
+                return new SimpleObject("TEST_VALUE");
+            }
+        };
+
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SimpleObject>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<SimpleObject>() {
+                    @Override public SimpleObject call() throws Exception {
+                        return bucket.getOrFetch("TEST_KEY", SimpleObject.class, loader, FRESH_POLICY);
+                    }
+                }));
+            }
+
+            loading.await();
+            // let the other threads reach the pending fetch
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<SimpleObject> future : futures) {
+                assertEquals("TEST_VALUE", future.get().getValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testRx() throws Exception {
+        bucket = createCache();
+        CountingLoader loader = new CountingLoader("TEST_VALUE");
+
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        bucket.<SimpleObject>getOrFetchRx("TEST_KEY", SimpleObject.class, loader, FRESH_POLICY)
+                .subscribe(subscriber);
+        scheduler.triggerActions();
+
+        subscriber.assertNoErrors();
+        subscriber.assertValueCount(1);
+        assertEquals("TEST_VALUE", subscriber.getOnNextEvents().get(0).getValue());
+        assertEquals(1, loader.calls.get());
+    }
+
+    @Test
+    public void testLoaderFailure() throws Exception {
+        bucket = createCache();
+
+        BucketLoader<SimpleObject> loader = new BucketLoader<SimpleObject>() {
+            @Override public SimpleObject load(String key) throws Exception {
+                throw new Exception("TEST_FAILURE");
+            }
+        };
+
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        bucket.<SimpleObject>getOrFetchRx("TEST_KEY", SimpleObject.class, loader, FRESH_POLICY)
+                .subscribe(subscriber);
+        scheduler.triggerActions();
+
+        subscriber.assertError(IOException.class);
+    }
+
+    private static final class CountingLoader implements BucketLoader<SimpleObject> {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile String value;
+
+        CountingLoader(String value) {
+            this.value = value;
+        }
+
+        @Override public SimpleObject load(String key) {
+            calls.incrementAndGet();
+
+            if (value == null) {
+                return null;
+            }
+
+            return new SimpleObject(value);
+        }
+    }
+}
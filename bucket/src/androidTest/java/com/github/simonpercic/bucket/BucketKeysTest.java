@@ -0,0 +1,187 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rx.Subscriber;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketKeysTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache(int shards) throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withShards(shards)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    private void putKeys() throws IOException {
+        bucket.put("user:2", new SimpleObject("USER_2"));
+        bucket.put("feed", new SimpleObject("FEED"));
+        bucket.put("user:1", new SimpleObject("USER_1"));
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        bucket = createCache(1);
+        putKeys();
+
+        assertEquals(Arrays.asList("feed", "user:1", "user:2"), bucket.keys());
+        assertEquals(Arrays.asList("user:1", "user:2"), bucket.keys("user:"));
+        assertEquals(Collections.<String>emptyList(), bucket.keys("missing"));
+    }
+
+    @Test
+    public void testLongKey() throws Exception {
+        bucket = createCache(1);
+
+        char[] chars = new char[70 * 1024];
+        Arrays.fill(chars, 'k');
+        String key = new String(chars);
+
+        bucket.put(key, new SimpleObject("LONG"), "tag");
+        bucket.put("short", new SimpleObject("SHORT"));
+
+        assertEquals(Arrays.asList(key, "short"), bucket.keys());
+        SimpleObject cached = bucket.get(key, SimpleObject.class);
+        assertEquals("LONG", cached.getValue());
+
+        bucket.invalidateTag("tag");
+
+        assertEquals(Collections.singletonList("short"), bucket.keys());
+    }
+
+    @Test
+    public void testKeysSharded() throws Exception {
+        bucket = createCache(4);
+        putKeys();
+
+        assertEquals(Arrays.asList("feed", "user:1", "user:2"), bucket.keys());
+    }
+
+    @Test
+    public void testKeysRemoveAndClear() throws Exception {
+        bucket = createCache(1);
+        putKeys();
+
+        bucket.remove("feed");
+        assertEquals(Arrays.asList("user:1", "user:2"), bucket.keys());
+
+        bucket.removeAll(Collections.singletonList("user:1"));
+        assertEquals(Collections.singletonList("user:2"), bucket.keys());
+
+        bucket.clear();
+        assertEquals(Collections.<String>emptyList(), bucket.keys());
+    }
+
+    @Test
+    public void testKeysSkipsExpired() throws Exception {
+        bucket = createCache(1);
+        bucket.put("expiring", new SimpleObject("VALUE"), 1, TimeUnit.MILLISECONDS);
+        bucket.put("key", new SimpleObject("VALUE"));
+
+        Thread.sleep(10);
+
+        assertEquals(Collections.singletonList("key"), bucket.keys());
+    }
+
+    @Test
+    public void testKeysRx() throws Exception {
+        bucket = createCache(1);
+        putKeys();
+
+        TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        bucket.keysRx("user:").subscribe(subscriber);
+
+        subscriber.assertValue(Arrays.asList("user:1", "user:2"));
+    }
+
+    @Test
+    public void testEntriesBackpressure() throws Exception {
+        bucket = createCache(1);
+        putKeys();
+
+        RequestingSubscriber<Map.Entry<String, SimpleObject>> subscriber = new RequestingSubscriber<>();
+        bucket.<SimpleObject>entries("user:", SimpleObject.class).subscribe(subscriber);
+
+        assertEquals(0, subscriber.values.size());
+
+        subscriber.requestOne();
+        assertEquals(1, subscriber.values.size());
+        assertEquals("user:1", subscriber.values.get(0).getKey());
+        assertEquals("USER_1", subscriber.values.get(0).getValue().getValue());
+
+        subscriber.requestOne();
+        assertEquals(2, subscriber.values.size());
+        assertEquals("USER_2", subscriber.values.get(1).getValue().getValue());
+
+        subscriber.requestOne();
+        assertTrue(subscriber.completed);
+    }
+
+    /**
+     * Requests nothing until {@link #requestOne()} is called.
+     */
+    private static final class RequestingSubscriber<T> extends Subscriber<T> {
+
+        final List<T> values = new ArrayList<>();
+        boolean completed;
+
+        @Override public void onStart() {
+            request(0);
+        }
+
+        void requestOne() {
+            request(1);
+        }
+
+        @Override public void onNext(T value) {
+            values.add(value);
+        }
+
+        @Override public void onCompleted() {
+            completed = true;
+        }
+
+        @Override public void onError(Throwable e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketLazyOpenTest {
+
+    Context context;
+    Bucket bucket;
+    TestScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        scheduler = new TestScheduler();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            scheduler.triggerActions();
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withSubscribeScheduler(scheduler)
+                .withObserveScheduler(Schedulers.immediate())
+                .buildAsync();
+    }
+
+    @Test
+    public void testReady() throws Exception {
+        bucket = createCache();
+        assertFalse(bucket.isReady());
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.readyRx().subscribe(subscriber);
+        subscriber.assertNoValues();
+
+        scheduler.triggerActions();
+
+        assertTrue(bucket.isReady());
+        subscriber.assertNoErrors();
+        subscriber.assertValue(true);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void testReadyWhenBuiltSync() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024)
+                .withSubscribeScheduler(scheduler)
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+
+        assertTrue(bucket.isReady());
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.readyRx().subscribe(subscriber);
+
+        subscriber.assertNoErrors();
+        subscriber.assertValue(true);
+    }
+
+    @Test
+    public void testRxOperationsQueuedUntilOpen() throws Exception {
+        bucket = createCache();
+
+        TestSubscriber<Boolean> putSubscriber = new TestSubscriber<>();
+        bucket.putRx("TEST_KEY", new SimpleObject("TEST_VALUE")).subscribe(putSubscriber);
+
+        TestSubscriber<Boolean> containsSubscriber = new TestSubscriber<>();
+        bucket.containsRx("TEST_KEY").subscribe(containsSubscriber);
+
+        putSubscriber.assertNoValues();
+        containsSubscriber.assertNoValues();
+
+        scheduler.triggerActions();
+
+        putSubscriber.assertNoErrors();
+        putSubscriber.assertValue(true);
+        containsSubscriber.assertNoErrors();
+        containsSubscriber.assertValueCount(1);
+
+        TestSubscriber<SimpleObject> getSubscriber = new TestSubscriber<>();
+        bucket.<SimpleObject>getRx("TEST_KEY", SimpleObject.class).subscribe(getSubscriber);
+        scheduler.triggerActions();
+
+        getSubscriber.assertNoErrors();
+        getSubscriber.assertValueCount(1);
+        assertEquals("TEST_VALUE", getSubscriber.getOnNextEvents().get(0).getValue());
+    }
+
+    @Test
+    public void testSyncOperationBlocksUntilOpen() throws Exception {
+        bucket = createCache();
+
+        final AtomicBoolean contains = new AtomicBoolean(true);
+        Thread thread = new Thread(new Runnable() {
+            @Override public void run() {
+                try {
+                    contains.set(bucket.contains("TEST_KEY"));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+
+        thread.join(100);
+        assertTrue(thread.isAlive());
+
+        scheduler.triggerActions();
+        thread.join();
+
+        assertFalse(contains.get());
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketLogStructuredTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 1024 * 1024).withStorage(Storage.LOG_STRUCTURED).build();
+    }
+
+    @Test
+    public void testSimple() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        bucket.put(key, new SimpleObject(value));
+
+        assertTrue(bucket.contains(key));
+
+        SimpleObject cached = bucket.get(key, SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals(value, cached.getValue());
+    }
+
+    @Test
+    public void testCollection() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+
+        List<SimpleObject> list = Arrays.asList(new SimpleObject("TEST_VALUE_1"), new SimpleObject("TEST_VALUE_2"));
+        bucket.put(key, list);
+
+        Type type = new TypeToken<List<SimpleObject>>() {
+        }.getType();
+
+        List<SimpleObject> cached = bucket.get(key, type);
+        assertNotNull(cached);
+        assertEquals(2, cached.size());
+        assertEquals("TEST_VALUE_2", cached.get(1).getValue());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+
+        bucket.put(key, new SimpleObject("TEST_VALUE"));
+        bucket.remove(key);
+
+        assertFalse(bucket.contains(key));
+        assertNull(bucket.get(key, SimpleObject.class));
+    }
+
+    @Test
+    public void testClearWorksAfter() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY_1", new SimpleObject("TEST_VALUE_1"));
+        bucket.clear();
+
+        assertFalse(bucket.contains("TEST_KEY_1"));
+
+        bucket.put("TEST_KEY_2", new SimpleObject("TEST_VALUE_2"));
+
+        SimpleObject cached = bucket.get("TEST_KEY_2", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE_2", cached.getValue());
+    }
+
+    @Test
+    public void testSizeAccounting() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY", "value");
+
+        // serializer header byte and "value" serialized to json
+        assertEquals(8, bucket.cache.size());
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketMemoryCacheTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withMemoryCache(10)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    @Test
+    public void testPutGetFromMemory() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+
+        bucket.put(key, object);
+
+        SimpleObject cached = bucket.get(key, SimpleObject.class);
+        assertSame(object, cached);
+    }
+
+    @Test
+    public void testGetPopulatesMemory() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        bucket.put(key, new SimpleObject(value));
+        bucket.memoryCache.clear();
+
+        SimpleObject first = bucket.get(key, SimpleObject.class);
+        assertNotNull(first);
+        assertEquals(value, first.getValue());
+
+        SimpleObject second = bucket.get(key, SimpleObject.class);
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testRxSharesMemory() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+
+        bucket.put(key, object);
+
+        TestSubscriber<SimpleObject> testSubscriber = new TestSubscriber<>();
+        bucket.<SimpleObject>getRx(key, SimpleObject.class).subscribe(testSubscriber);
+
+        testSubscriber.assertNoErrors();
+        assertSame(object, testSubscriber.getOnNextEvents().get(0));
+    }
+
+    @Test
+    public void testOverwrite() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+        SimpleObject first = new SimpleObject("TEST_VALUE_1");
+        SimpleObject second = new SimpleObject("TEST_VALUE_2");
+
+        bucket.put(key, first);
+        bucket.put(key, second);
+
+        SimpleObject cached = bucket.get(key, SimpleObject.class);
+        assertNotSame(first, cached);
+        assertSame(second, cached);
+    }
+
+    @Test
+    public void testRemoveDropsMemory() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+
+        bucket.put(key, new SimpleObject("TEST_VALUE"));
+        bucket.remove(key);
+
+        assertNull(bucket.get(key, SimpleObject.class));
+        assertEquals(0, bucket.memoryCache.size());
+    }
+
+    @Test
+    public void testClearDropsMemory() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+
+        bucket.put(key, new SimpleObject("TEST_VALUE"));
+        bucket.clear();
+
+        assertFalse(bucket.contains(key));
+        assertNull(bucket.get(key, SimpleObject.class));
+        assertEquals(0, bucket.memoryCache.size());
+    }
+}
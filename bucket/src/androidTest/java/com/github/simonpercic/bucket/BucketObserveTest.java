@@ -0,0 +1,185 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketObserveTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() throws IOException {
+        context = InstrumentationRegistry.getTargetContext();
+
+        bucket = Bucket.builder(context, 1024 * 1024)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private TestSubscriber<SimpleObject> observe(String key) {
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        bucket.<SimpleObject>observe(key, SimpleObject.class).subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Test
+    public void testCurrentValue() throws Exception {
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+        bucket.put("TEST_KEY", object);
+
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+
+        subscriber.assertNoErrors();
+        subscriber.assertNotCompleted();
+        assertEquals(1, subscriber.getOnNextEvents().size());
+        assertEquals("TEST_VALUE", subscriber.getOnNextEvents().get(0).getValue());
+    }
+
+    @Test
+    public void testMissingValue() throws Exception {
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+
+        subscriber.assertNoErrors();
+        subscriber.assertValue(null);
+    }
+
+    @Test
+    public void testPut() throws Exception {
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+
+        SimpleObject object1 = new SimpleObject("TEST_VALUE_1");
+        SimpleObject object2 = new SimpleObject("TEST_VALUE_2");
+        bucket.put("TEST_KEY", object1);
+        bucket.putRx("TEST_KEY", object2).subscribe();
+        bucket.put("OTHER_KEY", new SimpleObject("TEST_VALUE"));
+
+        List<SimpleObject> values = subscriber.getOnNextEvents();
+        assertEquals(3, values.size());
+        assertNull(values.get(0));
+        assertSame(object1, values.get(1));
+        assertSame(object2, values.get(2));
+    }
+
+    @Test
+    public void testPutAll() throws Exception {
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+        bucket.putAll(Collections.singletonMap("TEST_KEY", object));
+
+        subscriber.assertValues(null, object);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+        bucket.put("TEST_KEY", object);
+
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+
+        bucket.remove("TEST_KEY");
+        bucket.put("TEST_KEY", object);
+        bucket.removeAll(Arrays.asList("TEST_KEY", "OTHER_KEY"));
+
+        List<SimpleObject> values = subscriber.getOnNextEvents();
+        assertEquals(4, values.size());
+        assertNull(values.get(1));
+        assertSame(object, values.get(2));
+        assertNull(values.get(3));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+
+        bucket.clear();
+
+        List<SimpleObject> values = subscriber.getOnNextEvents();
+        assertEquals(2, values.size());
+        assertNull(values.get(1));
+    }
+
+    @Test
+    public void testUnsubscribe() throws Exception {
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+        subscriber.unsubscribe();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        subscriber.assertValue(null);
+    }
+
+    @Test
+    public void testMultipleObservers() throws Exception {
+        TestSubscriber<SimpleObject> subscriber1 = observe("TEST_KEY");
+        TestSubscriber<SimpleObject> subscriber2 = observe("TEST_KEY");
+
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+        bucket.put("TEST_KEY", object);
+
+        subscriber1.assertValues(null, object);
+        subscriber2.assertValues(null, object);
+    }
+
+    @Test
+    public void testOtherTypeSkipped() throws Exception {
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+
+        bucket.put("TEST_KEY", "TEST_VALUE");
+
+        subscriber.assertValue(null);
+    }
+
+    @Test
+    public void testReadError() throws Exception {
+        bucket.putBytes("TEST_KEY", new byte[]{1, 2, 3});
+
+        TestSubscriber<SimpleObject> subscriber = observe("TEST_KEY");
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+        subscriber.assertNoValues();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyKey() throws Exception {
+        bucket.observe("", SimpleObject.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullType() throws Exception {
+        bucket.observe("TEST_KEY", null);
+    }
+}
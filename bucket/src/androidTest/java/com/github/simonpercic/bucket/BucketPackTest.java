@@ -0,0 +1,207 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketPackTest {
+
+    private static final int KEYS = 32;
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache(int shards) throws IOException {
+        return Bucket.builder(context, 4 * 1024 * 1024)
+                .withMemoryCache(16)
+                .withShards(shards)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    private void putKeys() throws IOException {
+        for (int i = 0; i < KEYS; i++) {
+            bucket.put("TEST_KEY_" + i, new SimpleObject("TEST_VALUE_" + i));
+        }
+    }
+
+    private void assertKeys() throws IOException {
+        for (int i = 0; i < KEYS; i++) {
+            SimpleObject object = bucket.get("TEST_KEY_" + i, SimpleObject.class);
+            assertNotNull(object);
+            assertEquals("TEST_VALUE_" + i, object.getValue());
+        }
+    }
+
+    private byte[] exportPack() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bucket.exportTo(bos);
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testExportImport() throws Exception {
+        bucket = createCache(1);
+        putKeys();
+
+        byte[] pack = exportPack();
+        bucket.clear();
+        assertFalse(bucket.contains("TEST_KEY_0"));
+
+        bucket.importFrom(new ByteArrayInputStream(pack));
+
+        assertKeys();
+        assertTrue(bucket.contains("TEST_KEY_0"));
+    }
+
+    @Test
+    public void testExportImportShards() throws Exception {
+        bucket = createCache(4);
+        putKeys();
+
+        byte[] pack = exportPack();
+        bucket.clear();
+
+        bucket.importFrom(new ByteArrayInputStream(pack));
+
+        assertKeys();
+    }
+
+    @Test
+    public void testImportShardsMismatch() throws Exception {
+        bucket = createCache(4);
+        putKeys();
+
+        byte[] pack = exportPack();
+        bucket.cache.destroy();
+
+        bucket = createCache(2);
+        try {
+            bucket.importFrom(new ByteArrayInputStream(pack));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("shards"));
+        }
+    }
+
+    @Test
+    public void testImportReplacesAndClearsMemory() throws Exception {
+        bucket = createCache(1);
+        bucket.put("TEST_KEY", new SimpleObject("OLD_VALUE"));
+
+        byte[] pack = exportPack();
+
+        bucket.put("TEST_KEY", new SimpleObject("NEW_VALUE"));
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertEquals("NEW_VALUE", cached.getValue());
+
+        bucket.importFrom(new ByteArrayInputStream(pack));
+
+        SimpleObject imported = bucket.get("TEST_KEY", SimpleObject.class);
+        assertEquals("OLD_VALUE", imported.getValue());
+    }
+
+    @Test
+    public void testExportSkipsExpired() throws Exception {
+        bucket = createCache(1);
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), 1, TimeUnit.MILLISECONDS);
+        bucket.put("TEST_KEY_2", new SimpleObject("TEST_VALUE_2"));
+
+        Thread.sleep(10);
+
+        byte[] pack = exportPack();
+        bucket.clear();
+
+        bucket.importFrom(new ByteArrayInputStream(pack));
+
+        assertNull(bucket.get("TEST_KEY", SimpleObject.class));
+        SimpleObject cached = bucket.get("TEST_KEY_2", SimpleObject.class);
+        assertEquals("TEST_VALUE_2", cached.getValue());
+    }
+
+    @Test
+    public void testExportImportChunked() throws Exception {
+        bucket = createCache(1);
+
+        byte[] bytes = new byte[2 * Chunks.CHUNK_BYTES + 100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        bucket.putBytes("TEST_KEY", bytes);
+
+        byte[] pack = exportPack();
+        bucket.clear();
+
+        bucket.importFrom(new ByteArrayInputStream(pack));
+
+        assertArrayEquals(bytes, bucket.getBytes("TEST_KEY"));
+    }
+
+    @Test
+    public void testImportCorrupt() throws Exception {
+        bucket = createCache(1);
+
+        try {
+            bucket.importFrom(new ByteArrayInputStream("not a pack".getBytes("UTF-8")));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Not a pack"));
+        }
+    }
+
+    @Test
+    public void testExportImportRx() throws Exception {
+        bucket = createCache(1);
+        putKeys();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        TestSubscriber<Boolean> exportSubscriber = new TestSubscriber<>();
+        bucket.exportToRx(bos).subscribe(exportSubscriber);
+        exportSubscriber.assertValue(true);
+
+        bucket.clear();
+
+        TestSubscriber<Boolean> importSubscriber = new TestSubscriber<>();
+        bucket.importFromRx(new ByteArrayInputStream(bos.toByteArray())).subscribe(importSubscriber);
+        importSubscriber.assertValue(true);
+
+        assertKeys();
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+import com.github.simonpercic.bucket.model.WrappedObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketPreloadTest {
+
+    private static final int KEYS = 40;
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache(boolean memoryCache) throws IOException {
+        Bucket.Builder builder = Bucket.builder(context, 1024 * 1024)
+                .withStats(true)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate());
+
+        if (memoryCache) {
+            builder.withMemoryCache(KEYS);
+        }
+
+        return builder.build();
+    }
+
+    private List<String> putKeys() throws IOException {
+        List<String> keys = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            String key = "TEST_KEY_" + i;
+            bucket.put(key, new SimpleObject("TEST_VALUE_" + i));
+            keys.add(key);
+        }
+
+        // as after a restart, only the disk holds the values
+        bucket.memoryCache.clear();
+
+        return keys;
+    }
+
+    @Test
+    public void testPreload() throws Exception {
+        bucket = createCache(true);
+        List<String> keys = putKeys();
+
+        bucket.preload(keys, SimpleObject.class);
+
+        assertEquals(KEYS, bucket.memoryCache.size());
+        for (int i = 0; i < KEYS; i++) {
+            SimpleObject object = bucket.memoryCache.get(keys.get(i), SimpleObject.class);
+            assertNotNull(object);
+            assertEquals("TEST_VALUE_" + i, object.getValue());
+        }
+
+        long memoryHits = bucket.stats().getMemoryHitCount();
+        bucket.get(keys.get(0), SimpleObject.class);
+        assertEquals(memoryHits + 1, bucket.stats().getMemoryHitCount());
+    }
+
+    @Test
+    public void testPreloadTypePerKey() throws Exception {
+        bucket = createCache(true);
+
+        WrappedObject wrapped = new WrappedObject();
+        wrapped.setObject(new SimpleObject("TEST_VALUE_2"));
+        wrapped.setValue("TEST_VALUE_3");
+
+        bucket.put("TEST_KEY_1", new SimpleObject("TEST_VALUE_1"));
+        bucket.put("TEST_KEY_2", wrapped);
+        bucket.memoryCache.clear();
+
+        Map<String, Type> types = new LinkedHashMap<>();
+        types.put("TEST_KEY_1", SimpleObject.class);
+        types.put("TEST_KEY_2", WrappedObject.class);
+        bucket.preload(types);
+
+        SimpleObject object = bucket.memoryCache.get("TEST_KEY_1", SimpleObject.class);
+        assertEquals("TEST_VALUE_1", object.getValue());
+
+        WrappedObject wrappedObject = bucket.memoryCache.get("TEST_KEY_2", WrappedObject.class);
+        assertEquals("TEST_VALUE_2", wrappedObject.getObject().getValue());
+    }
+
+    @Test
+    public void testPreloadMissingKeys() throws Exception {
+        bucket = createCache(true);
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        bucket.memoryCache.clear();
+
+        bucket.preload(Arrays.asList("TEST_KEY", "TEST_KEY_MISSING"), SimpleObject.class);
+
+        assertEquals(1, bucket.memoryCache.size());
+        assertNull(bucket.memoryCache.get("TEST_KEY_MISSING", SimpleObject.class));
+    }
+
+    @Test
+    public void testPreloadWithoutMemoryCache() throws Exception {
+        bucket = createCache(false);
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        bucket.preload(Arrays.asList("TEST_KEY"), SimpleObject.class);
+
+        assertNull(bucket.memoryCache);
+    }
+
+    @Test
+    public void testPreloadRx() throws Exception {
+        bucket = createCache(true);
+        List<String> keys = putKeys();
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.preloadRx(keys, SimpleObject.class).subscribe(subscriber);
+
+        subscriber.assertNoErrors();
+        subscriber.assertValue(true);
+        assertEquals(KEYS, bucket.memoryCache.size());
+    }
+}
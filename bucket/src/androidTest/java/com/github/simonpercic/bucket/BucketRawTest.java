@@ -0,0 +1,334 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.callback.BucketCallback;
+import com.github.simonpercic.bucket.callback.BucketGetCallback;
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketRawTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 4 * 1024 * 1024)
+                .withMemoryCache(16)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    private StorageEngine engine() {
+        return ((SimpleDiskCache) bucket.cache).generation.engine;
+    }
+
+    private String internalKey(String key) {
+        return ((SimpleDiskCache) bucket.cache).keyHasher.hash(key);
+    }
+
+    private static byte[] bytes(int size) {
+        // starts with a zero byte and contains every byte value
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read = is.read(buffer);
+        while (read != -1) {
+            bos.write(buffer, 0, read);
+            read = is.read(buffer);
+        }
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testPutGetBytes() throws Exception {
+        bucket = createCache();
+
+        byte[] bytes = bytes(1000);
+        bucket.putBytes("TEST_KEY", bytes);
+
+        assertTrue(bucket.contains("TEST_KEY"));
+        assertArrayEquals(bytes, bucket.getBytes("TEST_KEY"));
+    }
+
+    @Test
+    public void testPutGetEmptyBytes() throws Exception {
+        bucket = createCache();
+
+        bucket.putBytes("TEST_KEY", new byte[0]);
+
+        assertArrayEquals(new byte[0], bucket.getBytes("TEST_KEY"));
+    }
+
+    @Test
+    public void testGetBytesMissing() throws Exception {
+        bucket = createCache();
+
+        assertNull(bucket.getBytes("TEST_KEY"));
+        assertNull(bucket.openStream("TEST_KEY"));
+    }
+
+    @Test
+    public void testPutStreamOpenStream() throws Exception {
+        bucket = createCache();
+
+        byte[] bytes = bytes(1024 * 1024);
+        bucket.putStream("TEST_KEY", new ByteArrayInputStream(bytes));
+
+        InputStream is = bucket.openStream("TEST_KEY");
+        assertNotNull(is);
+        try {
+            assertArrayEquals(bytes, readAll(is));
+        } finally {
+            is.close();
+        }
+
+        assertArrayEquals(bytes, bucket.getBytes("TEST_KEY"));
+    }
+
+    @Test
+    public void testLargeValueChunked() throws Exception {
+        bucket = createCache();
+
+        byte[] bytes = bytes(2 * Chunks.CHUNK_BYTES + 100);
+        bucket.putStream("TEST_KEY", new ByteArrayInputStream(bytes));
+
+        StorageEngine engine = engine();
+        String internalKey = internalKey("TEST_KEY");
+        Chunks.Manifest manifest = Chunks.readStoredManifest(engine, internalKey);
+        assertNotNull(manifest);
+        assertTrue(engine.contains(Chunks.chunkKey(internalKey, manifest.writeId, 1)));
+
+        InputStream is = bucket.openStream("TEST_KEY");
+        assertNotNull(is);
+        try {
+            assertArrayEquals(bytes, readAll(is));
+        } finally {
+            is.close();
+        }
+
+        bucket.remove("TEST_KEY");
+
+        assertFalse(engine.contains(internalKey));
+        assertFalse(engine.contains(Chunks.chunkKey(internalKey, manifest.writeId, 0)));
+    }
+
+    @Test
+    public void testEvictedChunkEvictsValue() throws Exception {
+        bucket = createCache();
+
+        bucket.putBytes("TEST_KEY", bytes(3 * Chunks.CHUNK_BYTES));
+
+        StorageEngine engine = engine();
+        String internalKey = internalKey("TEST_KEY");
+        Chunks.Manifest manifest = Chunks.readStoredManifest(engine, internalKey);
+        assertNotNull(manifest);
+        engine.remove(Chunks.chunkKey(internalKey, manifest.writeId, 1));
+
+        assertNull(bucket.getBytes("TEST_KEY"));
+        assertFalse(engine.contains(internalKey));
+        assertFalse(engine.contains(Chunks.chunkKey(internalKey, manifest.writeId, 0)));
+    }
+
+    @Test
+    public void testSweepRemovesOrphanChunks() throws Exception {
+        bucket = createCache();
+
+        bucket.putBytes("TEST_KEY", bytes(3 * Chunks.CHUNK_BYTES));
+
+        StorageEngine engine = engine();
+        String internalKey = internalKey("TEST_KEY");
+        Chunks.Manifest manifest = Chunks.readStoredManifest(engine, internalKey);
+        assertNotNull(manifest);
+
+        // like a value of a previous process, that is overwritten before it is read
+        ((SimpleDiskCache) bucket.cache).generation.chunks.forget(Collections.singletonList(internalKey));
+
+        byte[] bytes = bytes(2 * Chunks.CHUNK_BYTES);
+        bucket.putBytes("TEST_KEY", bytes);
+        assertTrue(engine.contains(Chunks.chunkKey(internalKey, manifest.writeId, 0)));
+
+        bucket.cache.sweepExpired();
+
+        assertFalse(engine.contains(Chunks.chunkKey(internalKey, manifest.writeId, 0)));
+        assertFalse(engine.contains(Chunks.chunkKey(internalKey, manifest.writeId, 1)));
+        assertArrayEquals(bytes, bucket.getBytes("TEST_KEY"));
+    }
+
+    @Test
+    public void testGetObjectPutAsBytes() throws Exception {
+        bucket = createCache();
+
+        bucket.putBytes("TEST_KEY", "{\"value\":\"TEST_VALUE\"}".getBytes("UTF-8"));
+
+        try {
+            bucket.get("TEST_KEY", SimpleObject.class);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetBytesPutAsObject() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        try {
+            bucket.getBytes("TEST_KEY");
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPutBytesReplacesMemoryValue() throws Exception {
+        bucket = createCache();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        assertNotNull(bucket.get("TEST_KEY", SimpleObject.class));
+
+        bucket.putBytes("TEST_KEY", bytes(10));
+
+        assertNull(bucket.memoryCache.get("TEST_KEY", SimpleObject.class));
+        assertArrayEquals(bytes(10), bucket.getBytes("TEST_KEY"));
+    }
+
+    @Test
+    public void testRx() throws Exception {
+        bucket = createCache();
+
+        byte[] bytes = bytes(100);
+
+        TestSubscriber<Boolean> putSubscriber = new TestSubscriber<>();
+        bucket.putBytesRx("TEST_KEY", bytes).subscribe(putSubscriber);
+        putSubscriber.assertNoErrors();
+        putSubscriber.assertValue(true);
+
+        TestSubscriber<byte[]> getSubscriber = new TestSubscriber<>();
+        bucket.getBytesRx("TEST_KEY").subscribe(getSubscriber);
+        getSubscriber.assertNoErrors();
+        assertArrayEquals(bytes, getSubscriber.getOnNextEvents().get(0));
+
+        TestSubscriber<Boolean> putStreamSubscriber = new TestSubscriber<>();
+        bucket.putStreamRx("TEST_KEY_2", new ByteArrayInputStream(bytes)).subscribe(putStreamSubscriber);
+        putStreamSubscriber.assertNoErrors();
+        putStreamSubscriber.assertValue(true);
+
+        TestSubscriber<InputStream> openSubscriber = new TestSubscriber<>();
+        bucket.openStreamRx("TEST_KEY_2").subscribe(openSubscriber);
+        openSubscriber.assertNoErrors();
+
+        InputStream is = openSubscriber.getOnNextEvents().get(0);
+        try {
+            assertArrayEquals(bytes, readAll(is));
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        bucket = createCache();
+
+        final byte[] bytes = bytes(100);
+        final AtomicReference<byte[]> result = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        bucket.putBytesAsync("TEST_KEY", bytes, new BucketCallback() {
+            @Override public void onSuccess() {
+                bucket.getBytesAsync("TEST_KEY", new BucketGetCallback<byte[]>() {
+                    @Override public void onSuccess(byte[] object) {
+                        result.set(object);
+                    }
+
+                    @Override public void onFailure(Throwable throwable) {
+                        failure.set(throwable);
+                    }
+                });
+            }
+
+            @Override public void onFailure(Throwable throwable) {
+                failure.set(throwable);
+            }
+        });
+
+        assertNull(failure.get());
+        assertArrayEquals(bytes, result.get());
+
+        final AtomicReference<InputStream> stream = new AtomicReference<>();
+
+        bucket.putStreamAsync("TEST_KEY_2", new ByteArrayInputStream(bytes), new BucketCallback() {
+            @Override public void onSuccess() {
+                bucket.openStreamAsync("TEST_KEY_2", new BucketGetCallback<InputStream>() {
+                    @Override public void onSuccess(InputStream object) {
+                        stream.set(object);
+                    }
+
+                    @Override public void onFailure(Throwable throwable) {
+                        failure.set(throwable);
+                    }
+                });
+            }
+
+            @Override public void onFailure(Throwable throwable) {
+                failure.set(throwable);
+            }
+        });
+
+        assertNull(failure.get());
+        assertNotNull(stream.get());
+        try {
+            assertEquals(bytes.length, readAll(stream.get()).length);
+        } finally {
+            stream.get().close();
+        }
+    }
+}
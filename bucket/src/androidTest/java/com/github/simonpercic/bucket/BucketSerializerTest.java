@@ -0,0 +1,136 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.GenericObject;
+import com.github.simonpercic.bucket.model.SimpleObject;
+import com.github.simonpercic.bucket.model.WrappedObject;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketSerializerTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 1024 * 1024).withSerializer(new BinarySerializer()).build();
+    }
+
+    @Test
+    public void testDefaultSerializer() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).build();
+
+        assertTrue(bucket.codec.getSerializer() instanceof GsonSerializer);
+    }
+
+    @Test
+    public void testSimple() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+        bucket.put(key, new SimpleObject("TEST_VALUE"));
+
+        SimpleObject cached = bucket.get(key, SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+
+    @Test
+    public void testWrapped() throws Exception {
+        bucket = createCache();
+
+        String json = "{\"object\":{\"value\":\"INNER\"},\"value\":\"OUTER\"}";
+        WrappedObject object = new Gson().fromJson(json, WrappedObject.class);
+
+        bucket.put("TEST_KEY", object);
+
+        WrappedObject cached = bucket.get("TEST_KEY", WrappedObject.class);
+        assertNotNull(cached);
+        assertEquals("OUTER", cached.getValue());
+        assertEquals("INNER", cached.getObject().getValue());
+    }
+
+    @Test
+    public void testGeneric() throws Exception {
+        bucket = createCache();
+
+        GenericObject<List<SimpleObject>> object = new GenericObject<>();
+        object.setValue("VALUE");
+        object.setObject(Arrays.asList(new SimpleObject("FIRST"), new SimpleObject("SECOND")));
+
+        bucket.put("TEST_KEY", object);
+
+        Type type = new TypeToken<GenericObject<List<SimpleObject>>>() {
+        }.getType();
+
+        GenericObject<List<SimpleObject>> cached = bucket.get("TEST_KEY", type);
+        assertNotNull(cached);
+        assertEquals("VALUE", cached.getValue());
+        assertEquals(2, cached.getObject().size());
+        assertEquals("SECOND", cached.getObject().get(1).getValue());
+    }
+
+    @Test
+    public void testReadsEntryWithoutHeader() throws Exception {
+        bucket = createCache();
+
+        // entry as written by versions without serializers
+        CacheOutputStream os = bucket.cache.openStream("TEST_KEY");
+        try {
+            os.write("{\"value\":\"TEST_VALUE\"}".getBytes(SimpleDiskCache.ENCODING));
+        } finally {
+            os.close();
+        }
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+
+    @Test
+    public void testReadsEntryWrittenByOtherSerializer() throws Exception {
+        bucket = createCache();
+
+        ValueCodec gsonCodec = new ValueCodec(new GsonSerializer(new Gson()), Arrays.<BucketSerializer>asList());
+        CacheOutputStream os = bucket.cache.openStream("TEST_KEY");
+        try {
+            gsonCodec.write(os, new SimpleObject("TEST_VALUE"));
+        } finally {
+            os.close();
+        }
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+}
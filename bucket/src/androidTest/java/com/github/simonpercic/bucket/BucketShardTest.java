@@ -0,0 +1,175 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketShardTest {
+
+    private static final int SHARDS = 4;
+    private static final int KEYS = 64;
+    private static final long MAX_SIZE_BYTES = 1024 * 1024;
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, MAX_SIZE_BYTES)
+                .withShards(SHARDS)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    private List<String> putKeys() throws IOException {
+        List<String> keys = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            String key = "TEST_KEY_" + i;
+            bucket.put(key, new SimpleObject("TEST_VALUE_" + i));
+            keys.add(key);
+        }
+
+        return keys;
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        bucket = createCache();
+        List<String> keys = putKeys();
+
+        for (int i = 0; i < KEYS; i++) {
+            SimpleObject object = bucket.get(keys.get(i), SimpleObject.class);
+            assertNotNull(object);
+            assertEquals("TEST_VALUE_" + i, object.getValue());
+            assertTrue(bucket.contains(keys.get(i)));
+        }
+    }
+
+    @Test
+    public void testShardDirs() throws Exception {
+        bucket = createCache();
+        putKeys();
+
+        File cacheDir = new File(context.getCacheDir() + Bucket.CACHE_DIR);
+        for (int i = 0; i < SHARDS; i++) {
+            File shardDir = new File(cacheDir, "shard-" + i);
+            assertTrue(shardDir.isDirectory());
+        }
+    }
+
+    @Test
+    public void testMaxSizeSplit() throws Exception {
+        bucket = createCache();
+
+        assertEquals(MAX_SIZE_BYTES, bucket.cache.getMaxSize());
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        bucket = createCache();
+        List<String> keys = putKeys();
+
+        bucket.removeAll(keys.subList(0, KEYS / 2));
+
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(i >= KEYS / 2, bucket.contains(keys.get(i)));
+        }
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        bucket = createCache();
+        List<String> keys = putKeys();
+        assertTrue(bucket.cache.size() > 0);
+
+        bucket.clear();
+
+        for (String key : keys) {
+            assertFalse(bucket.contains(key));
+        }
+        assertEquals(0, bucket.cache.size());
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        assertTrue(bucket.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testDeletesUnshardedFiles() throws Exception {
+        File cacheDir = new File(context.getCacheDir() + Bucket.CACHE_DIR);
+        File generationDir = new File(cacheDir, "generation-0");
+        assertTrue(generationDir.mkdirs());
+
+        FileOutputStream os = new FileOutputStream(new File(generationDir, "journal"));
+        os.write(1);
+        os.close();
+
+        bucket = createCache();
+
+        assertFalse(generationDir.exists());
+        assertFalse(bucket.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testUnshardedInSameDirectory() throws Exception {
+        bucket = createCache();
+
+        try {
+            Bucket.builder(context, MAX_SIZE_BYTES).build();
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("was used before"));
+        }
+    }
+
+    @Test
+    public void testShardedInSameDirectory() throws Exception {
+        bucket = Bucket.builder(context, MAX_SIZE_BYTES)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .build();
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        try {
+            createCache();
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("was used before"));
+        }
+
+        // the files of the open cache were not deleted
+        assertTrue(bucket.contains("TEST_KEY"));
+        assertFalse(new File(context.getCacheDir() + Bucket.CACHE_DIR, "shards").exists());
+    }
+}
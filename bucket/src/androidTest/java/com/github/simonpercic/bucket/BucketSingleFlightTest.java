@@ -0,0 +1,172 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketSingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    Context context;
+    Bucket bucket;
+    BlockingSerializer serializer;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        serializer = new BlockingSerializer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serializer.release.countDown();
+
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache() throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withSerializer(serializer)
+                .withSubscribeScheduler(Schedulers.io())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    @Test
+    public void testConcurrentGetRx() throws Exception {
+        bucket = createCache();
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        List<TestSubscriber<SimpleObject>> subscribers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+            bucket.<SimpleObject>getRx("TEST_KEY", SimpleObject.class).subscribe(subscriber);
+            subscribers.add(subscriber);
+        }
+
+        waitForCallers();
+        serializer.release.countDown();
+
+        SimpleObject first = null;
+        for (TestSubscriber<SimpleObject> subscriber : subscribers) {
+            subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+            subscriber.assertNoErrors();
+
+            SimpleObject value = subscriber.getOnNextEvents().get(0);
+            assertEquals("TEST_VALUE", value.getValue());
+
+            if (first == null) {
+                first = value;
+            }
+
+            assertSame(first, value);
+        }
+
+        assertEquals(1, serializer.reads.get());
+    }
+
+    @Test
+    public void testPutInvalidatesPendingGet() throws Exception {
+        bucket = createCache();
+        bucket.put("TEST_KEY", new SimpleObject("OLD_VALUE"));
+
+        TestSubscriber<SimpleObject> pending = new TestSubscriber<>();
+        bucket.<SimpleObject>getRx("TEST_KEY", SimpleObject.class).subscribe(pending);
+
+        waitForCallers();
+
+        bucket.put("TEST_KEY", new SimpleObject("NEW_VALUE"));
+
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        bucket.<SimpleObject>getRx("TEST_KEY", SimpleObject.class).subscribe(subscriber);
+
+        waitForCallers();
+        serializer.release.countDown();
+
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        subscriber.assertNoErrors();
+        assertEquals("NEW_VALUE", subscriber.getOnNextEvents().get(0).getValue());
+
+        pending.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        pending.assertNoErrors();
+
+        assertEquals(2, serializer.reads.get());
+    }
+
+    @Test
+    public void testSequentialGets() throws Exception {
+        bucket = createCache();
+        serializer.release.countDown();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        SimpleObject first = bucket.get("TEST_KEY", SimpleObject.class);
+        SimpleObject second = bucket.get("TEST_KEY", SimpleObject.class);
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(2, serializer.reads.get());
+    }
+
+    private static void waitForCallers() throws InterruptedException {
+        // give all callers the time to attach to the pending read
+        Thread.sleep(100);
+    }
+
+    private static final class BlockingSerializer implements BucketSerializer {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+
+        private final GsonSerializer gsonSerializer = new GsonSerializer(new Gson());
+
+        @Override public int getId() {
+            return BucketSerializer.MAX_ID;
+        }
+
+        @Override public void serialize(Object object, OutputStream os) throws IOException {
+            gsonSerializer.serialize(object, os);
+        }
+
+        @Override public <T> T deserialize(InputStream is, Type typeOfT) throws IOException {
+            reads.incrementAndGet();
+
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+
+            return gsonSerializer.deserialize(is, typeOfT);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.BucketStats.Mode;
+import com.github.simonpercic.bucket.BucketStats.Operation;
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketStatsTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket.Builder builder(long maxSizeBytes) {
+        return Bucket.builder(context, maxSizeBytes)
+                .withStats(true)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate());
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        bucket = builder(1024 * 1024).build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+
+        bucket.get("TEST_KEY", SimpleObject.class);
+        bucket.get("TEST_KEY", SimpleObject.class);
+        bucket.get("MISSING_KEY", SimpleObject.class);
+        bucket.getAll(Arrays.asList("TEST_KEY", "MISSING_KEY"), SimpleObject.class);
+
+        BucketStats stats = bucket.stats();
+        assertNotNull(stats);
+        assertEquals(3, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(0.6, stats.getHitRatio(), 0.0001);
+        assertEquals(0, stats.getMemoryHitCount());
+    }
+
+    @Test
+    public void testMemoryHits() throws Exception {
+        bucket = builder(1024 * 1024).withMemoryCache(16).build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        bucket.get("TEST_KEY", SimpleObject.class);
+
+        BucketStats stats = bucket.stats();
+        assertNotNull(stats);
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMemoryHitCount());
+        assertEquals(0, stats.getBytesRead());
+    }
+
+    @Test
+    public void testLatencies() throws Exception {
+        bucket = builder(1024 * 1024).build();
+
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+
+        bucket.put("TEST_KEY", object);
+        bucket.putRx("TEST_KEY", object).subscribe();
+        bucket.putAsync("TEST_KEY", object, null);
+        bucket.putAsync("TEST_KEY", object, null);
+
+        bucket.get("TEST_KEY", SimpleObject.class);
+        bucket.getRx("TEST_KEY", SimpleObject.class).subscribe();
+        bucket.contains("TEST_KEY");
+        bucket.containsRx("TEST_KEY").subscribe();
+        bucket.removeAsync("TEST_KEY", null);
+        bucket.clearRx().subscribe();
+
+        BucketStats stats = bucket.stats();
+        assertNotNull(stats);
+
+        assertEquals(1, stats.getLatency(Operation.PUT, Mode.SYNC).getCount());
+        assertEquals(1, stats.getLatency(Operation.PUT, Mode.RX).getCount());
+        assertEquals(2, stats.getLatency(Operation.PUT, Mode.ASYNC).getCount());
+        assertEquals(1, stats.getLatency(Operation.GET, Mode.SYNC).getCount());
+        assertEquals(1, stats.getLatency(Operation.GET, Mode.RX).getCount());
+        assertEquals(0, stats.getLatency(Operation.GET, Mode.ASYNC).getCount());
+        assertEquals(1, stats.getLatency(Operation.CONTAINS, Mode.SYNC).getCount());
+        assertEquals(1, stats.getLatency(Operation.CONTAINS, Mode.RX).getCount());
+        assertEquals(1, stats.getLatency(Operation.REMOVE, Mode.ASYNC).getCount());
+        assertEquals(1, stats.getLatency(Operation.CLEAR, Mode.RX).getCount());
+
+        assertTrue(stats.getLatency(Operation.PUT, Mode.SYNC).getPercentileMicros(99) > 0);
+    }
+
+    @Test
+    public void testBytesAndTimes() throws Exception {
+        bucket = builder(1024 * 1024).build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        bucket.get("TEST_KEY", SimpleObject.class);
+
+        BucketStats stats = bucket.stats();
+        assertNotNull(stats);
+
+        assertTrue(stats.getBytesWritten() > 0);
+        assertEquals(stats.getBytesWritten(), stats.getBytesRead());
+        assertEquals(bucket.cache.size(), stats.getSize());
+        assertEquals(1024 * 1024, stats.getMaxSize());
+
+        assertTrue(stats.getSerializeNanos() > 0);
+        assertTrue(stats.getDeserializeNanos() > 0);
+        assertTrue(stats.getWriteIoNanos() > 0);
+        assertTrue(stats.getReadIoNanos() > 0);
+    }
+
+    @Test
+    public void testBytesWithExpiry() throws Exception {
+        bucket = builder(1024 * 1024).build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        long bytesWritten = bucket.stats().getBytesWritten();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"), 1, TimeUnit.HOURS);
+
+        assertEquals(2 * bytesWritten, bucket.stats().getBytesWritten());
+    }
+
+    @Test
+    public void testEvictions() throws Exception {
+        testEvictions(Storage.DISK_LRU_CACHE);
+    }
+
+    @Test
+    public void testEvictionsLogStructured() throws Exception {
+        testEvictions(Storage.LOG_STRUCTURED);
+    }
+
+    private void testEvictions(Storage storage) throws Exception {
+        bucket = builder(1024).withStorage(storage).withEvictionTracking(true).build();
+        putOverMaxSize();
+
+        BucketStats stats = bucket.stats();
+        assertNotNull(stats);
+        assertTrue(stats.getEvictionCount() > 0);
+        assertTrue(stats.getEvictedBytes() > 0);
+        assertTrue(stats.getSize() <= stats.getMaxSize());
+        assertEquals(stats.getBytesWritten() - stats.getEvictedBytes(), stats.getSize());
+    }
+
+    @Test
+    public void testEvictionsNotTrackedByDefault() throws Exception {
+        bucket = builder(1024).build();
+        putOverMaxSize();
+
+        BucketStats stats = bucket.stats();
+        assertNotNull(stats);
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(0, stats.getEvictedBytes());
+    }
+
+    private void putOverMaxSize() throws IOException {
+        char[] chars = new char[200];
+        Arrays.fill(chars, 'a');
+        String value = new String(chars);
+
+        for (int i = 0; i < 10; i++) {
+            bucket.put("TEST_KEY_" + i, new SimpleObject(value));
+        }
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        bucket = Bucket.builder(context, 1024 * 1024).build();
+
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE"));
+        bucket.get("TEST_KEY", SimpleObject.class);
+
+        assertNull(bucket.stats());
+    }
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
@@ -178,6 +179,44 @@ public class BucketSyncTest {
         assertEquals(value2, cached.get(1).getValue());
     }
 
+    @Test
+    public void testPutLargerThanCache() throws Exception {
+        bucket = Bucket.builder(context, 1024).build();
+
+        String key = "TEST_KEY";
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2048; i++) {
+            sb.append('a');
+        }
+
+        try {
+            bucket.put(key, new SimpleObject(sb.toString()));
+            fail("Should throw an exception");
+        } catch (IOException e) {
+            assertEquals("Object is larger than cache size", e.getMessage());
+        }
+
+        assertFalse(bucket.contains(key));
+
+        bucket.put(key, new SimpleObject("TEST_VALUE"));
+        assertTrue(bucket.contains(key));
+    }
+
+    @Test
+    public void testPutOverwrite() throws Exception {
+        bucket = createCache();
+
+        String key = "TEST_KEY";
+
+        bucket.put(key, new SimpleObject("TEST_VALUE_1"));
+        bucket.put(key, new SimpleObject("TEST_VALUE_2"));
+
+        SimpleObject cached = bucket.get(key, SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE_2", cached.getValue());
+    }
+
     @Test
     public void testRemove() throws Exception {
         bucket = createCache();
@@ -0,0 +1,165 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.callback.BucketCallback;
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketTagTest {
+
+    Context context;
+    Bucket bucket;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache(int shards) throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withShards(shards)
+                .withSubscribeScheduler(Schedulers.immediate())
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    private void putTagged() throws IOException {
+        bucket.put("user:1:profile", new SimpleObject("PROFILE"), "user:1");
+        bucket.put("user:1:feed", new SimpleObject("FEED_1"), "user:1", "feed");
+        bucket.put("user:2:feed", new SimpleObject("FEED_2"), "user:2", "feed");
+        bucket.put("config", new SimpleObject("CONFIG"));
+    }
+
+    @Test
+    public void testInvalidateTag() throws Exception {
+        bucket = createCache(1);
+        putTagged();
+
+        bucket.invalidateTag("user:1");
+
+        assertFalse(bucket.contains("user:1:profile"));
+        assertFalse(bucket.contains("user:1:feed"));
+        assertTrue(bucket.contains("user:2:feed"));
+        assertTrue(bucket.contains("config"));
+        assertEquals(Arrays.asList("config", "user:2:feed"), bucket.keys());
+    }
+
+    @Test
+    public void testInvalidateTagSharded() throws Exception {
+        bucket = createCache(4);
+        putTagged();
+
+        bucket.invalidateTag("feed");
+
+        assertEquals(Arrays.asList("config", "user:1:profile"), bucket.keys());
+    }
+
+    @Test
+    public void testInvalidateMissingTag() throws Exception {
+        bucket = createCache(1);
+        putTagged();
+
+        bucket.invalidateTag("missing");
+
+        assertEquals(4, bucket.keys().size());
+    }
+
+    @Test
+    public void testPutReplacesTags() throws Exception {
+        bucket = createCache(1);
+        putTagged();
+
+        bucket.put("user:1:feed", new SimpleObject("FEED_1"));
+        bucket.invalidateTag("user:1");
+
+        assertTrue(bucket.contains("user:1:feed"));
+        assertFalse(bucket.contains("user:1:profile"));
+    }
+
+    @Test
+    public void testRemoveUntags() throws Exception {
+        bucket = createCache(1);
+        putTagged();
+
+        bucket.remove("user:2:feed");
+        bucket.put("user:2:feed", new SimpleObject("FEED_2"));
+        bucket.invalidateTag("user:2");
+
+        assertTrue(bucket.contains("user:2:feed"));
+    }
+
+    @Test
+    public void testInvalidateTagRx() throws Exception {
+        bucket = createCache(1);
+        putTagged();
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.invalidateTagRx("feed").subscribe(subscriber);
+
+        subscriber.assertValue(true);
+        assertEquals(Arrays.asList("config", "user:1:profile"), bucket.keys());
+    }
+
+    @Test
+    public void testPutRxWithTags() throws Exception {
+        bucket = createCache(1);
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.putRx("key", new SimpleObject("VALUE"), "tag").subscribe(subscriber);
+        subscriber.assertValue(true);
+
+        bucket.invalidateTag("tag");
+
+        assertEquals(Collections.<String>emptyList(), bucket.keys());
+    }
+
+    @Test
+    public void testPutAsyncWithTags() throws Exception {
+        bucket = createCache(1);
+
+        final AtomicBoolean success = new AtomicBoolean();
+        bucket.putAsync("key", new SimpleObject("VALUE"), new BucketCallback() {
+            @Override public void onSuccess() {
+                success.set(true);
+            }
+
+            @Override public void onFailure(Throwable throwable) {
+                fail(throwable.getMessage());
+            }
+        }, "tag");
+
+        assertTrue(success.get());
+
+        bucket.invalidateTag("tag");
+
+        assertEquals(Collections.<String>emptyList(), bucket.keys());
+    }
+}
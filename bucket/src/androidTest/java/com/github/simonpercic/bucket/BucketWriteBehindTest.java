@@ -0,0 +1,215 @@
+package com.github.simonpercic.bucket;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import com.github.simonpercic.bucket.model.SimpleObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BucketWriteBehindTest {
+
+    private static final long FLUSH_INTERVAL_SECONDS = 10;
+
+    Context context;
+    Bucket bucket;
+    TestScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        scheduler = new TestScheduler();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (bucket != null) {
+            bucket.close();
+            bucket.cache.destroy();
+        }
+    }
+
+    private Bucket createCache(int maxPendingWrites) throws IOException {
+        return Bucket.builder(context, 1024 * 1024)
+                .withWriteBehind(FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS, maxPendingWrites)
+                .withSubscribeScheduler(scheduler)
+                .withObserveScheduler(Schedulers.immediate())
+                .build();
+    }
+
+    private void putRx(String key, String value) {
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.putRx(key, new SimpleObject(value)).subscribe(subscriber);
+        scheduler.triggerActions();
+
+        subscriber.assertNoErrors();
+        subscriber.assertValue(true);
+    }
+
+    @Test
+    public void testCoalesced() throws Exception {
+        bucket = createCache(16);
+
+        putRx("TEST_KEY", "TEST_VALUE_1");
+        putRx("TEST_KEY", "TEST_VALUE_2");
+        putRx("TEST_KEY", "TEST_VALUE_3");
+
+        assertFalse(bucket.cache.contains("TEST_KEY"));
+
+        scheduler.advanceTimeBy(FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        assertTrue(bucket.cache.contains("TEST_KEY"));
+        assertNull(bucket.writeBehind.get("TEST_KEY"));
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE_3", cached.getValue());
+    }
+
+    @Test
+    public void testReadPending() throws Exception {
+        bucket = createCache(16);
+
+        putRx("TEST_KEY", "TEST_VALUE");
+
+        assertFalse(bucket.cache.contains("TEST_KEY"));
+        assertTrue(bucket.contains("TEST_KEY"));
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE", cached.getValue());
+    }
+
+    @Test
+    public void testFlushedWhenFull() throws Exception {
+        bucket = createCache(2);
+
+        putRx("TEST_KEY_1", "TEST_VALUE");
+        assertFalse(bucket.cache.contains("TEST_KEY_1"));
+
+        putRx("TEST_KEY_2", "TEST_VALUE");
+        assertTrue(bucket.cache.contains("TEST_KEY_1"));
+        assertTrue(bucket.cache.contains("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        bucket = createCache(16);
+
+        putRx("TEST_KEY", "TEST_VALUE");
+        bucket.flush();
+
+        assertTrue(bucket.cache.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        bucket = createCache(16);
+
+        putRx("TEST_KEY_1", "TEST_VALUE");
+        bucket.close();
+        assertTrue(bucket.cache.contains("TEST_KEY_1"));
+
+        putRx("TEST_KEY_2", "TEST_VALUE");
+        assertTrue(bucket.cache.contains("TEST_KEY_2"));
+        assertNull(bucket.writeBehind.get("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testFlushRx() throws Exception {
+        bucket = createCache(16);
+
+        putRx("TEST_KEY", "TEST_VALUE");
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.flushRx().subscribe(subscriber);
+        scheduler.triggerActions();
+
+        subscriber.assertNoErrors();
+        subscriber.assertValue(true);
+        assertTrue(bucket.cache.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testPutReplacesPending() throws Exception {
+        bucket = createCache(16);
+
+        putRx("TEST_KEY", "TEST_VALUE_1");
+        bucket.put("TEST_KEY", new SimpleObject("TEST_VALUE_2"));
+
+        scheduler.advanceTimeBy(FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        SimpleObject cached = bucket.get("TEST_KEY", SimpleObject.class);
+        assertNotNull(cached);
+        assertEquals("TEST_VALUE_2", cached.getValue());
+    }
+
+    @Test
+    public void testRemoveDropsPending() throws Exception {
+        bucket = createCache(16);
+
+        putRx("TEST_KEY", "TEST_VALUE");
+        bucket.remove("TEST_KEY");
+
+        assertFalse(bucket.contains("TEST_KEY"));
+
+        scheduler.advanceTimeBy(FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        assertFalse(bucket.cache.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testClearDropsPending() throws Exception {
+        bucket = createCache(16);
+
+        putRx("TEST_KEY_1", "TEST_VALUE");
+        putRx("TEST_KEY_2", "TEST_VALUE");
+        bucket.clear();
+
+        scheduler.advanceTimeBy(FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        assertFalse(bucket.contains("TEST_KEY_1"));
+        assertFalse(bucket.contains("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testPendingExpired() throws Exception {
+        bucket = createCache(16);
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        bucket.putRx("TEST_KEY", new SimpleObject("TEST_VALUE"), 1, TimeUnit.MILLISECONDS).subscribe(subscriber);
+        scheduler.triggerActions();
+        subscriber.assertValue(true);
+
+        Thread.sleep(10);
+
+        assertFalse(bucket.contains("TEST_KEY"));
+        assertNull(bucket.get("TEST_KEY", SimpleObject.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveInterval() throws Exception {
+        Bucket.builder(context, 1024 * 1024).withWriteBehind(0, TimeUnit.SECONDS, 16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveMaxPendingWrites() throws Exception {
+        Bucket.builder(context, 1024 * 1024).withWriteBehind(1, TimeUnit.SECONDS, 0);
+    }
+}
@@ -0,0 +1,776 @@
+package com.github.simonpercic.bucket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary {@link BucketSerializer}.
+ * <p>
+ * Values are encoded by their declared type: numbers as variable-length integers (or fixed-size floating point),
+ * strings, arrays, collections and maps prefixed with their length, objects as their non-static, non-transient
+ * fields ordered by name. Nullable values are prefixed with a presence byte.
+ * <p>
+ * Supports primitives and their wrappers, strings, enums, dates, arrays, collections, maps and plain objects
+ * composed of those. Fields must be declared with a concrete type (not <tt>Object</tt>),
+ * the same type has to be used to read a value as the one it was written with.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class BinarySerializer implements BucketSerializer {
+
+    /**
+     * Id of the binary serializer.
+     */
+    public static final int ID = 2;
+
+    private static final int NULL = 0;
+    private static final int NOT_NULL = 1;
+
+    private static final Map<Class<?>, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        PRIMITIVES.put(Boolean.class, boolean.class);
+        PRIMITIVES.put(Byte.class, byte.class);
+        PRIMITIVES.put(Short.class, short.class);
+        PRIMITIVES.put(Character.class, char.class);
+        PRIMITIVES.put(Integer.class, int.class);
+        PRIMITIVES.put(Long.class, long.class);
+        PRIMITIVES.put(Float.class, float.class);
+        PRIMITIVES.put(Double.class, double.class);
+    }
+
+    private static final Comparator<Field> FIELD_ORDER = new Comparator<Field>() {
+        @Override public int compare(Field lhs, Field rhs) {
+            return lhs.getName().compareTo(rhs.getName());
+        }
+    };
+
+    private final ConcurrentHashMap<Type, BoundField[]> fieldsCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Constructor<?>> constructorCache = new ConcurrentHashMap<>();
+
+    @Override public int getId() {
+        return ID;
+    }
+
+    @Override public void serialize(Object object, OutputStream os) throws IOException {
+        Output output = new Output(os);
+        write(output, object.getClass(), object);
+        output.flush();
+    }
+
+    @Override public <T> T deserialize(InputStream is, Type typeOfT) throws IOException {
+        Input input = new Input(is);
+
+        @SuppressWarnings("unchecked")
+        T value = (T) read(input, typeOfT);
+        return value;
+    }
+
+    // region write
+
+    private void write(Output output, Type type, Object value) throws IOException {
+        Class<?> rawType = rawType(type);
+
+        if (rawType.isPrimitive()) {
+            writePrimitive(output, rawType, value);
+            return;
+        }
+
+        if (value == null) {
+            output.writeByte(NULL);
+            return;
+        }
+
+        output.writeByte(NOT_NULL);
+
+        if (rawType == Object.class) {
+            // unknown element type of a raw collection, use the runtime type
+            type = value.getClass();
+            rawType = value.getClass();
+        }
+
+        Class<?> primitive = PRIMITIVES.get(rawType);
+
+        if (primitive != null) {
+            writePrimitive(output, primitive, value);
+        } else if (rawType == String.class) {
+            output.writeString((String) value);
+        } else if (rawType.isEnum()) {
+            output.writeString(((Enum<?>) value).name());
+        } else if (Date.class.isAssignableFrom(rawType)) {
+            output.writeVarLong(((Date) value).getTime());
+        } else if (rawType == byte[].class) {
+            byte[] bytes = (byte[]) value;
+            output.writeVarInt(bytes.length);
+            output.writeBytes(bytes, 0, bytes.length);
+        } else if (rawType.isArray()) {
+            writeArray(output, type, value);
+        } else if (Collection.class.isAssignableFrom(rawType)) {
+            writeCollection(output, type, (Collection<?>) value);
+        } else if (Map.class.isAssignableFrom(rawType)) {
+            writeMap(output, type, (Map<?, ?>) value);
+        } else {
+            writeObject(output, type, value);
+        }
+    }
+
+    private static void writePrimitive(Output output, Class<?> type, Object value) throws IOException {
+        if (type == boolean.class) {
+            output.writeByte((Boolean) value ? 1 : 0);
+        } else if (type == byte.class) {
+            output.writeByte((Byte) value);
+        } else if (type == short.class) {
+            output.writeVarLong((Short) value);
+        } else if (type == char.class) {
+            output.writeVarInt((Character) value);
+        } else if (type == int.class) {
+            output.writeVarLong((Integer) value);
+        } else if (type == long.class) {
+            output.writeVarLong((Long) value);
+        } else if (type == float.class) {
+            output.writeFixedInt(Float.floatToIntBits((Float) value));
+        } else {
+            output.writeFixedLong(Double.doubleToLongBits((Double) value));
+        }
+    }
+
+    private void writeArray(Output output, Type type, Object array) throws IOException {
+        Type componentType = arrayComponentType(type);
+
+        int length = Array.getLength(array);
+        output.writeVarInt(length);
+
+        for (int i = 0; i < length; i++) {
+            write(output, componentType, Array.get(array, i));
+        }
+    }
+
+    private void writeCollection(Output output, Type type, Collection<?> collection) throws IOException {
+        Type elementType = typeArgument(type, 0);
+
+        output.writeVarInt(collection.size());
+
+        for (Object element : collection) {
+            write(output, elementType, element);
+        }
+    }
+
+    private void writeMap(Output output, Type type, Map<?, ?> map) throws IOException {
+        Type keyType = typeArgument(type, 0);
+        Type valueType = typeArgument(type, 1);
+
+        output.writeVarInt(map.size());
+
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            write(output, keyType, entry.getKey());
+            write(output, valueType, entry.getValue());
+        }
+    }
+
+    private void writeObject(Output output, Type type, Object object) throws IOException {
+        for (BoundField field : boundFields(type)) {
+            try {
+                write(output, field.type, field.field.get(object));
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    // endregion write
+
+    // region read
+
+    private Object read(Input input, Type type) throws IOException {
+        Class<?> rawType = rawType(type);
+
+        if (rawType.isPrimitive()) {
+            return readPrimitive(input, rawType);
+        }
+
+        if (input.readByte() == NULL) {
+            return null;
+        }
+
+        if (rawType == Object.class) {
+            throw new IOException("Can not read a value declared as Object, declare a concrete type");
+        }
+
+        Class<?> primitive = PRIMITIVES.get(rawType);
+
+        if (primitive != null) {
+            return readPrimitive(input, primitive);
+        } else if (rawType == String.class) {
+            return input.readString();
+        } else if (rawType.isEnum()) {
+            return readEnum(rawType, input.readString());
+        } else if (Date.class.isAssignableFrom(rawType)) {
+            return new Date(input.readVarLong());
+        } else if (rawType == byte[].class) {
+            byte[] bytes = new byte[input.readVarInt()];
+            input.readBytes(bytes, 0, bytes.length);
+            return bytes;
+        } else if (rawType.isArray()) {
+            return readArray(input, type);
+        } else if (Collection.class.isAssignableFrom(rawType)) {
+            return readCollection(input, type, rawType);
+        } else if (Map.class.isAssignableFrom(rawType)) {
+            return readMap(input, type, rawType);
+        } else {
+            return readObject(input, type, rawType);
+        }
+    }
+
+    private static Object readPrimitive(Input input, Class<?> type) throws IOException {
+        if (type == boolean.class) {
+            return input.readByte() != 0;
+        } else if (type == byte.class) {
+            return (byte) input.readByte();
+        } else if (type == short.class) {
+            return (short) input.readVarLong();
+        } else if (type == char.class) {
+            return (char) input.readVarInt();
+        } else if (type == int.class) {
+            return (int) input.readVarLong();
+        } else if (type == long.class) {
+            return input.readVarLong();
+        } else if (type == float.class) {
+            return Float.intBitsToFloat(input.readFixedInt());
+        } else {
+            return Double.longBitsToDouble(input.readFixedLong());
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(Class<?> type, String name) throws IOException {
+        try {
+            return Enum.valueOf((Class<Enum>) type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Object readArray(Input input, Type type) throws IOException {
+        Type componentType = arrayComponentType(type);
+
+        int length = input.readVarInt();
+        Object array = Array.newInstance(rawType(componentType), length);
+
+        for (int i = 0; i < length; i++) {
+            Array.set(array, i, read(input, componentType));
+        }
+
+        return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readCollection(Input input, Type type, Class<?> rawType) throws IOException {
+        Type elementType = typeArgument(type, 0);
+
+        int size = input.readVarInt();
+        Collection<Object> collection = (Collection<Object>) newCollection(rawType, size);
+
+        for (int i = 0; i < size; i++) {
+            collection.add(read(input, elementType));
+        }
+
+        return collection;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readMap(Input input, Type type, Class<?> rawType) throws IOException {
+        Type keyType = typeArgument(type, 0);
+        Type valueType = typeArgument(type, 1);
+
+        int size = input.readVarInt();
+        Map<Object, Object> map = (Map<Object, Object>) newMap(rawType, size);
+
+        for (int i = 0; i < size; i++) {
+            Object key = read(input, keyType);
+            map.put(key, read(input, valueType));
+        }
+
+        return map;
+    }
+
+    private Object readObject(Input input, Type type, Class<?> rawType) throws IOException {
+        Object object = newInstance(rawType);
+
+        for (BoundField field : boundFields(type)) {
+            try {
+                field.field.set(object, read(input, field.type));
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+
+        return object;
+    }
+
+    // endregion read
+
+    // region reflection
+
+    private BoundField[] boundFields(Type type) {
+        BoundField[] fields = fieldsCache.get(type);
+        if (fields != null) {
+            return fields;
+        }
+
+        List<BoundField> boundFields = new ArrayList<>();
+
+        Type current = type;
+        while (current != null && rawType(current) != Object.class) {
+            Class<?> rawType = rawType(current);
+
+            Field[] declared = rawType.getDeclaredFields();
+            Arrays.sort(declared, FIELD_ORDER);
+
+            for (Field field : declared) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+
+                field.setAccessible(true);
+                boundFields.add(new BoundField(field, resolve(current, field.getGenericType())));
+            }
+
+            current = resolve(current, rawType.getGenericSuperclass());
+        }
+
+        fields = boundFields.toArray(new BoundField[boundFields.size()]);
+        fieldsCache.put(type, fields);
+        return fields;
+    }
+
+    private Object newInstance(Class<?> type) throws IOException {
+        try {
+            Constructor<?> constructor = constructorCache.get(type);
+            if (constructor == null) {
+                try {
+                    constructor = type.getDeclaredConstructor();
+                    constructor.setAccessible(true);
+                    constructorCache.put(type, constructor);
+                } catch (NoSuchMethodException e) {
+                    return UnsafeAllocator.allocate(type);
+                }
+            }
+
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new IOException(String.format("Failed to create an instance of %s", type), e);
+        }
+    }
+
+    private Object newCollection(Class<?> type, int size) throws IOException {
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            return newInstance(type);
+        }
+
+        if (SortedSet.class.isAssignableFrom(type)) {
+            return new TreeSet<>();
+        } else if (Set.class.isAssignableFrom(type)) {
+            return new LinkedHashSet<>(size);
+        } else {
+            return new ArrayList<>(size);
+        }
+    }
+
+    private Object newMap(Class<?> type, int size) throws IOException {
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            return newInstance(type);
+        }
+
+        if (SortedMap.class.isAssignableFrom(type)) {
+            return new TreeMap<>();
+        } else {
+            return new LinkedHashMap<>(size);
+        }
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class<?>) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            Class<?> componentType = rawType(((GenericArrayType) type).getGenericComponentType());
+            return Array.newInstance(componentType, 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        } else {
+            // unresolved type variable
+            return Object.class;
+        }
+    }
+
+    private static Type arrayComponentType(Type type) {
+        if (type instanceof GenericArrayType) {
+            return ((GenericArrayType) type).getGenericComponentType();
+        }
+
+        return rawType(type).getComponentType();
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+
+        return Object.class;
+    }
+
+    /**
+     * Resolves the type variables of the type, declared by the class of the context type.
+     *
+     * @param context parameterized type of the class that declares the type
+     * @param type type to resolve
+     * @return resolved type
+     */
+    private static Type resolve(Type context, Type type) {
+        if (type == null || !(context instanceof ParameterizedType)) {
+            return type;
+        }
+
+        ParameterizedType parameterizedContext = (ParameterizedType) context;
+
+        if (type instanceof TypeVariable<?>) {
+            TypeVariable<?>[] variables = rawType(context).getTypeParameters();
+            for (int i = 0; i < variables.length; i++) {
+                if (variables[i].equals(type)) {
+                    return parameterizedContext.getActualTypeArguments()[i];
+                }
+            }
+
+            return type;
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+
+            Type[] arguments = parameterized.getActualTypeArguments().clone();
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = resolve(context, arguments[i]);
+            }
+
+            return new ResolvedParameterizedType(parameterized.getOwnerType(), parameterized.getRawType(),
+                    arguments);
+        } else if (type instanceof GenericArrayType) {
+            Type componentType = resolve(context, ((GenericArrayType) type).getGenericComponentType());
+            return Array.newInstance(rawType(componentType), 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return resolve(context, ((WildcardType) type).getUpperBounds()[0]);
+        }
+
+        return type;
+    }
+
+    // endregion reflection
+
+    private static final class BoundField {
+
+        final Field field;
+        final Type type;
+
+        BoundField(Field field, Type type) {
+            this.field = field;
+            this.type = type;
+        }
+    }
+
+    private static final class ResolvedParameterizedType implements ParameterizedType {
+
+        private final Type ownerType;
+        private final Type rawType;
+        private final Type[] typeArguments;
+
+        ResolvedParameterizedType(Type ownerType, Type rawType, Type[] typeArguments) {
+            this.ownerType = ownerType;
+            this.rawType = rawType;
+            this.typeArguments = typeArguments;
+        }
+
+        @Override public Type[] getActualTypeArguments() {
+            return typeArguments.clone();
+        }
+
+        @Override public Type getOwnerType() {
+            return ownerType;
+        }
+
+        @Override public Type getRawType() {
+            return rawType;
+        }
+
+        // same contract as the JDK implementation, to be usable as a cache key with other implementations
+
+        @Override public boolean equals(Object other) {
+            if (!(other instanceof ParameterizedType)) {
+                return false;
+            }
+
+            ParameterizedType that = (ParameterizedType) other;
+            return rawType.equals(that.getRawType())
+                    && (ownerType == null ? that.getOwnerType() == null : ownerType.equals(that.getOwnerType()))
+                    && Arrays.equals(typeArguments, that.getActualTypeArguments());
+        }
+
+        @Override public int hashCode() {
+            return Arrays.hashCode(typeArguments) ^ (ownerType == null ? 0 : ownerType.hashCode()) ^ rawType.hashCode();
+        }
+    }
+
+    /**
+     * Creates instances of classes without a no-args constructor, the same way Gson does.
+     */
+    private static final class UnsafeAllocator {
+
+        private UnsafeAllocator() {
+            // no instance
+        }
+
+        static Object allocate(Class<?> type) throws Exception {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+
+            Object unsafe = theUnsafe.get(null);
+            Method allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+            return allocateInstance.invoke(unsafe, type);
+        }
+    }
+
+    /**
+     * Buffered writer of the binary primitives.
+     */
+    private static final class Output {
+
+        private static final int BUFFER_SIZE = 4096;
+
+        private final OutputStream os;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+
+        Output(OutputStream os) {
+            this.os = os;
+        }
+
+        void writeByte(int value) throws IOException {
+            if (position == BUFFER_SIZE) {
+                flush();
+            }
+
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+            if (length > BUFFER_SIZE - position) {
+                flush();
+            }
+
+            if (length > BUFFER_SIZE) {
+                os.write(bytes, offset, length);
+            } else {
+                System.arraycopy(bytes, offset, buffer, position, length);
+                position += length;
+            }
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                writeByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+
+            writeByte(value);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            // zig-zag encoding, small negative numbers are short as well
+            long zigZag = (value << 1) ^ (value >> 63);
+
+            while ((zigZag & ~0x7fL) != 0) {
+                writeByte((int) ((zigZag & 0x7f) | 0x80));
+                zigZag >>>= 7;
+            }
+
+            writeByte((int) zigZag);
+        }
+
+        void writeFixedInt(int value) throws IOException {
+            writeByte(value >>> 24);
+            writeByte(value >>> 16);
+            writeByte(value >>> 8);
+            writeByte(value);
+        }
+
+        void writeFixedLong(long value) throws IOException {
+            writeFixedInt((int) (value >>> 32));
+            writeFixedInt((int) value);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(SimpleDiskCache.ENCODING);
+            writeVarInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        void flush() throws IOException {
+            if (position > 0) {
+                os.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+
+    /**
+     * Buffered reader of the binary primitives.
+     */
+    private static final class Input {
+
+        private static final int BUFFER_SIZE = 4096;
+
+        private final InputStream is;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        Input(InputStream is) {
+            this.is = is;
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                fill();
+            }
+
+            return buffer[position++] & 0xff;
+        }
+
+        void readBytes(byte[] bytes, int offset, int length) throws IOException {
+            int buffered = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, buffered);
+            position += buffered;
+
+            int read = buffered;
+            while (read < length) {
+                int count = is.read(bytes, offset + read, length - read);
+                if (count == -1) {
+                    throw new EOFException();
+                }
+                read += count;
+            }
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+
+            int b = readByte();
+            while ((b & 0x80) != 0) {
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+                b = readByte();
+            }
+
+            return value | (b << shift);
+        }
+
+        long readVarLong() throws IOException {
+            long zigZag = 0;
+            int shift = 0;
+
+            int b = readByte();
+            while ((b & 0x80) != 0) {
+                zigZag |= (long) (b & 0x7f) << shift;
+                shift += 7;
+                b = readByte();
+            }
+
+            zigZag |= (long) b << shift;
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+
+        int readFixedInt() throws IOException {
+            return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        }
+
+        long readFixedLong() throws IOException {
+            return ((long) readFixedInt() << 32) | (readFixedInt() & 0xffffffffL);
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt();
+
+            if (length <= BUFFER_SIZE) {
+                if (limit - position < length) {
+                    compact(length);
+                }
+
+                String value = new String(buffer, position, length, SimpleDiskCache.ENCODING);
+                position += length;
+                return value;
+            }
+
+            byte[] bytes = new byte[length];
+            readBytes(bytes, 0, length);
+            return new String(bytes, SimpleDiskCache.ENCODING);
+        }
+
+        private void fill() throws IOException {
+            limit = is.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+
+            if (limit <= 0) {
+                limit = 0;
+                throw new EOFException();
+            }
+        }
+
+        // moves the remaining bytes to the start of the buffer and reads until at least length bytes are buffered
+        private void compact(int length) throws IOException {
+            int remaining = limit - position;
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+            position = 0;
+            limit = remaining;
+
+            while (limit < length) {
+                int count = is.read(buffer, limit, BUFFER_SIZE - limit);
+                if (count == -1) {
+                    throw new EOFException();
+                }
+                limit += count;
+            }
+        }
+    }
+}
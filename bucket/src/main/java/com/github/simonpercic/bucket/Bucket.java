@@ -3,23 +3,56 @@ package com.github.simonpercic.bucket;
 import android.content.Context;
 import android.support.annotation.Nullable;
 
+import com.github.simonpercic.bucket.BucketStats.Mode;
+import com.github.simonpercic.bucket.BucketStats.Operation;
 import com.github.simonpercic.bucket.callback.BucketCallback;
 import com.github.simonpercic.bucket.callback.BucketFailureCallback;
 import com.github.simonpercic.bucket.callback.BucketGetCallback;
-import com.github.simonpercic.bucket.utils.StringUtils;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Scheduler;
 import rx.Subscriber;
 import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action0;
 import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
 import rx.schedulers.Schedulers;
+import rx.subjects.AsyncSubject;
+import rx.subscriptions.Subscriptions;
+
+import static com.github.simonpercic.bucket.BucketArgs.checkFetchArgs;
+import static com.github.simonpercic.bucket.BucketArgs.checkGetArgs;
+import static com.github.simonpercic.bucket.BucketArgs.checkKeyArg;
+import static com.github.simonpercic.bucket.BucketArgs.checkKeysArg;
+import static com.github.simonpercic.bucket.BucketArgs.checkObjectArgumentNull;
+import static com.github.simonpercic.bucket.BucketArgs.checkPositive;
+import static com.github.simonpercic.bucket.BucketArgs.checkPreloadArgs;
+import static com.github.simonpercic.bucket.BucketArgs.checkPutAllArgs;
+import static com.github.simonpercic.bucket.BucketArgs.checkPutArgs;
+import static com.github.simonpercic.bucket.BucketArgs.checkTagArg;
+import static com.github.simonpercic.bucket.BucketArgs.checkTagsArg;
+import static com.github.simonpercic.bucket.BucketArgs.checkTtlArgs;
 
 /**
  * Bucket - a disk cache.
@@ -29,7 +62,12 @@ import rx.schedulers.Schedulers;
  * - contains,
  * - remove and
  * - clear
+ * and their variants for multiple keys getAll, putAll and removeAll.
+ * Keeps an index of the keys, to list them with keys and stream the values with entries,
+ * and of the tags of the values, to remove them by tag with invalidateTag.
  * Contains synchronous, asynchronous and RxJava methods.
+ * Optionally keeps an in-memory tier of deserialized objects in front of the disk cache.
+ * Can be opened in the background, see {@link Builder#buildAsync()}.
  * Create an instance through the Builder, obtained by calling {@link #builder(android.content.Context, long) builder}
  *
  * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
@@ -38,20 +76,57 @@ public final class Bucket {
 
     static final String CACHE_DIR = "/Bucket";
 
-    final SimpleDiskCache cache;
+    final DiskCache cache;
     final Gson gson;
+    final ValueCodec codec;
+    @Nullable final MemoryCache memoryCache;
+    @Nullable final WriteBehindQueue writeBehind;
+    @Nullable final StatsRecorder stats;
+    final Observable<Boolean> opened;
     final Scheduler subscribeScheduler;
     final Scheduler observeScheduler;
 
-    private Bucket(SimpleDiskCache cache, Gson gson, Scheduler subscribeScheduler, Scheduler observeScheduler) {
+    private final ChangeNotifier changeNotifier = new ChangeNotifier();
+    private final ValueStore store;
+    private final Fetcher fetcher;
+
+    private Bucket(DiskCache cache, Gson gson, ValueCodec codec, @Nullable MemoryCache memoryCache,
+            @Nullable WriteBehindQueue writeBehind, @Nullable StatsRecorder stats, Observable<Boolean> opened,
+            Scheduler subscribeScheduler, Scheduler observeScheduler) {
         this.cache = cache;
         this.gson = gson;
+        this.codec = codec;
+        this.memoryCache = memoryCache;
+        this.writeBehind = writeBehind;
+        this.stats = stats;
+        this.opened = opened;
         this.subscribeScheduler = subscribeScheduler;
         this.observeScheduler = observeScheduler;
+
+        this.store = new ValueStore(cache, codec, memoryCache, writeBehind, stats, changeNotifier);
+        this.fetcher = new Fetcher(store, subscribeScheduler);
+
+        if (writeBehind != null) {
+            writeBehind.start(new WriteBehindQueue.Writer() {
+                @Override public void write(String key, Object value, long expiresAt) throws IOException {
+                    store.put(key, value, expiresAt, ValueStore.NO_TAGS);
+                }
+            }, subscribeScheduler);
+        }
     }
 
     // region synchronous methods
 
+    /**
+     * Check whether the cache is open. A Bucket created with {@link Builder#build()} is always open.
+     * Synchronous methods called before the cache is open block until it is opened.
+     *
+     * @return <tt>true</tt> if the cache is open, <tt>false</tt> otherwise
+     */
+    public boolean isReady() {
+        return cache.isOpen();
+    }
+
     /**
      * Get from cache.
      *
@@ -65,13 +140,12 @@ public final class Bucket {
     public <T> T get(String key, Type typeOfT) throws IOException {
         checkGetArgs(key, typeOfT);
 
-        String json = cache.get(key);
-
-        if (!StringUtils.isEmpty(json)) {
-            return gson.fromJson(json, typeOfT);
+        long start = nanoTime();
+        try {
+            return store.read(key, typeOfT);
+        } finally {
+            recordLatency(Operation.GET, Mode.SYNC, start);
         }
-
-        return null;
     }
 
     /**
@@ -84,8 +158,82 @@ public final class Bucket {
     public void put(String key, Object object) throws IOException {
         checkPutArgs(key, object);
 
-        String json = gson.toJson(object);
-        cache.put(key, json);
+        long start = nanoTime();
+        try {
+            store.putValue(key, object, CacheInputStream.NO_EXPIRY, ValueStore.NO_TAGS);
+        } finally {
+            recordLatency(Operation.PUT, Mode.SYNC, start);
+        }
+    }
+
+    /**
+     * Put value to cache, that expires after the time-to-live.
+     * Expired values are treated as missing, they are not read from disk.
+     *
+     * @param key key
+     * @param object object
+     * @param ttl time-to-live
+     * @param unit time unit of the time-to-live
+     * @throws IOException
+     */
+    public void put(String key, Object object, long ttl, TimeUnit unit) throws IOException {
+        checkPutArgs(key, object);
+        checkTtlArgs(ttl, unit);
+
+        long start = nanoTime();
+        try {
+            store.putValue(key, object, ValueStore.expiresAt(ttl, unit), ValueStore.NO_TAGS);
+        } finally {
+            recordLatency(Operation.PUT, Mode.SYNC, start);
+        }
+    }
+
+    /**
+     * Put value to cache, with tags to remove it together with the other values of a tag,
+     * see {@link #invalidateTag(String)}. The tags replace the tags of the previous value of the key,
+     * a put without tags removes them.
+     *
+     * @param key key
+     * @param object object
+     * @param tags tags
+     * @throws IOException
+     */
+    public void put(String key, Object object, String... tags) throws IOException {
+        checkPutArgs(key, object);
+        checkTagsArg(tags);
+
+        long start = nanoTime();
+        try {
+            store.putValue(key, object, CacheInputStream.NO_EXPIRY, tagsOf(tags));
+        } finally {
+            recordLatency(Operation.PUT, Mode.SYNC, start);
+        }
+    }
+
+    /**
+     * Get from cache, or fetch with the loader and put to cache if missing.
+     * Concurrent fetches of the same key share one loader call. A stale value is returned right away
+     * and refreshed in the background on the subscribeOn scheduler, see {@link FetchPolicy}.
+     *
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param loader loads the value if it is missing or stale
+     * @param policy decides how long fetched values are fresh and served stale
+     * @param <T> T of cache value
+     * @return cache value or loaded value
+     * @throws IOException
+     */
+    @Nullable
+    public <T> T getOrFetch(String key, Type typeOfT, BucketLoader<T> loader, FetchPolicy policy)
+            throws IOException {
+        checkFetchArgs(key, typeOfT, loader, policy);
+
+        long start = nanoTime();
+        try {
+            return fetcher.fetch(key, typeOfT, loader, policy);
+        } finally {
+            recordLatency(Operation.GET, Mode.SYNC, start);
+        }
     }
 
     /**
@@ -98,7 +246,12 @@ public final class Bucket {
     public boolean contains(String key) throws IOException {
         checkKeyArg(key);
 
-        return cache.contains(key);
+        long start = nanoTime();
+        try {
+            return store.contains(key);
+        } finally {
+            recordLatency(Operation.CONTAINS, Mode.SYNC, start);
+        }
     }
 
     /**
@@ -110,7 +263,12 @@ public final class Bucket {
     public void remove(String key) throws IOException {
         checkKeyArg(key);
 
-        cache.remove(key);
+        long start = nanoTime();
+        try {
+            store.remove(key);
+        } finally {
+            recordLatency(Operation.REMOVE, Mode.SYNC, start);
+        }
     }
 
     /**
@@ -119,266 +277,1264 @@ public final class Bucket {
      * @throws IOException
      */
     public void clear() throws IOException {
-        cache.clear();
+        long start = nanoTime();
+        try {
+            store.clear();
+        } finally {
+            recordLatency(Operation.CLEAR, Mode.SYNC, start);
+        }
     }
 
-    // endregion synchronous methods
+    /**
+     * Get multiple values from cache.
+     *
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @param <T> T of cache values
+     * @return map of keys to cache values, in the order of keys, contains only keys present in the cache
+     * @throws IOException
+     */
+    public <T> Map<String, T> getAll(Collection<String> keys, Type typeOfT) throws IOException {
+        checkKeysArg(keys);
+        checkObjectArgumentNull(typeOfT, "typeOfT");
 
-    // region asynchronous methods
+        Map<String, T> values = new LinkedHashMap<>(keys.size());
+
+        for (String key : keys) {
+            T value = store.read(key, typeOfT);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+
+        return values;
+    }
 
     /**
-     * Get from cache - async, using a callback.
+     * Put multiple values to cache.
+     * All arguments are checked before anything is written, then the values are written one by one,
+     * each as a separate put to disk. The batch is not atomic: if a write fails, the values written before it
+     * stay in the cache.
      *
-     * @param key key
-     * @param typeOfT type of cache value
-     * @param callback callback that will be invoked to return the value
-     * @param <T> T of cache value
+     * @param values map of keys to values
+     * @throws IOException
      */
-    public <T> void getAsync(String key, Type typeOfT, final BucketGetCallback<T> callback) {
-        checkGetArgs(key, typeOfT);
+    public void putAll(Map<String, ?> values) throws IOException {
+        checkPutAllArgs(values);
 
-        Observable<T> get = getRx(key, typeOfT);
-        doAsync(get, callback);
+        store.putAll(values);
     }
 
     /**
-     * Put value to cache - async, using a callback.
+     * Remove multiple cache values.
      *
-     * @param key key
-     * @param object object
-     * @param callback callback that will be invoked to report status
+     * @param keys keys
+     * @throws IOException
      */
-    public void putAsync(String key, Object object, final BucketCallback callback) {
-        checkPutArgs(key, object);
+    public void removeAll(Collection<String> keys) throws IOException {
+        checkKeysArg(keys);
 
-        doAsync(putRx(key, object), callback);
+        store.removeAll(keys);
     }
 
     /**
-     * Cache contains key - async, using a callback.
+     * Remove all cache values tagged with the tag, see {@link #put(String, Object, String...)}.
+     * The values are removed as one batch.
      *
-     * @param key key
-     * @param callback callback that will be invoked to report contains state
+     * @param tag tag
+     * @throws IOException
      */
-    public void containsAsync(String key, final BucketGetCallback<Boolean> callback) {
-        checkKeyArg(key);
+    public void invalidateTag(String tag) throws IOException {
+        checkTagArg(tag);
 
-        doAsync(containsRx(key), callback);
+        List<String> keys = cache.keysWithTag(tag);
+        if (!keys.isEmpty()) {
+            store.removeAll(keys);
+        }
     }
 
     /**
-     * Remove cache value - async, using a callback.
+     * Get all keys in the cache, from the persistent key index, without reading the values.
+     * Pending puts of the write-behind queue are written first.
      *
-     * @param key key
-     * @param callback callback that will be invoked to report status
+     * @return keys sorted in ascending order
+     * @throws IOException
      */
-    public void removeAsync(String key, final BucketCallback callback) {
-        checkKeyArg(key);
-
-        doAsync(removeRx(key), callback);
+    public List<String> keys() throws IOException {
+        return keys("");
     }
 
     /**
-     * Clear all cache values - async, using a callback.
+     * Get the keys in the cache that start with the prefix, from the persistent key index,
+     * without reading the values. Pending puts of the write-behind queue are written first.
      *
-     * @param callback callback that will be invoked to report status
+     * @param prefix key prefix
+     * @return keys sorted in ascending order
+     * @throws IOException
      */
-    public void clearAsync(final BucketCallback callback) {
-        doAsync(clearRx(), callback);
+    public List<String> keys(String prefix) throws IOException {
+        checkObjectArgumentNull(prefix, "prefix");
+
+        flush();
+        return cache.keys(prefix);
     }
 
-    private static void doAsync(Observable<Boolean> observable, final BucketCallback callback) {
-        observable.subscribe(new Action1<Boolean>() {
-            @Override public void call(Boolean aBoolean) {
-                if (callback != null) {
-                    callback.onSuccess();
-                }
-            }
-        }, asyncOnError(callback));
+    /**
+     * Read multiple values into the memory cache, so that getting them afterwards does not touch the disk.
+     * The values are read and deserialized in parallel, at most 4 at once.
+     * Does nothing if the memory cache is not enabled.
+     *
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @throws IOException
+     */
+    public void preload(Collection<String> keys, Type typeOfT) throws IOException {
+        checkKeysArg(keys);
+        checkObjectArgumentNull(typeOfT, "typeOfT");
+
+        store.preload(typesOf(keys, typeOfT));
     }
 
-    private static <T> void doAsync(Observable<T> observable, final BucketGetCallback<T> callback) {
-        observable.subscribe(new Action1<T>() {
-            @Override public void call(T t) {
-                if (callback != null) {
-                    callback.onSuccess(t);
-                }
-            }
-        }, asyncOnError(callback));
+    /**
+     * Read multiple values of different types into the memory cache.
+     *
+     * @param types map of keys to the types of their values
+     * @throws IOException
+     * @see #preload(Collection, Type)
+     */
+    public void preload(Map<String, Type> types) throws IOException {
+        checkPreloadArgs(types);
+
+        store.preload(types);
     }
 
-    private static Action1<Throwable> asyncOnError(final BucketFailureCallback callback) {
-        return new Action1<Throwable>() {
-            @Override public void call(Throwable throwable) {
-                if (callback != null) {
-                    callback.onFailure(throwable);
-                }
-            }
-        };
+    private static List<String> tagsOf(String[] tags) {
+        if (tags.length == 0) {
+            return ValueStore.NO_TAGS;
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(Arrays.asList(tags))));
     }
 
-    // endregion asynchronous methods
+    private static Map<String, Type> typesOf(Collection<String> keys, Type typeOfT) {
+        Map<String, Type> types = new LinkedHashMap<>(keys.size());
+        for (String key : keys) {
+            types.put(key, typeOfT);
+        }
 
-    // region Reactive methods
+        return types;
+    }
 
     /**
-     * Get from cache - reactive, using an Observable.
+     * Get raw bytes from cache, as they were put with {@link #putBytes(String, byte[])}
+     * or {@link #putStream(String, InputStream)}.
      *
      * @param key key
-     * @param typeOfT type of cache value
-     * @param <T> T of cache value
-     * @return Observable that emits the cache value
+     * @return bytes or null if the cache does not contain the key
+     * @throws IOException if the value was not put as raw bytes
      */
-    public <T> Observable<T> getRx(final String key, final Type typeOfT) {
-        checkGetArgs(key, typeOfT);
+    @Nullable
+    public byte[] getBytes(String key) throws IOException {
+        checkKeyArg(key);
 
-        return createObservable(new Callable<T>() {
-            @Override public T call() throws Exception {
-                return get(key, typeOfT);
-            }
-        });
+        long start = nanoTime();
+        try {
+            return store.readBytes(key);
+        } finally {
+            recordLatency(Operation.GET, Mode.SYNC, start);
+        }
     }
 
     /**
-     * Put value to cache - reactive, using an Observable.
+     * Put raw bytes to cache. The bytes are written as they are, without serialization or compression.
      *
      * @param key key
-     * @param object object
-     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     * @param bytes bytes
+     * @throws IOException
      */
-    public Observable<Boolean> putRx(final String key, final Object object) {
-        checkPutArgs(key, object);
+    public void putBytes(String key, byte[] bytes) throws IOException {
+        checkKeyArg(key);
+        checkObjectArgumentNull(bytes, "bytes");
 
-        return createObservable(new Callable<Boolean>() {
-            @Override public Boolean call() throws Exception {
-                put(key, object);
-                return true;
-            }
-        });
+        long start = nanoTime();
+        try {
+            store.putRaw(key, bytes, null);
+        } finally {
+            recordLatency(Operation.PUT, Mode.SYNC, start);
+        }
     }
 
     /**
-     * Cache contains key - reactive, using an Observable.
+     * Open a stream to read raw bytes from cache, as they were put with {@link #putBytes(String, byte[])}
+     * or {@link #putStream(String, InputStream)}. The caller is responsible for closing the stream.
      *
      * @param key key
-     * @return Observable that emits <tt>true</tt> if cache contains key, <tt>false</tt> otherwise
+     * @return input stream of the value or null if the cache does not contain the key
+     * @throws IOException if the value was not put as raw bytes
      */
-    public Observable<Boolean> containsRx(final String key) {
+    @Nullable
+    public InputStream openStream(String key) throws IOException {
         checkKeyArg(key);
 
-        return createObservable(new Callable<Boolean>() {
-            @Override public Boolean call() throws Exception {
-                return contains(key);
-            }
-        });
+        long start = nanoTime();
+        try {
+            return store.openRaw(key);
+        } finally {
+            recordLatency(Operation.GET, Mode.SYNC, start);
+        }
     }
 
     /**
-     * Remove cache value - reactive, using an Observable.
+     * Put raw bytes read from the stream to cache, until the end of the stream.
+     * The bytes are written as they are, without serialization or compression. The stream is not closed.
      *
      * @param key key
-     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     * @param source stream to read the bytes from
+     * @throws IOException
      */
-    public Observable<Boolean> removeRx(final String key) {
+    public void putStream(String key, InputStream source) throws IOException {
         checkKeyArg(key);
+        checkObjectArgumentNull(source, "source");
 
-        return createObservable(new Callable<Boolean>() {
-            @Override public Boolean call() throws Exception {
-                remove(key);
-                return true;
-            }
-        });
+        long start = nanoTime();
+        try {
+            store.putRaw(key, null, source);
+        } finally {
+            recordLatency(Operation.PUT, Mode.SYNC, start);
+        }
     }
 
     /**
-     * Clear all cache values - reactive, using an Observable.
+     * Write all pending puts of the write-behind queue to the cache.
+     * Does nothing if write-behind is not enabled.
      *
-     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     * @throws IOException
      */
-    public Observable<Boolean> clearRx() {
-        return createObservable(new Callable<Boolean>() {
-            @Override public Boolean call() throws Exception {
-                clear();
-                return true;
-            }
-        });
+    public void flush() throws IOException {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
     }
 
-    private <T> Observable<T> createObservable(final Callable<T> func) {
-        return Observable.create(new OnSubscribe<T>() {
-            @Override public void call(Subscriber<? super T> subscriber) {
-                try {
-                    T object = func.call();
-                    subscriber.onNext(object);
-                    subscriber.onCompleted();
-                } catch (Exception e) {
-                    subscriber.onError(e);
-                }
+    /**
+     * Stop the background work of the cache: the periodic flush of the write-behind queue and the expiry sweeper.
+     * Pending puts are written first, puts of the write-behind queue are written right away afterwards.
+     * The cache can still be used.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            if (writeBehind != null) {
+                writeBehind.stop();
             }
-        }).subscribeOn(subscribeScheduler).observeOn(observeScheduler);
+        } finally {
+            cache.stopExpirySweeper();
+        }
     }
 
-    // endregion Reactive methods
-
-    // region args checks
+    /**
+     * Export all values that did not expire to a pack, which can seed another cache with {@link #importFrom}.
+     * Values are copied as they are stored, without deserializing them.
+     * Pending puts of the write-behind queue are written first.
+     *
+     * @param os output stream to write the pack to, it is flushed but not closed
+     * @throws IOException
+     */
+    public void exportTo(OutputStream os) throws IOException {
+        checkObjectArgumentNull(os, "os");
 
-    private static void checkGetArgs(String key, Type typeOfT) {
-        checkStringArgumentEmpty(key, "key");
-        checkObjectArgumentNull(typeOfT, "typeOfT");
+        flush();
+        cache.exportTo(os);
     }
 
-    private static void checkPutArgs(String key, Object object) {
-        checkStringArgumentEmpty(key, "key");
-        checkObjectArgumentNull(object, "object");
+    /**
+     * Import the values of a pack exported by {@link #exportTo}, replacing values of the same keys.
+     * Values are written to the disk as they are, without deserializing them, values that expired in the meantime
+     * are skipped. The pack has to be exported from a cache with the same key hasher and the same number of shards.
+     * <p>
+     * The memory cache is cleared and value observers are not notified.
+     *
+     * @param is input stream to read the pack from, it is not closed
+     * @throws IOException if the pack is corrupt or was exported from a cache with a different key hasher or shards
+     */
+    public void importFrom(InputStream is) throws IOException {
+        checkObjectArgumentNull(is, "is");
+
+        // pending puts would overwrite the imported values later on
+        flush();
+        store.importFrom(is);
     }
 
-    private static void checkKeyArg(String key) {
-        checkStringArgumentEmpty(key, "key");
+    /**
+     * Get a snapshot of the statistics: hits and misses, latencies of the operations, bytes read and written,
+     * time spent serializing and doing I/O, evictions and the size of the cache.
+     * Statistics are disabled by default and can be turned on with {@link Builder#withStats(boolean)}.
+     *
+     * @return statistics or null if they are turned off
+     */
+    @Nullable
+    public BucketStats stats() {
+        if (stats == null) {
+            return null;
+        }
+
+        return stats.snapshot(cache.size(), cache.getMaxSize());
     }
 
-    private static void checkStringArgumentEmpty(String value, String name) {
-        if (StringUtils.isEmpty(value)) {
-            throw new IllegalArgumentException(name + " is null or empty");
+    private long nanoTime() {
+        if (stats == null) {
+            return 0;
         }
+
+        return System.nanoTime();
     }
 
-    private static void checkObjectArgumentNull(Object value, String name) {
-        if (value == null) {
-            throw new IllegalArgumentException(name + " is null");
+    private void recordLatency(Operation operation, Mode mode, long start) {
+        if (stats != null) {
+            stats.recordLatency(operation, mode, System.nanoTime() - start);
         }
     }
 
-    // endregion args checks
+    // endregion synchronous methods
 
-    // region Builder
+    // region asynchronous methods
 
     /**
-     * Returns a Builder.
+     * Get from cache - async, using a callback.
      *
-     * @param context context
-     * @param maxSizeBytes max size of cache in bytes
-     * @return Builder instance
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param callback callback that will be invoked to return the value
+     * @param <T> T of cache value
      */
-    public static Builder builder(Context context, long maxSizeBytes) {
-        checkObjectArgumentNull(context, "context");
+    public <T> void getAsync(String key, Type typeOfT, final BucketGetCallback<T> callback) {
+        checkGetArgs(key, typeOfT);
 
-        return new Builder(context.getApplicationContext(), maxSizeBytes);
+        Observable<T> get = getObservable(key, typeOfT, Mode.ASYNC);
+        doAsync(get, callback);
     }
 
     /**
-     * Bucket Builder.
+     * Put value to cache - async, using a callback.
+     *
+     * @param key key
+     * @param object object
+     * @param callback callback that will be invoked to report status
      */
-    public static final class Builder {
-
-        private final Context context;
-        private final long maxSizeBytes;
+    public void putAsync(String key, Object object, final BucketCallback callback) {
+        checkPutArgs(key, object);
 
-        private Gson gson;
-        private Scheduler subscribeScheduler;
-        private Scheduler observeScheduler;
+        doAsync(putObservable(key, object, 0, null, Mode.ASYNC), callback);
+    }
 
-        private Builder(Context context, long maxSizeBytes) {
-            this.context = context;
+    /**
+     * Put value to cache, that expires after the time-to-live - async, using a callback.
+     *
+     * @param key key
+     * @param object object
+     * @param ttl time-to-live
+     * @param unit time unit of the time-to-live
+     * @param callback callback that will be invoked to report status
+     */
+    public void putAsync(String key, Object object, long ttl, TimeUnit unit, final BucketCallback callback) {
+        checkPutArgs(key, object);
+        checkTtlArgs(ttl, unit);
+
+        doAsync(putObservable(key, object, ttl, unit, Mode.ASYNC), callback);
+    }
+
+    /**
+     * Put value to cache, with tags - async, using a callback.
+     * Tagged values are written right away, they are not queued for write-behind.
+     *
+     * @param key key
+     * @param object object
+     * @param callback callback that will be invoked to report status
+     * @param tags tags
+     */
+    public void putAsync(String key, Object object, final BucketCallback callback, String... tags) {
+        checkPutArgs(key, object);
+        checkTagsArg(tags);
+
+        doAsync(putTaggedObservable(key, object, tagsOf(tags), Mode.ASYNC), callback);
+    }
+
+    /**
+     * Cache contains key - async, using a callback.
+     *
+     * @param key key
+     * @param callback callback that will be invoked to report contains state
+     */
+    public void containsAsync(String key, final BucketGetCallback<Boolean> callback) {
+        checkKeyArg(key);
+
+        doAsync(containsObservable(key, Mode.ASYNC), callback);
+    }
+
+    /**
+     * Remove cache value - async, using a callback.
+     *
+     * @param key key
+     * @param callback callback that will be invoked to report status
+     */
+    public void removeAsync(String key, final BucketCallback callback) {
+        checkKeyArg(key);
+
+        doAsync(removeObservable(key, Mode.ASYNC), callback);
+    }
+
+    /**
+     * Clear all cache values - async, using a callback.
+     *
+     * @param callback callback that will be invoked to report status
+     */
+    public void clearAsync(final BucketCallback callback) {
+        doAsync(clearObservable(Mode.ASYNC), callback);
+    }
+
+    /**
+     * Get from cache, or fetch with the loader and put to cache if missing - async, using a callback.
+     *
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param loader loads the value if it is missing or stale
+     * @param policy decides how long fetched values are fresh and served stale
+     * @param callback callback that will be invoked to return the value
+     * @param <T> T of cache value
+     * @see #getOrFetch(String, Type, BucketLoader, FetchPolicy)
+     */
+    public <T> void getOrFetchAsync(String key, Type typeOfT, BucketLoader<T> loader, FetchPolicy policy,
+            final BucketGetCallback<T> callback) {
+        checkFetchArgs(key, typeOfT, loader, policy);
+
+        Observable<T> observable = fetchObservable(key, typeOfT, loader, policy, Mode.ASYNC);
+        doAsync(observable, callback);
+    }
+
+    /**
+     * Get multiple values from cache - async, using a callback.
+     *
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @param callback callback that will be invoked to return the map of keys to values
+     * @param <T> T of cache values
+     */
+    public <T> void getAllAsync(Collection<String> keys, Type typeOfT,
+            final BucketGetCallback<Map<String, T>> callback) {
+        checkKeysArg(keys);
+        checkObjectArgumentNull(typeOfT, "typeOfT");
+
+        Observable<Map<String, T>> getAll = getAllRx(keys, typeOfT);
+        doAsync(getAll, callback);
+    }
+
+    /**
+     * Put multiple values to cache - async, using a callback.
+     * The values are written one by one, see {@link #putAll(Map)}.
+     *
+     * @param values map of keys to values
+     * @param callback callback that will be invoked to report status
+     */
+    public void putAllAsync(Map<String, ?> values, final BucketCallback callback) {
+        checkPutAllArgs(values);
+
+        doAsync(putAllRx(values), callback);
+    }
+
+    /**
+     * Remove multiple cache values - async, using a callback.
+     *
+     * @param keys keys
+     * @param callback callback that will be invoked to report status
+     */
+    public void removeAllAsync(Collection<String> keys, final BucketCallback callback) {
+        checkKeysArg(keys);
+
+        doAsync(removeAllRx(keys), callback);
+    }
+
+    /**
+     * Read multiple values into the memory cache - async, using a callback.
+     *
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @param callback callback that will be invoked once the values are in memory
+     */
+    public void preloadAsync(Collection<String> keys, Type typeOfT, final BucketCallback callback) {
+        checkKeysArg(keys);
+        checkObjectArgumentNull(typeOfT, "typeOfT");
+
+        doAsync(preloadObservable(typesOf(keys, typeOfT)), callback);
+    }
+
+    /**
+     * Read multiple values of different types into the memory cache - async, using a callback.
+     *
+     * @param types map of keys to the types of their values
+     * @param callback callback that will be invoked once the values are in memory
+     */
+    public void preloadAsync(Map<String, Type> types, final BucketCallback callback) {
+        checkPreloadArgs(types);
+
+        doAsync(preloadObservable(types), callback);
+    }
+
+    /**
+     * Get raw bytes from cache - async, using a callback.
+     *
+     * @param key key
+     * @param callback callback that will be invoked to return the bytes
+     */
+    public void getBytesAsync(String key, final BucketGetCallback<byte[]> callback) {
+        checkKeyArg(key);
+
+        doAsync(getBytesObservable(key, Mode.ASYNC), callback);
+    }
+
+    /**
+     * Put raw bytes to cache - async, using a callback.
+     *
+     * @param key key
+     * @param bytes bytes
+     * @param callback callback that will be invoked to report status
+     */
+    public void putBytesAsync(String key, byte[] bytes, final BucketCallback callback) {
+        checkKeyArg(key);
+        checkObjectArgumentNull(bytes, "bytes");
+
+        doAsync(putRawObservable(key, bytes, null, Mode.ASYNC), callback);
+    }
+
+    /**
+     * Open a stream to read raw bytes from cache - async, using a callback.
+     * The caller is responsible for closing the stream.
+     *
+     * @param key key
+     * @param callback callback that will be invoked to return the stream
+     */
+    public void openStreamAsync(String key, final BucketGetCallback<InputStream> callback) {
+        checkKeyArg(key);
+
+        doAsync(openStreamObservable(key, Mode.ASYNC), callback);
+    }
+
+    /**
+     * Put raw bytes read from the stream to cache - async, using a callback.
+     * The stream is read on the subscribeOn scheduler, do not close it before the callback is invoked.
+     *
+     * @param key key
+     * @param source stream to read the bytes from
+     * @param callback callback that will be invoked to report status
+     */
+    public void putStreamAsync(String key, InputStream source, final BucketCallback callback) {
+        checkKeyArg(key);
+        checkObjectArgumentNull(source, "source");
+
+        doAsync(putRawObservable(key, null, source, Mode.ASYNC), callback);
+    }
+
+    /**
+     * Write all pending puts of the write-behind queue to the cache - async, using a callback.
+     *
+     * @param callback callback that will be invoked to report status
+     */
+    public void flushAsync(final BucketCallback callback) {
+        doAsync(flushRx(), callback);
+    }
+
+    /**
+     * Export all values that did not expire to a pack - async, using a callback.
+     *
+     * @param os output stream to write the pack to, it is flushed but not closed
+     * @param callback callback that will be invoked to report status
+     */
+    public void exportToAsync(OutputStream os, final BucketCallback callback) {
+        checkObjectArgumentNull(os, "os");
+
+        doAsync(exportToRx(os), callback);
+    }
+
+    /**
+     * Import the values of a pack - async, using a callback.
+     *
+     * @param is input stream to read the pack from, it is not closed
+     * @param callback callback that will be invoked to report status
+     */
+    public void importFromAsync(InputStream is, final BucketCallback callback) {
+        checkObjectArgumentNull(is, "is");
+
+        doAsync(importFromRx(is), callback);
+    }
+
+    /**
+     * Remove all cache values tagged with the tag - async, using a callback.
+     *
+     * @param tag tag
+     * @param callback callback that will be invoked to report status
+     */
+    public void invalidateTagAsync(String tag, final BucketCallback callback) {
+        checkTagArg(tag);
+
+        doAsync(invalidateTagRx(tag), callback);
+    }
+
+    /**
+     * Get the keys in the cache that start with the prefix - async, using a callback.
+     *
+     * @param prefix key prefix
+     * @param callback callback that will be invoked to return the keys
+     */
+    public void keysAsync(String prefix, final BucketGetCallback<List<String>> callback) {
+        checkObjectArgumentNull(prefix, "prefix");
+
+        doAsync(keysRx(prefix), callback);
+    }
+
+    private static void doAsync(Observable<Boolean> observable, final BucketCallback callback) {
+        observable.subscribe(new Action1<Boolean>() {
+            @Override public void call(Boolean aBoolean) {
+                if (callback != null) {
+                    callback.onSuccess();
+                }
+            }
+        }, asyncOnError(callback));
+    }
+
+    private static <T> void doAsync(Observable<T> observable, final BucketGetCallback<T> callback) {
+        observable.subscribe(new Action1<T>() {
+            @Override public void call(T t) {
+                if (callback != null) {
+                    callback.onSuccess(t);
+                }
+            }
+        }, asyncOnError(callback));
+    }
+
+    private static Action1<Throwable> asyncOnError(final BucketFailureCallback callback) {
+        return new Action1<Throwable>() {
+            @Override public void call(Throwable throwable) {
+                if (callback != null) {
+                    callback.onFailure(throwable);
+                }
+            }
+        };
+    }
+
+    // endregion asynchronous methods
+
+    // region Reactive methods
+
+    /**
+     * Get from cache - reactive, using an Observable.
+     *
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param <T> T of cache value
+     * @return Observable that emits the cache value
+     */
+    public <T> Observable<T> getRx(String key, Type typeOfT) {
+        checkGetArgs(key, typeOfT);
+
+        return getObservable(key, typeOfT, Mode.RX);
+    }
+
+    private <T> Observable<T> getObservable(final String key, final Type typeOfT, Mode mode) {
+        return createObservable(Operation.GET, mode, new Callable<T>() {
+            @Override public T call() throws Exception {
+                return store.read(key, typeOfT);
+            }
+        });
+    }
+
+    /**
+     * Put value to cache - reactive, using an Observable.
+     *
+     * @param key key
+     * @param object object
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> putRx(String key, Object object) {
+        checkPutArgs(key, object);
+
+        return putObservable(key, object, 0, null, Mode.RX);
+    }
+
+    /**
+     * Put value to cache, that expires after the time-to-live - reactive, using an Observable.
+     *
+     * @param key key
+     * @param object object
+     * @param ttl time-to-live
+     * @param unit time unit of the time-to-live
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> putRx(String key, Object object, long ttl, TimeUnit unit) {
+        checkPutArgs(key, object);
+        checkTtlArgs(ttl, unit);
+
+        return putObservable(key, object, ttl, unit, Mode.RX);
+    }
+
+    /**
+     * Put value to cache, with tags - reactive, using an Observable.
+     * Tagged values are written right away, they are not queued for write-behind.
+     *
+     * @param key key
+     * @param object object
+     * @param tags tags
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> putRx(String key, Object object, String... tags) {
+        checkPutArgs(key, object);
+        checkTagsArg(tags);
+
+        return putTaggedObservable(key, object, tagsOf(tags), Mode.RX);
+    }
+
+    private Observable<Boolean> putTaggedObservable(final String key, final Object object, final List<String> tags,
+            Mode mode) {
+        return createObservable(Operation.PUT, mode, new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                store.putValue(key, object, CacheInputStream.NO_EXPIRY, tags);
+                return true;
+            }
+        });
+    }
+
+    private Observable<Boolean> putObservable(final String key, final Object object, final long ttl,
+            @Nullable final TimeUnit unit, Mode mode) {
+        return createObservable(Operation.PUT, mode, new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                long expiresAt = CacheInputStream.NO_EXPIRY;
+                if (unit != null) {
+                    expiresAt = ValueStore.expiresAt(ttl, unit);
+                }
+
+                store.putBehind(key, object, expiresAt);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Cache contains key - reactive, using an Observable.
+     *
+     * @param key key
+     * @return Observable that emits <tt>true</tt> if cache contains key, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> containsRx(String key) {
+        checkKeyArg(key);
+
+        return containsObservable(key, Mode.RX);
+    }
+
+    private Observable<Boolean> containsObservable(final String key, Mode mode) {
+        return createObservable(Operation.CONTAINS, mode, new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                return store.contains(key);
+            }
+        });
+    }
+
+    /**
+     * Remove cache value - reactive, using an Observable.
+     *
+     * @param key key
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> removeRx(String key) {
+        checkKeyArg(key);
+
+        return removeObservable(key, Mode.RX);
+    }
+
+    private Observable<Boolean> removeObservable(final String key, Mode mode) {
+        return createObservable(Operation.REMOVE, mode, new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                store.remove(key);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Clear all cache values - reactive, using an Observable.
+     *
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> clearRx() {
+        return clearObservable(Mode.RX);
+    }
+
+    private Observable<Boolean> clearObservable(Mode mode) {
+        return createObservable(Operation.CLEAR, mode, new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                store.clear();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Get from cache, or fetch with the loader and put to cache if missing - reactive, using an Observable.
+     *
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param loader loads the value if it is missing or stale
+     * @param policy decides how long fetched values are fresh and served stale
+     * @param <T> T of cache value
+     * @return Observable that emits the cache value or the loaded value
+     * @see #getOrFetch(String, Type, BucketLoader, FetchPolicy)
+     */
+    public <T> Observable<T> getOrFetchRx(String key, Type typeOfT, BucketLoader<T> loader, FetchPolicy policy) {
+        checkFetchArgs(key, typeOfT, loader, policy);
+
+        return fetchObservable(key, typeOfT, loader, policy, Mode.RX);
+    }
+
+    private <T> Observable<T> fetchObservable(final String key, final Type typeOfT, final BucketLoader<T> loader,
+            final FetchPolicy policy, Mode mode) {
+        return createObservable(Operation.GET, mode, new Callable<T>() {
+            @Override public T call() throws Exception {
+                return fetcher.fetch(key, typeOfT, loader, policy);
+            }
+        });
+    }
+
+    /**
+     * Get multiple values from cache - reactive, using an Observable.
+     *
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @param <T> T of cache values
+     * @return Observable that emits the map of keys to cache values
+     */
+    public <T> Observable<Map<String, T>> getAllRx(final Collection<String> keys, final Type typeOfT) {
+        checkKeysArg(keys);
+        checkObjectArgumentNull(typeOfT, "typeOfT");
+
+        return createObservable(new Callable<Map<String, T>>() {
+            @Override public Map<String, T> call() throws Exception {
+                return getAll(keys, typeOfT);
+            }
+        });
+    }
+
+    /**
+     * Put multiple values to cache - reactive, using an Observable.
+     * The values are written one by one, see {@link #putAll(Map)}.
+     *
+     * @param values map of keys to values
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> putAllRx(final Map<String, ?> values) {
+        checkPutAllArgs(values);
+
+        return createObservable(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                putAll(values);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Remove multiple cache values - reactive, using an Observable.
+     *
+     * @param keys keys
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> removeAllRx(final Collection<String> keys) {
+        checkKeysArg(keys);
+
+        return createObservable(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                removeAll(keys);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Read multiple values into the memory cache - reactive, using an Observable.
+     *
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @return Observable that emits <tt>true</tt> once the values are in memory
+     */
+    public Observable<Boolean> preloadRx(Collection<String> keys, Type typeOfT) {
+        checkKeysArg(keys);
+        checkObjectArgumentNull(typeOfT, "typeOfT");
+
+        return preloadObservable(typesOf(keys, typeOfT));
+    }
+
+    /**
+     * Read multiple values of different types into the memory cache - reactive, using an Observable.
+     *
+     * @param types map of keys to the types of their values
+     * @return Observable that emits <tt>true</tt> once the values are in memory
+     */
+    public Observable<Boolean> preloadRx(Map<String, Type> types) {
+        checkPreloadArgs(types);
+
+        return preloadObservable(types);
+    }
+
+    private Observable<Boolean> preloadObservable(final Map<String, Type> types) {
+        return createObservable(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                store.preload(types);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Get raw bytes from cache - reactive, using an Observable.
+     *
+     * @param key key
+     * @return Observable that emits the bytes
+     */
+    public Observable<byte[]> getBytesRx(String key) {
+        checkKeyArg(key);
+
+        return getBytesObservable(key, Mode.RX);
+    }
+
+    private Observable<byte[]> getBytesObservable(final String key, Mode mode) {
+        return createObservable(Operation.GET, mode, new Callable<byte[]>() {
+            @Override public byte[] call() throws Exception {
+                return store.readBytes(key);
+            }
+        });
+    }
+
+    /**
+     * Put raw bytes to cache - reactive, using an Observable.
+     *
+     * @param key key
+     * @param bytes bytes
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> putBytesRx(String key, byte[] bytes) {
+        checkKeyArg(key);
+        checkObjectArgumentNull(bytes, "bytes");
+
+        return putRawObservable(key, bytes, null, Mode.RX);
+    }
+
+    /**
+     * Open a stream to read raw bytes from cache - reactive, using an Observable.
+     * The subscriber is responsible for closing the stream.
+     *
+     * @param key key
+     * @return Observable that emits the input stream of the value
+     */
+    public Observable<InputStream> openStreamRx(String key) {
+        checkKeyArg(key);
+
+        return openStreamObservable(key, Mode.RX);
+    }
+
+    private Observable<InputStream> openStreamObservable(final String key, Mode mode) {
+        return createObservable(Operation.GET, mode, new Callable<InputStream>() {
+            @Override public InputStream call() throws Exception {
+                return store.openRaw(key);
+            }
+        });
+    }
+
+    /**
+     * Put raw bytes read from the stream to cache - reactive, using an Observable.
+     * The stream is read on the subscribeOn scheduler, do not close it before the Observable completes.
+     *
+     * @param key key
+     * @param source stream to read the bytes from
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> putStreamRx(String key, InputStream source) {
+        checkKeyArg(key);
+        checkObjectArgumentNull(source, "source");
+
+        return putRawObservable(key, null, source, Mode.RX);
+    }
+
+    private Observable<Boolean> putRawObservable(final String key, @Nullable final byte[] bytes,
+            @Nullable final InputStream source, Mode mode) {
+        return createObservable(Operation.PUT, mode, new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                store.putRaw(key, bytes, source);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Write all pending puts of the write-behind queue to the cache - reactive, using an Observable.
+     *
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> flushRx() {
+        return createObservable(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                flush();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Export all values that did not expire to a pack - reactive, using an Observable.
+     *
+     * @param os output stream to write the pack to, it is flushed but not closed
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> exportToRx(final OutputStream os) {
+        checkObjectArgumentNull(os, "os");
+
+        return createObservable(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                exportTo(os);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Import the values of a pack - reactive, using an Observable.
+     *
+     * @param is input stream to read the pack from, it is not closed
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> importFromRx(final InputStream is) {
+        checkObjectArgumentNull(is, "is");
+
+        return createObservable(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                importFrom(is);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Remove all cache values tagged with the tag - reactive, using an Observable.
+     *
+     * @param tag tag
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    public Observable<Boolean> invalidateTagRx(final String tag) {
+        checkTagArg(tag);
+
+        return createObservable(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                invalidateTag(tag);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Get the keys in the cache that start with the prefix - reactive, using an Observable.
+     *
+     * @param prefix key prefix
+     * @return Observable that emits the keys sorted in ascending order
+     */
+    public Observable<List<String>> keysRx(final String prefix) {
+        checkObjectArgumentNull(prefix, "prefix");
+
+        return createObservable(new Callable<List<String>>() {
+            @Override public List<String> call() throws Exception {
+                return keys(prefix);
+            }
+        });
+    }
+
+    /**
+     * Stream the entries whose keys start with the prefix - reactive, using an Observable.
+     * The keys are listed from the key index, then the values are read and deserialized one at a time,
+     * as the subscriber requests them. Values removed or expired since the keys were listed are skipped.
+     *
+     * @param prefix key prefix
+     * @param typeOfT type of cache values
+     * @param <T> T of cache values
+     * @return Observable that emits the entries in ascending order of their keys
+     */
+    public <T> Observable<Map.Entry<String, T>> entries(final String prefix, final Type typeOfT) {
+        checkObjectArgumentNull(prefix, "prefix");
+        checkObjectArgumentNull(typeOfT, "typeOfT");
+
+        Observable<Map.Entry<String, T>> observable = Observable.defer(new Func0<Observable<String>>() {
+            @Override public Observable<String> call() {
+                try {
+                    return Observable.from(keys(prefix));
+                } catch (IOException e) {
+                    return Observable.error(e);
+                }
+            }
+        }).concatMap(new Func1<String, Observable<Map.Entry<String, T>>>() {
+            @Override public Observable<Map.Entry<String, T>> call(String key) {
+                try {
+                    T value = store.read(key, typeOfT);
+                    if (value == null) {
+                        return Observable.empty();
+                    }
+
+                    return Observable.<Map.Entry<String, T>>just(new SimpleImmutableEntry<>(key, value));
+                } catch (IOException e) {
+                    return Observable.error(e);
+                }
+            }
+        });
+
+        return whenOpen(observable.subscribeOn(subscribeScheduler)).observeOn(observeScheduler);
+    }
+
+    /**
+     * Observe opening of the cache - reactive, using an Observable.
+     * Emits true and completes once the cache is open, or emits an error if it failed to open.
+     * A Bucket created with {@link Builder#build()} is open right away.
+     *
+     * @return Observable that emits true once the cache is open
+     */
+    public Observable<Boolean> readyRx() {
+        return opened.observeOn(observeScheduler);
+    }
+
+    /**
+     * Observe a cache value - reactive, using an Observable.
+     * Emits the current value, then the new value on every put, remove and clear of the key.
+     * Emits null if the key is not present or was removed. Values put as a type not assignable to the requested
+     * type are skipped, expiry of a value is not emitted. Never completes, unsubscribe to stop observing.
+     * A slow subscriber receives the latest value, intermediate values may be skipped.
+     *
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param <T> T of cache value
+     * @return Observable that emits the current and then every new cache value
+     */
+    public <T> Observable<T> observe(final String key, final Type typeOfT) {
+        checkGetArgs(key, typeOfT);
+
+        Observable<T> observable = Observable.create(new OnSubscribe<T>() {
+            @Override public void call(Subscriber<? super T> subscriber) {
+                final ValueObserver<T> observer = new ValueObserver<>(subscriber, TypeToken.get(typeOfT).getRawType());
+
+                // listen before reading, so a change made during the read is not missed
+                changeNotifier.add(key, observer);
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override public void call() {
+                        changeNotifier.remove(key, observer);
+                    }
+                }));
+
+                try {
+                    T value = store.read(key, typeOfT);
+                    observer.offerInitial(value);
+                } catch (Exception e) {
+                    // through the observer, so it is not emitted concurrently with a change
+                    observer.offerError(e);
+                }
+            }
+        });
+
+        return whenOpen(observable.subscribeOn(subscribeScheduler)).onBackpressureLatest().observeOn(observeScheduler);
+    }
+
+    private <T> Observable<T> createObservable(final Operation operation, final Mode mode, final Callable<T> func) {
+        if (stats == null) {
+            return createObservable(func);
+        }
+
+        return createObservable(new Callable<T>() {
+            @Override public T call() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    return func.call();
+                } finally {
+                    stats.recordLatency(operation, mode, System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    private <T> Observable<T> createObservable(final Callable<T> func) {
+        Observable<T> observable = Observable.create(new OnSubscribe<T>() {
+            @Override public void call(Subscriber<? super T> subscriber) {
+                try {
+                    T object = func.call();
+                    subscriber.onNext(object);
+                    subscriber.onCompleted();
+                } catch (Exception e) {
+                    subscriber.onError(e);
+                }
+            }
+        });
+
+        return whenOpen(observable.subscribeOn(subscribeScheduler)).observeOn(observeScheduler);
+    }
+
+    private <T> Observable<T> whenOpen(final Observable<T> observable) {
+        if (cache.isOpen()) {
+            return observable;
+        }
+
+        // queue the operation until the cache is open, instead of blocking a thread of the subscribe scheduler
+        return opened.flatMap(new Func1<Boolean, Observable<T>>() {
+            @Override public Observable<T> call(Boolean ready) {
+                return observable;
+            }
+        });
+    }
+
+    // endregion Reactive methods
+
+    // region Builder
+
+    /**
+     * Returns a Builder.
+     *
+     * @param context context
+     * @param maxSizeBytes max size of cache in bytes
+     * @return Builder instance
+     */
+    public static Builder builder(Context context, long maxSizeBytes) {
+        checkObjectArgumentNull(context, "context");
+
+        return new Builder(context.getApplicationContext(), maxSizeBytes);
+    }
+
+    /**
+     * Bucket Builder.
+     */
+    public static final class Builder {
+
+        private final Context context;
+        private final long maxSizeBytes;
+
+        private Gson gson;
+        private BucketSerializer serializer;
+        private final List<BucketSerializer> readSerializers = new ArrayList<>();
+        private Compression compression;
+        private int compressionThreshold;
+        private int compressionLevel;
+        private MemoryCache memoryCache;
+        private KeyHasher keyHasher;
+        private int keyHashMemoSize;
+        private Storage storage;
+        private int shards = 1;
+        private Scheduler subscribeScheduler;
+        private Scheduler observeScheduler;
+        private long expirySweepIntervalMillis;
+        private long writeBehindIntervalMillis;
+        private int maxPendingWrites;
+        private boolean statsEnabled;
+        private boolean evictionTracking;
+
+        private Builder(Context context, long maxSizeBytes) {
+            this.context = context;
             this.maxSizeBytes = maxSizeBytes;
         }
 
@@ -393,6 +1549,222 @@ public final class Bucket {
             return this;
         }
 
+        /**
+         * Set the serializer that writes the values. Defaults to a {@link GsonSerializer} using the Gson instance.
+         * Values written by the {@link GsonSerializer} and the {@link BinarySerializer} can always be read,
+         * whichever serializer is set.
+         *
+         * @param serializer serializer
+         * @return Builder
+         */
+        public Builder withSerializer(BucketSerializer serializer) {
+            this.serializer = serializer;
+            return this;
+        }
+
+        /**
+         * Register a serializer that is only used to read values previously written with it,
+         * e.g. while migrating to a different serializer.
+         *
+         * @param serializer serializer
+         * @return Builder
+         */
+        public Builder withReadSerializer(BucketSerializer serializer) {
+            checkObjectArgumentNull(serializer, "serializer");
+
+            readSerializers.add(serializer);
+            return this;
+        }
+
+        /**
+         * Enable {@link Compression#DEFLATE} compression of values larger than the threshold,
+         * using the default compression level.
+         *
+         * @param thresholdBytes values with a serialized size larger than this are compressed
+         * @return Builder
+         */
+        public Builder withCompression(int thresholdBytes) {
+            return withCompression(Compression.DEFLATE, thresholdBytes, Deflater.DEFAULT_COMPRESSION);
+        }
+
+        /**
+         * Enable compression of values larger than the threshold.
+         * Values are compressed while they are written, so the max cache size applies to the compressed size.
+         * Compressed values can always be read, whether compression is enabled or not.
+         *
+         * @param compression compression codec
+         * @param thresholdBytes values with a serialized size larger than this are compressed
+         * @param level compression level, from 0 (no compression) to 9 (best compression), or -1 for the default
+         * @return Builder
+         */
+        public Builder withCompression(Compression compression, int thresholdBytes, int level) {
+            checkObjectArgumentNull(compression, "compression");
+
+            if (thresholdBytes < 0) {
+                throw new IllegalArgumentException("thresholdBytes must not be negative");
+            }
+
+            if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("level must be between -1 and 9");
+            }
+
+            this.compression = compression;
+            this.compressionThreshold = thresholdBytes;
+            this.compressionLevel = level;
+            return this;
+        }
+
+        /**
+         * Enable an in-memory LRU tier of already deserialized objects, bounded by the number of entries.
+         * Hot reads are served from memory, without disk I/O and json parsing.
+         * Cached objects are shared between callers, so they should be treated as immutable.
+         *
+         * @param maxEntries max number of entries kept in memory
+         * @return Builder
+         */
+        public Builder withMemoryCache(int maxEntries) {
+            checkPositive(maxEntries, "maxEntries");
+
+            this.memoryCache = MemoryCache.create(maxEntries);
+            return this;
+        }
+
+        /**
+         * Enable an in-memory LRU tier of already deserialized objects, bounded by the total weight of entries.
+         * Hot reads are served from memory, without disk I/O and json parsing.
+         * Cached objects are shared between callers, so they should be treated as immutable.
+         *
+         * @param maxWeight max total weight of entries kept in memory
+         * @param weigher weigher that calculates the weight of each entry
+         * @return Builder
+         */
+        public Builder withMemoryCache(long maxWeight, Weigher weigher) {
+            checkPositive(maxWeight, "maxWeight");
+            checkObjectArgumentNull(weigher, "weigher");
+
+            this.memoryCache = MemoryCache.create(maxWeight, weigher);
+            return this;
+        }
+
+        /**
+         * Set a custom key hasher that maps keys to the internal keys used as file names.
+         * Defaults to {@link Murmur3KeyHasher}.
+         * Use {@link Md5KeyHasher} to keep reading values written by previous versions of Bucket.
+         *
+         * @param keyHasher key hasher
+         * @return Builder
+         */
+        public Builder withKeyHasher(KeyHasher keyHasher) {
+            this.keyHasher = keyHasher;
+            return this;
+        }
+
+        /**
+         * Enable a bounded memo of recently hashed keys, so repeated operations on the same keys skip hashing.
+         *
+         * @param maxEntries max number of memoized keys
+         * @return Builder
+         */
+        public Builder withKeyHashMemo(int maxEntries) {
+            checkPositive(maxEntries, "maxEntries");
+
+            this.keyHashMemoSize = maxEntries;
+            return this;
+        }
+
+        /**
+         * Set the storage engine that stores the values on disk.
+         * Defaults to {@link Storage#DISK_LRU_CACHE}.
+         * Values stored by one storage engine are not visible to the other.
+         *
+         * @param storage storage engine
+         * @return Builder
+         */
+        public Builder withStorage(Storage storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        /**
+         * Split the keys by hash across independent caches, each in its own subdirectory and with an equal part
+         * of the max size. Operations on keys in different shards do not wait for each other, which improves
+         * throughput with many concurrent operations. Changing the number of shards clears the cache.
+         *
+         * @param shards number of shards, 1 to not shard the cache
+         * @return Builder
+         */
+        public Builder withShards(int shards) {
+            checkPositive(shards, "shards");
+            this.shards = shards;
+            return this;
+        }
+
+        /**
+         * Enable write-behind of putAsync and putRx. Puts are queued and written in batches,
+         * a put replaces the queued put of the same key, so only the newest value of a key is written.
+         * Queued puts are visible to reads, but are lost if the process dies before they are written.
+         * Queued puts are written on the subscribeOn scheduler every flush interval,
+         * when the queue holds max pending writes, and on {@link Bucket#flush()}.
+         *
+         * @param flushInterval interval between writing the queued puts
+         * @param unit time unit of the interval
+         * @param maxPendingWrites max number of queued puts
+         * @return Builder
+         */
+        public Builder withWriteBehind(long flushInterval, TimeUnit unit, int maxPendingWrites) {
+            checkPositive(flushInterval, "flushInterval");
+            checkObjectArgumentNull(unit, "unit");
+            checkPositive(maxPendingWrites, "maxPendingWrites");
+
+            this.writeBehindIntervalMillis = Math.max(unit.toMillis(flushInterval), 1);
+            this.maxPendingWrites = maxPendingWrites;
+            return this;
+        }
+
+        /**
+         * Periodically remove values written with a time-to-live after they expire, on the subscribeOn scheduler.
+         * Without the sweeper, expired values are treated as missing, but take up the size of the cache
+         * until they are overwritten or evicted.
+         *
+         * @param interval interval between sweeps
+         * @param unit time unit of the interval
+         * @return Builder
+         */
+        public Builder withExpirySweeper(long interval, TimeUnit unit) {
+            checkPositive(interval, "interval");
+            checkObjectArgumentNull(unit, "unit");
+
+            this.expirySweepIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Enable or disable recording of the statistics returned by {@link Bucket#stats()}. Disabled by default.
+         * Recording uses striped counters and fixed-bucket histograms, so it takes no locks, but every operation
+         * reads the clock and updates the counters. When disabled, nothing is measured or recorded.
+         *
+         * @param enabled <tt>true</tt> to record statistics, <tt>false</tt> otherwise
+         * @return Builder
+         */
+        public Builder withStats(boolean enabled) {
+            this.statsEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Enable or disable counting the evictions in the statistics returned by {@link Bucket#stats()}.
+         * Disabled by default. DiskLruCache does not report evictions, so with this storage a commit that exceeds
+         * the max size trims the cache synchronously on the putting thread, under the lock of the cache,
+         * instead of on its background thread. Has no effect if statistics are disabled.
+         *
+         * @param enabled <tt>true</tt> to count evictions, <tt>false</tt> otherwise
+         * @return Builder
+         */
+        public Builder withEvictionTracking(boolean enabled) {
+            this.evictionTracking = enabled;
+            return this;
+        }
+
         /**
          * Set a custom subscribeOn scheduler to control the thread the background processing takes place.
          * Defaults to the IO thread from Schedulers.io()
@@ -424,14 +1796,41 @@ public final class Bucket {
          * @throws IOException
          */
         public synchronized Bucket build() throws IOException {
-            String cachePath = context.getCacheDir() + CACHE_DIR;
+            return build(false);
+        }
+
+        /**
+         * Build the Bucket and open the cache in the background, on the subscribe scheduler.
+         * Returns right away, without reading the cache from disk. Async and Rx operations issued before
+         * the cache is open are queued until it is opened, synchronous operations block until it is opened.
+         * Use {@link Bucket#readyRx()} to get notified once the cache is open.
+         *
+         * @return Bucket instance
+         * @throws IOException if the cache directory could not be created
+         */
+        public synchronized Bucket buildAsync() throws IOException {
+            return build(true);
+        }
 
-            SimpleDiskCache cache = SimpleDiskCache.create(cachePath, maxSizeBytes);
+        private Bucket build(boolean openAsync) throws IOException {
+            String cachePath = context.getCacheDir() + CACHE_DIR;
 
             if (gson == null) {
                 gson = new Gson();
             }
 
+            List<BucketSerializer> codecSerializers = new ArrayList<>();
+            codecSerializers.add(new GsonSerializer(gson));
+            codecSerializers.add(new BinarySerializer());
+            codecSerializers.addAll(readSerializers);
+
+            if (serializer == null) {
+                serializer = codecSerializers.get(0);
+            }
+
+            ValueCodec codec = new ValueCodec(serializer, codecSerializers, compression, compressionLevel,
+                    compressionThreshold);
+
             if (subscribeScheduler == null) {
                 subscribeScheduler = Schedulers.io();
             }
@@ -440,7 +1839,78 @@ public final class Bucket {
                 observeScheduler = AndroidSchedulers.mainThread();
             }
 
-            return new Bucket(cache, gson, subscribeScheduler, observeScheduler);
+            if (keyHasher == null) {
+                keyHasher = new Murmur3KeyHasher();
+            }
+
+            if (storage == null) {
+                storage = Storage.DISK_LRU_CACHE;
+            }
+
+            KeyHasher cacheKeyHasher = keyHasher;
+            if (keyHashMemoSize > 0) {
+                cacheKeyHasher = new MemoizingKeyHasher(keyHasher, keyHashMemoSize);
+            }
+
+            StatsRecorder stats = null;
+            if (statsEnabled) {
+                stats = new StatsRecorder();
+            }
+
+            EvictionListener evictionListener = null;
+            if (stats != null && evictionTracking) {
+                evictionListener = stats;
+            }
+
+            DiskCache cache;
+            if (shards > 1) {
+                cache = ShardedDiskCache.createUnopened(cachePath, shards, maxSizeBytes, cacheKeyHasher, storage,
+                        subscribeScheduler, evictionListener);
+            } else {
+                cache = SimpleDiskCache.createUnopened(cachePath, maxSizeBytes, cacheKeyHasher, storage,
+                        subscribeScheduler, evictionListener);
+            }
+
+            Observable<Boolean> opened;
+            if (openAsync) {
+                opened = openAsync(cache, subscribeScheduler);
+            } else {
+                cache.open();
+                opened = Observable.just(true);
+            }
+
+            if (expirySweepIntervalMillis > 0) {
+                cache.startExpirySweeper(subscribeScheduler, expirySweepIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+
+            WriteBehindQueue writeBehind = null;
+            if (writeBehindIntervalMillis > 0) {
+                writeBehind = new WriteBehindQueue(maxPendingWrites, writeBehindIntervalMillis);
+            }
+
+            return new Bucket(cache, gson, codec, memoryCache, writeBehind, stats, opened, subscribeScheduler,
+                    observeScheduler);
+        }
+
+        private static Observable<Boolean> openAsync(final DiskCache cache, Scheduler scheduler) {
+            final AsyncSubject<Boolean> opened = AsyncSubject.create();
+
+            final Scheduler.Worker worker = scheduler.createWorker();
+            worker.schedule(new Action0() {
+                @Override public void call() {
+                    try {
+                        cache.open();
+                        opened.onNext(true);
+                        opened.onCompleted();
+                    } catch (IOException | RuntimeException e) {
+                        opened.onError(e);
+                    } finally {
+                        worker.unsubscribe();
+                    }
+                }
+            });
+
+            return opened;
         }
     }
 
@@ -0,0 +1,99 @@
+package com.github.simonpercic.bucket;
+
+import com.github.simonpercic.bucket.utils.StringUtils;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Argument checks of the public methods, throw an IllegalArgumentException for invalid arguments.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class BucketArgs {
+
+    private BucketArgs() {
+        // no instance
+    }
+
+    static void checkGetArgs(String key, Type typeOfT) {
+        checkStringArgumentEmpty(key, "key");
+        checkObjectArgumentNull(typeOfT, "typeOfT");
+    }
+
+    static void checkPutArgs(String key, Object object) {
+        checkStringArgumentEmpty(key, "key");
+        checkObjectArgumentNull(object, "object");
+    }
+
+    static void checkFetchArgs(String key, Type typeOfT, BucketLoader<?> loader, FetchPolicy policy) {
+        checkGetArgs(key, typeOfT);
+        checkObjectArgumentNull(loader, "loader");
+        checkObjectArgumentNull(policy, "policy");
+    }
+
+    static void checkTtlArgs(long ttl, TimeUnit unit) {
+        checkPositive(ttl, "ttl");
+        checkObjectArgumentNull(unit, "unit");
+    }
+
+    static void checkKeyArg(String key) {
+        checkStringArgumentEmpty(key, "key");
+    }
+
+    static void checkKeysArg(Collection<String> keys) {
+        checkObjectArgumentNull(keys, "keys");
+
+        for (String key : keys) {
+            checkKeyArg(key);
+        }
+    }
+
+    static void checkTagArg(String tag) {
+        checkStringArgumentEmpty(tag, "tag");
+    }
+
+    static void checkTagsArg(String[] tags) {
+        checkObjectArgumentNull(tags, "tags");
+
+        for (String tag : tags) {
+            checkTagArg(tag);
+        }
+    }
+
+    static void checkPutAllArgs(Map<String, ?> values) {
+        checkObjectArgumentNull(values, "values");
+
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            checkPutArgs(entry.getKey(), entry.getValue());
+        }
+    }
+
+    static void checkPreloadArgs(Map<String, Type> types) {
+        checkObjectArgumentNull(types, "types");
+
+        for (Map.Entry<String, Type> entry : types.entrySet()) {
+            checkGetArgs(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void checkStringArgumentEmpty(String value, String name) {
+        if (StringUtils.isEmpty(value)) {
+            throw new IllegalArgumentException(name + " is null or empty");
+        }
+    }
+
+    static void checkObjectArgumentNull(Object value, String name) {
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is null");
+        }
+    }
+
+    static void checkPositive(long value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.simonpercic.bucket;
+
+/**
+ * Loads the value of a key that is missing from the cache or stale, e.g. from the network.
+ * Used by {@link Bucket#getOrFetch(String, java.lang.reflect.Type, BucketLoader, FetchPolicy)}.
+ *
+ * @param <T> T of the value
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface BucketLoader<T> {
+
+    /**
+     * Loads the value of the key. Called on the thread of the caller or on the subscribeOn scheduler.
+     *
+     * @param key key
+     * @return loaded value or null if there is no value, null values are not cached
+     * @throws Exception
+     */
+    T load(String key) throws Exception;
+}
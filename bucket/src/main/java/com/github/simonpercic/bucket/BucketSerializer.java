@@ -0,0 +1,56 @@
+package com.github.simonpercic.bucket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Serializes cache values to and from their stored form.
+ * <p>
+ * Every entry records the id of the serializer that wrote it, so entries written by a previously configured
+ * serializer can still be read, as long as it is registered with the Builder.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface BucketSerializer {
+
+    /**
+     * Min serializer id.
+     */
+    int MIN_ID = 1;
+
+    /**
+     * Max serializer id.
+     */
+    int MAX_ID = 31;
+
+    /**
+     * Returns the id that is stored with every entry written by this serializer.
+     * Must be between {@link #MIN_ID} and {@link #MAX_ID} and unique among the registered serializers.
+     * Ids 1 and 2 are used by {@link GsonSerializer} and {@link BinarySerializer}.
+     *
+     * @return serializer id
+     */
+    int getId();
+
+    /**
+     * Serializes the object to the stream. Must not close the stream.
+     *
+     * @param object object
+     * @param os output stream
+     * @throws IOException
+     */
+    void serialize(Object object, OutputStream os) throws IOException;
+
+    /**
+     * Deserializes the object from the stream. Must not close the stream.
+     *
+     * @param is input stream
+     * @param typeOfT type of the object
+     * @param <T> T of the object
+     * @return deserialized object
+     * @throws IOException
+     */
+    <T> T deserialize(InputStream is, Type typeOfT) throws IOException;
+}
@@ -0,0 +1,305 @@
+package com.github.simonpercic.bucket;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of the statistics of a {@link Bucket}, obtained by calling {@link Bucket#stats()}.
+ * Counters are cumulative since the Bucket was built and are not reset by clear.
+ * The snapshot is not atomic, counters updated by concurrent operations may be off by those operations.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class BucketStats {
+
+    /**
+     * Operation of which the latency is recorded.
+     */
+    public enum Operation {
+        GET,
+        PUT,
+        CONTAINS,
+        REMOVE,
+        CLEAR
+    }
+
+    /**
+     * Variant of the operation that was called.
+     */
+    public enum Mode {
+        SYNC,
+        ASYNC,
+        RX
+    }
+
+    private final Latency[] latencies;
+
+    private final long hitCount;
+    private final long missCount;
+    private final long memoryHitCount;
+
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long serializeNanos;
+    private final long deserializeNanos;
+    private final long readIoNanos;
+    private final long writeIoNanos;
+
+    private final long evictionCount;
+    private final long evictedBytes;
+
+    private final long size;
+    private final long maxSize;
+
+    BucketStats(Latency[] latencies, long hitCount, long missCount, long memoryHitCount, long bytesRead,
+            long bytesWritten, long serializeNanos, long deserializeNanos, long readIoNanos, long writeIoNanos,
+            long evictionCount, long evictedBytes, long size, long maxSize) {
+        this.latencies = latencies;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.memoryHitCount = memoryHitCount;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.serializeNanos = serializeNanos;
+        this.deserializeNanos = deserializeNanos;
+        this.readIoNanos = readIoNanos;
+        this.writeIoNanos = writeIoNanos;
+        this.evictionCount = evictionCount;
+        this.evictedBytes = evictedBytes;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    static int latencyIndex(Operation operation, Mode mode) {
+        return operation.ordinal() * Mode.values().length + mode.ordinal();
+    }
+
+    /**
+     * Returns the latency of the operation, called as the given variant.
+     * Async and Rx latencies are measured on the subscribeOn scheduler and do not include the time spent waiting
+     * to be scheduled.
+     *
+     * @param operation operation
+     * @param mode variant of the operation
+     * @return latency
+     */
+    public Latency getLatency(Operation operation, Mode mode) {
+        return latencies[latencyIndex(operation, mode)];
+    }
+
+    /**
+     * Returns the number of reads that found a value, by get and getAll, including reads served from memory,
+     * and by the raw reads of getBytes and openStream.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of reads that did not find a value, by get and getAll, and by getBytes and openStream.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the ratio of reads that found a value.
+     *
+     * @return hit ratio between 0 and 1, or 0 if nothing was read
+     */
+    public double getHitRatio() {
+        long reads = hitCount + missCount;
+        if (reads == 0) {
+            return 0;
+        }
+
+        return (double) hitCount / reads;
+    }
+
+    /**
+     * Returns the number of reads served from the in-memory tier or from queued write-behind puts.
+     *
+     * @return memory hit count
+     */
+    public long getMemoryHitCount() {
+        return memoryHitCount;
+    }
+
+    /**
+     * Returns the number of value bytes read from disk, after compression.
+     *
+     * @return bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the number of value bytes written to disk, after compression.
+     *
+     * @return bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the time spent serializing and compressing values.
+     * Values are streamed to disk while they are serialized, so this includes writing to the file buffers.
+     *
+     * @return serialize time in nanoseconds
+     */
+    public long getSerializeNanos() {
+        return serializeNanos;
+    }
+
+    /**
+     * Returns the time spent decompressing and deserializing values, including reading the streamed value.
+     *
+     * @return deserialize time in nanoseconds
+     */
+    public long getDeserializeNanos() {
+        return deserializeNanos;
+    }
+
+    /**
+     * Returns the time spent opening and closing values to read.
+     *
+     * @return read I/O time in nanoseconds
+     */
+    public long getReadIoNanos() {
+        return readIoNanos;
+    }
+
+    /**
+     * Returns the time spent opening and committing values to write.
+     *
+     * @return write I/O time in nanoseconds
+     */
+    public long getWriteIoNanos() {
+        return writeIoNanos;
+    }
+
+    /**
+     * Returns the number of evictions, zero unless eviction tracking is enabled with
+     * {@link Bucket.Builder#withEvictionTracking(boolean)}. The log-structured storage evicts values one by one,
+     * DiskLruCache evicts in batches and an eviction counts every batch.
+     *
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of bytes evicted to stay within the max size, zero unless eviction tracking is enabled.
+     *
+     * @return evicted bytes
+     */
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * Returns the current size of the cache on disk.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the max size of the cache on disk.
+     *
+     * @return max size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Latency histogram of an operation, with power-of-two microsecond buckets.
+     */
+    public static final class Latency {
+
+        private final long[] bucketCounts;
+        private final long count;
+        private final long totalNanos;
+
+        Latency(long[] bucketCounts, long totalNanos) {
+            this.bucketCounts = bucketCounts;
+            this.totalNanos = totalNanos;
+
+            long sum = 0;
+            for (long bucketCount : bucketCounts) {
+                sum += bucketCount;
+            }
+            this.count = sum;
+        }
+
+        /**
+         * Returns the number of recorded operations.
+         *
+         * @return count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the mean latency.
+         *
+         * @return mean latency in microseconds, or 0 if nothing was recorded
+         */
+        public double getMeanMicros() {
+            if (count == 0) {
+                return 0;
+            }
+
+            return totalNanos / 1000d / count;
+        }
+
+        /**
+         * Returns the latency below which the given percentage of operations completed,
+         * rounded up to the upper bound of its bucket.
+         *
+         * @param percentile percentile, between 0 (exclusive) and 100 (inclusive)
+         * @return latency in microseconds, or 0 if nothing was recorded
+         */
+        public long getPercentileMicros(double percentile) {
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(count * percentile / 100);
+
+            long seen = 0;
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                seen += bucketCounts[bucket];
+                if (seen >= rank) {
+                    return LatencyHistogram.upperBoundMicros(bucket);
+                }
+            }
+
+            return LatencyHistogram.upperBoundMicros(bucketCounts.length - 1);
+        }
+
+        /**
+         * Returns the counts of the buckets. Bucket 0 counts latencies below 1 microsecond,
+         * bucket i counts latencies from 2^(i-1) up to 2^i microseconds, the last bucket also counts everything above.
+         *
+         * @return copy of the bucket counts
+         */
+        public long[] getBucketCounts() {
+            return Arrays.copyOf(bucketCounts, bucketCounts.length);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+
+/**
+ * A generation of the cache, a storage engine in its own directory.
+ * <p>
+ * Clearing the cache switches to a new, empty generation and retires the current one.
+ * Operations acquire the generation they use, a retired generation is deleted in the background
+ * once the last operation that acquired it released it.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class CacheGeneration {
+
+    final int id;
+    final File dir;
+    final StorageEngine engine;
+    final Chunks.Registry chunks = new Chunks.Registry();
+
+    private final AtomicInteger users = new AtomicInteger();
+    private final AtomicBoolean deleted = new AtomicBoolean();
+
+    private volatile boolean retired;
+    private volatile Scheduler deleteScheduler;
+
+    CacheGeneration(int id, @NonNull File dir, @NonNull StorageEngine engine) {
+        this.id = id;
+        this.dir = dir;
+        this.engine = engine;
+    }
+
+    /**
+     * Acquires the generation for an operation, must be followed by {@link #release()}.
+     *
+     * @return <tt>true</tt> if acquired, <tt>false</tt> if the generation was retired
+     */
+    boolean acquire() {
+        users.incrementAndGet();
+
+        if (retired) {
+            release();
+            return false;
+        }
+
+        return true;
+    }
+
+    void release() {
+        if (users.decrementAndGet() == 0 && retired) {
+            deleteAsync();
+        }
+    }
+
+    /**
+     * Retires the generation, it is deleted on the scheduler once it is released by all operations.
+     *
+     * @param scheduler scheduler to delete on
+     */
+    void retire(@NonNull Scheduler scheduler) {
+        deleteScheduler = scheduler;
+        retired = true;
+
+        if (users.get() == 0) {
+            deleteAsync();
+        }
+    }
+
+    private void deleteAsync() {
+        if (!deleted.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Scheduler.Worker worker = deleteScheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override public void call() {
+                try {
+                    engine.delete();
+
+                    if (!dir.delete() && dir.exists()) {
+                        throw new IOException(String.format("Failed to delete cache directory %s", dir));
+                    }
+                } catch (IOException | RuntimeException ignored) {
+                    // left over generations are deleted when the cache is opened
+                } finally {
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream of a cache value, returned by {@link SimpleDiskCache}.
+ * Carries the expiry time of the value, read from the entry before the value itself.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class CacheInputStream extends FilterInputStream {
+
+    /**
+     * Expiry time of values that do not expire.
+     */
+    static final long NO_EXPIRY = 0;
+
+    private final long expiresAt;
+
+    private long bytesRead;
+
+    CacheInputStream(InputStream is, long expiresAt) {
+        super(is);
+        this.expiresAt = expiresAt;
+    }
+
+    @Override public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            bytesRead++;
+        }
+        return b;
+    }
+
+    @Override public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            bytesRead += read;
+        }
+        return read;
+    }
+
+    @Override public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        bytesRead += skipped;
+        return skipped;
+    }
+
+    /**
+     * Returns the expiry time of the value, in milliseconds since epoch.
+     *
+     * @return expiry time or {@link #NO_EXPIRY}
+     */
+    long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Returns the number of value bytes read or skipped so far.
+     *
+     * @return bytes read
+     */
+    long getBytesRead() {
+        return bytesRead;
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Adapted from https://github.com/fhucho/simple-disk-cache.
+ * License Apache 2.0
+ *
+ * Output stream of a cache value, returned by a {@link StorageEngine}.
+ * Commits the value on close, unless writing failed, the stream was aborted or more than maxBytes were written.
+ */
+abstract class CacheOutputStream extends FilterOutputStream {
+
+    private final long maxBytes;
+
+    private long written = 0;
+    private boolean failed = false;
+    private boolean committed = false;
+
+    private Closeable resource;
+
+    CacheOutputStream(OutputStream os, long maxBytes) {
+        super(os);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Commits the written value, called on close.
+     *
+     * @throws IOException
+     */
+    abstract void commit() throws IOException;
+
+    /**
+     * Discards the written value, called on close if writing failed or the stream was aborted.
+     *
+     * @throws IOException
+     */
+    abstract void discard() throws IOException;
+
+    /**
+     * Sets a resource that is closed after the value is committed or discarded.
+     *
+     * @param resource resource to close
+     */
+    void releaseOnClose(@NonNull Closeable resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return bytes written
+     */
+    long getBytesWritten() {
+        return written;
+    }
+
+    /**
+     * Returns whether the value was committed, after the stream was closed.
+     *
+     * @return <tt>true</tt> if committed
+     */
+    boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Marks the stream as failed, the value is discarded instead of committed on close.
+     */
+    void abort() {
+        failed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeAndComplete();
+        } finally {
+            if (resource != null) {
+                Closeable closeable = resource;
+                resource = null;
+                closeable.close();
+            }
+        }
+    }
+
+    private void closeAndComplete() throws IOException {
+        IOException closeException = null;
+        try {
+            super.close();
+        } catch (IOException e) {
+            closeException = e;
+            failed = true;
+        }
+
+        if (failed) {
+            discard();
+        } else {
+            commit();
+            committed = true;
+        }
+
+        if (closeException != null) {
+            throw closeException;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        try {
+            super.flush();
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(int oneByte) throws IOException {
+        checkSize(1);
+
+        try {
+            out.write(oneByte);
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(@NonNull byte[] buffer) throws IOException {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void write(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        checkSize(length);
+
+        // write the whole chunk at once, FilterOutputStream would write it byte by byte
+        try {
+            out.write(buffer, offset, length);
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    private void checkSize(int length) throws IOException {
+        written += length;
+
+        if (written > maxBytes) {
+            failed = true;
+            throw new IOException("Object is larger than cache size");
+        }
+    }
+}
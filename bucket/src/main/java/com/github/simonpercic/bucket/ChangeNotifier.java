@@ -0,0 +1,125 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of per-key change listeners, notified by writers with the value they wrote.
+ * Listeners of a key are kept in a copy-on-write array, so notifying is lock-free and does not allocate.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class ChangeNotifier {
+
+    private final ConcurrentHashMap<String, Listener[]> listeners = new ConcurrentHashMap<>();
+
+    void add(@NonNull String key, @NonNull Listener listener) {
+        while (true) {
+            Listener[] current = listeners.get(key);
+
+            if (current == null) {
+                if (listeners.putIfAbsent(key, new Listener[]{listener}) == null) {
+                    return;
+                }
+            } else {
+                Listener[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = listener;
+
+                if (listeners.replace(key, current, updated)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    void remove(@NonNull String key, @NonNull Listener listener) {
+        while (true) {
+            Listener[] current = listeners.get(key);
+            if (current == null) {
+                return;
+            }
+
+            int index = indexOf(current, listener);
+            if (index < 0) {
+                return;
+            }
+
+            if (current.length == 1) {
+                if (listeners.remove(key, current)) {
+                    return;
+                }
+            } else {
+                Listener[] updated = new Listener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, updated.length - index);
+
+                if (listeners.replace(key, current, updated)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners of the key.
+     *
+     * @param key key
+     * @param value new value or null if the value was removed
+     */
+    void notifyChanged(@NonNull String key, @Nullable Object value) {
+        Listener[] current = listeners.get(key);
+        if (current == null) {
+            return;
+        }
+
+        for (Listener listener : current) {
+            listener.onChanged(value);
+        }
+    }
+
+    void notifyRemoved(@NonNull Collection<String> keys) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        for (String key : keys) {
+            notifyChanged(key, null);
+        }
+    }
+
+    void notifyCleared() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        for (Listener[] current : listeners.values()) {
+            for (Listener listener : current) {
+                listener.onChanged(null);
+            }
+        }
+    }
+
+    private static int indexOf(Listener[] array, Listener listener) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == listener) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    interface Listener {
+
+        /**
+         * Called on the writer's thread, must not block.
+         *
+         * @param value new value or null if the value was removed
+         */
+        void onChanged(@Nullable Object value);
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream of a chunked value, reads the first chunk from the entry of the key and opens the other chunks
+ * one after another as the value is read.
+ * Fails if the entry or a chunk was evicted or overwritten while the value was being read.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class ChunkedInputStream extends InputStream {
+
+    private final StorageEngine engine;
+    private final String key;
+    private final Chunks.Manifest manifest;
+
+    private Closeable resource;
+
+    // the entry of the key until its first chunk was read
+    private InputStream head;
+    private int headBytes;
+
+    private InputStream chunk;
+    private int nextChunk;
+    private long bytesRead;
+
+    /**
+     * Creates the stream.
+     *
+     * @param engine storage engine
+     * @param key internal key of the value
+     * @param head input stream of the entry of the key, not read yet
+     * @param manifest manifest of the value
+     * @param resource resource that is closed when the stream is closed
+     */
+    ChunkedInputStream(@NonNull StorageEngine engine, @NonNull String key, @NonNull InputStream head,
+            @NonNull Chunks.Manifest manifest, @NonNull Closeable resource) {
+        this.engine = engine;
+        this.key = key;
+        this.head = head;
+        this.manifest = manifest;
+        this.resource = resource;
+    }
+
+    @Override public int read() throws IOException {
+        byte[] bytes = new byte[1];
+        if (read(bytes, 0, 1) == -1) {
+            return -1;
+        }
+
+        return bytes[0] & 0xff;
+    }
+
+    @Override public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (head != null) {
+            return readHead(buffer, offset, length);
+        }
+
+        while (true) {
+            if (chunk == null) {
+                if (nextChunk == manifest.chunkCount) {
+                    checkLength();
+                    return -1;
+                }
+
+                chunk = openChunk(nextChunk);
+                nextChunk++;
+            }
+
+            int read = chunk.read(buffer, offset, length);
+            if (read != -1) {
+                bytesRead += read;
+                return read;
+            }
+
+            chunk.close();
+            chunk = null;
+        }
+    }
+
+    private int readHead(byte[] buffer, int offset, int length) throws IOException {
+        int read = head.read(buffer, offset, Math.min(length, Chunks.CHUNK_BYTES - headBytes));
+        if (read == -1) {
+            throw new IOException(String.format("Entry of key %s was truncated", key));
+        }
+
+        headBytes += read;
+        bytesRead += read;
+
+        if (headBytes == Chunks.CHUNK_BYTES) {
+            try {
+                if (Chunks.readMarkedManifest(head, key).writeId != manifest.writeId) {
+                    throw new IOException(String.format("Entry of key %s was overwritten", key));
+                }
+            } finally {
+                head.close();
+                head = null;
+            }
+        }
+
+        return read;
+    }
+
+    @Override public int available() throws IOException {
+        if (head != null) {
+            return Math.min(head.available(), Chunks.CHUNK_BYTES - headBytes);
+        }
+
+        return chunk == null ? 0 : chunk.available();
+    }
+
+    @Override public void close() throws IOException {
+        try {
+            if (head != null) {
+                head.close();
+                head = null;
+            }
+
+            if (chunk != null) {
+                chunk.close();
+                chunk = null;
+            }
+        } finally {
+            if (resource != null) {
+                Closeable closeable = resource;
+                resource = null;
+                closeable.close();
+            }
+        }
+    }
+
+    private InputStream openChunk(int index) throws IOException {
+        InputStream is = engine.get(Chunks.chunkKey(key, manifest.writeId, index));
+        if (is == null) {
+            throw new IOException(String.format("Chunk %d of key %s was evicted", index, key));
+        }
+
+        try {
+            if (Chunks.readWriteId(is) != manifest.writeId) {
+                throw new IOException(String.format("Chunk %d of key %s was overwritten", index, key));
+            }
+        } catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+
+        return is;
+    }
+
+    private void checkLength() throws IOException {
+        if (bytesRead != manifest.length) {
+            throw new IOException(String.format("Chunks of key %s hold %d bytes instead of %d",
+                    key, bytesRead, manifest.length));
+        }
+    }
+}
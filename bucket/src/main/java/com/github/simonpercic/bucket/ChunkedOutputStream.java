@@ -0,0 +1,198 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream of a value, that is split into chunks once it grows larger than {@link Chunks#CHUNK_BYTES}.
+ * <p>
+ * The value is streamed into the entry of the key, the bytes past the first chunk are streamed into chunk entries
+ * named by the id of the write, and the manifest is appended to the entry of the key after the last chunk.
+ * The entry is committed last, so readers see either the previous value or the whole new one. The chunks of the
+ * previous value are removed only after the new entry is committed, so an aborted write keeps the previous value.
+ * No bytes of the value are held in memory, besides the buffers of the entries.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class ChunkedOutputStream extends CacheOutputStream {
+
+    private final ChunkSink sink;
+
+    private ChunkedOutputStream(ChunkSink sink, long maxBytes) {
+        super(sink, maxBytes);
+        this.sink = sink;
+    }
+
+    /**
+     * Creates the stream, the entry of the key is edited once the first byte is written or the value is committed.
+     *
+     * @param engine storage engine
+     * @param registry registry of the chunked values of the engine
+     * @param key internal key
+     * @param maxBytes max size of the value in bytes
+     * @return output stream of the value
+     */
+    static ChunkedOutputStream create(@NonNull StorageEngine engine, @NonNull Chunks.Registry registry,
+            @NonNull String key, long maxBytes) {
+        return new ChunkedOutputStream(new ChunkSink(engine, registry, key), maxBytes);
+    }
+
+    @Override void commit() throws IOException {
+        sink.commit();
+    }
+
+    @Override void discard() throws IOException {
+        sink.discard();
+    }
+
+    private static final class ChunkSink extends OutputStream {
+
+        private final StorageEngine engine;
+        private final Chunks.Registry registry;
+        private final String key;
+
+        private CacheOutputStream entry;
+        private long length;
+
+        private long writeId;
+        private int chunkCount;
+
+        private CacheOutputStream chunk;
+        private int chunkBytes;
+
+        ChunkSink(StorageEngine engine, Chunks.Registry registry, String key) {
+            this.engine = engine;
+            this.registry = registry;
+            this.key = key;
+        }
+
+        @Override public void write(int oneByte) throws IOException {
+            write(new byte[]{(byte) oneByte}, 0, 1);
+        }
+
+        @Override public void write(@NonNull byte[] bytes, int offset, int count) throws IOException {
+            int off = offset;
+            int remaining = count;
+
+            while (remaining > 0) {
+                int written;
+
+                if (length < Chunks.CHUNK_BYTES) {
+                    if (entry == null) {
+                        entry = engine.edit(key);
+                    }
+
+                    written = (int) Math.min(remaining, Chunks.CHUNK_BYTES - length);
+                    entry.write(bytes, off, written);
+                } else {
+                    if (chunk == null) {
+                        openChunk();
+                    }
+
+                    written = Math.min(remaining, Chunks.CHUNK_BYTES - chunkBytes);
+                    chunk.write(bytes, off, written);
+
+                    chunkBytes += written;
+                    if (chunkBytes == Chunks.CHUNK_BYTES) {
+                        closeChunk();
+                    }
+                }
+
+                length += written;
+                off += written;
+                remaining -= written;
+            }
+        }
+
+        private void openChunk() throws IOException {
+            if (chunkCount == 0) {
+                writeId = Chunks.newWriteId();
+
+                // the chunks of the write are not orphans until it is committed or discarded
+                registry.startWrite(writeId);
+            }
+
+            chunk = engine.edit(Chunks.chunkKey(key, writeId, chunkCount));
+            chunkCount++;
+            chunkBytes = 0;
+
+            Chunks.writeWriteId(chunk, writeId);
+        }
+
+        private void closeChunk() throws IOException {
+            CacheOutputStream closing = chunk;
+            chunk = null;
+            closing.close();
+        }
+
+        void commit() throws IOException {
+            Chunks.Manifest manifest = null;
+            Chunks.Manifest previous;
+            try {
+                if (entry == null) {
+                    entry = engine.edit(key);
+                }
+
+                if (chunk != null) {
+                    closeChunk();
+                }
+
+                if (chunkCount > 0) {
+                    manifest = manifest();
+                    Chunks.writeManifest(entry, manifest);
+                }
+
+                // concurrent writes of the key swap the manifests in the order their entries are committed,
+                // so each write removes the chunks of the value it replaced
+                synchronized (registry) {
+                    CacheOutputStream committing = entry;
+                    entry = null;
+                    committing.close();
+
+                    previous = registry.swap(key, manifest);
+                }
+            } catch (IOException | RuntimeException e) {
+                discard();
+                throw e;
+            }
+
+            if (previous != null) {
+                try {
+                    Chunks.removeChunks(engine, key, previous, previous.chunkCount);
+                } catch (IOException ignored) {
+                    // the new value is committed, chunks of the previous one are removed by the sweep
+                }
+            }
+        }
+
+        void discard() throws IOException {
+            abort(chunk);
+            chunk = null;
+
+            abort(entry);
+            entry = null;
+
+            if (chunkCount > 0) {
+                // only the chunks of this write, the previous value of the key is kept
+                try {
+                    Chunks.removeChunks(engine, key, manifest(), chunkCount);
+                } finally {
+                    registry.endWrite(writeId);
+                }
+            }
+        }
+
+        private static void abort(CacheOutputStream os) throws IOException {
+            if (os != null) {
+                os.abort();
+                os.close();
+            }
+        }
+
+        private Chunks.Manifest manifest() {
+            return new Chunks.Manifest(writeId, chunkCount, length);
+        }
+    }
+}
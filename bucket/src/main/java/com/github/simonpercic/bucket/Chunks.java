@@ -0,0 +1,485 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Layout of values larger than {@link #CHUNK_BYTES}, which are split across several entries of a storage engine.
+ * <p>
+ * The entry of the key holds the first {@link #CHUNK_BYTES} of the value, followed by a manifest:
+ * the {@link #MANIFEST_MARKER}, the id of the write, the number of chunks and the length of the value.
+ * An entry with more bytes than a chunk is the head of a chunked value, so a value is streamed into its entry
+ * and only the bytes past the first chunk go to chunks. The rest of the value is in chunk i stored under the key
+ * followed by <tt>-writeId-i</tt>, with the write id in hex, so a new value of the key is written next to the chunks
+ * of the previous one, which are removed once the new entry is committed. Chunks also start with the id of the write,
+ * so a chunk that belongs to a different value is detected while reading.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class Chunks {
+
+    /**
+     * Number of value bytes in a chunk, values up to this size are stored in a single entry.
+     */
+    static final int CHUNK_BYTES = 256 * 1024;
+
+    // serialized values never start with DEL: the expiry marker and serializer ids are below it,
+    // json starts with a printable character and compressed and raw values have the high bit set
+    static final int MANIFEST_MARKER = 0x7f;
+
+    static final int WRITE_ID_BYTES = 8;
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private static final Random WRITE_IDS = new Random();
+
+    private Chunks() {
+        // no instance
+    }
+
+    static long newWriteId() {
+        return WRITE_IDS.nextLong();
+    }
+
+    /**
+     * Returns the internal key of a chunk. Keys that would exceed the key length of the storage engine are
+     * shortened, a chunk of another key stored under the same key is detected by its write id.
+     *
+     * @param key internal key of the value
+     * @param writeId id of the write of the value
+     * @param index index of the chunk
+     * @return internal key of the chunk
+     */
+    static String chunkKey(@NonNull String key, long writeId, int index) {
+        return withSuffix(key, "-" + Long.toHexString(writeId) + "-" + index);
+    }
+
+    private static String withSuffix(String key, String suffix) {
+        if (key.length() + suffix.length() > MAX_KEY_LENGTH) {
+            return key.substring(0, MAX_KEY_LENGTH - suffix.length()) + suffix;
+        }
+
+        return key + suffix;
+    }
+
+    /**
+     * Checks if the key is the key of a chunk of one of the keys.
+     *
+     * @param key internal key
+     * @param keys internal keys
+     * @return <tt>true</tt> if the key is followed by <tt>-writeId-i</tt> and the key without it is in the keys,
+     * or is the start of one of the keys if the chunk key was shortened
+     */
+    static boolean isChunkKey(@NonNull String key, @NonNull Set<String> keys) {
+        return valueKeyOf(key, keys) != null;
+    }
+
+    /**
+     * Returns the key of the value a chunk belongs to.
+     *
+     * @param key internal key of the chunk
+     * @param keys internal keys
+     * @return key of the value from the keys, or null if the key is not a chunk key of one of the keys
+     */
+    @Nullable
+    private static String valueKeyOf(String key, Set<String> keys) {
+        int separator = writeIdSeparator(key);
+        if (separator < 0) {
+            return null;
+        }
+
+        String valueKey = key.substring(0, separator);
+        if (keys.contains(valueKey)) {
+            return valueKey;
+        }
+
+        // chunk keys of long keys are shortened, see chunkKey
+        if (key.length() == MAX_KEY_LENGTH) {
+            String suffix = key.substring(separator);
+
+            for (String other : keys) {
+                if (other.length() > valueKey.length() && other.startsWith(valueKey)
+                        && withSuffix(other, suffix).equals(key)) {
+                    return other;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the index of the separator before the write id.
+     *
+     * @param key internal key
+     * @return index of the separator, or -1 if the key is not followed by <tt>-writeId-i</tt>
+     */
+    private static int writeIdSeparator(String key) {
+        int indexSeparator = key.lastIndexOf('-');
+        if (indexSeparator <= 0 || !isDigits(key, indexSeparator + 1, key.length(), 10, 10)) {
+            return -1;
+        }
+
+        int separator = key.lastIndexOf('-', indexSeparator - 1);
+        if (separator <= 0 || !isDigits(key, separator + 1, indexSeparator, 16, 16)) {
+            return -1;
+        }
+
+        return separator;
+    }
+
+    private static String writeIdOf(String chunkKey, int separator) {
+        return chunkKey.substring(separator + 1, chunkKey.lastIndexOf('-'));
+    }
+
+    private static boolean isDigits(String key, int start, int end, int radix, int maxDigits) {
+        if (start == end || end - start > maxDigits) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (Character.digit(key.charAt(i), radix) == -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static void writeWriteId(@NonNull OutputStream os, long writeId) throws IOException {
+        new DataOutputStream(os).writeLong(writeId);
+    }
+
+    static long readWriteId(@NonNull InputStream is) throws IOException {
+        return new DataInputStream(is).readLong();
+    }
+
+    static void writeManifest(@NonNull OutputStream os, @NonNull Manifest manifest) throws IOException {
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeByte(MANIFEST_MARKER);
+        dos.writeLong(manifest.writeId);
+        dos.writeInt(manifest.chunkCount);
+        dos.writeLong(manifest.length);
+        dos.flush();
+    }
+
+    /**
+     * Checks if an entry is the head of a chunked value, the stream reports the bytes of the entry as available
+     * until it is read.
+     *
+     * @param is input stream of the entry, not read yet
+     * @return <tt>true</tt> if the entry holds more bytes than a chunk
+     * @throws IOException
+     */
+    static boolean isHead(@NonNull InputStream is) throws IOException {
+        return is.available() > CHUNK_BYTES;
+    }
+
+    /**
+     * Reads the manifest that follows the first chunk of the value in its entry.
+     *
+     * @param is input stream of the entry, not read yet
+     * @param key internal key of the value
+     * @return manifest
+     * @throws IOException
+     */
+    static Manifest skipToManifest(@NonNull InputStream is, @NonNull String key) throws IOException {
+        long remaining = CHUNK_BYTES;
+        while (remaining > 0) {
+            long skipped = is.skip(remaining);
+            if (skipped <= 0) {
+                throw new IOException(String.format("Truncated entry of key %s", key));
+            }
+
+            remaining -= skipped;
+        }
+
+        return readMarkedManifest(is, key);
+    }
+
+    /**
+     * Reads the manifest, starting with its marker.
+     *
+     * @param is input stream of the entry, positioned after the first chunk of the value
+     * @param key internal key of the value
+     * @return manifest
+     * @throws IOException
+     */
+    static Manifest readMarkedManifest(@NonNull InputStream is, @NonNull String key) throws IOException {
+        if (is.read() != MANIFEST_MARKER) {
+            throw new IOException(String.format("Corrupt manifest of key %s", key));
+        }
+
+        return readManifest(is, key);
+    }
+
+    /**
+     * Reads the manifest, following the marker that was already read.
+     *
+     * @param is input stream of the entry
+     * @param key internal key of the value
+     * @return manifest
+     * @throws IOException
+     */
+    static Manifest readManifest(@NonNull InputStream is, @NonNull String key) throws IOException {
+        DataInputStream dis = new DataInputStream(is);
+
+        try {
+            long writeId = dis.readLong();
+            int chunkCount = dis.readInt();
+            long length = dis.readLong();
+
+            if (chunkCount <= 0 || length < 0) {
+                throw new IOException(String.format("Corrupt manifest of key %s", key));
+            }
+
+            return new Manifest(writeId, chunkCount, length);
+        } catch (EOFException e) {
+            throw new IOException(String.format("Truncated manifest of key %s", key), e);
+        }
+    }
+
+    /**
+     * Reads the manifest stored in the entry of the key.
+     *
+     * @param engine storage engine
+     * @param key internal key of the value
+     * @return manifest, or null if the key has no entry, the value is not chunked or the manifest is corrupt
+     * @throws IOException
+     */
+    @Nullable
+    static Manifest readStoredManifest(@NonNull StorageEngine engine, @NonNull String key) throws IOException {
+        InputStream is = engine.get(key);
+        if (is == null) {
+            return null;
+        }
+
+        try {
+            if (!isHead(is)) {
+                return null;
+            }
+
+            return skipToManifest(is, key);
+        } catch (IOException e) {
+            // the chunks of a corrupt manifest are left to be evicted
+            return null;
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Checks that all chunks of the value are stored, the engine evicts chunks one by one.
+     *
+     * @param engine storage engine
+     * @param key internal key of the value
+     * @param manifest manifest of the value
+     * @return <tt>true</tt> if all chunks are stored
+     * @throws IOException
+     */
+    static boolean containsAll(@NonNull StorageEngine engine, @NonNull String key, @NonNull Manifest manifest)
+            throws IOException {
+        for (int i = 0; i < manifest.chunkCount; i++) {
+            if (!engine.contains(chunkKey(key, manifest.writeId, i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the keys together with the keys of the chunks listed in their stored manifests.
+     *
+     * @param engine storage engine
+     * @param keys internal keys of the values
+     * @return keys and keys of their chunks
+     * @throws IOException
+     */
+    static List<String> withChunkKeys(@NonNull StorageEngine engine, @NonNull Collection<String> keys)
+            throws IOException {
+        List<String> result = new ArrayList<>(keys.size());
+
+        for (String key : keys) {
+            result.add(key);
+
+            Manifest manifest = readStoredManifest(engine, key);
+            if (manifest != null) {
+                addChunkKeys(key, manifest, manifest.chunkCount, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the first chunks of a value, keeps the entry of the key.
+     *
+     * @param engine storage engine
+     * @param key internal key of the value
+     * @param manifest manifest of the value
+     * @param count number of chunks to remove
+     * @throws IOException
+     */
+    static void removeChunks(@NonNull StorageEngine engine, @NonNull String key, @NonNull Manifest manifest,
+            int count) throws IOException {
+        List<String> chunkKeys = new ArrayList<>(count);
+        addChunkKeys(key, manifest, count, chunkKeys);
+
+        if (!chunkKeys.isEmpty()) {
+            engine.removeAll(chunkKeys);
+        }
+    }
+
+    /**
+     * Returns the keys of chunks that belong to no stored value: chunks of a value that was overwritten before its
+     * manifest was known, see {@link Registry}, and chunks of a value whose entry was evicted or removed.
+     *
+     * @param engine storage engine
+     * @param registry registry of the engine
+     * @return keys of the orphaned chunks
+     * @throws IOException
+     */
+    static List<String> orphanChunkKeys(@NonNull StorageEngine engine, @NonNull Registry registry)
+            throws IOException {
+        // a write that is not in progress now committed or discarded its chunks before the keys are listed again
+        Set<String> writing = registry.writingIds();
+
+        List<String> candidates = new ArrayList<>();
+        for (String key : engine.keys()) {
+            int separator = writeIdSeparator(key);
+            if (separator >= 0 && !writing.contains(writeIdOf(key, separator))) {
+                candidates.add(key);
+            }
+        }
+
+        List<String> orphans = new ArrayList<>();
+        if (candidates.isEmpty()) {
+            return orphans;
+        }
+
+        Set<String> keys = new HashSet<>(engine.keys());
+
+        // write id of the stored value by key, an empty id for a value that is not chunked
+        Map<String, String> storedIds = new HashMap<>();
+
+        for (String chunkKey : candidates) {
+            String valueKey = valueKeyOf(chunkKey, keys);
+            if (valueKey == null) {
+                orphans.add(chunkKey);
+                continue;
+            }
+
+            String storedId = storedIds.get(valueKey);
+            if (storedId == null) {
+                Manifest manifest = readStoredManifest(engine, valueKey);
+                storedId = manifest == null ? "" : Long.toHexString(manifest.writeId);
+                storedIds.put(valueKey, storedId);
+            }
+
+            if (!storedId.equals(writeIdOf(chunkKey, writeIdSeparator(chunkKey)))) {
+                orphans.add(chunkKey);
+            }
+        }
+
+        return orphans;
+    }
+
+    private static void addChunkKeys(String key, Manifest manifest, int count, List<String> result) {
+        for (int i = 0; i < count; i++) {
+            result.add(chunkKey(key, manifest.writeId, i));
+        }
+    }
+
+    static final class Manifest {
+
+        final long writeId;
+        final int chunkCount;
+        final long length;
+
+        Manifest(long writeId, int chunkCount, long length) {
+            this.writeId = writeId;
+            this.chunkCount = chunkCount;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Manifests of the chunked values of an engine, recorded as values are committed and read, so a write knows
+     * the chunks of the value it replaces without reading its entry. Values of previous processes are known only
+     * once they are read, the chunks of a value that is overwritten before are removed by
+     * {@link #orphanChunkKeys(StorageEngine, Registry)}. Also holds the ids of the writes that are storing chunks.
+     */
+    static final class Registry {
+
+        private final Map<String, Manifest> manifests = new HashMap<>();
+        private final Set<Long> writing = new HashSet<>();
+
+        synchronized void startWrite(long writeId) {
+            writing.add(writeId);
+        }
+
+        synchronized void endWrite(long writeId) {
+            writing.remove(writeId);
+        }
+
+        /**
+         * Records the manifest of a committed value of the key and ends its write.
+         * Must be called while holding the lock of the registry together with committing the entry,
+         * so the manifests are swapped in the order the entries were committed.
+         *
+         * @param key internal key of the value
+         * @param manifest manifest of the value, or null if the value is not chunked
+         * @return manifest of the replaced value, or null if it was not chunked or is not known
+         */
+        @Nullable
+        synchronized Manifest swap(@NonNull String key, @Nullable Manifest manifest) {
+            if (manifest == null) {
+                return manifests.remove(key);
+            }
+
+            writing.remove(manifest.writeId);
+            return manifests.put(key, manifest);
+        }
+
+        /**
+         * Records the manifest of a value that was read, unless a manifest of the key is already known.
+         *
+         * @param key internal key of the value
+         * @param manifest manifest of the value
+         */
+        synchronized void learn(@NonNull String key, @NonNull Manifest manifest) {
+            if (!manifests.containsKey(key)) {
+                manifests.put(key, manifest);
+            }
+        }
+
+        synchronized void forget(@NonNull Collection<String> keys) {
+            manifests.keySet().removeAll(keys);
+        }
+
+        private synchronized Set<String> writingIds() {
+            Set<String> ids = new HashSet<>(writing.size());
+            for (long writeId : writing) {
+                ids.add(Long.toHexString(writeId));
+            }
+
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.simonpercic.bucket;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes the header byte and the serialized value, compressing the value once it grows past the threshold.
+ * <p>
+ * Values up to the threshold are buffered and written uncompressed when finished.
+ * Once the threshold is exceeded, the header is written with the compressed flag set
+ * and the buffered and all following bytes are streamed through the compressor.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class CompressingOutputStream extends OutputStream {
+
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    private final OutputStream out;
+    private final int header;
+    private final int compressedHeader;
+    private final Compression compression;
+    private final int level;
+    private final int threshold;
+
+    private byte[] buffer;
+    private int count;
+    private OutputStream compressor;
+
+    CompressingOutputStream(OutputStream out, int header, int compressedHeader, Compression compression, int level,
+            int threshold) {
+        this.out = out;
+        this.header = header;
+        this.compressedHeader = compressedHeader;
+        this.compression = compression;
+        this.level = level;
+        this.threshold = threshold;
+        this.buffer = new byte[Math.min(threshold, INITIAL_BUFFER_SIZE)];
+    }
+
+    @Override public void write(int b) throws IOException {
+        if (compressor == null && count < threshold) {
+            ensureCapacity(count + 1);
+            buffer[count++] = (byte) b;
+            return;
+        }
+
+        startCompressing().write(b);
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException {
+        if (compressor == null && count + len <= threshold) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+            return;
+        }
+
+        startCompressing().write(b, off, len);
+    }
+
+    /**
+     * Writes out the buffered value, or finishes the compressed data. Does not close the underlying stream.
+     *
+     * @throws IOException
+     */
+    void finish() throws IOException {
+        if (compressor == null) {
+            out.write(header);
+            out.write(buffer, 0, count);
+        } else {
+            compressor.close();
+        }
+    }
+
+    private OutputStream startCompressing() throws IOException {
+        if (compressor == null) {
+            out.write(compressedHeader);
+
+            compressor = compression.compress(out, level);
+            compressor.write(buffer, 0, count);
+
+            buffer = null;
+            count = 0;
+        }
+
+        return compressor;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(threshold, Math.max(capacity, buffer.length * 2)));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.simonpercic.bucket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression codecs for values larger than the compression threshold.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public enum Compression {
+
+    /**
+     * Zlib deflate, as implemented by {@link Deflater}.
+     */
+    DEFLATE(0) {
+        @Override OutputStream compress(OutputStream os, int level) {
+            return new ReleasingDeflaterOutputStream(os, new Deflater(level));
+        }
+
+        @Override InputStream decompress(InputStream is) {
+            return new ReleasingInflaterInputStream(is, new Inflater());
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    final int id;
+
+    Compression(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Wraps the stream with a compressing stream.
+     * Closing the returned stream finishes the compressed data, but does not close the wrapped stream.
+     *
+     * @param os stream to write the compressed data to
+     * @param level compression level
+     * @return compressing stream
+     */
+    abstract OutputStream compress(OutputStream os, int level);
+
+    /**
+     * Wraps the stream with a decompressing stream.
+     * Closing the returned stream releases the decompressor, but does not close the wrapped stream.
+     *
+     * @param is stream to read the compressed data from
+     * @return decompressing stream
+     */
+    abstract InputStream decompress(InputStream is);
+
+    static Compression forId(int id) {
+        for (Compression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+
+        return null;
+    }
+
+    private static final class ReleasingDeflaterOutputStream extends DeflaterOutputStream {
+
+        private boolean closed;
+
+        ReleasingDeflaterOutputStream(OutputStream os, Deflater deflater) {
+            super(os, deflater, BUFFER_SIZE);
+        }
+
+        @Override public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            try {
+                finish();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
+    private static final class ReleasingInflaterInputStream extends InflaterInputStream {
+
+        ReleasingInflaterInputStream(InputStream is, Inflater inflater) {
+            super(is, inflater, BUFFER_SIZE);
+        }
+
+        @Override public void close() throws IOException {
+            inf.end();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+
+/**
+ * Disk cache of serialized values, keyed by the keys passed to Bucket.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+interface DiskCache {
+
+    /**
+     * Opens the cache. Operations called before the cache is opened wait until it is opened.
+     *
+     * @throws IOException
+     */
+    void open() throws IOException;
+
+    boolean isOpen();
+
+    /**
+     * Opens a stream to read the value of the key, expired values are treated as missing.
+     * The caller is responsible for closing the stream.
+     *
+     * @param key key
+     * @return input stream of the value or null if the cache does not contain the key or the value expired
+     * @throws IOException
+     */
+    @Nullable CacheInputStream getStream(@NonNull String key) throws IOException;
+
+    /**
+     * Opens a stream to write the value of the key. The value is committed when the stream is closed.
+     *
+     * @param key key
+     * @return output stream to write the value to
+     * @throws IOException
+     */
+    @NonNull CacheOutputStream openStream(@NonNull String key) throws IOException;
+
+    /**
+     * Opens a stream to write the value of the key, that expires at the given time.
+     *
+     * @param key key
+     * @param expiresAt expiry time in milliseconds since epoch or {@link CacheInputStream#NO_EXPIRY}
+     * @return output stream to write the value to
+     * @throws IOException
+     */
+    @NonNull CacheOutputStream openStream(@NonNull String key, long expiresAt) throws IOException;
+
+    /**
+     * Opens a stream to write the value of the key, that expires at the given time, with tags.
+     * The tags replace the previous tags of the key once the value is committed.
+     *
+     * @param key key
+     * @param expiresAt expiry time in milliseconds since epoch or {@link CacheInputStream#NO_EXPIRY}
+     * @param tags tags of the value
+     * @return output stream to write the value to
+     * @throws IOException
+     */
+    @NonNull CacheOutputStream openStream(@NonNull String key, long expiresAt, @NonNull List<String> tags)
+            throws IOException;
+
+    boolean contains(@NonNull String key) throws IOException;
+
+    /**
+     * Returns the expiry time of the value from the expiry index, without reading the value.
+     * Values are indexed when they are written or read, so the time is known after the value was read.
+     *
+     * @param key key
+     * @return expiry time or {@link CacheInputStream#NO_EXPIRY} if the value does not expire or is not indexed
+     * @throws IOException
+     */
+    long getExpiresAt(@NonNull String key) throws IOException;
+
+    void remove(@NonNull String key) throws IOException;
+
+    void removeAll(@NonNull Collection<String> keys) throws IOException;
+
+    /**
+     * Returns the keys of the values that did not expire, from the key index.
+     *
+     * @param prefix key prefix, an empty prefix returns all keys
+     * @return keys sorted in ascending order
+     * @throws IOException
+     */
+    @NonNull List<String> keys(@NonNull String prefix) throws IOException;
+
+    /**
+     * Returns the keys tagged with the tag, from the key index.
+     *
+     * @param tag tag
+     * @return keys sorted in ascending order
+     * @throws IOException
+     */
+    @NonNull List<String> keysWithTag(@NonNull String tag) throws IOException;
+
+    /**
+     * Returns the number of bytes currently used to store the values, zero until the cache is opened.
+     *
+     * @return size in bytes
+     */
+    long size();
+
+    long getMaxSize();
+
+    void clear() throws IOException;
+
+    /**
+     * Removes all values and deletes the cache directory, the cache can not be used afterwards.
+     *
+     * @throws IOException
+     */
+    void destroy() throws IOException;
+
+    /**
+     * Writes all values that did not expire to a pack, see {@link Pack}.
+     *
+     * @param os output stream to write the pack to, not closed
+     * @throws IOException
+     */
+    void exportTo(@NonNull OutputStream os) throws IOException;
+
+    /**
+     * Writes the values of a pack to storage as they are, replacing the values of the same keys.
+     *
+     * @param is input stream to read the pack from, not closed
+     * @throws IOException if the pack is corrupt or was exported by a cache with a different layout
+     */
+    void importFrom(@NonNull InputStream is) throws IOException;
+
+    void startExpirySweeper(@NonNull Scheduler scheduler, long interval, @NonNull TimeUnit unit);
+
+    void stopExpirySweeper();
+
+    void sweepExpired() throws IOException;
+}
@@ -0,0 +1,251 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.jakewharton.disklrucache.DiskLruCache;
+import com.jakewharton.disklrucache.DiskLruCache.Editor;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Default {@link StorageEngine}, stores every value in its own file, managed by DiskLruCache.
+ * Keeps an in-memory index of the committed keys, read from the journal when opened,
+ * so {@link #contains(String)} does not open value files.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class DiskLruCacheEngine implements StorageEngine {
+
+    private static final int VALUE_IDX = 0;
+
+    private static final String JOURNAL_FILE = "journal";
+    private static final int JOURNAL_HEADER_LINES = 5;
+    private static final String CLEAN = "CLEAN";
+    private static final String DIRTY = "DIRTY";
+    private static final String REMOVE = "REMOVE";
+
+    private final File dir;
+    private final DiskLruCache diskLruCache;
+    @Nullable private final EvictionListener evictionListener;
+
+    // updated under the lock of the DiskLruCache, read without locking
+    private final Set<String> keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private DiskLruCacheEngine(File dir, long maxSizeBytes, @Nullable EvictionListener evictionListener)
+            throws IOException {
+        this.dir = dir;
+        this.evictionListener = evictionListener;
+        this.diskLruCache = createDiskLruCache(dir, maxSizeBytes);
+
+        keys.addAll(readJournalKeys(new File(dir, JOURNAL_FILE)));
+    }
+
+    static DiskLruCacheEngine open(File dir, long maxSizeBytes) throws IOException {
+        return new DiskLruCacheEngine(dir, maxSizeBytes, null);
+    }
+
+    static DiskLruCacheEngine open(File dir, long maxSizeBytes, @Nullable EvictionListener evictionListener)
+            throws IOException {
+        return new DiskLruCacheEngine(dir, maxSizeBytes, evictionListener);
+    }
+
+    private static synchronized DiskLruCache createDiskLruCache(File cacheDir, long maxSizeBytes) throws IOException {
+        return DiskLruCache.open(cacheDir, 1, 1, maxSizeBytes);
+    }
+
+    @Nullable @Override public InputStream get(@NonNull String key) throws IOException {
+        DiskLruCache.Snapshot snapshot = diskLruCache.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+
+        return snapshot.getInputStream(VALUE_IDX);
+    }
+
+    @NonNull @Override public CacheOutputStream edit(@NonNull String key) throws IOException {
+        Editor editor = diskLruCache.edit(key);
+        if (editor == null) {
+            throw new IOException(String.format("Key %s is being edited concurrently", key));
+        }
+
+        try {
+            BufferedOutputStream bos = new BufferedOutputStream(editor.newOutputStream(VALUE_IDX));
+            return new IndexingOutputStream(bos, editor, diskLruCache, key);
+        } catch (IOException e) {
+            editor.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Answers from the key index. Keys that are not indexed are not in the cache.
+     * DiskLruCache evicts in the background without telling, so an indexed key is confirmed by checking that
+     * its value file exists, which does not open the file. Evicted keys are dropped from the index.
+     */
+    @Override public boolean contains(@NonNull String key) throws IOException {
+        if (!keys.contains(key)) {
+            return false;
+        }
+
+        if (valueFile(key).exists()) {
+            return true;
+        }
+
+        synchronized (diskLruCache) {
+            // check again under the lock, the key could have been written again in the meantime
+            if (!valueFile(key).exists()) {
+                keys.remove(key);
+            }
+        }
+
+        return false;
+    }
+
+    @NonNull @Override public Collection<String> keys() {
+        return new ArrayList<>(keys);
+    }
+
+    @Override public void remove(@NonNull String key) throws IOException {
+        synchronized (diskLruCache) {
+            diskLruCache.remove(key);
+            keys.remove(key);
+        }
+    }
+
+    @Override public void removeAll(@NonNull Collection<String> keys) throws IOException {
+        // DiskLruCache synchronizes every operation on itself, take the lock once for the whole batch
+        synchronized (diskLruCache) {
+            for (String key : keys) {
+                diskLruCache.remove(key);
+                this.keys.remove(key);
+            }
+        }
+    }
+
+    @Override public long size() {
+        return diskLruCache.size();
+    }
+
+    @Override public long getMaxSize() {
+        return diskLruCache.getMaxSize();
+    }
+
+    @Override public void delete() throws IOException {
+        diskLruCache.delete();
+        keys.clear();
+    }
+
+    private File valueFile(String key) {
+        return new File(dir, key + "." + VALUE_IDX);
+    }
+
+    /**
+     * Reads the keys of committed values from the journal of DiskLruCache: keys whose last
+     * CLEAN, DIRTY or REMOVE record is CLEAN. DiskLruCache discards values that were still being edited.
+     * An incomplete last line is ignored, as DiskLruCache does.
+     *
+     * @param journal journal file
+     * @return committed keys
+     * @throws IOException
+     */
+    static Set<String> readJournalKeys(File journal) throws IOException {
+        Set<String> clean = new HashSet<>();
+
+        Reader reader;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), SimpleDiskCache.ENCODING));
+        } catch (FileNotFoundException e) {
+            return clean;
+        }
+
+        try {
+            StringBuilder line = new StringBuilder();
+            int lineNumber = 0;
+
+            int c = reader.read();
+            while (c != -1) {
+                if (c == '\n') {
+                    if (lineNumber >= JOURNAL_HEADER_LINES) {
+                        readJournalLine(line.toString(), clean);
+                    }
+
+                    lineNumber++;
+                    line.setLength(0);
+                } else {
+                    line.append((char) c);
+                }
+
+                c = reader.read();
+            }
+        } finally {
+            reader.close();
+        }
+
+        return clean;
+    }
+
+    private static void readJournalLine(String line, Set<String> clean) {
+        int firstSpace = line.indexOf(' ');
+        if (firstSpace < 0) {
+            return;
+        }
+
+        int secondSpace = line.indexOf(' ', firstSpace + 1);
+        String op = line.substring(0, firstSpace);
+        String key = line.substring(firstSpace + 1, secondSpace < 0 ? line.length() : secondSpace);
+
+        if (CLEAN.equals(op)) {
+            clean.add(key);
+        } else if (DIRTY.equals(op) || REMOVE.equals(op)) {
+            clean.remove(key);
+        }
+    }
+
+    /**
+     * Adds the key to the index after its value is committed. If eviction tracking is enabled, trims the cache
+     * synchronously right after a commit that exceeded the max size, under the lock of the cache,
+     * so the size drop is known to be the eviction of that commit. DiskLruCache would otherwise evict
+     * on a background thread and does not report evictions.
+     */
+    private final class IndexingOutputStream extends DiskLruCacheOutputStream {
+
+        private final DiskLruCache cache;
+        private final String key;
+
+        IndexingOutputStream(OutputStream os, Editor editor, DiskLruCache cache, String key) {
+            super(os, editor, cache.getMaxSize());
+            this.cache = cache;
+            this.key = key;
+        }
+
+        @Override void commit() throws IOException {
+            synchronized (cache) {
+                super.commit();
+                keys.add(key);
+
+                long size = cache.size();
+                if (evictionListener != null && size > cache.getMaxSize()) {
+                    // flush trims to the max size before flushing the journal
+                    cache.flush();
+                    evictionListener.onEvicted(size - cache.size());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.simonpercic.bucket;
+
+/**
+ * Notified when a {@link StorageEngine} evicts values to stay within its max size.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+interface EvictionListener {
+
+    /**
+     * Called after an eviction, while holding the lock of the storage engine, must not block.
+     *
+     * @param bytes number of evicted bytes
+     */
+    void onEvicted(long bytes);
+}
@@ -0,0 +1,241 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the expiry times of cache entries that were written with a time-to-live.
+ * Answers whether an entry is expired without reading it from disk and lists the entries due for sweeping.
+ * <p>
+ * The index is kept in memory and saved to a file by the expiry sweeper, so entries written by a previous process
+ * are swept as well. It is a hint only, the expiry time stored with the value is authoritative: an expiry time
+ * loaded from the file is not confirmed until the entry is written or read, the entry may have been overwritten or
+ * removed after the file was saved. Overwriting or removing a saved entry marks the file as stale.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class ExpiryIndex {
+
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Map<String, Long> expiryTimes = new HashMap<>();
+
+    // keys in the saved file, and the loaded keys whose expiry time was not confirmed yet
+    private final Set<String> savedKeys = new HashSet<>();
+    private final Set<String> unconfirmed = new HashSet<>();
+
+    private boolean dirty;
+    private boolean stale;
+
+    ExpiryIndex(@NonNull File file) {
+        this.file = file;
+    }
+
+    synchronized void put(@NonNull String key, long expiresAt) {
+        if (expiresAt == CacheInputStream.NO_EXPIRY) {
+            remove(key);
+        } else {
+            unconfirmed.remove(key);
+
+            Long previous = expiryTimes.put(key, expiresAt);
+            if (previous == null || previous != expiresAt) {
+                dirty = true;
+                stale |= savedKeys.contains(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the expiry time of the entry.
+     *
+     * @param key key
+     * @return expiry time or {@link CacheInputStream#NO_EXPIRY} if the entry does not expire or is not indexed
+     */
+    synchronized long get(@NonNull String key) {
+        Long expiresAt = expiryTimes.get(key);
+        if (expiresAt == null) {
+            return CacheInputStream.NO_EXPIRY;
+        }
+
+        return expiresAt;
+    }
+
+    /**
+     * Checks if the entry is known to be expired, expiry times loaded from the file are not confirmed.
+     *
+     * @param key key
+     * @param now current time in milliseconds
+     * @return <tt>true</tt> if the entry expired
+     * @see #mayBeExpired(String, long)
+     */
+    synchronized boolean isExpired(@NonNull String key, long now) {
+        return mayBeExpired(key, now) && !unconfirmed.contains(key);
+    }
+
+    /**
+     * Checks if the entry expired, including expiry times loaded from the file that were not confirmed yet.
+     *
+     * @param key key
+     * @param now current time in milliseconds
+     * @return <tt>true</tt> if the entry expired or a loaded expiry time says so
+     */
+    synchronized boolean mayBeExpired(@NonNull String key, long now) {
+        Long expiresAt = expiryTimes.get(key);
+        return expiresAt != null && expiresAt <= now;
+    }
+
+    /**
+     * Checks if a saved entry was overwritten or removed since the file was saved.
+     *
+     * @return <tt>true</tt> if the file is stale
+     */
+    synchronized boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Returns the keys of all entries that expired before or at the given time.
+     *
+     * @param now current time in milliseconds
+     * @return keys of expired entries
+     */
+    @NonNull synchronized List<String> expiredKeys(long now) {
+        List<String> keys = new ArrayList<>();
+
+        for (Map.Entry<String, Long> entry : expiryTimes.entrySet()) {
+            if (entry.getValue() <= now) {
+                keys.add(entry.getKey());
+            }
+        }
+
+        return keys;
+    }
+
+    synchronized void remove(@NonNull String key) {
+        unconfirmed.remove(key);
+
+        if (expiryTimes.remove(key) != null) {
+            dirty = true;
+            stale |= savedKeys.contains(key);
+        }
+    }
+
+    synchronized void removeAll(@NonNull Collection<String> keys) {
+        for (String key : keys) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Clears the index and deletes the saved file.
+     *
+     * @throws IOException
+     */
+    synchronized void clear() throws IOException {
+        expiryTimes.clear();
+        savedKeys.clear();
+        unconfirmed.clear();
+        dirty = false;
+        stale = false;
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException(String.format("Failed to delete expiry index %s", file));
+        }
+    }
+
+    /**
+     * Loads the index saved by {@link #save()}, a missing or unreadable file leaves the index empty.
+     */
+    synchronized void load() {
+        DataInputStream dis;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return;
+        }
+
+        try {
+            if (dis.readInt() != VERSION) {
+                return;
+            }
+
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = dis.readUTF();
+                expiryTimes.put(key, dis.readLong());
+                savedKeys.add(key);
+                unconfirmed.add(key);
+            }
+        } catch (IOException e) {
+            expiryTimes.clear();
+            savedKeys.clear();
+            unconfirmed.clear();
+        } finally {
+            closeQuietly(dis);
+        }
+    }
+
+    /**
+     * Saves the index if it changed since it was last loaded or saved.
+     *
+     * @throws IOException
+     */
+    synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            dos.writeInt(VERSION);
+            dos.writeInt(expiryTimes.size());
+
+            for (Map.Entry<String, Long> entry : expiryTimes.entrySet()) {
+                dos.writeUTF(entry.getKey());
+                dos.writeLong(entry.getValue());
+            }
+        } finally {
+            dos.close();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException(String.format("Failed to save expiry index %s", file));
+        }
+
+        savedKeys.clear();
+        savedKeys.addAll(expiryTimes.keySet());
+        dirty = false;
+        stale = false;
+    }
+
+    // region private helpers
+
+    private static void closeQuietly(DataInputStream dis) {
+        try {
+            dis.close();
+        } catch (IOException ignored) {
+            // reading already finished
+        }
+    }
+
+    // endregion private helpers
+}
@@ -0,0 +1,85 @@
+package com.github.simonpercic.bucket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long values fetched by {@link Bucket#getOrFetch(String, java.lang.reflect.Type, BucketLoader,
+ * FetchPolicy)} are fresh, and how long they are served stale while they are refreshed in the background.
+ * <p>
+ * Fetched values are cached with a time-to-live of max age plus the stale period. A fresh value is returned
+ * from the cache. A stale value is returned from the cache right away and refreshed in the background.
+ * Once the stale period is over, the value is expired and the caller waits for the loader.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class FetchPolicy {
+
+    final long maxAgeMillis;
+    final long staleMillis;
+
+    private FetchPolicy(long maxAgeMillis, long staleMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.staleMillis = staleMillis;
+    }
+
+    /**
+     * Returns a policy that keeps fetched values fresh for the max age, and never serves stale values.
+     *
+     * @param maxAge time a fetched value is fresh
+     * @param unit time unit of the max age
+     * @return FetchPolicy
+     */
+    public static FetchPolicy maxAge(long maxAge, TimeUnit unit) {
+        checkPositive(maxAge, "maxAge");
+        checkUnit(unit);
+
+        return new FetchPolicy(unit.toMillis(maxAge), 0);
+    }
+
+    /**
+     * Returns a copy of this policy that serves values for the stale period after their max age,
+     * while they are refreshed in the background.
+     *
+     * @param stale time a value is served stale after its max age
+     * @param unit time unit of the stale period
+     * @return FetchPolicy
+     */
+    public FetchPolicy staleWhileRevalidate(long stale, TimeUnit unit) {
+        checkPositive(stale, "stale");
+        checkUnit(unit);
+
+        return new FetchPolicy(maxAgeMillis, unit.toMillis(stale));
+    }
+
+    long ttlMillis() {
+        if (staleMillis > Long.MAX_VALUE - maxAgeMillis) {
+            return Long.MAX_VALUE;
+        }
+
+        return maxAgeMillis + staleMillis;
+    }
+
+    /**
+     * Returns whether a cached value that expires at the given time is fresh.
+     * Values that do not expire were not written by a fetch, their age is unknown and they are stale.
+     *
+     * @param expiresAt expiry time of the cached value or {@link CacheInputStream#NO_EXPIRY}
+     * @param now current time in milliseconds
+     * @return <tt>true</tt> if the value is fresh, <tt>false</tt> if it is stale
+     */
+    boolean isFresh(long expiresAt, long now) {
+        return expiresAt != CacheInputStream.NO_EXPIRY && now < expiresAt - staleMillis;
+    }
+
+    private static void checkPositive(long value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+    }
+
+    private static void checkUnit(TimeUnit unit) {
+        if (unit == null) {
+            throw new IllegalArgumentException("unit is null");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+
+/**
+ * Gets values for getOrFetch: a missing value is loaded and put, a stale value is returned and refreshed
+ * in the background, see {@link FetchPolicy}. Concurrent fetches of the same key share one loader call.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class Fetcher {
+
+    private final ValueStore store;
+    private final Scheduler scheduler;
+
+    private final SingleFlight fetches = new SingleFlight();
+    private final Set<String> refreshing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    Fetcher(ValueStore store, Scheduler scheduler) {
+        this.store = store;
+        this.scheduler = scheduler;
+    }
+
+    @Nullable
+    <T> T fetch(String key, Type typeOfT, BucketLoader<T> loader, FetchPolicy policy) throws IOException {
+        T value = store.read(key, typeOfT);
+        if (value == null) {
+            return load(key, typeOfT, loader, policy);
+        }
+
+        // the expiry time is indexed by the read, a concurrent put can at most cause an extra or a late refresh
+        if (policy.isFresh(store.getExpiresAt(key), System.currentTimeMillis())) {
+            return value;
+        }
+
+        if (policy.staleMillis == 0) {
+            return load(key, typeOfT, loader, policy);
+        }
+
+        refresh(key, typeOfT, loader, policy);
+        return value;
+    }
+
+    @Nullable
+    private <T> T load(final String key, Type typeOfT, final BucketLoader<T> loader, final FetchPolicy policy)
+            throws IOException {
+        // concurrent fetches of the same key and type share one loader call and its result
+        return fetches.load(key, typeOfT, new SingleFlight.Loader<T>() {
+            @Override public T load() throws IOException {
+                T value;
+                try {
+                    value = loader.load(key);
+                } catch (IOException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(String.format("Failed to fetch %s", key), e);
+                }
+
+                if (value != null) {
+                    long expiresAt = ValueStore.expiresAt(policy.ttlMillis(), TimeUnit.MILLISECONDS);
+                    store.putValue(key, value, expiresAt, ValueStore.NO_TAGS);
+                }
+
+                return value;
+            }
+        });
+    }
+
+    private <T> void refresh(final String key, final Type typeOfT, final BucketLoader<T> loader,
+            final FetchPolicy policy) {
+        // stale hits during a refresh do not start another one
+        if (!refreshing.add(key)) {
+            return;
+        }
+
+        final Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override public void call() {
+                try {
+                    load(key, typeOfT, loader, policy);
+                } catch (IOException | RuntimeException ignored) {
+                    // the stale value is served until the next fetch
+                } finally {
+                    refreshing.remove(key);
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.simonpercic.bucket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+
+/**
+ * Default {@link BucketSerializer}, stores values as json, streamed through Gson.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class GsonSerializer implements BucketSerializer {
+
+    /**
+     * Id of the Gson serializer.
+     */
+    public static final int ID = 1;
+
+    private final Gson gson;
+
+    public GsonSerializer(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override public int getId() {
+        return ID;
+    }
+
+    @Override public void serialize(Object object, OutputStream os) throws IOException {
+        try {
+            JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(os, SimpleDiskCache.ENCODING));
+            gson.toJson(object, object.getClass(), writer);
+            writer.flush();
+        } catch (JsonIOException e) {
+            throw unwrapIOException(e);
+        }
+    }
+
+    @Override public <T> T deserialize(InputStream is, Type typeOfT) throws IOException {
+        try {
+            return gson.fromJson(new InputStreamReader(is, SimpleDiskCache.ENCODING), typeOfT);
+        } catch (JsonIOException e) {
+            throw unwrapIOException(e);
+        }
+    }
+
+    Gson getGson() {
+        return gson;
+    }
+
+    private static IOException unwrapIOException(JsonIOException e) {
+        if (e.getCause() instanceof IOException) {
+            return (IOException) e.getCause();
+        }
+
+        return new IOException(e);
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.simonpercic.bucket;
+
+/**
+ * Maps cache keys to the internal keys used as file names by the disk cache.
+ * Called for every get, put, contains and remove, so it should be fast.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface KeyHasher {
+
+    /**
+     * Returns the internal key for the cache key.
+     * Must always return the same value for the same key and must match the pattern <tt>[a-z0-9_-]{1,64}</tt>.
+     *
+     * @param key cache key
+     * @return internal key
+     */
+    String hash(String key);
+}
@@ -0,0 +1,509 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Index of the original keys of the cache entries, which are stored under hashed internal keys.
+ * Maps every original key to its internal key, the size of its value, the time it was last accessed and its tags,
+ * and every tag to the keys tagged with it.
+ * <p>
+ * The index is kept in memory, sorted by key for prefix scans, and persisted to an append-only journal that gets
+ * a record on every put and remove. Access times are only written when the journal is compacted.
+ * The index may list values that were evicted since, callers check the storage engine and drop them.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class KeyIndex {
+
+    private static final int VERSION = 2;
+
+    // journals of version 1 hold the strings in modified UTF-8, which is limited to 65535 bytes
+    private static final int UTF_VERSION = 1;
+
+    private static final int PUT_RECORD = 1;
+    private static final int REMOVE_RECORD = 2;
+    private static final int TAGGED_PUT_RECORD = 3;
+
+    // the journal is compacted once it holds this many more records than entries
+    private static final int COMPACT_THRESHOLD = 2000;
+
+    private final File file;
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+    private final Map<String, String> originalKeys = new HashMap<>();
+    private final Map<String, Set<String>> taggedKeys = new HashMap<>();
+
+    private DataOutputStream journal;
+    private int records;
+
+    // the journal ends with a partial record or is unreadable, it is rewritten before the next record is appended
+    private boolean broken;
+
+    KeyIndex(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Entry of the index.
+     */
+    static final class Entry {
+
+        final String key;
+        final String internalKey;
+        final long size;
+        final List<String> tags;
+
+        // guarded by the index
+        long lastAccess;
+
+        Entry(@NonNull String key, @NonNull String internalKey, long size, long lastAccess,
+                @NonNull List<String> tags) {
+            this.key = key;
+            this.internalKey = internalKey;
+            this.size = size;
+            this.lastAccess = lastAccess;
+            this.tags = tags;
+        }
+    }
+
+    /**
+     * Indexes the key after its value was written.
+     *
+     * @param key original key
+     * @param internalKey internal key
+     * @param size size of the value in bytes
+     * @param now current time in milliseconds
+     * @throws IOException
+     */
+    synchronized void put(@NonNull String key, @NonNull String internalKey, long size, long now) throws IOException {
+        put(key, internalKey, size, now, Collections.<String>emptyList());
+    }
+
+    /**
+     * Indexes the key and its tags after its value was written, replacing the previous tags of the key.
+     *
+     * @param key original key
+     * @param internalKey internal key
+     * @param size size of the value in bytes
+     * @param now current time in milliseconds
+     * @param tags tags of the value
+     * @throws IOException
+     */
+    synchronized void put(@NonNull String key, @NonNull String internalKey, long size, long now,
+            @NonNull List<String> tags) throws IOException {
+        Entry entry = new Entry(key, internalKey, size, now, tags);
+        putEntry(entry);
+
+        try {
+            DataOutputStream dos = journal();
+            writePut(dos, entry);
+            dos.flush();
+        } catch (IOException e) {
+            breakJournal();
+            throw e;
+        }
+
+        recordWritten(1);
+    }
+
+    /**
+     * Updates the access time of the key in memory.
+     *
+     * @param key original key
+     * @param now current time in milliseconds
+     */
+    synchronized void touch(@NonNull String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.lastAccess = now;
+        }
+    }
+
+    @Nullable synchronized Entry get(@NonNull String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns the original key of an internal key.
+     *
+     * @param internalKey internal key
+     * @return original key or null if the internal key is not indexed
+     */
+    @Nullable synchronized String originalKey(@NonNull String internalKey) {
+        return originalKeys.get(internalKey);
+    }
+
+    /**
+     * Returns the keys tagged with the tag.
+     *
+     * @param tag tag
+     * @return keys sorted in ascending order
+     */
+    @NonNull synchronized List<String> keysWithTag(@NonNull String tag) {
+        Set<String> keys = taggedKeys.get(tag);
+        if (keys == null) {
+            return new ArrayList<>();
+        }
+
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Returns the entries whose keys start with the prefix, sorted by key.
+     *
+     * @param prefix key prefix, an empty prefix returns all entries
+     * @return entries
+     */
+    @NonNull synchronized List<Entry> entries(@NonNull String prefix) {
+        List<Entry> result = new ArrayList<>();
+
+        for (Entry entry : entries.tailMap(prefix, true).values()) {
+            if (!entry.key.startsWith(prefix)) {
+                break;
+            }
+
+            result.add(entry);
+        }
+
+        return result;
+    }
+
+    synchronized void remove(@NonNull String key) throws IOException {
+        removeAll(Collections.singletonList(key));
+    }
+
+    /**
+     * Removes the keys with one journal flush.
+     *
+     * @param keys original keys
+     * @throws IOException
+     */
+    synchronized void removeAll(@NonNull Collection<String> keys) throws IOException {
+        List<String> removed = new ArrayList<>();
+
+        for (String key : keys) {
+            if (removeEntry(key)) {
+                removed.add(key);
+            }
+        }
+
+        if (removed.isEmpty()) {
+            return;
+        }
+
+        try {
+            DataOutputStream dos = journal();
+            for (String key : removed) {
+                dos.writeByte(REMOVE_RECORD);
+                Streams.writeString(dos, key);
+            }
+            dos.flush();
+        } catch (IOException e) {
+            breakJournal();
+            throw e;
+        }
+
+        recordWritten(removed.size());
+    }
+
+    /**
+     * Removes entries found to be stale, unless their keys were indexed again since they were listed.
+     *
+     * @param stale entries returned by {@link #entries(String)}
+     * @throws IOException
+     */
+    synchronized void removeStale(@NonNull Collection<Entry> stale) throws IOException {
+        List<String> keys = new ArrayList<>(stale.size());
+        for (Entry entry : stale) {
+            if (entries.get(entry.key) == entry) {
+                keys.add(entry.key);
+            }
+        }
+
+        removeAll(keys);
+    }
+
+    /**
+     * Removes the keys of the internal keys, for values removed without their original key.
+     *
+     * @param internalKeys internal keys
+     * @throws IOException
+     */
+    synchronized void removeInternal(@NonNull Collection<String> internalKeys) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (String internalKey : internalKeys) {
+            String key = originalKeys.get(internalKey);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+
+        removeAll(keys);
+    }
+
+    /**
+     * Clears the index and deletes the journal.
+     *
+     * @throws IOException
+     */
+    synchronized void clear() throws IOException {
+        entries.clear();
+        originalKeys.clear();
+        taggedKeys.clear();
+        records = 0;
+        broken = false;
+
+        close();
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException(String.format("Failed to delete key index %s", file));
+        }
+    }
+
+    /**
+     * Loads the journal. A missing or unreadable journal leaves the index empty, a journal with a truncated
+     * last record, written by a process that died while writing it, keeps the records before it.
+     */
+    synchronized void load() {
+        DataInputStream dis;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return;
+        }
+
+        try {
+            int version = dis.readInt();
+            if (version != VERSION && version != UTF_VERSION) {
+                broken = true;
+                return;
+            }
+
+            while (true) {
+                int type = dis.read();
+                if (type == -1) {
+                    break;
+                }
+
+                if (type == PUT_RECORD || type == TAGGED_PUT_RECORD) {
+                    putEntry(readPut(dis, version, type == TAGGED_PUT_RECORD));
+                } else if (type == REMOVE_RECORD) {
+                    removeEntry(readString(dis, version));
+                } else {
+                    throw new IOException(String.format("Corrupt key index, unexpected record %d", type));
+                }
+
+                records++;
+            }
+
+            // records of the current version can not be appended to a journal of the previous one
+            if (version != VERSION) {
+                broken = true;
+            }
+        } catch (EOFException e) {
+            broken = true;
+        } catch (IOException e) {
+            entries.clear();
+            originalKeys.clear();
+            taggedKeys.clear();
+            records = 0;
+            broken = true;
+        } finally {
+            closeQuietly(dis);
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (journal != null) {
+            DataOutputStream dos = journal;
+            journal = null;
+            dos.close();
+        }
+    }
+
+    // region private helpers
+
+    private void putEntry(Entry entry) {
+        Entry previous = entries.put(entry.key, entry);
+        if (previous != null) {
+            originalKeys.remove(previous.internalKey);
+            untag(previous);
+        }
+
+        originalKeys.put(entry.internalKey, entry.key);
+
+        for (String tag : entry.tags) {
+            Set<String> keys = taggedKeys.get(tag);
+            if (keys == null) {
+                keys = new TreeSet<>();
+                taggedKeys.put(tag, keys);
+            }
+
+            keys.add(entry.key);
+        }
+    }
+
+    private boolean removeEntry(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+
+        originalKeys.remove(entry.internalKey);
+        untag(entry);
+        return true;
+    }
+
+    private void untag(Entry entry) {
+        for (String tag : entry.tags) {
+            Set<String> keys = taggedKeys.get(tag);
+            if (keys != null) {
+                keys.remove(entry.key);
+
+                if (keys.isEmpty()) {
+                    taggedKeys.remove(tag);
+                }
+            }
+        }
+    }
+
+    private DataOutputStream journal() throws IOException {
+        // appending after a partial record would corrupt the journal
+        if (broken) {
+            compact();
+        }
+
+        if (journal == null) {
+            boolean exists = file.exists();
+
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            if (!exists) {
+                journal.writeInt(VERSION);
+            }
+        }
+
+        return journal;
+    }
+
+    private void breakJournal() {
+        broken = true;
+
+        try {
+            close();
+        } catch (IOException ignored) {
+            // the journal is rewritten before the next record
+        }
+    }
+
+    private void recordWritten(int count) throws IOException {
+        records += count;
+
+        if (records - entries.size() > COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the journal with a put record per entry, including the access times.
+     *
+     * @throws IOException
+     */
+    private void compact() throws IOException {
+        close();
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            dos.writeInt(VERSION);
+
+            for (Entry entry : entries.values()) {
+                writePut(dos, entry);
+            }
+        } finally {
+            dos.close();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException(String.format("Failed to compact key index %s", file));
+        }
+
+        records = entries.size();
+        broken = false;
+    }
+
+    private static void writePut(DataOutputStream dos, Entry entry) throws IOException {
+        dos.writeByte(entry.tags.isEmpty() ? PUT_RECORD : TAGGED_PUT_RECORD);
+        Streams.writeString(dos, entry.key);
+        Streams.writeString(dos, entry.internalKey);
+        dos.writeLong(entry.size);
+        dos.writeLong(entry.lastAccess);
+
+        if (!entry.tags.isEmpty()) {
+            dos.writeInt(entry.tags.size());
+            for (String tag : entry.tags) {
+                Streams.writeString(dos, tag);
+            }
+        }
+    }
+
+    private static Entry readPut(DataInputStream dis, int version, boolean tagged) throws IOException {
+        String key = readString(dis, version);
+        String internalKey = readString(dis, version);
+        long size = dis.readLong();
+        long lastAccess = dis.readLong();
+
+        List<String> tags = Collections.emptyList();
+        if (tagged) {
+            int count = dis.readInt();
+            if (count < 0) {
+                throw new IOException(String.format("Corrupt key index, %d tags", count));
+            }
+
+            tags = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tags.add(readString(dis, version));
+            }
+        }
+
+        return new Entry(key, internalKey, size, lastAccess, tags);
+    }
+
+    private static String readString(DataInputStream dis, int version) throws IOException {
+        if (version == UTF_VERSION) {
+            return dis.readUTF();
+        }
+
+        return Streams.readString(dis);
+    }
+
+    private static void closeQuietly(DataInputStream dis) {
+        try {
+            dis.close();
+        } catch (IOException ignored) {
+            // reading already finished
+        }
+    }
+
+    // endregion private helpers
+}
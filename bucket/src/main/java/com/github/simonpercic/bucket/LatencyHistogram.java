@@ -0,0 +1,55 @@
+package com.github.simonpercic.bucket;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with fixed, power-of-two microsecond buckets.
+ * Bucket 0 counts latencies below 1 microsecond, bucket i counts latencies from 2^(i-1) up to 2^i microseconds.
+ * The last bucket also counts everything above its upper bound. Recording takes no locks and does not allocate.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class LatencyHistogram {
+
+    // the last bucket starts at ~67 seconds
+    static final int BUCKETS = 28;
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    // every stripe has its own row of buckets
+    private final AtomicLongArray counts = new AtomicLongArray(StripedCounter.STRIPES * BUCKETS);
+    private final StripedCounter totalNanos = new StripedCounter();
+
+    void record(long nanos) {
+        counts.getAndIncrement(StripedCounter.stripe() * BUCKETS + bucketOf(nanos));
+        totalNanos.add(nanos);
+    }
+
+    BucketStats.Latency snapshot() {
+        long[] bucketCounts = new long[BUCKETS];
+
+        for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                bucketCounts[bucket] += counts.get(stripe * BUCKETS + bucket);
+            }
+        }
+
+        return new BucketStats.Latency(bucketCounts, totalNanos.sum());
+    }
+
+    static int bucketOf(long nanos) {
+        long micros = Math.max(nanos, 0) / NANOS_PER_MICRO;
+        int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * Returns the exclusive upper bound of the bucket.
+     *
+     * @param bucket bucket index
+     * @return upper bound in microseconds
+     */
+    static long upperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+}
@@ -0,0 +1,521 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+
+/**
+ * {@link StorageEngine} that appends values to memory-mapped segment files and keeps an in-memory index
+ * from key to the location of its latest record.
+ * <p>
+ * A record consists of the key length, the value length (-1 for a removal), a CRC32 of key and value,
+ * followed by the key and the value. The index is rebuilt by replaying the segments in order when opened.
+ * Reads are slices of the mapped segments, without opening any files.
+ * <p>
+ * Size accounting and LRU eviction match {@link DiskLruCacheEngine}: the size is the sum of live value lengths
+ * and the least recently used values are evicted once it exceeds the max size.
+ * Space of overwritten and removed records is reclaimed in the background, by moving the live records of the
+ * oldest segment to the end of the log and deleting the segment.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class LogStructuredEngine implements StorageEngine {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int HEADER_BYTES = 12;
+    private static final int MAX_KEY_BYTES = 256;
+    private static final int TOMBSTONE = -1;
+
+    private static final long MIN_SEGMENT_BYTES = 64 * 1024;
+    private static final long MAX_SEGMENT_BYTES = 8 * 1024 * 1024;
+    private static final int SEGMENTS_PER_CACHE = 8;
+
+    private final File dir;
+    private final long maxSizeBytes;
+    private final int segmentBytes;
+    private final Scheduler.Worker worker;
+    @Nullable private final EvictionListener evictionListener;
+
+    private final LinkedHashMap<String, Record> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    private Segment active;
+
+    // sum of live value lengths
+    private long size;
+
+    // bytes of all records and of live records in the segments
+    private long usedBytes;
+    private long liveBytes;
+
+    private boolean compactionScheduled;
+
+    private LogStructuredEngine(File dir, long maxSizeBytes, Scheduler scheduler,
+            @Nullable EvictionListener evictionListener) {
+        this.dir = dir;
+        this.maxSizeBytes = maxSizeBytes;
+        this.segmentBytes = (int) Math.max(MIN_SEGMENT_BYTES,
+                Math.min(MAX_SEGMENT_BYTES, maxSizeBytes / SEGMENTS_PER_CACHE));
+        this.worker = scheduler.createWorker();
+        this.evictionListener = evictionListener;
+    }
+
+    static LogStructuredEngine open(File dir, long maxSizeBytes, Scheduler scheduler) throws IOException {
+        return open(dir, maxSizeBytes, scheduler, null);
+    }
+
+    static LogStructuredEngine open(File dir, long maxSizeBytes, Scheduler scheduler,
+            @Nullable EvictionListener evictionListener) throws IOException {
+        LogStructuredEngine engine = new LogStructuredEngine(dir, maxSizeBytes, scheduler, evictionListener);
+        engine.replay();
+        return engine;
+    }
+
+    @Nullable @Override public synchronized InputStream get(@NonNull String key) {
+        Record record = index.get(key);
+        if (record == null) {
+            return null;
+        }
+
+        int valueOffset = record.valueOffset();
+
+        ByteBuffer buffer = record.segment.buffer.duplicate();
+        buffer.limit(valueOffset + record.valueLength);
+        buffer.position(valueOffset);
+
+        return new ByteBufferInputStream(buffer.slice());
+    }
+
+    @NonNull @Override public CacheOutputStream edit(@NonNull final String key) {
+        final ValueBuffer valueBuffer = new ValueBuffer();
+
+        long maxBytes = Math.min(maxSizeBytes, Integer.MAX_VALUE - HEADER_BYTES - MAX_KEY_BYTES);
+
+        return new CacheOutputStream(valueBuffer, maxBytes) {
+            @Override void commit() throws IOException {
+                append(key, valueBuffer.array(), valueBuffer.size());
+            }
+
+            @Override void discard() {
+                // nothing was written to the log
+            }
+        };
+    }
+
+    @Override public synchronized boolean contains(@NonNull String key) {
+        return index.containsKey(key);
+    }
+
+    @NonNull @Override public synchronized Collection<String> keys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    @Override public synchronized void remove(@NonNull String key) throws IOException {
+        removeRecord(key);
+        scheduleCompactionIfNeeded();
+    }
+
+    @Override public synchronized void removeAll(@NonNull Collection<String> keys) throws IOException {
+        for (String key : keys) {
+            removeRecord(key);
+        }
+
+        scheduleCompactionIfNeeded();
+    }
+
+    @Override public synchronized long size() {
+        return size;
+    }
+
+    @Override public long getMaxSize() {
+        return maxSizeBytes;
+    }
+
+    @Override public synchronized void delete() throws IOException {
+        worker.unsubscribe();
+
+        deleteSegments();
+
+        if (!dir.delete() && dir.exists()) {
+            throw new IOException(String.format("Failed to delete cache directory %s", dir));
+        }
+    }
+
+    // region log
+
+    private synchronized void append(String key, byte[] value, int length) throws IOException {
+        Record record = writeRecord(toBytes(key), value, length);
+        putInIndex(key, record);
+
+        trimToSize();
+        scheduleCompactionIfNeeded();
+    }
+
+    private void removeRecord(String key) throws IOException {
+        if (!index.containsKey(key)) {
+            return;
+        }
+
+        removeFromIndex(key);
+        writeRecord(toBytes(key), null, TOMBSTONE);
+    }
+
+    private void trimToSize() throws IOException {
+        while (size > maxSizeBytes && !index.isEmpty()) {
+            String eldest = index.keySet().iterator().next();
+            long sizeBefore = size;
+            removeRecord(eldest);
+
+            if (evictionListener != null) {
+                evictionListener.onEvicted(sizeBefore - size);
+            }
+        }
+    }
+
+    private Record writeRecord(byte[] key, @Nullable byte[] value, int valueLength) throws IOException {
+        int valueBytes = Math.max(valueLength, 0);
+        int recordBytes = HEADER_BYTES + key.length + valueBytes;
+
+        ensureCapacity(recordBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        if (value != null) {
+            crc.update(value, 0, valueBytes);
+        }
+
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(active.position);
+        buffer.putInt(key.length).putInt(valueLength).putInt((int) crc.getValue()).put(key);
+        if (value != null) {
+            buffer.put(value, 0, valueBytes);
+        }
+
+        Record record = new Record(active, active.position, key.length, valueLength);
+
+        active.position += recordBytes;
+        usedBytes += recordBytes;
+
+        return record;
+    }
+
+    private void ensureCapacity(int recordBytes) throws IOException {
+        if (active.position + recordBytes > active.capacity()) {
+            active = newSegment(Math.max(segmentBytes, recordBytes));
+        }
+    }
+
+    private void putInIndex(String key, Record record) {
+        Record previous = index.put(key, record);
+        if (previous != null) {
+            unaccount(previous);
+        }
+
+        size += record.valueLength;
+        liveBytes += record.recordBytes();
+    }
+
+    private void removeFromIndex(String key) {
+        Record previous = index.remove(key);
+        if (previous != null) {
+            unaccount(previous);
+        }
+    }
+
+    private void unaccount(Record record) {
+        size -= record.valueLength;
+        liveBytes -= record.recordBytes();
+    }
+
+    private static byte[] toBytes(String key) throws IOException {
+        byte[] bytes = key.getBytes(SimpleDiskCache.ENCODING);
+        if (bytes.length > MAX_KEY_BYTES) {
+            throw new IOException(String.format("Key %s is too long", key));
+        }
+        return bytes;
+    }
+
+    // endregion log
+
+    // region compaction
+
+    private void scheduleCompactionIfNeeded() {
+        if (compactionScheduled || !needsCompaction()) {
+            return;
+        }
+
+        compactionScheduled = true;
+
+        worker.schedule(new Action0() {
+            @Override public void call() {
+                try {
+                    compact();
+                } catch (IOException ignored) {
+                    // the log stays valid, compaction is retried on the next write
+                }
+            }
+        });
+    }
+
+    private boolean needsCompaction() {
+        long deadBytes = usedBytes - liveBytes;
+        return segments.size() > 1 && deadBytes > Math.max(usedBytes / 2, segmentBytes);
+    }
+
+    synchronized void compact() throws IOException {
+        compactionScheduled = false;
+
+        int maxSegments = segments.size() - 1;
+        for (int i = 0; i < maxSegments && needsCompaction(); i++) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                break;
+            }
+
+            compactSegment(oldest);
+        }
+    }
+
+    private void compactSegment(Segment segment) throws IOException {
+        // iterating the values does not change the access order of the index
+        for (Record record : index.values()) {
+            if (record.segment == segment) {
+                moveRecord(record);
+            }
+        }
+
+        segments.remove(segment.id);
+        usedBytes -= segment.position;
+
+        deleteFile(segment.file);
+    }
+
+    private void moveRecord(Record record) throws IOException {
+        int recordBytes = record.recordBytes();
+
+        ensureCapacity(recordBytes);
+
+        ByteBuffer source = record.segment.buffer.duplicate();
+        source.limit(record.offset + recordBytes);
+        source.position(record.offset);
+
+        ByteBuffer target = active.buffer.duplicate();
+        target.position(active.position);
+        target.put(source);
+
+        record.segment = active;
+        record.offset = active.position;
+
+        active.position += recordBytes;
+        usedBytes += recordBytes;
+    }
+
+    // endregion compaction
+
+    // region segments
+
+    private void replay() throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Integer id = parseSegmentId(file.getName());
+                if (id != null) {
+                    segments.put(id, Segment.open(file, id));
+                }
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            replaySegment(segment);
+        }
+
+        if (segments.isEmpty()) {
+            active = newSegment(segmentBytes);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+
+        trimToSize();
+    }
+
+    private void replaySegment(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int capacity = segment.capacity();
+        int position = 0;
+
+        while (position + HEADER_BYTES <= capacity) {
+            int keyLength = buffer.getInt(position);
+            int valueLength = buffer.getInt(position + 4);
+            int crc = buffer.getInt(position + 8);
+
+            if (keyLength <= 0 || keyLength > MAX_KEY_BYTES || valueLength < TOMBSTONE) {
+                break;
+            }
+
+            int dataBytes = keyLength + Math.max(valueLength, 0);
+            if (position + HEADER_BYTES + dataBytes > capacity) {
+                break;
+            }
+
+            byte[] data = new byte[dataBytes];
+            buffer.position(position + HEADER_BYTES);
+            buffer.get(data);
+
+            CRC32 dataCrc = new CRC32();
+            dataCrc.update(data);
+            if ((int) dataCrc.getValue() != crc) {
+                // partially written record, the rest of the segment is unused
+                break;
+            }
+
+            String key = new String(data, 0, keyLength, SimpleDiskCache.ENCODING);
+
+            if (valueLength == TOMBSTONE) {
+                removeFromIndex(key);
+            } else {
+                putInIndex(key, new Record(segment, position, keyLength, valueLength));
+            }
+
+            position += HEADER_BYTES + dataBytes;
+        }
+
+        segment.position = position;
+        usedBytes += position;
+    }
+
+    private Segment newSegment(int capacity) throws IOException {
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        File file = new File(dir, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+
+        Segment segment = Segment.create(file, id, capacity);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void deleteSegments() throws IOException {
+        for (Segment segment : segments.values()) {
+            deleteFile(segment.file);
+        }
+
+        segments.clear();
+        index.clear();
+
+        size = 0;
+        usedBytes = 0;
+        liveBytes = 0;
+    }
+
+    @Nullable private static Integer parseSegmentId(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void deleteFile(File file) throws IOException {
+        // readers holding a slice of the mapped segment can still finish reading it
+        if (!file.delete() && file.exists()) {
+            throw new IOException(String.format("Failed to delete segment %s", file));
+        }
+    }
+
+    // endregion segments
+
+    private static final class Segment {
+
+        final int id;
+        final File file;
+        final MappedByteBuffer buffer;
+
+        // end of the last valid record, next record is appended here
+        int position;
+
+        private Segment(int id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment create(File file, int id, int capacity) throws IOException {
+            return map(file, id, capacity);
+        }
+
+        static Segment open(File file, int id) throws IOException {
+            return map(file, id, (int) Math.min(file.length(), Integer.MAX_VALUE));
+        }
+
+        private static Segment map(File file, int id, int capacity) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(capacity);
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                return new Segment(id, file, buffer);
+            } finally {
+                // the mapping stays valid after the file is closed
+                raf.close();
+            }
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+    }
+
+    private static final class Record {
+
+        final int keyLength;
+        final int valueLength;
+
+        // changed when the record is moved by compaction
+        Segment segment;
+        int offset;
+
+        Record(Segment segment, int offset, int keyLength, int valueLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        int valueOffset() {
+            return offset + HEADER_BYTES + keyLength;
+        }
+
+        int recordBytes() {
+            return HEADER_BYTES + keyLength + valueLength;
+        }
+    }
+
+    /**
+     * Exposes the buffer of the written value, to append it to the log without copying it.
+     */
+    private static final class ValueBuffer extends ByteArrayOutputStream {
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.simonpercic.bucket;
+
+import com.github.simonpercic.bucket.utils.HexUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@link KeyHasher} that hashes keys with MD5, producing the same internal keys as previous versions of Bucket.
+ * Use it to keep reading values written by previous versions.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class Md5KeyHasher implements KeyHasher {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+        @Override protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    @Override public String hash(String key) {
+        try {
+            MessageDigest digest = DIGEST.get();
+            byte[] hash = digest.digest(key.getBytes(SimpleDiskCache.ENCODING));
+
+            // previous versions formatted the digest as a BigInteger, which drops leading zeros
+            return HexUtils.toHexStripLeadingZeros(hash);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.simonpercic.bucket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wraps a {@link KeyHasher} with a bounded LRU memo of recently hashed keys.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class MemoizingKeyHasher implements KeyHasher {
+
+    private final KeyHasher hasher;
+    private final Map<String, String> memo;
+
+    MemoizingKeyHasher(KeyHasher hasher, final int maxEntries) {
+        this.hasher = hasher;
+        this.memo = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    KeyHasher getHasher() {
+        return hasher;
+    }
+
+    @Override public String hash(String key) {
+        synchronized (memo) {
+            String hash = memo.get(key);
+            if (hash != null) {
+                return hash;
+            }
+        }
+
+        String hash = hasher.hash(key);
+
+        synchronized (memo) {
+            memo.put(key, hash);
+        }
+
+        return hash;
+    }
+}
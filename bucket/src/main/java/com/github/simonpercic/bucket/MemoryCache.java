@@ -0,0 +1,214 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded, in-memory LRU cache of already deserialized objects.
+ * Sits in front of the disk cache and is shared by the sync, async and Rx methods.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class MemoryCache {
+
+    private static final Weigher ENTRY_COUNT_WEIGHER = new Weigher() {
+        @Override public int weigh(String key, Object value) {
+            return 1;
+        }
+    };
+
+    private final LinkedHashMap<String, Entry> map;
+    private final long maxWeight;
+    private final Weigher weigher;
+
+    private long weight;
+    private long modCount;
+
+    private MemoryCache(long maxWeight, Weigher weigher) {
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    static MemoryCache create(int maxEntries) {
+        return new MemoryCache(maxEntries, ENTRY_COUNT_WEIGHER);
+    }
+
+    static MemoryCache create(long maxWeight, Weigher weigher) {
+        return new MemoryCache(maxWeight, weigher);
+    }
+
+    /**
+     * Returns the cached object if it is present, not expired and of the requested type.
+     * A generic type is matched only by the type the value was read as, the runtime class of the value
+     * does not hold the type arguments.
+     *
+     * @param key key
+     * @param typeOfT requested type
+     * @param <T> T of cache value
+     * @return cached object or null
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable synchronized <T> T get(@NonNull String key, @NonNull Type typeOfT) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            map.remove(key);
+            weight -= entry.weight;
+            return null;
+        }
+
+        if (!entry.isOfType(typeOfT)) {
+            return null;
+        }
+
+        return (T) entry.value;
+    }
+
+    synchronized void put(@NonNull String key, @NonNull Object value) {
+        put(key, value, CacheInputStream.NO_EXPIRY);
+    }
+
+    synchronized void put(@NonNull String key, @NonNull Object value, long expiresAt) {
+        modCount++;
+        insert(key, value, null, expiresAt);
+    }
+
+    synchronized void putAll(@NonNull Map<String, ?> values) {
+        modCount++;
+
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            insert(entry.getKey(), entry.getValue(), null, CacheInputStream.NO_EXPIRY);
+        }
+    }
+
+    /**
+     * Returns a stamp of the current state, to be used with {@link #putIfUnchanged(String, Object, Type, long, long)}.
+     *
+     * @return modification stamp
+     */
+    synchronized long stamp() {
+        return modCount;
+    }
+
+    /**
+     * Puts a value read from disk, but only if no writes happened since the stamp was taken.
+     * Prevents a slow disk read from overwriting a newer value with a stale one.
+     *
+     * @param key key
+     * @param value deserialized value
+     * @param typeOfT type the value was deserialized as
+     * @param expiresAt expiry time of the value or {@link CacheInputStream#NO_EXPIRY}
+     * @param stamp stamp obtained by {@link #stamp()} before the disk read
+     */
+    synchronized void putIfUnchanged(@NonNull String key, @NonNull Object value, @NonNull Type typeOfT, long expiresAt,
+            long stamp) {
+        if (modCount == stamp) {
+            insert(key, value, typeOfT, expiresAt);
+        }
+    }
+
+    synchronized void remove(@NonNull String key) {
+        modCount++;
+
+        Entry removed = map.remove(key);
+        if (removed != null) {
+            weight -= removed.weight;
+        }
+    }
+
+    synchronized void removeAll(@NonNull Collection<String> keys) {
+        modCount++;
+
+        for (String key : keys) {
+            Entry removed = map.remove(key);
+            if (removed != null) {
+                weight -= removed.weight;
+            }
+        }
+    }
+
+    synchronized void clear() {
+        modCount++;
+
+        map.clear();
+        weight = 0;
+    }
+
+    synchronized int size() {
+        return map.size();
+    }
+
+    // region private helpers
+
+    private void insert(String key, Object value, @Nullable Type type, long expiresAt) {
+        int entryWeight = weigher.weigh(key, value);
+        if (entryWeight < 0) {
+            throw new IllegalStateException(String.format("Negative weight for key %s", key));
+        }
+
+        Entry previous = map.remove(key);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+
+        if (entryWeight > maxWeight) {
+            return;
+        }
+
+        map.put(key, new Entry(value, type, entryWeight, expiresAt));
+        weight += entryWeight;
+
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = map.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            weight -= eldest.weight;
+        }
+    }
+
+    // endregion private helpers
+
+    private static final class Entry {
+
+        final Object value;
+        @Nullable final Type type;
+        final int weight;
+        final long expiresAt;
+
+        Entry(Object value, @Nullable Type type, int weight, long expiresAt) {
+            this.value = value;
+            this.type = type;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != CacheInputStream.NO_EXPIRY && expiresAt <= now;
+        }
+
+        // a put value only has its runtime class, which can not tell List<Foo> from List<Bar>
+        boolean isOfType(Type typeOfT) {
+            if (typeOfT instanceof Class) {
+                return TypeToken.get(typeOfT).getRawType().isInstance(value);
+            }
+
+            return type != null && TypeToken.get(type).equals(TypeToken.get(typeOfT));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.simonpercic.bucket;
+
+import com.github.simonpercic.bucket.utils.HexUtils;
+
+/**
+ * Default {@link KeyHasher}, a non-cryptographic 128-bit MurmurHash3 (x64 variant) of the key.
+ * Hashes the UTF-16 chars of the key directly, without encoding it to a byte array first.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class Murmur3KeyHasher implements KeyHasher {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final int CHARS_PER_BLOCK = 8;
+    private static final int CHARS_PER_LONG = 4;
+
+    @Override public String hash(String key) {
+        int length = key.length();
+        int blocks = length / CHARS_PER_BLOCK;
+
+        long h1 = 0;
+        long h2 = 0;
+
+        for (int i = 0; i < blocks; i++) {
+            int offset = i * CHARS_PER_BLOCK;
+
+            long k1 = readLong(key, offset, CHARS_PER_LONG);
+            long k2 = readLong(key, offset + CHARS_PER_LONG, CHARS_PER_LONG);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tailOffset = blocks * CHARS_PER_BLOCK;
+        int tail = length - tailOffset;
+
+        if (tail > CHARS_PER_LONG) {
+            h2 ^= mixK2(readLong(key, tailOffset + CHARS_PER_LONG, tail - CHARS_PER_LONG));
+        }
+
+        if (tail > 0) {
+            h1 ^= mixK1(readLong(key, tailOffset, Math.min(tail, CHARS_PER_LONG)));
+        }
+
+        // length in bytes, each char is hashed as two bytes
+        long byteLength = length * 2L;
+
+        h1 ^= byteLength;
+        h2 ^= byteLength;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        return HexUtils.toHex(h1, h2);
+    }
+
+    // region private helpers
+
+    private static long readLong(String key, int offset, int chars) {
+        long value = 0;
+        for (int i = 0; i < chars; i++) {
+            value |= (long) key.charAt(offset + i) << (i * 16);
+        }
+        return value;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    // endregion private helpers
+}
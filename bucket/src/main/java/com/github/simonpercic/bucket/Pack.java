@@ -0,0 +1,265 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pack format of {@link Bucket#exportTo(OutputStream)} and {@link Bucket#importFrom(InputStream)}.
+ * <p>
+ * A header of the magic number, the format version, the class name of the key hasher and the number of shards
+ * is followed by a section of entries per shard. An entry is the internal key, the original key and the tags
+ * if the key is indexed, the expiry time and the value as it is stored, serialized and compressed,
+ * in length-prefixed blocks that end with an empty block.
+ * A section ends with an end marker. Values are copied block by block, neither export nor import deserializes them.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class Pack {
+
+    // "BKPK"
+    static final int MAGIC = 0x424b504b;
+    static final int VERSION = 4;
+
+    // packs of version 1 do not hold the original keys, packs of version 2 do not hold the tags,
+    // packs before version 4 hold the original keys and tags in modified UTF-8, which is limited to 65535 bytes
+    private static final int MIN_VERSION = 1;
+    private static final int ORIGINAL_KEY_VERSION = 2;
+    private static final int TAGS_VERSION = 3;
+    private static final int LONG_STRINGS_VERSION = 4;
+
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    private static final int ENTRY_MARKER = 1;
+    private static final int END_MARKER = 0;
+
+    private Pack() {
+        // no instance
+    }
+
+    static void writeHeader(@NonNull DataOutputStream dos, @NonNull KeyHasher keyHasher, int shards)
+            throws IOException {
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeUTF(hasherName(keyHasher));
+        dos.writeInt(shards);
+    }
+
+    /**
+     * Reads the header and checks that the pack can be imported. Internal keys are only valid for the same key
+     * hasher and are routed to shards by the original keys, which the pack does not hold.
+     *
+     * @param dis input stream of the pack
+     * @param keyHasher key hasher of the cache
+     * @param shards number of shards of the cache
+     * @return format version of the pack
+     * @throws IOException if the stream is not a pack or was exported with a different key hasher or shards
+     */
+    static int readHeader(@NonNull DataInputStream dis, @NonNull KeyHasher keyHasher, int shards)
+            throws IOException {
+        try {
+            if (dis.readInt() != MAGIC) {
+                throw new IOException("Not a pack");
+            }
+
+            int version = dis.readInt();
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException(String.format("Unsupported pack version %d", version));
+            }
+
+            String packHasher = dis.readUTF();
+            if (!packHasher.equals(hasherName(keyHasher))) {
+                throw new IOException(String.format("Pack was exported with key hasher %s", packHasher));
+            }
+
+            int packShards = dis.readInt();
+            if (packShards != shards) {
+                throw new IOException(String.format("Pack was exported with %d shards", packShards));
+            }
+
+            return version;
+        } catch (EOFException e) {
+            throw new IOException("Truncated pack header", e);
+        }
+    }
+
+    /**
+     * Writes an entry, copying the value in blocks.
+     *
+     * @param dos output stream of the pack
+     * @param key internal key
+     * @param originalKey original key or null if it is not indexed
+     * @param tags tags of the key
+     * @param expiresAt expiry time or {@link CacheInputStream#NO_EXPIRY}
+     * @param value input stream of the stored value
+     * @param buffer copy buffer of {@link #BLOCK_BYTES}
+     * @throws IOException
+     */
+    static void writeEntry(@NonNull DataOutputStream dos, @NonNull String key, @Nullable String originalKey,
+            @NonNull List<String> tags, long expiresAt, @NonNull InputStream value, @NonNull byte[] buffer)
+            throws IOException {
+        dos.writeByte(ENTRY_MARKER);
+        dos.writeUTF(key);
+
+        dos.writeBoolean(originalKey != null);
+        if (originalKey != null) {
+            Streams.writeString(dos, originalKey);
+
+            dos.writeInt(tags.size());
+            for (String tag : tags) {
+                Streams.writeString(dos, tag);
+            }
+        }
+
+        dos.writeLong(expiresAt);
+
+        int read = readBlock(value, buffer);
+        while (read > 0) {
+            dos.writeInt(read);
+            dos.write(buffer, 0, read);
+            read = readBlock(value, buffer);
+        }
+
+        dos.writeInt(0);
+    }
+
+    static void writeEnd(@NonNull DataOutputStream dos) throws IOException {
+        dos.writeByte(END_MARKER);
+    }
+
+    /**
+     * Reads the key of the next entry of the section.
+     *
+     * @param dis input stream of the pack
+     * @return internal key or null at the end of the section
+     * @throws IOException
+     */
+    @Nullable static String readKey(@NonNull DataInputStream dis) throws IOException {
+        int marker = dis.readUnsignedByte();
+        if (marker == END_MARKER) {
+            return null;
+        } else if (marker != ENTRY_MARKER) {
+            throw new IOException(String.format("Corrupt pack, unexpected marker %d", marker));
+        }
+
+        return dis.readUTF();
+    }
+
+    /**
+     * Reads the original key of the entry, after its internal key.
+     *
+     * @param dis input stream of the pack
+     * @param version format version of the pack
+     * @return original key or null if the pack does not hold it
+     * @throws IOException
+     */
+    @Nullable static String readOriginalKey(@NonNull DataInputStream dis, int version) throws IOException {
+        if (version < ORIGINAL_KEY_VERSION || !dis.readBoolean()) {
+            return null;
+        }
+
+        return readString(dis, version);
+    }
+
+    /**
+     * Reads the tags of the entry, after its original key.
+     *
+     * @param dis input stream of the pack
+     * @param version format version of the pack
+     * @param originalKey original key of the entry, tags are only written with it
+     * @return tags, empty if the pack does not hold them
+     * @throws IOException
+     */
+    @NonNull static List<String> readTags(@NonNull DataInputStream dis, int version, @Nullable String originalKey)
+            throws IOException {
+        if (version < TAGS_VERSION || originalKey == null) {
+            return Collections.emptyList();
+        }
+
+        int count = dis.readInt();
+        if (count < 0) {
+            throw new IOException(String.format("Corrupt pack, %d tags", count));
+        }
+
+        List<String> tags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tags.add(readString(dis, version));
+        }
+
+        return tags;
+    }
+
+    static long readExpiresAt(@NonNull DataInputStream dis) throws IOException {
+        return dis.readLong();
+    }
+
+    /**
+     * Copies the value of the entry block by block.
+     *
+     * @param dis input stream of the pack
+     * @param os output stream to copy the value to or null to skip the value
+     * @param buffer copy buffer of {@link #BLOCK_BYTES}
+     * @throws IOException
+     */
+    static void readValue(@NonNull DataInputStream dis, @Nullable OutputStream os, @NonNull byte[] buffer)
+            throws IOException {
+        int length = dis.readInt();
+        while (length > 0) {
+            if (length > buffer.length) {
+                throw new IOException(String.format("Corrupt pack, block of %d bytes", length));
+            }
+
+            dis.readFully(buffer, 0, length);
+            if (os != null) {
+                os.write(buffer, 0, length);
+            }
+
+            length = dis.readInt();
+        }
+
+        if (length < 0) {
+            throw new IOException(String.format("Corrupt pack, block of %d bytes", length));
+        }
+    }
+
+    private static int readBlock(InputStream is, byte[] buffer) throws IOException {
+        int offset = 0;
+
+        while (offset < buffer.length) {
+            int read = is.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                break;
+            }
+
+            offset += read;
+        }
+
+        return offset;
+    }
+
+    private static String readString(DataInputStream dis, int version) throws IOException {
+        if (version < LONG_STRINGS_VERSION) {
+            return dis.readUTF();
+        }
+
+        return Streams.readString(dis);
+    }
+
+    private static String hasherName(KeyHasher keyHasher) {
+        KeyHasher hasher = keyHasher;
+        if (hasher instanceof MemoizingKeyHasher) {
+            hasher = ((MemoizingKeyHasher) hasher).getHasher();
+        }
+
+        return hasher.getClass().getName();
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+
+/**
+ * Reads a set of keys in parallel, on a bounded number of workers that take the next key when they are done.
+ * The calling thread reads keys as well, so it is never blocked on workers that were not started yet.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class Preloader {
+
+    /**
+     * Max number of keys read at once, including the calling thread.
+     */
+    static final int PARALLELISM = 4;
+
+    private final Scheduler scheduler;
+    private final KeyReader reader;
+
+    Preloader(@NonNull Scheduler scheduler, @NonNull KeyReader reader) {
+        this.scheduler = scheduler;
+        this.reader = reader;
+    }
+
+    /**
+     * Reads all keys, returns once every key was read. A failed key does not stop the others,
+     * the first failure is thrown after all keys were read.
+     *
+     * @param types map of keys to the types to read them as
+     * @throws IOException
+     */
+    void preload(@NonNull Map<String, Type> types) throws IOException {
+        final List<Map.Entry<String, Type>> entries = new ArrayList<>(types.entrySet());
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        int workers = Math.min(PARALLELISM, entries.size()) - 1;
+        final CountDownLatch done = new CountDownLatch(workers);
+
+        for (int i = 0; i < workers; i++) {
+            final Scheduler.Worker worker = scheduler.createWorker();
+            worker.schedule(new Action0() {
+                @Override public void call() {
+                    try {
+                        readAll(entries, next, failure);
+                    } finally {
+                        done.countDown();
+                        worker.unsubscribe();
+                    }
+                }
+            });
+        }
+
+        try {
+            readAll(entries, next, failure);
+        } finally {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while preloading");
+            }
+        }
+
+        Exception exception = failure.get();
+        if (exception instanceof IOException) {
+            throw (IOException) exception;
+        } else if (exception instanceof RuntimeException) {
+            throw (RuntimeException) exception;
+        }
+    }
+
+    private void readAll(List<Map.Entry<String, Type>> entries, AtomicInteger next,
+            AtomicReference<Exception> failure) {
+        int index = next.getAndIncrement();
+
+        while (index < entries.size()) {
+            Map.Entry<String, Type> entry = entries.get(index);
+
+            try {
+                reader.read(entry.getKey(), entry.getValue());
+            } catch (IOException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+
+            index = next.getAndIncrement();
+        }
+    }
+
+    /**
+     * Reads a key, called concurrently from several threads.
+     */
+    interface KeyReader {
+
+        void read(@NonNull String key, @NonNull Type typeOfT) throws IOException;
+    }
+}
@@ -0,0 +1,404 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Splits the keys by hash across independent {@link SimpleDiskCache} shards, each in its own subdirectory
+ * and with an equal part of the max size. Operations on different shards do not contend for the same lock.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class ShardedDiskCache implements DiskCache {
+
+    private static final String SHARD_PREFIX = "shard-";
+    private static final String SHARD_COUNT_FILE = "shards";
+
+    private final File cacheDir;
+    private final SimpleDiskCache[] shards;
+
+    private ShardedDiskCache(File cacheDir, SimpleDiskCache[] shards) {
+        this.cacheDir = cacheDir;
+        this.shards = shards;
+    }
+
+    /**
+     * Creates the sharded cache without opening it, the cache has to be opened by calling {@link #open()}.
+     *
+     * @param path cache directory path
+     * @param shardCount number of shards
+     * @param maxSizeBytes max size of all shards together in bytes
+     * @param keyHasher key hasher
+     * @param storage storage engine
+     * @param scheduler scheduler of background work
+     * @param evictionListener eviction listener or null
+     * @return unopened cache
+     * @throws IOException
+     */
+    static ShardedDiskCache createUnopened(String path, int shardCount, long maxSizeBytes, KeyHasher keyHasher,
+            Storage storage, Scheduler scheduler, @Nullable EvictionListener evictionListener) throws IOException {
+        File cacheDir = new File(path);
+
+        // the shards only mark their subdirectories, opening would delete the files of an unsharded cache
+        SimpleDiskCache.useDir(cacheDir.getPath());
+
+        SimpleDiskCache[] shards = new SimpleDiskCache[shardCount];
+        try {
+            if (!cacheDir.exists() && !cacheDir.mkdir()) {
+                throw new IOException("Failed to create cache directory!");
+            }
+
+            long shardMaxSizeBytes = maxSizeBytes / shardCount;
+
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = SimpleDiskCache.createUnopened(new File(cacheDir, SHARD_PREFIX + i).getPath(),
+                        shardMaxSizeBytes, keyHasher, storage, scheduler, evictionListener);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (SimpleDiskCache shard : shards) {
+                if (shard != null) {
+                    SimpleDiskCache.releaseDir(shard.cacheDir.getPath());
+                }
+            }
+
+            SimpleDiskCache.releaseDir(cacheDir.getPath());
+            throw e;
+        }
+
+        return new ShardedDiskCache(cacheDir, shards);
+    }
+
+    static boolean isShardFile(String name) {
+        return name.startsWith(SHARD_PREFIX) || name.equals(SHARD_COUNT_FILE);
+    }
+
+    /**
+     * Opens all shards. Keys are routed by the number of shards, so the cache is cleared if it was written
+     * with a different number of shards or without sharding.
+     *
+     * @throws IOException
+     */
+    @Override public void open() throws IOException {
+        Exception failure = null;
+
+        try {
+            if (readShardCount() != shards.length) {
+                deleteStaleFiles();
+                writeShardCount();
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+
+        // open every shard even if something failed, so operations waiting for a shard to open are released
+        for (SimpleDiskCache shard : shards) {
+            try {
+                shard.open();
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        rethrow(failure);
+    }
+
+    @Override public boolean isOpen() {
+        for (SimpleDiskCache shard : shards) {
+            if (!shard.isOpen()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Nullable @Override public CacheInputStream getStream(@NonNull String key) throws IOException {
+        return shard(key).getStream(key);
+    }
+
+    @NonNull @Override public CacheOutputStream openStream(@NonNull String key) throws IOException {
+        return shard(key).openStream(key);
+    }
+
+    @NonNull @Override public CacheOutputStream openStream(@NonNull String key, long expiresAt) throws IOException {
+        return shard(key).openStream(key, expiresAt);
+    }
+
+    @NonNull @Override public CacheOutputStream openStream(@NonNull String key, long expiresAt,
+            @NonNull List<String> tags) throws IOException {
+        return shard(key).openStream(key, expiresAt, tags);
+    }
+
+    @Override public boolean contains(@NonNull String key) throws IOException {
+        return shard(key).contains(key);
+    }
+
+    @Override public long getExpiresAt(@NonNull String key) throws IOException {
+        return shard(key).getExpiresAt(key);
+    }
+
+    @Override public void remove(@NonNull String key) throws IOException {
+        shard(key).remove(key);
+    }
+
+    @Override public void removeAll(@NonNull Collection<String> keys) throws IOException {
+        List<List<String>> shardKeys = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            shardKeys.add(new ArrayList<String>());
+        }
+
+        for (String key : keys) {
+            shardKeys.get(shardIndex(key)).add(key);
+        }
+
+        for (int i = 0; i < shards.length; i++) {
+            if (!shardKeys.get(i).isEmpty()) {
+                shards[i].removeAll(shardKeys.get(i));
+            }
+        }
+    }
+
+    @NonNull @Override public List<String> keys(@NonNull String prefix) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (SimpleDiskCache shard : shards) {
+            keys.addAll(shard.keys(prefix));
+        }
+
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @NonNull @Override public List<String> keysWithTag(@NonNull String tag) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (SimpleDiskCache shard : shards) {
+            keys.addAll(shard.keysWithTag(tag));
+        }
+
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Override public long size() {
+        long size = 0;
+        for (SimpleDiskCache shard : shards) {
+            size += shard.size();
+        }
+
+        return size;
+    }
+
+    @Override public long getMaxSize() {
+        long maxSize = 0;
+        for (SimpleDiskCache shard : shards) {
+            maxSize += shard.getMaxSize();
+        }
+
+        return maxSize;
+    }
+
+    /**
+     * Clears the shards in parallel. The other shards are cleared on the io scheduler while the first one
+     * is cleared on the calling thread. The subscribe scheduler is not used, since the caller may be running
+     * on its only thread.
+     *
+     * @throws IOException
+     */
+    @Override public void clear() throws IOException {
+        final CountDownLatch cleared = new CountDownLatch(shards.length - 1);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        for (int i = 1; i < shards.length; i++) {
+            final SimpleDiskCache shard = shards[i];
+
+            final Scheduler.Worker worker = Schedulers.io().createWorker();
+            worker.schedule(new Action0() {
+                @Override public void call() {
+                    try {
+                        shard.clear();
+                    } catch (IOException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        cleared.countDown();
+                        worker.unsubscribe();
+                    }
+                }
+            });
+        }
+
+        try {
+            shards[0].clear();
+        } finally {
+            try {
+                cleared.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while clearing the cache");
+            }
+        }
+
+        rethrow(failure.get());
+    }
+
+    @Override public void destroy() throws IOException {
+        for (SimpleDiskCache shard : shards) {
+            shard.destroy();
+        }
+
+        SimpleDiskCache.deleteContents(cacheDir);
+        if (!cacheDir.delete() && cacheDir.exists()) {
+            throw new IOException(String.format("Failed to delete cache directory %s", cacheDir));
+        }
+
+        SimpleDiskCache.releaseDir(cacheDir.getPath());
+    }
+
+    @Override public void exportTo(@NonNull OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, Pack.BLOCK_BYTES));
+        Pack.writeHeader(dos, shards[0].keyHasher, shards.length);
+
+        for (SimpleDiskCache shard : shards) {
+            shard.exportEntries(dos);
+        }
+
+        dos.flush();
+    }
+
+    /**
+     * Imports the sections of the pack into the shards they were exported from,
+     * so the pack has to be exported with the same number of shards.
+     *
+     * @param is input stream to read the pack from, not closed
+     * @throws IOException
+     */
+    @Override public void importFrom(@NonNull InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(is, Pack.BLOCK_BYTES));
+        int version = Pack.readHeader(dis, shards[0].keyHasher, shards.length);
+
+        for (SimpleDiskCache shard : shards) {
+            shard.importEntries(dis, version);
+        }
+    }
+
+    @Override public void startExpirySweeper(@NonNull Scheduler scheduler, long interval, @NonNull TimeUnit unit) {
+        for (SimpleDiskCache shard : shards) {
+            shard.startExpirySweeper(scheduler, interval, unit);
+        }
+    }
+
+    @Override public void stopExpirySweeper() {
+        for (SimpleDiskCache shard : shards) {
+            shard.stopExpirySweeper();
+        }
+    }
+
+    @Override public void sweepExpired() throws IOException {
+        for (SimpleDiskCache shard : shards) {
+            shard.sweepExpired();
+        }
+    }
+
+    // region shards
+
+    private SimpleDiskCache shard(String key) {
+        return shards[shardIndex(key)];
+    }
+
+    private int shardIndex(String key) {
+        // spread the bits of the string hash, similar keys differ mostly in the low bits
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+
+        return (hash & Integer.MAX_VALUE) % shards.length;
+    }
+
+    private int readShardCount() throws IOException {
+        DataInputStream dis;
+        try {
+            dis = new DataInputStream(new FileInputStream(new File(cacheDir, SHARD_COUNT_FILE)));
+        } catch (FileNotFoundException e) {
+            return -1;
+        }
+
+        try {
+            return dis.readInt();
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            dis.close();
+        }
+    }
+
+    private void writeShardCount() throws IOException {
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(new File(cacheDir, SHARD_COUNT_FILE)));
+        try {
+            dos.writeInt(shards.length);
+        } finally {
+            dos.close();
+        }
+    }
+
+    /**
+     * Deletes the values of all shards and files written without sharding. Keeps the shard directories.
+     *
+     * @throws IOException
+     */
+    private void deleteStaleFiles() throws IOException {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            throw new IOException(String.format("Failed to list cache directory %s", cacheDir));
+        }
+
+        List<String> shardDirs = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            shardDirs.add(SHARD_PREFIX + i);
+        }
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                SimpleDiskCache.deleteContents(file);
+            }
+
+            if (!shardDirs.contains(file.getName()) && !file.delete() && file.exists()) {
+                throw new IOException(String.format("Failed to delete %s", file));
+            }
+        }
+    }
+
+    private static void rethrow(@Nullable Exception failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    // endregion shards
+}
@@ -3,38 +3,78 @@ package com.github.simonpercic.bucket;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import com.jakewharton.disklrucache.DiskLruCache;
-import com.jakewharton.disklrucache.DiskLruCache.Editor;
-
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.Scheduler;
+import rx.functions.Action0;
 
 /**
  * Adapted from https://github.com/fhucho/simple-disk-cache.
  * License Apache 2.0
  */
-final class SimpleDiskCache {
+final class SimpleDiskCache implements DiskCache {
 
-    private static final String ENCODING = "UTF-8";
-    private static final int VALUE_IDX = 0;
+    static final String ENCODING = "UTF-8";
     private static final Set<String> USED_DIRS = new HashSet<>();
 
-    private DiskLruCache diskLruCache;
+    private static final String EXPIRY_INDEX_FILE = "expiry-index";
+    private static final String KEY_INDEX_FILE = "key-index";
+    private static final String GENERATION_PREFIX = "generation-";
+
+    // entries with an expiry time start with the marker, followed by the expiry time,
+    // serialized values never start with a zero byte
+    private static final int EXPIRY_MARKER = 0;
+    private static final int EXPIRY_BYTES = 8;
+    private static final int BYTE_MASK = 0xff;
+
+    private static final int SWEEP_BATCH_SIZE = 64;
+
+    private final Storage storage;
+    private final Scheduler scheduler;
+    @Nullable private final EvictionListener evictionListener;
+    private final KeyIndex keyIndex;
+    private final AtomicBoolean expirySaveScheduled = new AtomicBoolean();
+
+    private final CountDownLatch openLatch;
+
+    volatile CacheGeneration generation;
+
+    private volatile IOException openFailure;
+    private Scheduler.Worker sweepWorker;
 
     final File cacheDir;
     final long maxSizeBytes;
+    final KeyHasher keyHasher;
+    final ExpiryIndex expiryIndex;
 
-    private SimpleDiskCache(String path, long maxSizeBytes) throws IOException {
+    private SimpleDiskCache(String path, long maxSizeBytes, KeyHasher keyHasher, Storage storage,
+            Scheduler scheduler, @Nullable EvictionListener evictionListener) throws IOException {
         this.cacheDir = new File(path);
         this.maxSizeBytes = maxSizeBytes;
+        this.keyHasher = keyHasher;
+        this.storage = storage;
+        this.scheduler = scheduler;
+        this.evictionListener = evictionListener;
 
         String cachePath = cacheDir.getPath();
 
@@ -48,94 +88,954 @@ final class SimpleDiskCache {
 
         USED_DIRS.add(cachePath);
 
-        diskLruCache = createDiskLruCache(cacheDir, maxSizeBytes);
+        expiryIndex = new ExpiryIndex(new File(cacheDir, EXPIRY_INDEX_FILE));
+        keyIndex = new KeyIndex(new File(cacheDir, KEY_INDEX_FILE));
+        openLatch = new CountDownLatch(1);
     }
 
-    static synchronized SimpleDiskCache create(String path, long maxSizeBytes) throws IOException {
-        return new SimpleDiskCache(path, maxSizeBytes);
+    static synchronized SimpleDiskCache create(String path, long maxSizeBytes, KeyHasher keyHasher, Storage storage,
+            Scheduler scheduler) throws IOException {
+        return create(path, maxSizeBytes, keyHasher, storage, scheduler, null);
     }
 
-    private static synchronized DiskLruCache createDiskLruCache(File cacheDir, long maxSizeBytes) throws IOException {
-        return DiskLruCache.open(cacheDir, 1, 1, maxSizeBytes);
+    static synchronized SimpleDiskCache create(String path, long maxSizeBytes, KeyHasher keyHasher, Storage storage,
+            Scheduler scheduler, @Nullable EvictionListener evictionListener) throws IOException {
+        SimpleDiskCache cache = createUnopened(path, maxSizeBytes, keyHasher, storage, scheduler, evictionListener);
+        cache.open();
+        return cache;
     }
 
-    @Nullable String get(@NonNull String key) throws IOException {
-        DiskLruCache.Snapshot snapshot = diskLruCache.get(toInternalKey(key));
-        if (snapshot == null) {
-            return null;
+    /**
+     * Creates the cache without opening it, the cache has to be opened by calling {@link #open()}.
+     * Operations called before the cache is opened wait until it is opened.
+     *
+     * @param path cache directory path
+     * @param maxSizeBytes max size of the cache in bytes
+     * @param keyHasher key hasher
+     * @param storage storage engine
+     * @param scheduler scheduler of background work
+     * @param evictionListener eviction listener or null
+     * @return unopened cache
+     * @throws IOException
+     */
+    static synchronized SimpleDiskCache createUnopened(String path, long maxSizeBytes, KeyHasher keyHasher,
+            Storage storage, Scheduler scheduler, @Nullable EvictionListener evictionListener) throws IOException {
+        return new SimpleDiskCache(path, maxSizeBytes, keyHasher, storage, scheduler, evictionListener);
+    }
+
+    /**
+     * Marks a directory as used, for a cache that keeps its values in caches in subdirectories,
+     * so that no other cache is created in the same directory.
+     *
+     * @param path directory path
+     * @throws IllegalStateException if the directory is already used
+     */
+    static synchronized void useDir(String path) {
+        if (USED_DIRS.contains(path)) {
+            throw new IllegalStateException(String.format("Cache directory %s was used before.", path));
         }
 
+        USED_DIRS.add(path);
+    }
+
+    static synchronized void releaseDir(String path) {
+        USED_DIRS.remove(path);
+    }
+
+    /**
+     * Opens the storage engine and loads the expiry and key indexes.
+     * Releases operations waiting for the cache to be opened.
+     *
+     * @throws IOException
+     */
+    @Override public void open() throws IOException {
         try {
-            return snapshot.getString(VALUE_IDX);
+            generation = openGenerations();
+            expiryIndex.load();
+            keyIndex.load();
+        } catch (IOException e) {
+            openFailure = e;
+            throw e;
+        } catch (RuntimeException e) {
+            openFailure = new IOException("Failed to open the cache", e);
+            throw e;
         } finally {
-            snapshot.close();
+            openLatch.countDown();
         }
     }
 
-    void put(@NonNull String key, @NonNull String value) throws IOException {
-        if (value.getBytes(ENCODING).length > diskLruCache.getMaxSize()) {
-            throw new IOException("Object is larger than cache size");
+    @Override public boolean isOpen() {
+        return openLatch.getCount() == 0;
+    }
+
+    private static StorageEngine openEngine(File dir, long maxSizeBytes, Storage storage, Scheduler scheduler,
+            @Nullable EvictionListener evictionListener) throws IOException {
+        switch (storage) {
+            case LOG_STRUCTURED:
+                return LogStructuredEngine.open(dir, maxSizeBytes, scheduler, evictionListener);
+            case DISK_LRU_CACHE:
+            default:
+                return DiskLruCacheEngine.open(dir, maxSizeBytes, evictionListener);
         }
+    }
+
+    /**
+     * Opens a stream to read the value of the key, without reading the whole value into memory.
+     * The expiry time is checked before the value is read, expired values are treated as missing.
+     * The caller is responsible for closing the stream.
+     *
+     * @param key key
+     * @return input stream of the value or null if the cache does not contain the key or the value expired
+     * @throws IOException
+     */
+    @Nullable @Override public CacheInputStream getStream(@NonNull String key) throws IOException {
+        awaitOpen();
 
-        OutputStream cos = null;
+        String internalKey = toInternalKey(key);
+
+        long now = System.currentTimeMillis();
+        if (expiryIndex.isExpired(internalKey, now)) {
+            return null;
+        }
+
+        // the stream stays readable after its generation is deleted, deleted files stay open until closed
+        InputStream is;
+        CacheGeneration current = acquireGeneration();
         try {
-            cos = openStream(key);
-            cos.write(value.getBytes(ENCODING));
+            is = openValue(current, internalKey);
         } finally {
-            if (cos != null) {
+            current.release();
+        }
+
+        if (is == null) {
+            return null;
+        }
+
+        CacheInputStream cis;
+        try {
+            cis = openEntry(internalKey, is);
+        } catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+
+        if (isExpired(cis.getExpiresAt(), now)) {
+            cis.close();
+            return null;
+        }
+
+        keyIndex.touch(key, now);
+
+        return cis;
+    }
+
+    /**
+     * Opens a stream to write the value of the key.
+     * The value is committed when the stream is closed, unless {@link CacheOutputStream#abort()} was called
+     * or more bytes than the max size of the cache were written.
+     *
+     * @param key key
+     * @return output stream to write the value to
+     * @throws IOException
+     */
+    @NonNull @Override public CacheOutputStream openStream(@NonNull String key) throws IOException {
+        return openStream(key, CacheInputStream.NO_EXPIRY);
+    }
+
+    /**
+     * Opens a stream to write the value of the key, that expires at the given time.
+     *
+     * @param key key
+     * @param expiresAt expiry time in milliseconds since epoch or {@link CacheInputStream#NO_EXPIRY}
+     * @return output stream to write the value to
+     * @throws IOException
+     * @see #openStream(String)
+     */
+    @NonNull @Override public CacheOutputStream openStream(@NonNull String key, long expiresAt) throws IOException {
+        return openStream(key, expiresAt, Collections.<String>emptyList());
+    }
+
+    /**
+     * Opens a stream to write the value of the key, that expires at the given time, with tags.
+     * The tags replace the previous tags of the key once the value is committed.
+     *
+     * @param key key
+     * @param expiresAt expiry time in milliseconds since epoch or {@link CacheInputStream#NO_EXPIRY}
+     * @param tags tags of the value
+     * @return output stream to write the value to
+     * @throws IOException
+     * @see #openStream(String)
+     */
+    @NonNull @Override public CacheOutputStream openStream(@NonNull String key, long expiresAt,
+            @NonNull List<String> tags) throws IOException {
+        awaitOpen();
+
+        return openInternalStream(key, toInternalKey(key), expiresAt, tags);
+    }
+
+    /**
+     * Opens a stream to write the value of the internal key. The expiry time and the key are indexed once the value
+     * is committed, a discarded value leaves the indexes of the previous value as they were.
+     *
+     * @param key original key or null if not known
+     * @param internalKey internal key
+     * @param expiresAt expiry time in milliseconds since epoch or {@link CacheInputStream#NO_EXPIRY}
+     * @param tags tags of the value
+     * @return output stream to write the value to
+     * @throws IOException
+     */
+    private CacheOutputStream openInternalStream(@Nullable final String key, final String internalKey,
+            final long expiresAt, final List<String> tags) throws IOException {
+        final CacheGeneration current = acquireGeneration();
+
+        final CacheOutputStream cos = ChunkedOutputStream.create(current.engine, current.chunks, internalKey,
+                maxSizeBytes);
+
+        // keep the generation until the value is committed or discarded
+        cos.releaseOnClose(new Closeable() {
+            @Override public void close() throws IOException {
+                current.release();
+
+                if (!cos.isCommitted()) {
+                    return;
+                }
+
+                expiryIndex.put(internalKey, expiresAt);
+                saveExpiryIndexIfStale();
+
+                if (key != null) {
+                    keyIndex.put(key, internalKey, cos.getBytesWritten(), System.currentTimeMillis(), tags);
+                }
+            }
+        });
+
+        if (expiresAt != CacheInputStream.NO_EXPIRY) {
+            try {
+                cos.write(encodeExpiry(expiresAt));
+            } catch (IOException | RuntimeException e) {
+                cos.abort();
                 cos.close();
+                throw e;
             }
         }
+
+        return cos;
     }
 
-    boolean contains(@NonNull String key) throws IOException {
-        DiskLruCache.Snapshot snapshot = diskLruCache.get(toInternalKey(key));
-        if (snapshot == null) {
+    @Override public boolean contains(@NonNull String key) throws IOException {
+        awaitOpen();
+
+        String internalKey = toInternalKey(key);
+
+        if (isValueExpired(internalKey, System.currentTimeMillis())) {
             return false;
         }
 
-        snapshot.close();
-        return true;
+        CacheGeneration current = acquireGeneration();
+        try {
+            return current.engine.contains(internalKey);
+        } finally {
+            current.release();
+        }
     }
 
-    void remove(@NonNull String key) throws IOException {
-        diskLruCache.remove(toInternalKey(key));
+    @Override public long getExpiresAt(@NonNull String key) throws IOException {
+        awaitOpen();
+
+        return expiryIndex.get(toInternalKey(key));
     }
 
-    void clear() throws IOException {
-        diskLruCache.delete();
-        diskLruCache = createDiskLruCache(cacheDir, maxSizeBytes);
+    @Override public void remove(@NonNull String key) throws IOException {
+        awaitOpen();
+
+        String internalKey = toInternalKey(key);
+
+        CacheGeneration current = acquireGeneration();
+        try {
+            removeValues(current, Collections.singletonList(internalKey));
+        } finally {
+            current.release();
+        }
+
+        expiryIndex.remove(internalKey);
+        saveExpiryIndexIfStale();
+
+        keyIndex.remove(key);
     }
 
-    void destroy() throws IOException {
-        diskLruCache.delete();
-        USED_DIRS.remove(cacheDir.getPath());
+    @Override public void removeAll(@NonNull Collection<String> keys) throws IOException {
+        awaitOpen();
+
+        List<String> internalKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            internalKeys.add(toInternalKey(key));
+        }
+
+        removeInternal(internalKeys);
     }
 
-    // region private helpers
+    /**
+     * Returns the keys of the values from the key index, without reading the values.
+     * Keys of values that were evicted are dropped from the index, keys of expired values are skipped.
+     *
+     * @param prefix key prefix, an empty prefix returns all keys
+     * @return keys sorted in ascending order
+     * @throws IOException
+     */
+    @NonNull @Override public List<String> keys(@NonNull String prefix) throws IOException {
+        awaitOpen();
+
+        long now = System.currentTimeMillis();
 
-    private OutputStream openStream(String key) throws IOException {
-        Editor editor = diskLruCache.edit(toInternalKey(key));
+        List<String> keys = new ArrayList<>();
+        List<KeyIndex.Entry> evicted = new ArrayList<>();
+
+        CacheGeneration current = acquireGeneration();
         try {
-            BufferedOutputStream bos = new BufferedOutputStream(editor.newOutputStream(VALUE_IDX));
-            return new DiskLruCacheOutputStream(bos, editor);
-        } catch (IOException e) {
-            editor.abort();
+            for (KeyIndex.Entry entry : keyIndex.entries(prefix)) {
+                if (isValueExpired(entry.internalKey, now)) {
+                    continue;
+                }
+
+                if (current.engine.contains(entry.internalKey)) {
+                    keys.add(entry.key);
+                } else {
+                    evicted.add(entry);
+                }
+            }
+        } finally {
+            current.release();
+        }
+
+        if (!evicted.isEmpty()) {
+            keyIndex.removeStale(evicted);
+        }
+
+        return keys;
+    }
+
+    @NonNull @Override public List<String> keysWithTag(@NonNull String tag) throws IOException {
+        awaitOpen();
+
+        return keyIndex.keysWithTag(tag);
+    }
+
+    @Override public long size() {
+        // the size is reported as zero until the cache is opened
+        CacheGeneration current = generation;
+        return current == null ? 0 : current.engine.size();
+    }
+
+    @Override public long getMaxSize() {
+        return maxSizeBytes;
+    }
+
+    /**
+     * Switches to a new, empty generation. The previous generation is deleted in the background,
+     * once all operations that use it finished.
+     *
+     * @throws IOException
+     */
+    @Override public void clear() throws IOException {
+        awaitOpen();
+
+        synchronized (cacheDir) {
+            CacheGeneration previous = generation;
+
+            expiryIndex.clear();
+            keyIndex.clear();
+            generation = openGeneration(previous.id + 1);
+
+            previous.retire(scheduler);
+        }
+    }
+
+    @Override public void destroy() throws IOException {
+        stopExpirySweeper();
+
+        // a cache that failed to open can still be destroyed
+        awaitOpenAttempt();
+
+        synchronized (cacheDir) {
+            expiryIndex.clear();
+            keyIndex.clear();
+            if (generation != null) {
+                generation.engine.delete();
+            }
+
+            deleteContents(cacheDir);
+            if (!cacheDir.delete() && cacheDir.exists()) {
+                throw new IOException(String.format("Failed to delete cache directory %s", cacheDir));
+            }
+        }
+
+        releaseDir(cacheDir.getPath());
+    }
+
+    /**
+     * Writes all values that did not expire to a pack.
+     *
+     * @param os output stream to write the pack to, not closed
+     * @throws IOException
+     * @see Pack
+     */
+    @Override public void exportTo(@NonNull OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, Pack.BLOCK_BYTES));
+        Pack.writeHeader(dos, keyHasher, 1);
+        exportEntries(dos);
+        dos.flush();
+    }
+
+    /**
+     * Writes the values of a pack to storage as they are, replacing the values of the same keys.
+     *
+     * @param is input stream to read the pack from, not closed
+     * @throws IOException
+     * @see Pack
+     */
+    @Override public void importFrom(@NonNull InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(is, Pack.BLOCK_BYTES));
+        int version = Pack.readHeader(dis, keyHasher, 1);
+        importEntries(dis, version);
+    }
+
+    /**
+     * Writes the section of this cache to a pack.
+     *
+     * @param dos output stream of the pack
+     * @throws IOException
+     */
+    void exportEntries(@NonNull DataOutputStream dos) throws IOException {
+        awaitOpen();
+
+        long now = System.currentTimeMillis();
+        byte[] buffer = new byte[Pack.BLOCK_BYTES];
+
+        CacheGeneration current = acquireGeneration();
+        try {
+            Collection<String> internalKeys = current.engine.keys();
+            Set<String> keySet = new HashSet<>(internalKeys);
+
+            for (String internalKey : internalKeys) {
+                // chunks are exported as part of their value
+                if (Chunks.isChunkKey(internalKey, keySet)) {
+                    continue;
+                }
+
+                InputStream is = openValue(current, internalKey);
+                if (is == null) {
+                    continue;
+                }
+
+                CacheInputStream cis;
+                try {
+                    cis = openEntry(internalKey, is);
+                } catch (IOException | RuntimeException e) {
+                    is.close();
+                    throw e;
+                }
+
+                try {
+                    if (!isExpired(cis.getExpiresAt(), now)) {
+                        String key = keyIndex.originalKey(internalKey);
+                        KeyIndex.Entry entry = key == null ? null : keyIndex.get(key);
+                        List<String> tags = entry == null ? Collections.<String>emptyList() : entry.tags;
+
+                        Pack.writeEntry(dos, internalKey, key, tags, cis.getExpiresAt(), cis, buffer);
+                    }
+                } finally {
+                    cis.close();
+                }
+            }
+        } finally {
+            current.release();
+        }
+
+        Pack.writeEnd(dos);
+    }
+
+    /**
+     * Reads a section of a pack into this cache. Values that expired since they were exported are skipped.
+     *
+     * @param dis input stream of the pack
+     * @param version format version of the pack
+     * @throws IOException
+     */
+    void importEntries(@NonNull DataInputStream dis, int version) throws IOException {
+        awaitOpen();
+
+        long now = System.currentTimeMillis();
+        byte[] buffer = new byte[Pack.BLOCK_BYTES];
+
+        String internalKey = Pack.readKey(dis);
+        while (internalKey != null) {
+            String key = Pack.readOriginalKey(dis, version);
+            List<String> tags = Pack.readTags(dis, version, key);
+            long expiresAt = Pack.readExpiresAt(dis);
+
+            if (isExpired(expiresAt, now)) {
+                Pack.readValue(dis, null, buffer);
+            } else {
+                CacheOutputStream cos = openInternalStream(key, internalKey, expiresAt, tags);
+                try {
+                    Pack.readValue(dis, cos, buffer);
+                } catch (IOException | RuntimeException e) {
+                    cos.abort();
+                    throw e;
+                } finally {
+                    cos.close();
+                }
+            }
+
+            internalKey = Pack.readKey(dis);
+        }
+    }
+
+    // region open
+
+    private void awaitOpen() throws IOException {
+        awaitOpenAttempt();
+
+        IOException failure = openFailure;
+        if (failure != null) {
+            throw new IOException("Failed to open the cache", failure);
+        }
+    }
+
+    private void awaitOpenAttempt() throws IOException {
+        if (isOpen()) {
+            return;
+        }
+
+        try {
+            openLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the cache to open");
+        }
+    }
+
+    // endregion open
+
+    // region generations
+
+    private CacheGeneration acquireGeneration() {
+        while (true) {
+            CacheGeneration current = generation;
+            if (current.acquire()) {
+                return current;
+            }
+        }
+    }
+
+    private void removeInternal(List<String> internalKeys) throws IOException {
+        CacheGeneration current = acquireGeneration();
+        try {
+            removeValues(current, internalKeys);
+        } finally {
+            current.release();
+        }
+
+        expiryIndex.removeAll(internalKeys);
+        saveExpiryIndexIfStale();
+
+        keyIndex.removeInternal(internalKeys);
+    }
+
+    /**
+     * Opens the latest generation and deletes the older ones left over from previous processes.
+     * Moves the files of caches created before generations were introduced into the first generation.
+     *
+     * @return latest generation
+     * @throws IOException
+     */
+    private CacheGeneration openGenerations() throws IOException {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            throw new IOException(String.format("Failed to list cache directory %s", cacheDir));
+        }
+
+        List<File> legacyFiles = new ArrayList<>();
+        List<File> generationDirs = new ArrayList<>();
+        int latestId = -1;
+
+        for (File file : files) {
+            int id = parseGenerationId(file.getName());
+            if (id >= 0) {
+                generationDirs.add(file);
+                latestId = Math.max(latestId, id);
+            } else if (ShardedDiskCache.isShardFile(file.getName())) {
+                // left over from a sharded cache in the same directory
+                deleteAsync(file);
+            } else if (!file.getName().startsWith(EXPIRY_INDEX_FILE) && !file.getName().startsWith(KEY_INDEX_FILE)) {
+                legacyFiles.add(file);
+            }
+        }
+
+        if (latestId < 0) {
+            latestId = 0;
+            moveLegacyFiles(legacyFiles, generationDir(latestId));
+        }
+
+        for (File dir : generationDirs) {
+            if (parseGenerationId(dir.getName()) != latestId) {
+                deleteAsync(dir);
+            }
+        }
+
+        return openGeneration(latestId);
+    }
+
+    private CacheGeneration openGeneration(int id) throws IOException {
+        File dir = generationDir(id);
+        if (!dir.exists() && !dir.mkdir()) {
+            throw new IOException(String.format("Failed to create cache directory %s", dir));
+        }
+
+        return new CacheGeneration(id, dir, openEngine(dir, maxSizeBytes, storage, scheduler, evictionListener));
+    }
+
+    private File generationDir(int id) {
+        return new File(cacheDir, GENERATION_PREFIX + id);
+    }
+
+    private static int parseGenerationId(String name) {
+        if (!name.startsWith(GENERATION_PREFIX)) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(name.substring(GENERATION_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void moveLegacyFiles(List<File> files, File dir) throws IOException {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        if (!dir.mkdir()) {
+            throw new IOException(String.format("Failed to create cache directory %s", dir));
+        }
+
+        for (File file : files) {
+            if (!file.renameTo(new File(dir, file.getName()))) {
+                throw new IOException(String.format("Failed to move %s to %s", file, dir));
+            }
+        }
+    }
+
+    private void deleteAsync(final File dir) {
+        final Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override public void call() {
+                try {
+                    deleteContents(dir);
+                    dir.delete();
+                } catch (IOException ignored) {
+                    // retried when the cache is opened next time
+                } finally {
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+
+    static void deleteContents(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteContents(file);
+            }
+
+            if (!file.delete() && file.exists()) {
+                throw new IOException(String.format("Failed to delete %s", file));
+            }
+        }
+    }
+
+    // endregion generations
+
+    // region chunks
+
+    /**
+     * Opens the stored value of the key, reading chunked values chunk by chunk.
+     * Chunks are evicted one by one, so a chunked value with a missing chunk is removed as a whole
+     * and treated as missing.
+     *
+     * @param current acquired generation
+     * @param internalKey internal key
+     * @return input stream of the value or null if there is no value for the key
+     * @throws IOException
+     */
+    @Nullable private InputStream openValue(final CacheGeneration current, String internalKey) throws IOException {
+        InputStream is = current.engine.get(internalKey);
+        if (is == null) {
+            return null;
+        }
+
+        Chunks.Manifest manifest;
+        try {
+            if (!Chunks.isHead(is)) {
+                return is;
+            }
+
+            manifest = Chunks.skipToManifest(is, internalKey);
+        } catch (IOException | RuntimeException e) {
+            is.close();
             throw e;
         }
+
+        is.close();
+
+        if (!Chunks.containsAll(current.engine, internalKey, manifest)) {
+            List<String> internalKeys = Collections.singletonList(internalKey);
+            removeValues(current, internalKeys);
+            expiryIndex.remove(internalKey);
+            saveExpiryIndexIfStale();
+            keyIndex.removeInternal(internalKeys);
+            return null;
+        }
+
+        current.chunks.learn(internalKey, manifest);
+
+        // the head is checked against the manifest while it is read, the value may be overwritten in between
+        InputStream head = current.engine.get(internalKey);
+        if (head == null) {
+            return null;
+        }
+
+        // keep the generation while the chunks are read, a cleared generation no longer holds the value
+        if (!current.acquire()) {
+            head.close();
+            return null;
+        }
+
+        return new ChunkedInputStream(current.engine, internalKey, head, manifest, new Closeable() {
+            @Override public void close() {
+                current.release();
+            }
+        });
+    }
+
+    private static void removeValues(CacheGeneration current, List<String> internalKeys) throws IOException {
+        current.engine.removeAll(Chunks.withChunkKeys(current.engine, internalKeys));
+        current.chunks.forget(internalKeys);
     }
 
-    private static String toInternalKey(String key) {
+    /**
+     * Removes chunks that belong to no stored value, they are never read and would stay until evicted.
+     *
+     * @throws IOException
+     */
+    private void removeOrphanChunks() throws IOException {
+        CacheGeneration current = acquireGeneration();
         try {
-            MessageDigest m = MessageDigest.getInstance("MD5");
-            m.update(key.getBytes(ENCODING));
-            byte[] digest = m.digest();
-            BigInteger bigInt = new BigInteger(1, digest);
-            return bigInt.toString(16);
-        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
+            List<String> orphans = Chunks.orphanChunkKeys(current.engine, current.chunks);
+            if (!orphans.isEmpty()) {
+                current.engine.removeAll(orphans);
+            }
+        } finally {
+            current.release();
         }
     }
 
+    // endregion chunks
+
+    // region expiry
+
+    /**
+     * Periodically removes expired values on the scheduler, so they do not take up the size of the cache.
+     *
+     * @param scheduler scheduler to sweep on
+     * @param interval interval between sweeps
+     * @param unit time unit of the interval
+     */
+    @Override public synchronized void startExpirySweeper(@NonNull Scheduler scheduler, long interval,
+            @NonNull TimeUnit unit) {
+        stopExpirySweeper();
+
+        sweepWorker = scheduler.createWorker();
+        sweepWorker.schedulePeriodically(new Action0() {
+            @Override public void call() {
+                try {
+                    sweepExpired();
+                } catch (IOException ignored) {
+                    // expired values are still treated as missing, sweeping is retried on the next run
+                }
+            }
+        }, interval, interval, unit);
+    }
+
+    @Override public synchronized void stopExpirySweeper() {
+        if (sweepWorker != null) {
+            sweepWorker.unsubscribe();
+            sweepWorker = null;
+        }
+    }
+
+    /**
+     * Removes expired values in batches and saves the expiry index, then removes orphaned chunks.
+     *
+     * @throws IOException
+     */
+    @Override public void sweepExpired() throws IOException {
+        awaitOpen();
+
+        long now = System.currentTimeMillis();
+
+        List<String> batch = new ArrayList<>(SWEEP_BATCH_SIZE);
+
+        for (String internalKey : expiryIndex.expiredKeys(now)) {
+            // the index is a hint, check the expiry time stored with the value before removing it
+            if (isExpired(readExpiry(internalKey), now)) {
+                batch.add(internalKey);
+            } else {
+                expiryIndex.remove(internalKey);
+            }
+
+            if (batch.size() == SWEEP_BATCH_SIZE) {
+                removeInternal(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            removeInternal(batch);
+        }
+
+        expiryIndex.save();
+
+        removeOrphanChunks();
+    }
+
+    /**
+     * Checks if the value expired. An expiry time loaded from the saved index is confirmed against the expiry time
+     * stored with the value, the value may have been overwritten or removed after the index was saved.
+     *
+     * @param internalKey internal key
+     * @param now current time in milliseconds
+     * @return <tt>true</tt> if the value expired
+     * @throws IOException
+     */
+    private boolean isValueExpired(String internalKey, long now) throws IOException {
+        if (expiryIndex.isExpired(internalKey, now)) {
+            return true;
+        }
+
+        return expiryIndex.mayBeExpired(internalKey, now) && isExpired(readExpiry(internalKey), now);
+    }
+
+    /**
+     * Saves the expiry index on the scheduler once a saved expiry time was overwritten or removed, so the next
+     * process does not start from a stale index. Saves requested while one is scheduled are done by that one.
+     */
+    private void saveExpiryIndexIfStale() {
+        if (!expiryIndex.isStale() || !expirySaveScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override public void call() {
+                expirySaveScheduled.set(false);
+
+                // not while the cache is cleared or destroyed, which delete the saved index
+                synchronized (cacheDir) {
+                    try {
+                        expiryIndex.save();
+                    } catch (IOException ignored) {
+                        // saved again on the next change or sweep
+                    } finally {
+                        worker.unsubscribe();
+                    }
+                }
+            }
+        });
+    }
+
+    private long readExpiry(String internalKey) throws IOException {
+        InputStream is;
+        CacheGeneration current = acquireGeneration();
+        try {
+            is = openValue(current, internalKey);
+        } finally {
+            current.release();
+        }
+
+        if (is == null) {
+            return CacheInputStream.NO_EXPIRY;
+        }
+
+        try {
+            return openEntry(internalKey, is).getExpiresAt();
+        } finally {
+            is.close();
+        }
+    }
+
+    private CacheInputStream openEntry(String internalKey, InputStream is) throws IOException {
+        PushbackInputStream pis = new PushbackInputStream(is, 1);
+
+        int marker = pis.read();
+        if (marker != EXPIRY_MARKER) {
+            if (marker != -1) {
+                pis.unread(marker);
+            }
+
+            // drops an expiry time loaded from the saved index, if the value was overwritten since
+            expiryIndex.put(internalKey, CacheInputStream.NO_EXPIRY);
+            saveExpiryIndexIfStale();
+
+            return new CacheInputStream(pis, CacheInputStream.NO_EXPIRY);
+        }
+
+        long expiresAt = 0;
+        for (int i = 0; i < EXPIRY_BYTES; i++) {
+            int b = pis.read();
+            if (b == -1) {
+                throw new EOFException(String.format("Truncated expiry time of key %s", internalKey));
+            }
+
+            expiresAt = expiresAt << Byte.SIZE | b;
+        }
+
+        // learn the expiry times of values written by previous processes
+        expiryIndex.put(internalKey, expiresAt);
+        saveExpiryIndexIfStale();
+
+        return new CacheInputStream(pis, expiresAt);
+    }
+
+    private static byte[] encodeExpiry(long expiresAt) {
+        byte[] bytes = new byte[1 + EXPIRY_BYTES];
+        bytes[0] = EXPIRY_MARKER;
+
+        for (int i = EXPIRY_BYTES; i > 0; i--) {
+            bytes[i] = (byte) (expiresAt & BYTE_MASK);
+            expiresAt >>>= Byte.SIZE;
+        }
+
+        return bytes;
+    }
+
+    private static boolean isExpired(long expiresAt, long now) {
+        return expiresAt != CacheInputStream.NO_EXPIRY && expiresAt <= now;
+    }
+
+    // endregion expiry
+
+    // region private helpers
+
+    private String toInternalKey(String key) {
+        return keyHasher.hash(key);
+    }
+
     // endregion private helpers
 }
@@ -0,0 +1,132 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Coalesces concurrent loads of the same key and type into a single load.
+ * Callers that arrive while a load is in flight wait for it and share its result.
+ * <p>
+ * Writes invalidate the key once they are done, so callers that arrive afterwards start a new load
+ * instead of attaching to a load that may have read the previous value.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class SingleFlight {
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the value of the key, or waits for the load of the same key and type already in flight.
+     *
+     * @param key key
+     * @param typeOfT type of the value
+     * @param loader loads the value
+     * @param <T> T of the value
+     * @return loaded value
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    <T> T load(@NonNull String key, @NonNull Type typeOfT, @NonNull Loader<T> loader) throws IOException {
+        Flight flight = new Flight(typeOfT);
+
+        Flight pending = flights.putIfAbsent(key, flight);
+        if (pending != null) {
+            if (pending.typeOfT.equals(typeOfT)) {
+                return (T) pending.await();
+            }
+
+            // the same key is loaded as a different type, do not block on it
+            return loader.load();
+        }
+
+        try {
+            T value = loader.load();
+            flight.succeed(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.fail(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    void invalidate(@NonNull String key) {
+        flights.remove(key);
+    }
+
+    void invalidateAll(@NonNull Collection<String> keys) {
+        for (String key : keys) {
+            flights.remove(key);
+        }
+    }
+
+    void invalidateAll() {
+        flights.clear();
+    }
+
+    /**
+     * Loads a value.
+     *
+     * @param <T> T of the value
+     */
+    interface Loader<T> {
+
+        T load() throws IOException;
+    }
+
+    private static final class Flight {
+
+        final Type typeOfT;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Object value;
+        private Throwable failure;
+
+        Flight(Type typeOfT) {
+            this.typeOfT = typeOfT;
+        }
+
+        void succeed(Object result) {
+            value = result;
+            done.countDown();
+        }
+
+        void fail(Throwable throwable) {
+            failure = throwable;
+            done.countDown();
+        }
+
+        Object await() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a pending read");
+            }
+
+            if (failure == null) {
+                return value;
+            }
+
+            if (failure instanceof IOException) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+
+            throw (Error) failure;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.simonpercic.bucket;
+
+import com.github.simonpercic.bucket.BucketStats.Mode;
+import com.github.simonpercic.bucket.BucketStats.Operation;
+
+/**
+ * Records the statistics of a {@link Bucket} into striped counters and latency histograms.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class StatsRecorder implements EvictionListener {
+
+    private final LatencyHistogram[] latencies;
+
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter memoryHits = new StripedCounter();
+
+    private final StripedCounter bytesRead = new StripedCounter();
+    private final StripedCounter bytesWritten = new StripedCounter();
+    private final StripedCounter serializeNanos = new StripedCounter();
+    private final StripedCounter deserializeNanos = new StripedCounter();
+    private final StripedCounter readIoNanos = new StripedCounter();
+    private final StripedCounter writeIoNanos = new StripedCounter();
+
+    private final StripedCounter evictions = new StripedCounter();
+    private final StripedCounter evictedBytes = new StripedCounter();
+
+    StatsRecorder() {
+        latencies = new LatencyHistogram[Operation.values().length * Mode.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    void recordLatency(Operation operation, Mode mode, long nanos) {
+        latencies[BucketStats.latencyIndex(operation, mode)].record(nanos);
+    }
+
+    void recordLookup(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    void recordMemoryHit() {
+        memoryHits.increment();
+    }
+
+    void recordRead(long bytes, long ioTime, long deserializeTime) {
+        bytesRead.add(bytes);
+        readIoNanos.add(ioTime);
+        deserializeNanos.add(deserializeTime);
+    }
+
+    void recordWrite(long bytes, long ioTime, long serializeTime) {
+        bytesWritten.add(bytes);
+        writeIoNanos.add(ioTime);
+        serializeNanos.add(serializeTime);
+    }
+
+    @Override public void onEvicted(long bytes) {
+        evictions.increment();
+        evictedBytes.add(bytes);
+    }
+
+    BucketStats snapshot(long size, long maxSize) {
+        BucketStats.Latency[] latencySnapshots = new BucketStats.Latency[latencies.length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencySnapshots[i] = latencies[i].snapshot();
+        }
+
+        return new BucketStats(latencySnapshots, hits.sum(), misses.sum(), memoryHits.sum(), bytesRead.sum(),
+                bytesWritten.sum(), serializeNanos.sum(), deserializeNanos.sum(), readIoNanos.sum(),
+                writeIoNanos.sum(), evictions.sum(), evictedBytes.sum(), size, maxSize);
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.simonpercic.bucket;
+
+/**
+ * Storage engines Bucket can store the values with.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public enum Storage {
+
+    /**
+     * Every value is stored in its own file, managed by DiskLruCache. The default.
+     */
+    DISK_LRU_CACHE,
+
+    /**
+     * Values are appended to memory-mapped segment files, indexed in memory.
+     * Suited for many small values: avoids a file per value and opening a file on every read.
+     */
+    LOG_STRUCTURED
+}
@@ -0,0 +1,70 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Stores the serialized values on disk, keyed by internal keys.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+interface StorageEngine {
+
+    /**
+     * Opens a stream to read the value of the key. The caller is responsible for closing the stream.
+     * The stream reports the bytes of the value that were not read yet as available, and skips without reading.
+     *
+     * @param key internal key
+     * @return input stream of the value or null if there is no value for the key
+     * @throws IOException
+     */
+    @Nullable InputStream get(@NonNull String key) throws IOException;
+
+    /**
+     * Opens a stream to write the value of the key. The value is committed when the stream is closed.
+     *
+     * @param key internal key
+     * @return output stream to write the value to
+     * @throws IOException
+     */
+    @NonNull CacheOutputStream edit(@NonNull String key) throws IOException;
+
+    boolean contains(@NonNull String key) throws IOException;
+
+    /**
+     * Returns a snapshot of the keys of the stored values. Values may be removed or evicted before they are read.
+     *
+     * @return internal keys
+     */
+    @NonNull Collection<String> keys();
+
+    void remove(@NonNull String key) throws IOException;
+
+    /**
+     * Removes the values of all keys, taking the lock of the engine once.
+     *
+     * @param keys internal keys
+     * @throws IOException
+     */
+    void removeAll(@NonNull Collection<String> keys) throws IOException;
+
+    /**
+     * Returns the number of bytes currently used to store the values.
+     *
+     * @return size in bytes
+     */
+    long size();
+
+    long getMaxSize();
+
+    /**
+     * Removes all values and deletes the directory, the engine can not be used afterwards.
+     *
+     * @throws IOException
+     */
+    void delete() throws IOException;
+}
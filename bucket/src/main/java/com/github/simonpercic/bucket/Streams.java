@@ -0,0 +1,93 @@
+package com.github.simonpercic.bucket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Stream helpers of the raw byte methods and of the key index and pack formats.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class Streams {
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private Streams() {
+        // no instance
+    }
+
+    static byte[] readFully(InputStream is) throws IOException {
+        // a single entry is backed by a file or a buffer, so the available bytes are the rest of the value,
+        // chunked values report only the bytes of the current chunk
+        byte[] bytes = new byte[is.available()];
+
+        int offset = 0;
+        while (offset < bytes.length) {
+            int read = is.read(bytes, offset, bytes.length - offset);
+            if (read == -1) {
+                return Arrays.copyOf(bytes, offset);
+            }
+
+            offset += read;
+        }
+
+        int next = is.read();
+        if (next == -1) {
+            return bytes;
+        }
+
+        // the stream reported fewer bytes than it has, read the rest
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length * 2 + 1);
+        bos.write(bytes);
+        bos.write(next);
+        copy(is, bos);
+        return bos.toByteArray();
+    }
+
+    static void copy(InputStream source, OutputStream target) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+
+        int read = source.read(buffer);
+        while (read != -1) {
+            target.write(buffer, 0, read);
+            read = source.read(buffer);
+        }
+    }
+
+    /**
+     * Writes the string as UTF-8 bytes prefixed with their int length.
+     * Unlike {@link DataOutputStream#writeUTF(String)}, strings longer than 65535 bytes are supported.
+     *
+     * @param dos output stream
+     * @param value string
+     * @throws IOException
+     */
+    static void writeString(DataOutputStream dos, String value) throws IOException {
+        byte[] bytes = value.getBytes(SimpleDiskCache.ENCODING);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param dis input stream
+     * @return string
+     * @throws IOException if the stream ends or the length is negative
+     */
+    static String readString(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length < 0) {
+            throw new IOException(String.format("Corrupt string of length %d", length));
+        }
+
+        byte[] bytes = new byte[length];
+        dis.readFully(bytes);
+        return new String(bytes, SimpleDiskCache.ENCODING);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.simonpercic.bucket;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that spreads increments of different threads over separate cells, so concurrent writers rarely contend.
+ * Reading the sum is slower than incrementing, it adds up all cells.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class StripedCounter {
+
+    static final int STRIPES = stripeCount();
+
+    private static final int MAX_STRIPES = 16;
+
+    // cells are spaced a cache line apart, so threads updating neighbouring cells do not share a line
+    private static final int CELL_SPACING = 8;
+
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * CELL_SPACING);
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long value) {
+        cells.getAndAdd(stripe() * CELL_SPACING, value);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * CELL_SPACING);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the stripe of the current thread.
+     *
+     * @return stripe index, between 0 and {@link #STRIPES} - 1
+     */
+    static int stripe() {
+        long hash = Thread.currentThread().getId() * GOLDEN_RATIO;
+        return (int) (hash >>> Integer.SIZE) & (STRIPES - 1);
+    }
+
+    private static int stripeCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        int stripes = 1;
+        while (stripes < processors && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Writes cache values with the configured {@link BucketSerializer} and reads them with the serializer that wrote them.
+ * <p>
+ * Every entry starts with a header byte holding the id of the serializer.
+ * Entries written before serializers were introduced have no header and are plain json,
+ * which always starts with a printable character, so they are read with the {@link GsonSerializer}.
+ * <p>
+ * Values compressed with a {@link Compression} have the high bit of the header set
+ * and the id of the compression codec in the two bits below it.
+ * Compressed values are always read, whether compression is enabled for writing or not.
+ * <p>
+ * Raw values, put as bytes or streams, are stored as they are after the {@link #RAW_HEADER},
+ * which has the compressed flag set with serializer id 0 that no serializer can have.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class ValueCodec {
+
+    private static final int MIN_PRINTABLE = 0x20;
+    private static final int MAX_PRINTABLE = 0x7f;
+
+    private static final int COMPRESSED_FLAG = 0x80;
+    private static final int COMPRESSION_SHIFT = 5;
+    private static final int SERIALIZER_ID_MASK = 0x1f;
+
+    static final int RAW_HEADER = COMPRESSED_FLAG;
+
+    private final BucketSerializer serializer;
+    private final BucketSerializer[] serializers = new BucketSerializer[BucketSerializer.MAX_ID + 1];
+
+    @Nullable private final Compression compression;
+    private final int compressionLevel;
+    private final int compressionThreshold;
+
+    ValueCodec(@NonNull BucketSerializer serializer, @NonNull Collection<BucketSerializer> readSerializers) {
+        this(serializer, readSerializers, null, 0, 0);
+    }
+
+    ValueCodec(@NonNull BucketSerializer serializer, @NonNull Collection<BucketSerializer> readSerializers,
+            @Nullable Compression compression, int compressionLevel, int compressionThreshold) {
+        this.serializer = serializer;
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
+        this.compressionThreshold = compressionThreshold;
+
+        for (BucketSerializer readSerializer : readSerializers) {
+            register(readSerializer);
+        }
+
+        register(serializer);
+
+        if (serializers[GsonSerializer.ID] == null) {
+            throw new IllegalArgumentException("A GsonSerializer is required to read entries without a header");
+        }
+    }
+
+    void write(@NonNull OutputStream os, @NonNull Object object) throws IOException {
+        int header = serializer.getId();
+
+        if (compression == null) {
+            os.write(header);
+            serializer.serialize(object, os);
+            return;
+        }
+
+        int compressedHeader = COMPRESSED_FLAG | compression.id << COMPRESSION_SHIFT | header;
+
+        CompressingOutputStream cos = new CompressingOutputStream(os, header, compressedHeader, compression,
+                compressionLevel, compressionThreshold);
+
+        serializer.serialize(object, cos);
+        cos.finish();
+    }
+
+    @Nullable <T> T read(@NonNull InputStream is, @NonNull Type typeOfT) throws IOException {
+        int header = is.read();
+        if (header == -1) {
+            return null;
+        }
+
+        if (header == RAW_HEADER) {
+            throw new IOException("The value was put as raw bytes, read it with getBytes or openStream");
+        }
+
+        if (header >= MIN_PRINTABLE && header <= MAX_PRINTABLE) {
+            PushbackInputStream pis = new PushbackInputStream(is, 1);
+            pis.unread(header);
+            return serializers[GsonSerializer.ID].deserialize(pis, typeOfT);
+        }
+
+        if ((header & COMPRESSED_FLAG) == 0) {
+            return getReadSerializer(header).deserialize(is, typeOfT);
+        }
+
+        int compressionId = (header & ~COMPRESSED_FLAG) >> COMPRESSION_SHIFT;
+
+        Compression readCompression = Compression.forId(compressionId);
+        if (readCompression == null) {
+            throw new IOException(String.format("Unknown compression id %d", compressionId));
+        }
+
+        BucketSerializer readSerializer = getReadSerializer(header & SERIALIZER_ID_MASK);
+
+        InputStream dis = readCompression.decompress(is);
+        try {
+            return readSerializer.deserialize(dis, typeOfT);
+        } finally {
+            dis.close();
+        }
+    }
+
+    void writeRawHeader(@NonNull OutputStream os) throws IOException {
+        os.write(RAW_HEADER);
+    }
+
+    /**
+     * Reads the header of a raw value, leaving the stream at the first byte of the value.
+     *
+     * @param is input stream of the value
+     * @throws IOException if the value was not put as raw bytes
+     */
+    void readRawHeader(@NonNull InputStream is) throws IOException {
+        if (is.read() != RAW_HEADER) {
+            throw new IOException("The value was not put as raw bytes, read it with get");
+        }
+    }
+
+    BucketSerializer getSerializer() {
+        return serializer;
+    }
+
+    private BucketSerializer getReadSerializer(int id) throws IOException {
+        BucketSerializer readSerializer = id <= BucketSerializer.MAX_ID ? serializers[id] : null;
+        if (readSerializer == null) {
+            throw new IOException(String.format("No serializer registered for id %d", id));
+        }
+
+        return readSerializer;
+    }
+
+    private void register(BucketSerializer readSerializer) {
+        int id = readSerializer.getId();
+        if (id < BucketSerializer.MIN_ID || id > BucketSerializer.MAX_ID) {
+            throw new IllegalArgumentException(String.format("Invalid serializer id %d", id));
+        }
+
+        serializers[id] = readSerializer;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Subscriber;
+
+/**
+ * Change listener that emits the values of a key to a subscriber.
+ * Emissions from concurrent writers are serialized without locking, a writer that finds another writer emitting
+ * leaves its value for that writer to emit, so a busy subscriber only skips values that were already replaced.
+ *
+ * @param <T> T of cache value
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class ValueObserver<T> implements ChangeNotifier.Listener {
+
+    // the initial value was not offered yet and no change happened
+    private static final Object INITIAL = new Object();
+
+    // nothing left to emit
+    private static final Object EMPTY = new Object();
+
+    // stands in for a null value
+    private static final Object REMOVED = new Object();
+
+    private final Subscriber<? super T> subscriber;
+    private final Class<?> rawType;
+
+    private final AtomicReference<Object> latest = new AtomicReference<>(INITIAL);
+    private final AtomicInteger wip = new AtomicInteger();
+
+    @Nullable private volatile Throwable error;
+
+    // the error was emitted, only accessed by the emitting writer
+    private boolean terminated;
+
+    ValueObserver(Subscriber<? super T> subscriber, Class<?> rawType) {
+        this.subscriber = subscriber;
+        this.rawType = rawType;
+    }
+
+    /**
+     * Offers the value read when subscribing. Dropped if a change already happened, since it is newer.
+     *
+     * @param value current value or null
+     */
+    void offerInitial(@Nullable T value) {
+        if (latest.compareAndSet(INITIAL, wrap(value))) {
+            drain();
+        }
+    }
+
+    /**
+     * Offers the failure of the initial read, emitted after a change that is already waiting to be emitted.
+     * Nothing is emitted afterwards.
+     *
+     * @param throwable failure
+     */
+    void offerError(Throwable throwable) {
+        error = throwable;
+        drain();
+    }
+
+    @Override public void onChanged(@Nullable Object value) {
+        // a value of another type can not be emitted as T, deserializing it would mean a disk read
+        if (value != null && !rawType.isInstance(value)) {
+            return;
+        }
+
+        latest.set(wrap(value));
+        drain();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        do {
+            if (terminated) {
+                continue;
+            }
+
+            Object value = latest.get();
+
+            if (value != INITIAL && value != EMPTY && latest.compareAndSet(value, EMPTY)
+                    && !subscriber.isUnsubscribed()) {
+                subscriber.onNext(value == REMOVED ? null : (T) value);
+            }
+
+            Throwable throwable = error;
+            if (throwable != null) {
+                terminated = true;
+                subscriber.onError(throwable);
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private static Object wrap(@Nullable Object value) {
+        return value == null ? REMOVED : value;
+    }
+}
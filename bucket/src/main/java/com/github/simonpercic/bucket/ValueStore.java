@@ -0,0 +1,452 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rx.schedulers.Schedulers;
+
+/**
+ * Reads and writes the values of a Bucket through the write-behind queue, the in-memory tier and the disk cache,
+ * keeping the tiers consistent with each other, and notifies the value observers of changes.
+ * Arguments are checked by the Bucket.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class ValueStore {
+
+    static final List<String> NO_TAGS = Collections.emptyList();
+
+    private final DiskCache cache;
+    private final ValueCodec codec;
+    @Nullable private final MemoryCache memoryCache;
+    @Nullable private final WriteBehindQueue writeBehind;
+    @Nullable private final StatsRecorder stats;
+    private final ChangeNotifier changeNotifier;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final Preloader preloader;
+
+    ValueStore(DiskCache cache, ValueCodec codec, @Nullable MemoryCache memoryCache,
+            @Nullable WriteBehindQueue writeBehind, @Nullable StatsRecorder stats, ChangeNotifier changeNotifier) {
+        this.cache = cache;
+        this.codec = codec;
+        this.memoryCache = memoryCache;
+        this.writeBehind = writeBehind;
+        this.stats = stats;
+        this.changeNotifier = changeNotifier;
+
+        // not on the subscribe scheduler, preload may be called on its only thread
+        this.preloader = new Preloader(Schedulers.io(), new Preloader.KeyReader() {
+            @Override public void read(String key, Type typeOfT) throws IOException {
+                preload(key, typeOfT);
+            }
+        });
+    }
+
+    @Nullable
+    <T> T read(String key, Type typeOfT) throws IOException {
+        T value = lookup(key, typeOfT);
+
+        if (stats != null) {
+            stats.recordLookup(value != null);
+        }
+
+        return value;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private <T> T lookup(final String key, final Type typeOfT) throws IOException {
+        if (writeBehind != null) {
+            WriteBehindQueue.PendingWrite pending = writeBehind.get(key);
+            if (pending != null) {
+                if (pending.isExpired(System.currentTimeMillis())) {
+                    return null;
+                }
+
+                if (pending.isInstance(typeOfT)) {
+                    recordMemoryHit();
+                    return (T) pending.value;
+                }
+
+                // read as a different type, write it so it is read back through the serializer
+                writeBehind.flush();
+            }
+        }
+
+        if (memoryCache != null) {
+            T cached = memoryCache.get(key, typeOfT);
+            if (cached != null) {
+                recordMemoryHit();
+                return cached;
+            }
+        }
+
+        // concurrent reads of the same key and type share one disk read and deserialization
+        return singleFlight.load(key, typeOfT, new SingleFlight.Loader<T>() {
+            @Override public T load() throws IOException {
+                return readFromDisk(key, typeOfT);
+            }
+        });
+    }
+
+    @Nullable
+    private <T> T readFromDisk(String key, Type typeOfT) throws IOException {
+        long stamp = 0;
+
+        if (memoryCache != null) {
+            stamp = memoryCache.stamp();
+        }
+
+        long start = nanoTime();
+        CacheInputStream is = cache.getStream(key);
+
+        if (is == null) {
+            return null;
+        }
+
+        T value;
+        long deserializeStart = nanoTime();
+        long deserializeEnd;
+        try {
+            value = codec.read(is, typeOfT);
+        } finally {
+            deserializeEnd = nanoTime();
+            is.close();
+        }
+
+        if (stats != null) {
+            long deserializeNanos = deserializeEnd - deserializeStart;
+            stats.recordRead(is.getBytesRead(), System.nanoTime() - start - deserializeNanos, deserializeNanos);
+        }
+
+        if (memoryCache != null && value != null) {
+            memoryCache.putIfUnchanged(key, value, typeOfT, is.getExpiresAt(), stamp);
+        }
+
+        return value;
+    }
+
+    // replaces a pending put of the key and notifies the observers
+    void putValue(String key, Object object, long expiresAt, List<String> tags) throws IOException {
+        if (writeBehind != null) {
+            writeBehind.remove(key);
+        }
+
+        put(key, object, expiresAt, tags);
+        changeNotifier.notifyChanged(key, object);
+    }
+
+    // queued if write-behind is enabled, written right away otherwise
+    void putBehind(String key, Object object, long expiresAt) throws IOException {
+        if (writeBehind != null) {
+            writeBehind.enqueue(key, object, expiresAt);
+            changeNotifier.notifyChanged(key, object);
+        } else {
+            putValue(key, object, expiresAt, NO_TAGS);
+        }
+    }
+
+    // writes to disk and memory, also used by the write-behind queue to write its pending puts
+    void put(String key, Object object, long expiresAt, List<String> tags) throws IOException {
+        write(key, object, expiresAt, tags);
+
+        if (memoryCache != null) {
+            memoryCache.put(key, object, expiresAt);
+        }
+
+        singleFlight.invalidate(key);
+    }
+
+    void putAll(Map<String, ?> values) throws IOException {
+        if (writeBehind != null) {
+            writeBehind.removeAll(values.keySet());
+        }
+
+        // if the batch fails halfway, memory must not keep values older than the ones already on disk
+        if (memoryCache != null) {
+            memoryCache.removeAll(values.keySet());
+        }
+
+        try {
+            for (Map.Entry<String, ?> entry : values.entrySet()) {
+                write(entry.getKey(), entry.getValue(), CacheInputStream.NO_EXPIRY, NO_TAGS);
+                changeNotifier.notifyChanged(entry.getKey(), entry.getValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            // a disk read during the batch may have put back a value that was already replaced
+            if (memoryCache != null) {
+                memoryCache.removeAll(values.keySet());
+            }
+
+            throw e;
+        } finally {
+            singleFlight.invalidateAll(values.keySet());
+        }
+
+        if (memoryCache != null) {
+            memoryCache.putAll(values);
+        }
+    }
+
+    private void write(String key, Object object, long expiresAt, List<String> tags) throws IOException {
+        long start = nanoTime();
+        CacheOutputStream os = cache.openStream(key, expiresAt, tags);
+
+        // skip the expiry time written by the cache
+        long headerBytes = os.getBytesWritten();
+
+        long serializeStart = nanoTime();
+        long serializeEnd;
+        try {
+            codec.write(os, object);
+        } catch (IOException | RuntimeException e) {
+            os.abort();
+            throw e;
+        } finally {
+            serializeEnd = nanoTime();
+            os.close();
+        }
+
+        if (stats != null) {
+            long serializeNanos = serializeEnd - serializeStart;
+            stats.recordWrite(os.getBytesWritten() - headerBytes, System.nanoTime() - start - serializeNanos,
+                    serializeNanos);
+        }
+    }
+
+    boolean contains(String key) throws IOException {
+        if (writeBehind != null) {
+            WriteBehindQueue.PendingWrite pending = writeBehind.get(key);
+            if (pending != null) {
+                return !pending.isExpired(System.currentTimeMillis());
+            }
+        }
+
+        return cache.contains(key);
+    }
+
+    long getExpiresAt(String key) throws IOException {
+        if (writeBehind != null) {
+            WriteBehindQueue.PendingWrite pending = writeBehind.get(key);
+            if (pending != null) {
+                return pending.expiresAt;
+            }
+        }
+
+        return cache.getExpiresAt(key);
+    }
+
+    void remove(String key) throws IOException {
+        if (writeBehind != null) {
+            writeBehind.remove(key);
+        }
+
+        // memory is invalidated after the disk, so a concurrent disk read can not put the removed value back
+        try {
+            cache.remove(key);
+        } finally {
+            if (memoryCache != null) {
+                memoryCache.remove(key);
+            }
+        }
+
+        singleFlight.invalidate(key);
+        changeNotifier.notifyChanged(key, null);
+    }
+
+    void removeAll(Collection<String> keys) throws IOException {
+        if (writeBehind != null) {
+            writeBehind.removeAll(keys);
+        }
+
+        try {
+            cache.removeAll(keys);
+        } finally {
+            if (memoryCache != null) {
+                memoryCache.removeAll(keys);
+            }
+        }
+
+        singleFlight.invalidateAll(keys);
+        changeNotifier.notifyRemoved(keys);
+    }
+
+    void clear() throws IOException {
+        if (writeBehind != null) {
+            writeBehind.clear();
+        }
+
+        try {
+            cache.clear();
+        } finally {
+            if (memoryCache != null) {
+                memoryCache.clear();
+            }
+        }
+
+        singleFlight.invalidateAll();
+        changeNotifier.notifyCleared();
+    }
+
+    void importFrom(InputStream is) throws IOException {
+        try {
+            cache.importFrom(is);
+        } finally {
+            if (memoryCache != null) {
+                memoryCache.clear();
+            }
+
+            singleFlight.invalidateAll();
+        }
+    }
+
+    void preload(Map<String, Type> types) throws IOException {
+        if (memoryCache != null) {
+            preloader.preload(types);
+        }
+    }
+
+    private void preload(final String key, final Type typeOfT) throws IOException {
+        // pending writes are already in memory
+        if (writeBehind != null && writeBehind.get(key) != null) {
+            return;
+        }
+
+        if (memoryCache != null && memoryCache.get(key, typeOfT) != null) {
+            return;
+        }
+
+        singleFlight.load(key, typeOfT, new SingleFlight.Loader<Object>() {
+            @Override public Object load() throws IOException {
+                return readFromDisk(key, typeOfT);
+            }
+        });
+    }
+
+    @Nullable
+    byte[] readBytes(String key) throws IOException {
+        long start = nanoTime();
+
+        CacheInputStream is = openRaw(key);
+        if (is == null) {
+            return null;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Streams.readFully(is);
+        } finally {
+            is.close();
+        }
+
+        if (stats != null) {
+            stats.recordRead(bytes.length, System.nanoTime() - start, 0);
+        }
+
+        return bytes;
+    }
+
+    @Nullable
+    CacheInputStream openRaw(String key) throws IOException {
+        // a queued put replaces the value on disk, write it first
+        if (writeBehind != null && writeBehind.get(key) != null) {
+            writeBehind.flush();
+        }
+
+        CacheInputStream is = cache.getStream(key);
+
+        if (stats != null) {
+            stats.recordLookup(is != null);
+        }
+
+        if (is == null) {
+            return null;
+        }
+
+        try {
+            codec.readRawHeader(is);
+        } catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+
+        return is;
+    }
+
+    void putRaw(String key, @Nullable byte[] bytes, @Nullable InputStream source) throws IOException {
+        if (writeBehind != null) {
+            writeBehind.remove(key);
+        }
+
+        long start = nanoTime();
+        CacheOutputStream os = cache.openStream(key, CacheInputStream.NO_EXPIRY);
+
+        long headerBytes = 0;
+        try {
+            codec.writeRawHeader(os);
+            headerBytes = os.getBytesWritten();
+
+            if (bytes != null) {
+                os.write(bytes);
+            } else if (source != null) {
+                Streams.copy(source, os);
+            }
+        } catch (IOException | RuntimeException e) {
+            os.abort();
+            throw e;
+        } finally {
+            try {
+                os.close();
+            } finally {
+                // raw values are not kept in memory, drop the previous value after the commit,
+                // so a concurrent disk read can not put it back
+                if (memoryCache != null) {
+                    memoryCache.remove(key);
+                }
+            }
+        }
+
+        if (stats != null) {
+            stats.recordWrite(os.getBytesWritten() - headerBytes, System.nanoTime() - start, 0);
+        }
+
+        singleFlight.invalidate(key);
+
+        // raw values can not be read as objects, observers receive null
+        changeNotifier.notifyChanged(key, null);
+    }
+
+    private long nanoTime() {
+        if (stats == null) {
+            return 0;
+        }
+
+        return System.nanoTime();
+    }
+
+    private void recordMemoryHit() {
+        if (stats != null) {
+            stats.recordMemoryHit();
+        }
+    }
+
+    static long expiresAt(long ttl, TimeUnit unit) {
+        long now = System.currentTimeMillis();
+        long ttlMillis = unit.toMillis(ttl);
+
+        if (ttlMillis > Long.MAX_VALUE - now) {
+            return Long.MAX_VALUE;
+        }
+
+        return now + Math.max(ttlMillis, 1);
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.simonpercic.bucket;
+
+/**
+ * Calculates the weight of an in-memory cache entry.
+ * Used to bound the in-memory tier by something other than the number of entries.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface Weigher {
+
+    /**
+     * Returns the weight of the cache entry, must be non-negative.
+     *
+     * @param key key
+     * @param value deserialized cache value
+     * @return weight of the entry
+     */
+    int weigh(String key, Object value);
+}
@@ -0,0 +1,257 @@
+package com.github.simonpercic.bucket;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+
+/**
+ * Bounded queue of pending asynchronous puts, written to the cache in batches.
+ * <p>
+ * Pending puts are keyed by cache key, a put replaces the pending put of the same key,
+ * so only the newest value of a key is written. The queue is flushed periodically on the scheduler,
+ * and by the putting thread once it holds max pending puts. Pending puts are not persisted.
+ * <p>
+ * Removing a pending put waits for a flush that is writing the same key, so a synchronous put or remove
+ * of the key that follows is never overtaken by the older queued value.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class WriteBehindQueue {
+
+    private final int maxPendingWrites;
+    private final long flushIntervalMillis;
+
+    private final LinkedHashMap<String, PendingWrite> pending = new LinkedHashMap<>();
+
+    // flushes are serialized, so an older value of a key is never written after a newer one
+    private final Object flushLock = new Object();
+
+    private Writer writer;
+    @Nullable private Scheduler.Worker flushWorker;
+    private boolean stopped;
+
+    // key of the pending put that is being written by a flush
+    @Nullable private String writingKey;
+
+    WriteBehindQueue(int maxPendingWrites, long flushIntervalMillis) {
+        this.maxPendingWrites = maxPendingWrites;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Starts flushing the queue periodically.
+     *
+     * @param queueWriter writes the pending puts
+     * @param scheduler scheduler to flush on
+     */
+    synchronized void start(@NonNull Writer queueWriter, @NonNull Scheduler scheduler) {
+        this.writer = queueWriter;
+
+        flushWorker = scheduler.createWorker();
+        flushWorker.schedulePeriodically(new Action0() {
+            @Override public void call() {
+                try {
+                    flush();
+                } catch (IOException ignored) {
+                    // puts that failed to flush are dropped, the values are missing from the cache
+                }
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops flushing the queue periodically and writes the pending puts.
+     * Puts enqueued afterwards are written right away.
+     *
+     * @throws IOException the first failure, after all pending puts were written
+     */
+    void stop() throws IOException {
+        synchronized (this) {
+            stopped = true;
+
+            if (flushWorker != null) {
+                flushWorker.unsubscribe();
+                flushWorker = null;
+            }
+        }
+
+        flush();
+    }
+
+    /**
+     * Adds a pending put, replacing the pending put of the same key.
+     * Flushes the queue if it is full.
+     *
+     * @param key key
+     * @param value value
+     * @param expiresAt expiry time of the value or {@link CacheInputStream#NO_EXPIRY}
+     * @throws IOException
+     */
+    void enqueue(@NonNull String key, @NonNull Object value, long expiresAt) throws IOException {
+        boolean full;
+
+        synchronized (this) {
+            pending.put(key, new PendingWrite(value, expiresAt));
+            full = stopped || pending.size() >= maxPendingWrites;
+        }
+
+        if (full) {
+            flush();
+        }
+    }
+
+    @Nullable synchronized PendingWrite get(@NonNull String key) {
+        return pending.get(key);
+    }
+
+    /**
+     * Removes the pending put of the key, waiting until a flush that is writing the key has written it.
+     *
+     * @param key key
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    synchronized void remove(@NonNull String key) throws InterruptedIOException {
+        pending.remove(key);
+        awaitWritten(Collections.singleton(key));
+    }
+
+    synchronized void removeAll(@NonNull Collection<String> keys) throws InterruptedIOException {
+        for (String key : keys) {
+            pending.remove(key);
+        }
+
+        awaitWritten(keys);
+    }
+
+    synchronized void clear() throws InterruptedIOException {
+        pending.clear();
+        awaitWritten(null);
+    }
+
+    /**
+     * Writes all pending puts. Puts stay visible to reads until they are written.
+     * Puts that fail to write are dropped.
+     *
+     * @throws IOException the first failure, after all pending puts were written
+     */
+    void flush() throws IOException {
+        synchronized (flushLock) {
+            List<String> keys;
+            List<PendingWrite> writes;
+            Writer batchWriter;
+
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                keys = new ArrayList<>(pending.keySet());
+                writes = new ArrayList<>(pending.values());
+                batchWriter = writer;
+            }
+
+            IOException failure = null;
+
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                PendingWrite write = writes.get(i);
+
+                synchronized (this) {
+                    // the key was removed, or put again, since the batch was taken
+                    if (pending.get(key) != write) {
+                        continue;
+                    }
+
+                    writingKey = key;
+                }
+
+                try {
+                    batchWriter.write(key, write.value, write.expiresAt);
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                } finally {
+                    written(key, write);
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private synchronized void written(String key, PendingWrite write) {
+        writingKey = null;
+
+        // the key may have been put again while it was written
+        if (pending.get(key) == write) {
+            pending.remove(key);
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Waits while a flush is writing one of the keys, called holding the lock of the queue.
+     *
+     * @param keys keys or null to wait for any key
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    private void awaitWritten(@Nullable Collection<String> keys) throws InterruptedIOException {
+        while (writingKey != null && (keys == null || keys.contains(writingKey))) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a pending write");
+            }
+        }
+    }
+
+    /**
+     * Writes a pending put to the cache.
+     */
+    interface Writer {
+
+        void write(@NonNull String key, @NonNull Object value, long expiresAt) throws IOException;
+    }
+
+    /**
+     * A put waiting to be written.
+     */
+    static final class PendingWrite {
+
+        final Object value;
+        final long expiresAt;
+
+        PendingWrite(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != CacheInputStream.NO_EXPIRY && expiresAt <= now;
+        }
+
+        // the runtime class of the value can not tell List<Foo> from List<Bar>, generic types are not matched
+        boolean isInstance(Type typeOfT) {
+            return typeOfT instanceof Class && TypeToken.get(typeOfT).getRawType().isInstance(value);
+        }
+    }
+}
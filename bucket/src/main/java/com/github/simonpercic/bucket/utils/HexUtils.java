@@ -0,0 +1,57 @@
+package com.github.simonpercic.bucket.utils;
+
+/**
+ * Hex encoding utils.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class HexUtils {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private HexUtils() {
+        // no instance
+    }
+
+    /**
+     * Returns the lowercase, zero-padded hex representation of two longs, most significant first.
+     *
+     * @param high first long
+     * @param low second long
+     * @return 32 chars long hex string
+     */
+    public static String toHex(long high, long low) {
+        char[] chars = new char[32];
+        writeHex(high, chars, 0);
+        writeHex(low, chars, 16);
+        return new String(chars);
+    }
+
+    /**
+     * Returns the lowercase hex representation of the bytes, as an unsigned number without leading zeros.
+     *
+     * @param bytes bytes
+     * @return hex string, "0" if all bytes are zero
+     */
+    public static String toHexStripLeadingZeros(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = DIGITS[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = DIGITS[bytes[i] & 0xf];
+        }
+
+        int start = 0;
+        while (start < chars.length - 1 && chars[start] == '0') {
+            start++;
+        }
+
+        return new String(chars, start, chars.length - start);
+    }
+
+    private static void writeHex(long value, char[] chars, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = DIGITS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.simonpercic.bucket;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BinarySerializerTest {
+
+    private final BinarySerializer serializer = new BinarySerializer();
+
+    @Test
+    public void testPrimitives() throws Exception {
+        Primitives primitives = new Primitives();
+        primitives.booleanValue = true;
+        primitives.byteValue = -3;
+        primitives.shortValue = -300;
+        primitives.charValue = 'č';
+        primitives.intValue = Integer.MIN_VALUE;
+        primitives.longValue = Long.MAX_VALUE;
+        primitives.floatValue = 1.5f;
+        primitives.doubleValue = -2.25;
+        primitives.boxedInt = 42;
+        primitives.boxedLong = null;
+
+        Primitives copy = roundTrip(primitives, Primitives.class);
+
+        assertEquals(primitives.booleanValue, copy.booleanValue);
+        assertEquals(primitives.byteValue, copy.byteValue);
+        assertEquals(primitives.shortValue, copy.shortValue);
+        assertEquals(primitives.charValue, copy.charValue);
+        assertEquals(primitives.intValue, copy.intValue);
+        assertEquals(primitives.longValue, copy.longValue);
+        assertEquals(primitives.floatValue, copy.floatValue, 0);
+        assertEquals(primitives.doubleValue, copy.doubleValue, 0);
+        assertEquals(primitives.boxedInt, copy.boxedInt);
+        assertNull(copy.boxedLong);
+    }
+
+    @Test
+    public void testObjectGraph() throws Exception {
+        Telemetry telemetry = new Telemetry("device", Kind.SENSOR);
+        telemetry.timestamp = new Date(1446000000000L);
+        telemetry.samples = new double[]{1.0, 2.5, -3.75};
+        telemetry.payload = new byte[]{1, 2, 3};
+        telemetry.tags = new TreeSet<>(Arrays.asList("b", "a"));
+        telemetry.readings = new LinkedHashMap<>();
+        telemetry.readings.put("temperature", Arrays.asList(21, 22));
+        telemetry.readings.put("humidity", Collections.<Integer>emptyList());
+        telemetry.transientValue = "ignored";
+
+        Telemetry copy = roundTrip(telemetry, Telemetry.class);
+
+        assertEquals("device", copy.name);
+        assertEquals(Kind.SENSOR, copy.kind);
+        assertEquals(telemetry.timestamp, copy.timestamp);
+        assertArrayEquals(telemetry.samples, copy.samples, 0);
+        assertArrayEquals(telemetry.payload, copy.payload);
+        assertEquals(telemetry.tags, copy.tags);
+        assertEquals(telemetry.readings, copy.readings);
+        assertNull(copy.transientValue);
+    }
+
+    @Test
+    public void testGenerics() throws Exception {
+        Box<List<String>> box = new Box<>();
+        box.value = Arrays.asList("a", null, "c");
+
+        Type type = new TypeToken<Box<List<String>>>() {
+        }.getType();
+
+        Box<List<String>> copy = roundTrip(box, type);
+        assertEquals(box.value, copy.value);
+    }
+
+    @Test
+    public void testGenericSuperclass() throws Exception {
+        StringBox box = new StringBox();
+        box.value = "value";
+        box.label = "label";
+
+        StringBox copy = roundTrip(box, StringBox.class);
+        assertEquals("value", copy.value);
+        assertEquals("label", copy.label);
+    }
+
+    @Test
+    public void testTopLevelCollection() throws Exception {
+        List<Kind> list = Arrays.asList(Kind.SENSOR, Kind.EVENT);
+
+        Type type = new TypeToken<List<Kind>>() {
+        }.getType();
+
+        List<Kind> copy = roundTrip(list, type);
+        assertEquals(list, copy);
+    }
+
+    @Test
+    public void testLongString() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+
+        Map<String, String> map = Collections.singletonMap("key", sb.toString());
+
+        Type type = new TypeToken<Map<String, String>>() {
+        }.getType();
+
+        Map<String, String> copy = roundTrip(map, type);
+        assertEquals(map, copy);
+    }
+
+    @Test
+    public void testSmallerThanJson() throws Exception {
+        Telemetry telemetry = new Telemetry("device", Kind.EVENT);
+        telemetry.samples = new double[100];
+        for (int i = 0; i < telemetry.samples.length; i++) {
+            telemetry.samples[i] = i * 1.1;
+        }
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        serializer.serialize(telemetry, binary);
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new GsonSerializer(new Gson()).serialize(telemetry, json);
+
+        assertTrue(binary.size() < json.size());
+    }
+
+    @Test
+    public void testObjectFieldNotSupported() throws Exception {
+        Box<String> box = new Box<>();
+        box.value = "value";
+
+        try {
+            roundTrip(box, Box.class);
+            fail("Should throw an exception");
+        } catch (IOException e) {
+            assertEquals("Can not read a value declared as Object, declare a concrete type", e.getMessage());
+        }
+    }
+
+    private <T> T roundTrip(Object object, Type type) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        serializer.serialize(object, bos);
+        return serializer.deserialize(new ByteArrayInputStream(bos.toByteArray()), type);
+    }
+
+    enum Kind {
+        SENSOR, EVENT
+    }
+
+    static class Primitives {
+        boolean booleanValue;
+        byte byteValue;
+        short shortValue;
+        char charValue;
+        int intValue;
+        long longValue;
+        float floatValue;
+        double doubleValue;
+        Integer boxedInt;
+        Long boxedLong;
+    }
+
+    static class Telemetry {
+        String name;
+        Kind kind;
+        Date timestamp;
+        double[] samples;
+        byte[] payload;
+        Set<String> tags;
+        Map<String, List<Integer>> readings;
+        transient String transientValue;
+
+        Telemetry(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+
+    static class Box<T> {
+        T value;
+    }
+
+    static class StringBox extends Box<String> {
+        String label;
+    }
+}
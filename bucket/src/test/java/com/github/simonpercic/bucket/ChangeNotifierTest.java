@@ -0,0 +1,143 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class ChangeNotifierTest {
+
+    private ChangeNotifier notifier;
+
+    @Before
+    public void setUp() {
+        notifier = new ChangeNotifier();
+    }
+
+    @Test
+    public void testNotifyChanged() throws Exception {
+        RecordingListener listener1 = new RecordingListener();
+        RecordingListener listener2 = new RecordingListener();
+        RecordingListener other = new RecordingListener();
+
+        notifier.add("key", listener1);
+        notifier.add("key", listener2);
+        notifier.add("other", other);
+
+        notifier.notifyChanged("key", "value");
+
+        assertEquals(Arrays.<Object>asList("value"), listener1.values);
+        assertEquals(Arrays.<Object>asList("value"), listener2.values);
+        assertTrue(other.values.isEmpty());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        RecordingListener listener1 = new RecordingListener();
+        RecordingListener listener2 = new RecordingListener();
+        RecordingListener listener3 = new RecordingListener();
+
+        notifier.add("key", listener1);
+        notifier.add("key", listener2);
+        notifier.add("key", listener3);
+
+        notifier.remove("key", listener2);
+        notifier.notifyChanged("key", "value1");
+
+        notifier.remove("key", listener1);
+        notifier.remove("key", listener3);
+        notifier.remove("key", listener3);
+        notifier.notifyChanged("key", "value2");
+
+        assertEquals(Arrays.<Object>asList("value1"), listener1.values);
+        assertTrue(listener2.values.isEmpty());
+        assertEquals(Arrays.<Object>asList("value1"), listener3.values);
+    }
+
+    @Test
+    public void testNotifyRemovedAndCleared() throws Exception {
+        RecordingListener listener1 = new RecordingListener();
+        RecordingListener listener2 = new RecordingListener();
+
+        notifier.add("key1", listener1);
+        notifier.add("key2", listener2);
+
+        notifier.notifyRemoved(Arrays.asList("key1", "key3"));
+
+        assertEquals(1, listener1.values.size());
+        assertNull(listener1.values.get(0));
+        assertTrue(listener2.values.isEmpty());
+
+        notifier.notifyCleared();
+
+        assertEquals(2, listener1.values.size());
+        assertEquals(1, listener2.values.size());
+    }
+
+    @Test
+    public void testObserverInitial() throws Exception {
+        TestSubscriber<String> subscriber = new TestSubscriber<>();
+        ValueObserver<String> observer = new ValueObserver<>(subscriber, String.class);
+
+        observer.offerInitial("initial");
+        observer.onChanged("changed");
+        observer.onChanged(null);
+
+        subscriber.assertValues("initial", "changed", null);
+    }
+
+    @Test
+    public void testObserverInitialAfterChange() throws Exception {
+        TestSubscriber<String> subscriber = new TestSubscriber<>();
+        ValueObserver<String> observer = new ValueObserver<>(subscriber, String.class);
+
+        observer.onChanged("changed");
+        observer.offerInitial("stale");
+
+        subscriber.assertValues("changed");
+    }
+
+    @Test
+    public void testObserverSkipsOtherTypes() throws Exception {
+        TestSubscriber<String> subscriber = new TestSubscriber<>();
+        ValueObserver<String> observer = new ValueObserver<>(subscriber, String.class);
+
+        observer.offerInitial(null);
+        observer.onChanged(1);
+        observer.onChanged("value");
+
+        subscriber.assertValues(null, "value");
+    }
+
+    @Test
+    public void testObserverUnsubscribed() throws Exception {
+        TestSubscriber<String> subscriber = new TestSubscriber<>();
+        ValueObserver<String> observer = new ValueObserver<>(subscriber, String.class);
+
+        observer.offerInitial("initial");
+        subscriber.unsubscribe();
+        observer.onChanged("changed");
+
+        subscriber.assertValues("initial");
+    }
+
+    private static final class RecordingListener implements ChangeNotifier.Listener {
+
+        final List<Object> values = new ArrayList<>();
+
+        @Override public void onChanged(Object value) {
+            values.add(value);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class ChunkedStreamTest {
+
+    private static final long MAX_SIZE = 8 * 1024 * 1024;
+    private static final String KEY = "key";
+    private static final long WRITE_ID = 0x1f2e3d4cL;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Chunks.Registry registry = new Chunks.Registry();
+
+    private StorageEngine openDiskLruCache() throws IOException {
+        return DiskLruCacheEngine.open(folder.getRoot(), MAX_SIZE);
+    }
+
+    private StorageEngine openLogStructured() throws IOException {
+        return LogStructuredEngine.open(folder.getRoot(), MAX_SIZE, Schedulers.immediate());
+    }
+
+    @Test
+    public void testIsChunkKey() throws Exception {
+        StringBuilder longKey = new StringBuilder();
+        for (int i = 0; i < 70; i++) {
+            longKey.append('a');
+        }
+
+        Set<String> keys = new HashSet<>(Arrays.asList(KEY, "other-key", longKey.toString()));
+
+        assertTrue(Chunks.isChunkKey(Chunks.chunkKey(KEY, WRITE_ID, 0), keys));
+        assertTrue(Chunks.isChunkKey(Chunks.chunkKey(KEY, -1L, 12), keys));
+        assertTrue(Chunks.isChunkKey(Chunks.chunkKey(longKey.toString(), WRITE_ID, 3), keys));
+        assertFalse(Chunks.isChunkKey(KEY, keys));
+        assertFalse(Chunks.isChunkKey("other-key", keys));
+        assertFalse(Chunks.isChunkKey("missing-1f-0", keys));
+        assertFalse(Chunks.isChunkKey(KEY + "-0", keys));
+        assertFalse(Chunks.isChunkKey(KEY + "-xyz-0", keys));
+        assertFalse(Chunks.isChunkKey(KEY + "-1f-", keys));
+    }
+
+    @Test
+    public void testSmallValueSingleEntry() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        byte[] bytes = bytes(1000);
+        put(engine, bytes);
+
+        assertEquals(1, engine.keys().size());
+        assertArrayEquals(bytes, readAll(engine.get(KEY)));
+    }
+
+    @Test
+    public void testLargeValueChunks() throws Exception {
+        assertChunkedRoundTrip(openDiskLruCache());
+    }
+
+    @Test
+    public void testLargeValueChunksLogStructured() throws Exception {
+        assertChunkedRoundTrip(openLogStructured());
+    }
+
+    private void assertChunkedRoundTrip(StorageEngine engine) throws IOException {
+        byte[] bytes = bytes(3 * Chunks.CHUNK_BYTES + 100);
+        put(engine, bytes);
+
+        // the first chunk is in the entry of the key, followed by the manifest
+        Chunks.Manifest manifest = readManifest(engine);
+        assertEquals(3, manifest.chunkCount);
+        assertEquals(bytes.length, manifest.length);
+        assertTrue(engine.contains(Chunks.chunkKey(KEY, manifest.writeId, 2)));
+        assertEquals(4, engine.keys().size());
+        assertArrayEquals(bytes, readChunked(engine));
+    }
+
+    @Test
+    public void testValueOfExactlyOneChunk() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        byte[] bytes = bytes(Chunks.CHUNK_BYTES);
+        put(engine, bytes);
+
+        assertEquals(1, engine.keys().size());
+        assertArrayEquals(bytes, readAll(engine.get(KEY)));
+        assertNull(Chunks.readStoredManifest(engine, KEY));
+    }
+
+    @Test
+    public void testOverwriteRemovesStaleChunks() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        put(engine, bytes(3 * Chunks.CHUNK_BYTES));
+
+        byte[] bytes = bytes(Chunks.CHUNK_BYTES + 1);
+        put(engine, bytes);
+
+        // the entry and the chunk of the new value
+        assertEquals(2, engine.keys().size());
+        assertArrayEquals(bytes, readChunked(engine));
+
+        put(engine, bytes(10));
+        assertEquals(1, engine.keys().size());
+    }
+
+    @Test
+    public void testAbortKeepsPreviousValue() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        byte[] bytes = bytes(2 * Chunks.CHUNK_BYTES);
+        put(engine, bytes);
+
+        CacheOutputStream os = ChunkedOutputStream.create(engine, registry, KEY, MAX_SIZE);
+        os.write(bytes(3 * Chunks.CHUNK_BYTES));
+        os.abort();
+        os.close();
+
+        assertEquals(2, engine.keys().size());
+        assertArrayEquals(bytes, readChunked(engine));
+        assertTrue(Chunks.orphanChunkKeys(engine, registry).isEmpty());
+    }
+
+    @Test
+    public void testOrphanChunkKeys() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        put(engine, bytes(3 * Chunks.CHUNK_BYTES));
+        Chunks.Manifest manifest = readManifest(engine);
+        assertTrue(Chunks.orphanChunkKeys(engine, registry).isEmpty());
+
+        // the manifest of a value of a previous process is not known, overwriting it leaves its chunks
+        registry.forget(Collections.singletonList(KEY));
+        put(engine, bytes(2 * Chunks.CHUNK_BYTES));
+
+        Set<String> expected = new HashSet<>(Arrays.asList(
+                Chunks.chunkKey(KEY, manifest.writeId, 0), Chunks.chunkKey(KEY, manifest.writeId, 1)));
+        assertEquals(expected, new HashSet<>(Chunks.orphanChunkKeys(engine, registry)));
+
+        // chunks of an evicted entry
+        engine.remove(KEY);
+        assertEquals(3, Chunks.orphanChunkKeys(engine, registry).size());
+    }
+
+    @Test
+    public void testOrphanChunkKeysSkipsWrites() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        CacheOutputStream os = ChunkedOutputStream.create(engine, registry, KEY, MAX_SIZE);
+        try {
+            os.write(bytes(3 * Chunks.CHUNK_BYTES));
+
+            // two full chunks are committed, the entry of the key is not
+            assertEquals(2, engine.keys().size());
+            assertTrue(Chunks.orphanChunkKeys(engine, registry).isEmpty());
+        } finally {
+            os.close();
+        }
+
+        assertTrue(Chunks.orphanChunkKeys(engine, registry).isEmpty());
+    }
+
+    @Test
+    public void testEvictedChunkFailsRead() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        put(engine, bytes(3 * Chunks.CHUNK_BYTES));
+        engine.remove(Chunks.chunkKey(KEY, readManifest(engine).writeId, 1));
+
+        try {
+            readChunked(engine);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOverwrittenChunkFailsRead() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        put(engine, bytes(2 * Chunks.CHUNK_BYTES));
+        Chunks.Manifest manifest = readManifest(engine);
+
+        put(engine, bytes(2 * Chunks.CHUNK_BYTES));
+
+        InputStream is = new ChunkedInputStream(engine, KEY, engine.get(KEY), manifest, new NoOpCloseable());
+        try {
+            readAll(is);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTooLarge() throws Exception {
+        StorageEngine engine = openDiskLruCache();
+
+        CacheOutputStream os = ChunkedOutputStream.create(engine, registry, KEY, Chunks.CHUNK_BYTES + 10);
+        try {
+            os.write(bytes(Chunks.CHUNK_BYTES + 11));
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // expected
+        } finally {
+            os.close();
+        }
+
+        assertTrue(engine.keys().isEmpty());
+    }
+
+    @Test
+    public void testChunkKeyLength() throws Exception {
+        String key = "0123456789012345678901234567890123456789012345678901234567890123";
+
+        assertEquals(64, Chunks.chunkKey(key, WRITE_ID, 12).length());
+        assertTrue(Chunks.chunkKey(key, WRITE_ID, 12).endsWith("-1f2e3d4c-12"));
+        assertEquals("key-1f2e3d4c-3", Chunks.chunkKey("key", WRITE_ID, 3));
+    }
+
+    private void put(StorageEngine engine, byte[] bytes) throws IOException {
+        CacheOutputStream os = ChunkedOutputStream.create(engine, registry, KEY, MAX_SIZE);
+        try {
+            // written in parts smaller than a chunk, like a serializer would
+            for (int offset = 0; offset < bytes.length; offset += 1000) {
+                os.write(bytes, offset, Math.min(1000, bytes.length - offset));
+            }
+        } finally {
+            os.close();
+        }
+    }
+
+    private static Chunks.Manifest readManifest(StorageEngine engine) throws IOException {
+        Chunks.Manifest manifest = Chunks.readStoredManifest(engine, KEY);
+        assertNotNull(manifest);
+        return manifest;
+    }
+
+    private static byte[] readChunked(StorageEngine engine) throws IOException {
+        Chunks.Manifest manifest = readManifest(engine);
+        return readAll(new ChunkedInputStream(engine, KEY, engine.get(KEY), manifest, new NoOpCloseable()));
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read = is.read(buffer);
+            while (read != -1) {
+                bos.write(buffer, 0, read);
+                read = is.read(buffer);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i % 251);
+        }
+        return bytes;
+    }
+
+    private static final class NoOpCloseable implements Closeable {
+
+        @Override public void close() {
+            // nothing to release
+        }
+    }
+}
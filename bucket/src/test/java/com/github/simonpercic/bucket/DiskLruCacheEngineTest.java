@@ -0,0 +1,150 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class DiskLruCacheEngineTest {
+
+    private static final long MAX_SIZE = 1024 * 1024;
+
+    private static final String JOURNAL_HEADER = "libcore.io.DiskLruCache\n1\n1\n1\n\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testContains() throws Exception {
+        DiskLruCacheEngine engine = DiskLruCacheEngine.open(folder.getRoot(), MAX_SIZE);
+
+        assertFalse(engine.contains("key"));
+
+        put(engine, "key", "value");
+        assertTrue(engine.contains("key"));
+
+        engine.remove("key");
+        assertFalse(engine.contains("key"));
+    }
+
+    @Test
+    public void testContainsAbortedEdit() throws Exception {
+        DiskLruCacheEngine engine = DiskLruCacheEngine.open(folder.getRoot(), MAX_SIZE);
+
+        CacheOutputStream os = engine.edit("key");
+        os.write(1);
+        os.abort();
+        os.close();
+
+        assertFalse(engine.contains("key"));
+    }
+
+    @Test
+    public void testContainsAndRemoveAll() throws Exception {
+        DiskLruCacheEngine engine = DiskLruCacheEngine.open(folder.getRoot(), MAX_SIZE);
+
+        put(engine, "key1", "value");
+        put(engine, "key2", "value");
+        put(engine, "key3", "value");
+
+        engine.removeAll(Arrays.asList("key1", "key2"));
+        assertFalse(engine.contains("key1"));
+        assertFalse(engine.contains("key2"));
+        assertTrue(engine.contains("key3"));
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        DiskLruCacheEngine engine = DiskLruCacheEngine.open(folder.getRoot(), MAX_SIZE);
+
+        put(engine, "key1", "value");
+        put(engine, "key2", "value");
+        put(engine, "key3", "value");
+        engine.remove("key2");
+
+        assertEquals(new HashSet<>(Arrays.asList("key1", "key3")), new HashSet<>(engine.keys()));
+    }
+
+    @Test
+    public void testContainsEvicted() throws Exception {
+        final long[] evicted = new long[1];
+        DiskLruCacheEngine engine = DiskLruCacheEngine.open(folder.getRoot(), 10, new EvictionListener() {
+            @Override public void onEvicted(long bytes) {
+                evicted[0] += bytes;
+            }
+        });
+
+        put(engine, "key1", "value");
+        put(engine, "key2", "value");
+        put(engine, "key3", "value");
+
+        assertEquals(5, evicted[0]);
+        assertFalse(engine.contains("key1"));
+        assertTrue(engine.contains("key2"));
+        assertTrue(engine.contains("key3"));
+    }
+
+    @Test
+    public void testContainsAfterReopen() throws Exception {
+        DiskLruCacheEngine engine = DiskLruCacheEngine.open(folder.getRoot(), MAX_SIZE);
+        put(engine, "key1", "value");
+        put(engine, "key2", "value");
+        engine.remove("key2");
+
+        DiskLruCacheEngine reopened = DiskLruCacheEngine.open(folder.getRoot(), MAX_SIZE);
+        assertTrue(reopened.contains("key1"));
+        assertFalse(reopened.contains("key2"));
+    }
+
+    @Test
+    public void testReadJournalKeys() throws Exception {
+        File journal = writeJournal(JOURNAL_HEADER
+                + "DIRTY key1\nCLEAN key1 5\n"
+                + "DIRTY key2\nCLEAN key2 5\nREAD key2\n"
+                + "DIRTY key3\nCLEAN key3 5\nREMOVE key3\n"
+                + "DIRTY key4\nCLEAN key4 5\nDIRTY key4\n"
+                + "DIRTY key5\n"
+                + "DIRTY key6\nCLEAN key6 5");
+
+        Set<String> expected = new HashSet<>(Arrays.asList("key1", "key2"));
+        assertEquals(expected, DiskLruCacheEngine.readJournalKeys(journal));
+    }
+
+    @Test
+    public void testReadJournalKeysMissingJournal() throws Exception {
+        assertTrue(DiskLruCacheEngine.readJournalKeys(new File(folder.getRoot(), "journal")).isEmpty());
+    }
+
+    private File writeJournal(String content) throws IOException {
+        File journal = new File(folder.getRoot(), "journal");
+
+        OutputStream os = new FileOutputStream(journal);
+        try {
+            os.write(content.getBytes(SimpleDiskCache.ENCODING));
+        } finally {
+            os.close();
+        }
+
+        return journal;
+    }
+
+    private static void put(DiskLruCacheEngine engine, String key, String value) throws IOException {
+        CacheOutputStream os = engine.edit(key);
+        os.write(value.getBytes(SimpleDiskCache.ENCODING));
+        os.close();
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class ExpiryIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExpiryIndex create() {
+        return new ExpiryIndex(new File(folder.getRoot(), "expiry-index"));
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        ExpiryIndex index = create();
+        index.put("key", 100);
+
+        assertFalse(index.isExpired("key", 99));
+        assertTrue(index.isExpired("key", 100));
+        assertFalse(index.isExpired("other", 100));
+    }
+
+    @Test
+    public void testNoExpiryRemoves() throws Exception {
+        ExpiryIndex index = create();
+        index.put("key", 100);
+        index.put("key", CacheInputStream.NO_EXPIRY);
+
+        assertFalse(index.isExpired("key", 100));
+    }
+
+    @Test
+    public void testExpiredKeys() throws Exception {
+        ExpiryIndex index = create();
+        index.put("key1", 100);
+        index.put("key2", 200);
+        index.put("key3", 300);
+
+        index.remove("key1");
+
+        assertEquals(Collections.singletonList("key2"), index.expiredKeys(250));
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        ExpiryIndex index = create();
+        index.put("key1", 100);
+        index.put("key2", 200);
+        index.save();
+
+        ExpiryIndex loaded = create();
+        loaded.load();
+
+        assertTrue(loaded.mayBeExpired("key1", 100));
+        assertFalse(loaded.mayBeExpired("key2", 100));
+        assertTrue(loaded.mayBeExpired("key2", 200));
+        assertEquals(Collections.singletonList("key1"), loaded.expiredKeys(150));
+    }
+
+    @Test
+    public void testLoadedNotConfirmed() throws Exception {
+        ExpiryIndex index = create();
+        index.put("key1", 100);
+        index.put("key2", 100);
+        index.save();
+
+        ExpiryIndex loaded = create();
+        loaded.load();
+
+        assertFalse(loaded.isExpired("key1", 100));
+        assertFalse(loaded.isExpired("key2", 100));
+
+        // confirmed by the expiry time stored with the value
+        loaded.put("key1", 100);
+        assertTrue(loaded.isExpired("key1", 100));
+        assertFalse(loaded.isExpired("key2", 100));
+    }
+
+    @Test
+    public void testStale() throws Exception {
+        ExpiryIndex index = create();
+        index.put("key1", 100);
+        index.put("key2", 100);
+        index.save();
+        assertFalse(index.isStale());
+
+        // new keys and unchanged expiry times do not make the saved index wrong
+        index.put("key3", 100);
+        index.put("key1", 100);
+        assertFalse(index.isStale());
+
+        index.put("key1", 200);
+        assertTrue(index.isStale());
+
+        index.save();
+        assertFalse(index.isStale());
+
+        index.put("key2", CacheInputStream.NO_EXPIRY);
+        assertTrue(index.isStale());
+
+        index.save();
+        index.remove("key3");
+        assertTrue(index.isStale());
+    }
+
+    @Test
+    public void testLoadNoFile() throws Exception {
+        ExpiryIndex index = create();
+        index.load();
+
+        assertTrue(index.expiredKeys(Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testLoadCorruptFile() throws Exception {
+        FileOutputStream fos = new FileOutputStream(new File(folder.getRoot(), "expiry-index"));
+        fos.write(new byte[]{0, 0, 0, 1, 0, 0, 0, 5, 0});
+        fos.close();
+
+        ExpiryIndex index = create();
+        index.load();
+
+        assertTrue(index.expiredKeys(Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testClearDeletesFile() throws Exception {
+        ExpiryIndex index = create();
+        index.removeAll(Arrays.asList("key"));
+        index.put("key", 100);
+        index.save();
+
+        index.clear();
+
+        assertFalse(new File(folder.getRoot(), "expiry-index").exists());
+        assertTrue(index.expiredKeys(Long.MAX_VALUE).isEmpty());
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class FetchPolicyTest {
+
+    @Test
+    public void testTtl() {
+        FetchPolicy policy = FetchPolicy.maxAge(10, TimeUnit.SECONDS).staleWhileRevalidate(1, TimeUnit.MINUTES);
+
+        assertEquals(70000, policy.ttlMillis());
+    }
+
+    @Test
+    public void testTtlOverflow() {
+        FetchPolicy policy = FetchPolicy.maxAge(Long.MAX_VALUE, TimeUnit.MILLISECONDS)
+                .staleWhileRevalidate(1, TimeUnit.MILLISECONDS);
+
+        assertEquals(Long.MAX_VALUE, policy.ttlMillis());
+    }
+
+    @Test
+    public void testIsFresh() {
+        FetchPolicy policy = FetchPolicy.maxAge(10, TimeUnit.MILLISECONDS).staleWhileRevalidate(100,
+                TimeUnit.MILLISECONDS);
+
+        long fetchedAt = 1000;
+        long expiresAt = fetchedAt + policy.ttlMillis();
+
+        assertTrue(policy.isFresh(expiresAt, fetchedAt));
+        assertTrue(policy.isFresh(expiresAt, fetchedAt + 9));
+        assertFalse(policy.isFresh(expiresAt, fetchedAt + 10));
+        assertFalse(policy.isFresh(expiresAt, fetchedAt + 50));
+    }
+
+    @Test
+    public void testValueWithoutExpiryIsStale() {
+        FetchPolicy policy = FetchPolicy.maxAge(10, TimeUnit.MILLISECONDS);
+
+        assertFalse(policy.isFresh(CacheInputStream.NO_EXPIRY, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxAgeNotPositive() {
+        FetchPolicy.maxAge(0, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullUnit() {
+        FetchPolicy.maxAge(1, null);
+    }
+}
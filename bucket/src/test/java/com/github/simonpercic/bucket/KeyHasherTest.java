@@ -0,0 +1,83 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class KeyHasherTest {
+
+    private static final String[] KEYS = {"a", "TEST_KEY", "user_profile",
+            "The quick brown fox jumps over the lazy dog", "\u0161\u0111\u010d\u0107\u017e"};
+
+    @Test
+    public void testMurmur3() throws Exception {
+        // MurmurHash3 x64 128 of the UTF-16LE bytes of the keys
+        String[] expected = {"96a698500b4e98bdb278c9bfc754677d", "89612333468d8a738d575db94a43f772",
+                "1bba0b82a748f3502aa813bb6c73f519", "c0026631b551ae4ce75f3e8442567c1c",
+                "9560cc1cab8bf3962f198cc493df7f27"};
+
+        KeyHasher hasher = new Murmur3KeyHasher();
+
+        for (int i = 0; i < KEYS.length; i++) {
+            assertEquals(expected[i], hasher.hash(KEYS[i]));
+        }
+    }
+
+    @Test
+    public void testMurmur3LegalKey() throws Exception {
+        KeyHasher hasher = new Murmur3KeyHasher();
+
+        for (String key : KEYS) {
+            assertTrue(hasher.hash(key).matches("[a-z0-9_-]{1,64}"));
+        }
+
+        assertNotEquals(hasher.hash("TEST_KEY_1"), hasher.hash("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testMd5CompatibleWithPreviousVersions() throws Exception {
+        KeyHasher hasher = new Md5KeyHasher();
+
+        for (String key : KEYS) {
+            assertEquals(legacyMd5(key), hasher.hash(key));
+        }
+    }
+
+    @Test
+    public void testMemoizing() throws Exception {
+        CountingKeyHasher counting = new CountingKeyHasher();
+        KeyHasher hasher = new MemoizingKeyHasher(counting, 1);
+
+        assertEquals("a", hasher.hash("a"));
+        assertEquals("a", hasher.hash("a"));
+        assertEquals(1, counting.count);
+
+        assertEquals("b", hasher.hash("b"));
+        assertEquals("a", hasher.hash("a"));
+        assertEquals(3, counting.count);
+    }
+
+    private static String legacyMd5(String key) throws Exception {
+        MessageDigest m = MessageDigest.getInstance("MD5");
+        m.update(key.getBytes("UTF-8"));
+        return new BigInteger(1, m.digest()).toString(16);
+    }
+
+    private static class CountingKeyHasher implements KeyHasher {
+
+        int count;
+
+        @Override public String hash(String key) {
+            count++;
+            return key;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class KeyIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file() {
+        return new File(folder.getRoot(), "key-index");
+    }
+
+    private static String longString(char c, int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static List<String> keys(List<KeyIndex.Entry> entries) {
+        List<String> keys = new ArrayList<>(entries.size());
+        for (KeyIndex.Entry entry : entries) {
+            keys.add(entry.key);
+        }
+        return keys;
+    }
+
+    @Test
+    public void testPrefix() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("user:2", "h2", 10, 1);
+        index.put("feed", "h3", 10, 1);
+        index.put("user:1", "h1", 10, 1);
+        index.put("user", "h4", 10, 1);
+
+        assertEquals(Arrays.asList("user", "user:1", "user:2"), keys(index.entries("user")));
+        assertEquals(Arrays.asList("user:1", "user:2"), keys(index.entries("user:")));
+        assertEquals(Arrays.asList("feed", "user", "user:1", "user:2"), keys(index.entries("")));
+        assertEquals(Collections.<String>emptyList(), keys(index.entries("x")));
+    }
+
+    @Test
+    public void testPutReplaces() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("key", "h1", 10, 1);
+        index.put("key", "h2", 20, 2);
+
+        KeyIndex.Entry entry = index.get("key");
+        assertNotNull(entry);
+        assertEquals("h2", entry.internalKey);
+        assertEquals(20, entry.size);
+        assertNull(index.originalKey("h1"));
+        assertEquals("key", index.originalKey("h2"));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("key1", "h1", 10, 1);
+        index.put("key2", "h2", 10, 1);
+        index.put("key3", "h3", 10, 1);
+
+        index.remove("key1");
+        index.removeInternal(Collections.singletonList("h2"));
+
+        assertEquals(Collections.singletonList("key3"), keys(index.entries("")));
+    }
+
+    @Test
+    public void testRemoveStaleKeepsReindexed() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("key1", "h1", 10, 1);
+        index.put("key2", "h2", 10, 1);
+
+        List<KeyIndex.Entry> stale = index.entries("");
+        index.put("key2", "h2", 20, 2);
+        index.removeStale(stale);
+
+        assertEquals(Collections.singletonList("key2"), keys(index.entries("")));
+    }
+
+    @Test
+    public void testTags() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("key1", "h1", 10, 1, Arrays.asList("user", "feed"));
+        index.put("key2", "h2", 10, 1, Collections.singletonList("user"));
+        index.put("key3", "h3", 10, 1);
+
+        assertEquals(Arrays.asList("key1", "key2"), index.keysWithTag("user"));
+        assertEquals(Collections.singletonList("key1"), index.keysWithTag("feed"));
+        assertEquals(Collections.<String>emptyList(), index.keysWithTag("missing"));
+
+        // a put replaces the tags, a remove drops them
+        index.put("key1", "h1", 10, 2);
+        index.removeInternal(Collections.singletonList("h2"));
+
+        assertEquals(Collections.<String>emptyList(), index.keysWithTag("user"));
+        assertEquals(Collections.<String>emptyList(), index.keysWithTag("feed"));
+    }
+
+    @Test
+    public void testTagsLoad() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("key1", "h1", 10, 1, Arrays.asList("user", "feed"));
+        index.put("key2", "h2", 10, 1, Collections.singletonList("user"));
+        index.remove("key2");
+        index.close();
+
+        KeyIndex loaded = new KeyIndex(file());
+        loaded.load();
+
+        assertEquals(Collections.singletonList("key1"), loaded.keysWithTag("user"));
+        assertEquals(Arrays.asList("user", "feed"), loaded.get("key1").tags);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("key1", "h1", 10, 1);
+        index.put("key2", "h2", 20, 2);
+        index.put("key3", "h3", 30, 3);
+        index.remove("key2");
+        index.close();
+
+        KeyIndex loaded = new KeyIndex(file());
+        loaded.load();
+
+        assertEquals(Arrays.asList("key1", "key3"), keys(loaded.entries("")));
+        assertEquals(30, loaded.get("key3").size);
+        assertEquals("key1", loaded.originalKey("h1"));
+    }
+
+    @Test
+    public void testLoadTruncated() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("key1", "h1", 10, 1);
+        index.put("key2", "h2", 20, 2);
+        index.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file(), "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+
+        KeyIndex loaded = new KeyIndex(file());
+        loaded.load();
+        assertEquals(Collections.singletonList("key1"), keys(loaded.entries("")));
+
+        // the partial record is dropped before appending
+        loaded.put("key3", "h3", 30, 3);
+        loaded.close();
+
+        KeyIndex reloaded = new KeyIndex(file());
+        reloaded.load();
+        assertEquals(Arrays.asList("key1", "key3"), keys(reloaded.entries("")));
+    }
+
+    @Test
+    public void testLoadLongKey() throws Exception {
+        String key = longString('k', 70 * 1024);
+        String tag = longString('t', 70 * 1024);
+
+        KeyIndex index = new KeyIndex(file());
+        index.put(key, "h1", 10, 1, Collections.singletonList(tag));
+        index.put("key2", "h2", 20, 2);
+        index.remove("key2");
+        index.close();
+
+        KeyIndex loaded = new KeyIndex(file());
+        loaded.load();
+
+        assertEquals(Collections.singletonList(key), keys(loaded.entries("")));
+        assertEquals(Collections.singletonList(key), loaded.keysWithTag(tag));
+    }
+
+    @Test
+    public void testLoadVersion1() throws Exception {
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file()));
+        try {
+            // version 1 journals hold the strings in modified UTF-8
+            dos.writeInt(1);
+            dos.writeByte(1);
+            dos.writeUTF("key1");
+            dos.writeUTF("h1");
+            dos.writeLong(10);
+            dos.writeLong(1);
+            dos.writeByte(3);
+            dos.writeUTF("key2");
+            dos.writeUTF("h2");
+            dos.writeLong(20);
+            dos.writeLong(2);
+            dos.writeInt(1);
+            dos.writeUTF("tag");
+        } finally {
+            dos.close();
+        }
+
+        KeyIndex loaded = new KeyIndex(file());
+        loaded.load();
+        assertEquals(Arrays.asList("key1", "key2"), keys(loaded.entries("")));
+        assertEquals(Collections.singletonList("key2"), loaded.keysWithTag("tag"));
+
+        // the journal is rewritten in the current version before appending
+        loaded.put("key3", "h3", 30, 3);
+        loaded.close();
+
+        KeyIndex reloaded = new KeyIndex(file());
+        reloaded.load();
+        assertEquals(Arrays.asList("key1", "key2", "key3"), keys(reloaded.entries("")));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        for (int i = 0; i < 3000; i++) {
+            index.put("key", "h", i, i);
+        }
+        index.close();
+
+        // compacted once the records outgrew the entries
+        assertTrue(file().length() < 3000 * 20);
+
+        KeyIndex loaded = new KeyIndex(file());
+        loaded.load();
+        assertEquals(2999, loaded.get("key").size);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        KeyIndex index = new KeyIndex(file());
+        index.put("key", "h", 10, 1);
+
+        index.clear();
+
+        assertEquals(Collections.<String>emptyList(), keys(index.entries("")));
+        assertFalse(file().exists());
+
+        index.put("key2", "h2", 10, 1);
+        index.close();
+
+        KeyIndex loaded = new KeyIndex(file());
+        loaded.load();
+        assertEquals(Collections.singletonList("key2"), keys(loaded.entries("")));
+    }
+}
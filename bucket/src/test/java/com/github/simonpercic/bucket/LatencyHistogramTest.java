@@ -0,0 +1,87 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketOf() throws Exception {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(0, LatencyHistogram.bucketOf(999));
+        assertEquals(1, LatencyHistogram.bucketOf(1000));
+        assertEquals(2, LatencyHistogram.bucketOf(2000));
+        assertEquals(2, LatencyHistogram.bucketOf(3999));
+        assertEquals(3, LatencyHistogram.bucketOf(4000));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.bucketOf(-1));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(500);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(100_000);
+        }
+
+        BucketStats.Latency latency = histogram.snapshot();
+
+        assertEquals(100, latency.getCount());
+        assertEquals((90 * 500 + 10 * 100_000) / 1000d / 100, latency.getMeanMicros(), 0.0001);
+        assertEquals(1, latency.getPercentileMicros(50));
+        assertEquals(1, latency.getPercentileMicros(90));
+        assertEquals(128, latency.getPercentileMicros(99));
+        assertEquals(128, latency.getPercentileMicros(100));
+
+        long[] bucketCounts = latency.getBucketCounts();
+        assertEquals(LatencyHistogram.BUCKETS, bucketCounts.length);
+        assertEquals(90, bucketCounts[0]);
+        assertEquals(10, bucketCounts[LatencyHistogram.bucketOf(100_000)]);
+    }
+
+    @Test
+    public void testEmptySnapshot() throws Exception {
+        BucketStats.Latency latency = new LatencyHistogram().snapshot();
+
+        assertEquals(0, latency.getCount());
+        assertEquals(0, latency.getMeanMicros(), 0);
+        assertEquals(0, latency.getPercentileMicros(99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() throws Exception {
+        new LatencyHistogram().snapshot().getPercentileMicros(0);
+    }
+
+    @Test
+    public void testStripedCounterConcurrent() throws Exception {
+        final StripedCounter counter = new StripedCounter();
+        final int threads = 8;
+        final int increments = 10_000;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override public void run() {
+                    for (int j = 0; j < increments; j++) {
+                        counter.increment();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        done.await();
+        assertEquals(threads * increments, counter.sum());
+    }
+}
@@ -0,0 +1,264 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class LogStructuredEngineTest {
+
+    private static final long MAX_SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LogStructuredEngine open(long maxSize) throws IOException {
+        return LogStructuredEngine.open(folder.getRoot(), maxSize, Schedulers.immediate());
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        put(engine, "key", "value");
+
+        assertTrue(engine.contains("key"));
+        assertEquals("value", get(engine, "key"));
+        assertEquals(5, engine.size());
+    }
+
+    @Test
+    public void testGetNoValue() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        assertFalse(engine.contains("key"));
+        assertNull(engine.get("key"));
+    }
+
+    @Test
+    public void testOverwrite() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        put(engine, "key", "value1");
+        put(engine, "key", "value22");
+
+        assertEquals("value22", get(engine, "key"));
+        assertEquals(7, engine.size());
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        put(engine, "key1", "value");
+        put(engine, "key2", "value");
+        put(engine, "key3", "value");
+        engine.remove("key2");
+
+        assertEquals(new HashSet<>(Arrays.asList("key1", "key3")), new HashSet<>(engine.keys()));
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        CacheOutputStream os = engine.edit("key");
+        os.write("value".getBytes("UTF-8"));
+        os.abort();
+        os.close();
+
+        assertFalse(engine.contains("key"));
+    }
+
+    @Test
+    public void testLargerThanCache() throws Exception {
+        LogStructuredEngine engine = open(4);
+
+        try {
+            put(engine, "key", "value");
+            fail("Should throw an exception");
+        } catch (IOException e) {
+            assertEquals("Object is larger than cache size", e.getMessage());
+        }
+
+        assertFalse(engine.contains("key"));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        put(engine, "key1", "value1");
+        put(engine, "key2", "value2");
+        engine.remove("key1");
+        engine.remove("missing");
+
+        assertFalse(engine.contains("key1"));
+        assertTrue(engine.contains("key2"));
+        assertEquals(6, engine.size());
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        put(engine, "key1", "value1");
+        put(engine, "key2", "value2");
+        engine.removeAll(Arrays.asList("key1", "key2"));
+
+        assertEquals(0, engine.size());
+        assertFalse(engine.contains("key1"));
+        assertFalse(engine.contains("key2"));
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        put(engine, "key1", "value1");
+        put(engine, "key2", "value2");
+        put(engine, "key1", "value11");
+        engine.remove("key2");
+
+        LogStructuredEngine reopened = open(MAX_SIZE);
+
+        assertEquals("value11", get(reopened, "key1"));
+        assertFalse(reopened.contains("key2"));
+        assertEquals(7, reopened.size());
+
+        put(reopened, "key3", "value3");
+        assertEquals("value3", get(open(MAX_SIZE), "key3"));
+    }
+
+    @Test
+    public void testReplayIgnoresPartialRecord() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        put(engine, "key1", "value1");
+        put(engine, "key2", "value2");
+
+        // corrupt the last byte of the second record
+        File segment = new File(folder.getRoot(), "segment-0.log");
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        raf.seek(12 + 4 + 6 + 12 + 4 + 5);
+        raf.write('x');
+        raf.close();
+
+        LogStructuredEngine reopened = open(MAX_SIZE);
+
+        assertEquals("value1", get(reopened, "key1"));
+        assertFalse(reopened.contains("key2"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        LogStructuredEngine engine = open(10);
+
+        put(engine, "key1", "aaaa");
+        put(engine, "key2", "bbbb");
+        get(engine, "key1");
+        put(engine, "key3", "cccc");
+
+        assertTrue(engine.contains("key1"));
+        assertFalse(engine.contains("key2"));
+        assertTrue(engine.contains("key3"));
+        assertEquals(8, engine.size());
+
+        LogStructuredEngine reopened = open(10);
+        assertFalse(reopened.contains("key2"));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        LogStructuredEngine engine = open(MAX_SIZE);
+
+        byte[] value = new byte[16 * 1024];
+        for (int i = 0; i < 100; i++) {
+            Arrays.fill(value, (byte) i);
+            put(engine, "key" + (i % 4), value);
+        }
+
+        assertTrue(segmentCount() <= 3);
+
+        for (int i = 96; i < 100; i++) {
+            Arrays.fill(value, (byte) i);
+            assertArrayEquals(value, getBytes(engine, "key" + (i % 4)));
+        }
+
+        LogStructuredEngine reopened = open(MAX_SIZE);
+        for (int i = 96; i < 100; i++) {
+            Arrays.fill(value, (byte) i);
+            assertArrayEquals(value, getBytes(reopened, "key" + (i % 4)));
+        }
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        File dir = folder.newFolder("cache");
+        LogStructuredEngine engine = LogStructuredEngine.open(dir, MAX_SIZE, Schedulers.immediate());
+
+        put(engine, "key", "value");
+        engine.delete();
+
+        assertFalse(dir.exists());
+    }
+
+    private int segmentCount() {
+        String[] files = folder.getRoot().list();
+        return files == null ? 0 : files.length;
+    }
+
+    private static void put(StorageEngine engine, String key, String value) throws IOException {
+        put(engine, key, value.getBytes("UTF-8"));
+    }
+
+    private static void put(StorageEngine engine, String key, byte[] value) throws IOException {
+        CacheOutputStream os = engine.edit(key);
+        try {
+            os.write(value);
+        } finally {
+            os.close();
+        }
+    }
+
+    private static String get(StorageEngine engine, String key) throws IOException {
+        return new String(getBytes(engine, key), "UTF-8");
+    }
+
+    private static byte[] getBytes(StorageEngine engine, String key) throws IOException {
+        InputStream is = engine.get(key);
+        if (is == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read = is.read(buffer);
+        while (read != -1) {
+            bos.write(buffer, 0, read);
+            read = is.read(buffer);
+        }
+        is.close();
+
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.simonpercic.bucket;
+
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class MemoryCacheTest {
+
+    @Test
+    public void testGetPut() throws Exception {
+        MemoryCache cache = MemoryCache.create(2);
+
+        cache.put("KEY", "VALUE");
+
+        assertEquals("VALUE", cache.<String>get("KEY", String.class));
+    }
+
+    @Test
+    public void testGetWrongType() throws Exception {
+        MemoryCache cache = MemoryCache.create(2);
+
+        cache.put("KEY", "VALUE");
+
+        assertNull(cache.<Integer>get("KEY", Integer.class));
+    }
+
+    @Test
+    public void testGetGenericType() throws Exception {
+        MemoryCache cache = MemoryCache.create(2);
+
+        Type stringsType = new TypeToken<List<String>>() {
+        }.getType();
+        Type integersType = new TypeToken<List<Integer>>() {
+        }.getType();
+
+        cache.putIfUnchanged("KEY", Arrays.asList("VALUE"), stringsType, CacheInputStream.NO_EXPIRY, cache.stamp());
+
+        assertEquals(Arrays.asList("VALUE"), cache.<List<String>>get("KEY", stringsType));
+        assertNull(cache.<List<Integer>>get("KEY", integersType));
+        assertNotNull(cache.<List<?>>get("KEY", List.class));
+    }
+
+    @Test
+    public void testGetGenericTypeOfPutValue() throws Exception {
+        MemoryCache cache = MemoryCache.create(2);
+
+        cache.put("KEY", Arrays.asList("VALUE"));
+
+        Type stringsType = new TypeToken<List<String>>() {
+        }.getType();
+
+        assertNull(cache.<List<String>>get("KEY", stringsType));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        MemoryCache cache = MemoryCache.create(2);
+
+        cache.put("KEY_1", "VALUE_1");
+        cache.put("KEY_2", "VALUE_2");
+
+        assertNotNull(cache.<String>get("KEY_1", String.class));
+
+        cache.put("KEY_3", "VALUE_3");
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.<String>get("KEY_1", String.class));
+        assertNull(cache.<String>get("KEY_2", String.class));
+        assertNotNull(cache.<String>get("KEY_3", String.class));
+    }
+
+    @Test
+    public void testWeigher() throws Exception {
+        MemoryCache cache = MemoryCache.create(10, new Weigher() {
+            @Override public int weigh(String key, Object value) {
+                return ((List<?>) value).size();
+            }
+        });
+
+        cache.put("KEY_1", listOfSize(6));
+        cache.put("KEY_2", listOfSize(4));
+        assertEquals(2, cache.size());
+
+        cache.put("KEY_3", listOfSize(1));
+        assertEquals(2, cache.size());
+        assertNull(cache.<List>get("KEY_1", List.class));
+
+        cache.put("KEY_4", listOfSize(11));
+        assertNull(cache.<List>get("KEY_4", List.class));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        MemoryCache cache = MemoryCache.create(2);
+
+        cache.put("KEY", "VALUE");
+        cache.remove("KEY");
+
+        assertNull(cache.<String>get("KEY", String.class));
+    }
+
+    @Test
+    public void testPutAllRemoveAll() throws Exception {
+        MemoryCache cache = MemoryCache.create(10);
+
+        Map<String, String> values = new HashMap<>();
+        values.put("KEY_1", "VALUE_1");
+        values.put("KEY_2", "VALUE_2");
+        cache.putAll(values);
+
+        assertEquals(2, cache.size());
+
+        cache.removeAll(Arrays.asList("KEY_1", "MISSING_KEY"));
+
+        assertNull(cache.<String>get("KEY_1", String.class));
+        assertEquals("VALUE_2", cache.<String>get("KEY_2", String.class));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        MemoryCache cache = MemoryCache.create(2);
+
+        cache.put("KEY_1", "VALUE_1");
+        cache.put("KEY_2", "VALUE_2");
+        cache.clear();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPutIfUnchanged() throws Exception {
+        MemoryCache cache = MemoryCache.create(2);
+
+        long stamp = cache.stamp();
+        cache.putIfUnchanged("KEY", "VALUE", String.class, CacheInputStream.NO_EXPIRY, stamp);
+        assertEquals("VALUE", cache.<String>get("KEY", String.class));
+
+        stamp = cache.stamp();
+        cache.put("KEY", "NEW_VALUE");
+        cache.putIfUnchanged("KEY", "STALE_VALUE", String.class, CacheInputStream.NO_EXPIRY, stamp);
+        assertEquals("NEW_VALUE", cache.<String>get("KEY", String.class));
+    }
+
+    private static List<Integer> listOfSize(int size) {
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+}
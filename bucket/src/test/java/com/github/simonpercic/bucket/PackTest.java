@@ -0,0 +1,207 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class PackTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] small = "value".getBytes("UTF-8");
+        byte[] large = new byte[Pack.BLOCK_BYTES * 2 + 10];
+        new Random(1).nextBytes(large);
+
+        byte[] buffer = new byte[Pack.BLOCK_BYTES];
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+
+        Pack.writeHeader(dos, new Md5KeyHasher(), 2);
+        Pack.writeEntry(dos, "key1", "original1", Arrays.asList("tag1", "tag2"), 10L,
+                new ByteArrayInputStream(small), buffer);
+        Pack.writeEnd(dos);
+        Pack.writeEntry(dos, "key2", null, Collections.<String>emptyList(), CacheInputStream.NO_EXPIRY,
+                new ByteArrayInputStream(large), buffer);
+        Pack.writeEntry(dos, "key3", "original3", Collections.<String>emptyList(), 20L,
+                new ByteArrayInputStream(new byte[0]), buffer);
+        Pack.writeEnd(dos);
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        int version = Pack.readHeader(dis, new Md5KeyHasher(), 2);
+        assertEquals(Pack.VERSION, version);
+
+        assertEquals("key1", Pack.readKey(dis));
+        assertEquals("original1", Pack.readOriginalKey(dis, version));
+        assertEquals(Arrays.asList("tag1", "tag2"), Pack.readTags(dis, version, "original1"));
+        assertEquals(10L, Pack.readExpiresAt(dis));
+        assertArrayEquals(small, readValue(dis, buffer));
+        assertNull(Pack.readKey(dis));
+
+        assertEquals("key2", Pack.readKey(dis));
+        assertNull(Pack.readOriginalKey(dis, version));
+        assertEquals(Collections.<String>emptyList(), Pack.readTags(dis, version, null));
+        assertEquals(CacheInputStream.NO_EXPIRY, Pack.readExpiresAt(dis));
+        assertArrayEquals(large, readValue(dis, buffer));
+
+        assertEquals("key3", Pack.readKey(dis));
+        assertEquals("original3", Pack.readOriginalKey(dis, version));
+        assertEquals(Collections.<String>emptyList(), Pack.readTags(dis, version, "original3"));
+        assertEquals(20L, Pack.readExpiresAt(dis));
+        Pack.readValue(dis, null, buffer);
+        assertNull(Pack.readKey(dis));
+
+        assertEquals(-1, dis.read());
+    }
+
+    @Test
+    public void testReadVersion1() throws Exception {
+        byte[] buffer = new byte[Pack.BLOCK_BYTES];
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+
+        // version 1 entries have no original key
+        dos.writeInt(Pack.MAGIC);
+        dos.writeInt(1);
+        dos.writeUTF(Md5KeyHasher.class.getName());
+        dos.writeInt(1);
+        dos.writeByte(1);
+        dos.writeUTF("key1");
+        dos.writeLong(10L);
+        dos.writeInt(0);
+        Pack.writeEnd(dos);
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        int version = Pack.readHeader(dis, new Md5KeyHasher(), 1);
+
+        assertEquals(1, version);
+        assertEquals("key1", Pack.readKey(dis));
+        assertNull(Pack.readOriginalKey(dis, version));
+        assertEquals(Collections.<String>emptyList(), Pack.readTags(dis, version, null));
+        assertEquals(10L, Pack.readExpiresAt(dis));
+        Pack.readValue(dis, null, buffer);
+        assertNull(Pack.readKey(dis));
+    }
+
+    @Test
+    public void testLongOriginalKey() throws Exception {
+        char[] chars = new char[70 * 1024];
+        Arrays.fill(chars, 'k');
+        String originalKey = new String(chars);
+
+        byte[] buffer = new byte[Pack.BLOCK_BYTES];
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+
+        Pack.writeHeader(dos, new Md5KeyHasher(), 1);
+        Pack.writeEntry(dos, "key1", originalKey, Collections.singletonList(originalKey), 10L,
+                new ByteArrayInputStream(new byte[0]), buffer);
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        int version = Pack.readHeader(dis, new Md5KeyHasher(), 1);
+
+        assertEquals("key1", Pack.readKey(dis));
+        assertEquals(originalKey, Pack.readOriginalKey(dis, version));
+        assertEquals(Collections.singletonList(originalKey), Pack.readTags(dis, version, originalKey));
+    }
+
+    @Test
+    public void testReadVersion3() throws Exception {
+        byte[] buffer = new byte[Pack.BLOCK_BYTES];
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+
+        // version 3 entries hold the original key and the tags in modified UTF-8
+        dos.writeInt(Pack.MAGIC);
+        dos.writeInt(3);
+        dos.writeUTF(Md5KeyHasher.class.getName());
+        dos.writeInt(1);
+        dos.writeByte(1);
+        dos.writeUTF("key1");
+        dos.writeBoolean(true);
+        dos.writeUTF("original1");
+        dos.writeInt(1);
+        dos.writeUTF("tag1");
+        dos.writeLong(10L);
+        dos.writeInt(0);
+        Pack.writeEnd(dos);
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        int version = Pack.readHeader(dis, new Md5KeyHasher(), 1);
+
+        assertEquals(3, version);
+        assertEquals("key1", Pack.readKey(dis));
+        assertEquals("original1", Pack.readOriginalKey(dis, version));
+        assertEquals(Collections.singletonList("tag1"), Pack.readTags(dis, version, "original1"));
+        assertEquals(10L, Pack.readExpiresAt(dis));
+        Pack.readValue(dis, null, buffer);
+        assertNull(Pack.readKey(dis));
+    }
+
+    @Test
+    public void testMemoizedHasherMatches() throws Exception {
+        DataInputStream dis = header(new MemoizingKeyHasher(new Md5KeyHasher(), 10), 1);
+
+        Pack.readHeader(dis, new Md5KeyHasher(), 1);
+    }
+
+    @Test
+    public void testHasherMismatch() throws Exception {
+        assertHeaderRejected(header(new Md5KeyHasher(), 1), new Murmur3KeyHasher(), 1, "key hasher");
+    }
+
+    @Test
+    public void testShardsMismatch() throws Exception {
+        assertHeaderRejected(header(new Md5KeyHasher(), 4), new Md5KeyHasher(), 2, "4 shards");
+    }
+
+    @Test
+    public void testNotAPack() throws Exception {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream("not a pack".getBytes("UTF-8")));
+
+        assertHeaderRejected(dis, new Md5KeyHasher(), 1, "Not a pack");
+    }
+
+    @Test
+    public void testTruncatedHeader() throws Exception {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(new byte[]{0x42, 0x4b}));
+
+        assertHeaderRejected(dis, new Md5KeyHasher(), 1, "Truncated");
+    }
+
+    private static DataInputStream header(KeyHasher keyHasher, int shards) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Pack.writeHeader(new DataOutputStream(bos), keyHasher, shards);
+        return new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    private static void assertHeaderRejected(DataInputStream dis, KeyHasher keyHasher, int shards, String message) {
+        try {
+            Pack.readHeader(dis, keyHasher, shards);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    private static byte[] readValue(DataInputStream dis, byte[] buffer) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Pack.readValue(dis, bos, buffer);
+        return bos.toByteArray();
+    }
+}
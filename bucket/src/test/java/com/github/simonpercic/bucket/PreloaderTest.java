@@ -0,0 +1,101 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class PreloaderTest {
+
+    private static final int KEYS = 50;
+
+    private static Map<String, Type> types() {
+        Map<String, Type> types = new LinkedHashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            types.put("key" + i, String.class);
+        }
+        return types;
+    }
+
+    @Test
+    public void testReadsAllKeysBounded() throws Exception {
+        final Set<String> read = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        Preloader preloader = new Preloader(Schedulers.io(), new Preloader.KeyReader() {
+            @Override public void read(String key, Type typeOfT) {
+                int now = running.incrementAndGet();
+                while (true) {
+                    int max = maxRunning.get();
+                    if (now <= max || maxRunning.compareAndSet(max, now)) {
+                        break;
+                    }
+                }
+
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                read.add(key);
+                running.decrementAndGet();
+            }
+        });
+
+        preloader.preload(types());
+
+        assertEquals(KEYS, read.size());
+        assertTrue(maxRunning.get() <= Preloader.PARALLELISM);
+    }
+
+    @Test
+    public void testFailureThrownAfterAllKeys() throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+
+        Preloader preloader = new Preloader(Schedulers.io(), new Preloader.KeyReader() {
+            @Override public void read(String key, Type typeOfT) throws IOException {
+                reads.incrementAndGet();
+                if (key.equals("key3")) {
+                    throw new IOException("TEST_FAILURE");
+                }
+            }
+        });
+
+        try {
+            preloader.preload(types());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("TEST_FAILURE", e.getMessage());
+        }
+
+        assertEquals(KEYS, reads.get());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        Preloader preloader = new Preloader(Schedulers.io(), new Preloader.KeyReader() {
+            @Override public void read(String key, Type typeOfT) {
+                fail("Nothing to read");
+            }
+        });
+
+        preloader.preload(Collections.<String, Type>emptyMap());
+    }
+}
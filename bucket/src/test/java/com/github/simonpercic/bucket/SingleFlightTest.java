@@ -0,0 +1,193 @@
+package com.github.simonpercic.bucket;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        String value = singleFlight.load("key", String.class, new SingleFlight.Loader<String>() {
+            @Override public String load() {
+                return "value";
+            }
+        });
+
+        assertEquals("value", value);
+    }
+
+    @Test
+    public void testConcurrentLoadsCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingLoader loader = new BlockingLoader(release);
+
+        List<Future<String>> futures = loadConcurrently("key", String.class, loader);
+
+        waitForCallers();
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            assertEquals("value", future.get());
+        }
+
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void testDifferentTypesNotCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingLoader loader = new BlockingLoader(release);
+
+        Future<String> first = loadConcurrently("key", String.class, loader).get(0);
+        waitForCallers();
+
+        String second = singleFlight.load("key", CharSequence.class, new SingleFlight.Loader<String>() {
+            @Override public String load() {
+                return "other";
+            }
+        });
+
+        assertEquals("other", second);
+
+        release.countDown();
+        assertEquals("value", first.get());
+    }
+
+    @Test
+    public void testFailureShared() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> futures = loadConcurrently("key", String.class, new SingleFlight.Loader<String>() {
+            @Override public String load() throws IOException {
+                loads.incrementAndGet();
+                await(release);
+                throw new IOException("failed");
+            }
+        });
+
+        waitForCallers();
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            try {
+                future.get();
+                fail("Should throw an exception");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+                assertEquals("failed", e.getCause().getMessage());
+            }
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingLoader loader = new BlockingLoader(release);
+
+        Future<String> pending = loadConcurrently("key", String.class, loader).get(0);
+        waitForCallers();
+
+        singleFlight.invalidate("key");
+
+        String value = singleFlight.load("key", String.class, new SingleFlight.Loader<String>() {
+            @Override public String load() {
+                return "new value";
+            }
+        });
+
+        assertEquals("new value", value);
+
+        release.countDown();
+        assertEquals("value", pending.get());
+    }
+
+    @Test
+    public void testLoadAfterCompletion() throws Exception {
+        CountDownLatch release = new CountDownLatch(0);
+        BlockingLoader loader = new BlockingLoader(release);
+
+        singleFlight.load("key", String.class, loader);
+        singleFlight.load("key", String.class, loader);
+
+        assertEquals(2, loader.loads.get());
+    }
+
+    private List<Future<String>> loadConcurrently(final String key, final Class<?> type,
+            final SingleFlight.Loader<String> loader) {
+        List<Future<String>> futures = new ArrayList<>();
+
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(new Callable<String>() {
+                @Override public String call() throws Exception {
+                    return singleFlight.load(key, type, loader);
+                }
+            }));
+        }
+
+        return futures;
+    }
+
+    private static void waitForCallers() throws InterruptedException {
+        // give all callers the time to attach to the pending load
+        Thread.sleep(100);
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IOException("Timed out");
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static final class BlockingLoader implements SingleFlight.Loader<String> {
+
+        final AtomicInteger loads = new AtomicInteger();
+
+        private final CountDownLatch release;
+
+        BlockingLoader(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override public String load() throws IOException {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        }
+    }
+}
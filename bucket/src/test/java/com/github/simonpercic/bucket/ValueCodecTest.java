@@ -0,0 +1,218 @@
+package com.github.simonpercic.bucket;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class ValueCodecTest {
+
+    private final GsonSerializer gsonSerializer = new GsonSerializer(new Gson());
+    private final BinarySerializer binarySerializer = new BinarySerializer();
+
+    @Test
+    public void testWritesHeader() throws Exception {
+        ValueCodec codec = new ValueCodec(binarySerializer, Arrays.<BucketSerializer>asList(gsonSerializer));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        codec.write(bos, "value");
+
+        assertEquals(BinarySerializer.ID, bos.toByteArray()[0]);
+    }
+
+    @Test
+    public void testReadsWithWritingSerializer() throws Exception {
+        ValueCodec gsonCodec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        gsonCodec.write(bos, "value");
+
+        ValueCodec binaryCodec = new ValueCodec(binarySerializer, Arrays.<BucketSerializer>asList(gsonSerializer));
+        String value = binaryCodec.read(new ByteArrayInputStream(bos.toByteArray()), String.class);
+
+        assertEquals("value", value);
+    }
+
+    @Test
+    public void testReadsEntryWithoutHeader() throws Exception {
+        ValueCodec codec = new ValueCodec(binarySerializer, Arrays.<BucketSerializer>asList(gsonSerializer));
+
+        byte[] json = "\"value\"".getBytes("UTF-8");
+        String value = codec.read(new ByteArrayInputStream(json), String.class);
+
+        assertEquals("value", value);
+    }
+
+    @Test
+    public void testRawHeader() throws Exception {
+        ValueCodec codec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        codec.writeRawHeader(bos);
+        bos.write(0);
+
+        ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
+        codec.readRawHeader(bis);
+
+        assertEquals(0, bis.read());
+        assertEquals(-1, bis.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRawValue() throws Exception {
+        ValueCodec codec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        codec.writeRawHeader(bos);
+        bos.write("\"value\"".getBytes("UTF-8"));
+
+        codec.read(new ByteArrayInputStream(bos.toByteArray()), String.class);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRawHeaderOfSerializedValue() throws Exception {
+        ValueCodec codec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        codec.write(bos, "value");
+
+        codec.readRawHeader(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    @Test
+    public void testReadsEmptyEntry() throws Exception {
+        ValueCodec codec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList());
+
+        assertNull(codec.read(new ByteArrayInputStream(new byte[0]), String.class));
+    }
+
+    @Test
+    public void testUnknownSerializer() throws Exception {
+        ValueCodec codec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList());
+
+        try {
+            codec.read(new ByteArrayInputStream(new byte[]{5, 1, 2}), String.class);
+            fail("Should throw an exception");
+        } catch (IOException e) {
+            assertEquals("No serializer registered for id 5", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBelowCompressionThreshold() throws Exception {
+        ValueCodec codec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList(),
+                Compression.DEFLATE, Deflater.DEFAULT_COMPRESSION, 64);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        codec.write(bos, "value");
+
+        byte[] bytes = bos.toByteArray();
+        assertEquals(GsonSerializer.ID, bytes[0]);
+        assertEquals("\"value\"", new String(bytes, 1, bytes.length - 1, "UTF-8"));
+    }
+
+    @Test
+    public void testAboveCompressionThreshold() throws Exception {
+        ValueCodec codec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList(),
+                Compression.DEFLATE, Deflater.DEFAULT_COMPRESSION, 64);
+
+        String value = repeat("compressible ", 1000);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        codec.write(bos, value);
+
+        byte[] bytes = bos.toByteArray();
+        assertEquals(0x80 | GsonSerializer.ID, bytes[0] & 0xff);
+        assertTrue(bytes.length < value.length() / 10);
+
+        assertEquals(value, codec.read(new ByteArrayInputStream(bytes), String.class));
+    }
+
+    @Test
+    public void testReadsCompressedWithCompressionDisabled() throws Exception {
+        ValueCodec compressingCodec = new ValueCodec(binarySerializer, Arrays.<BucketSerializer>asList(gsonSerializer),
+                Compression.DEFLATE, Deflater.BEST_SPEED, 0);
+
+        List<String> value = Arrays.asList(repeat("a", 100), repeat("b", 100));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        compressingCodec.write(bos, value);
+
+        ValueCodec codec = new ValueCodec(gsonSerializer, Arrays.<BucketSerializer>asList(binarySerializer));
+
+        Type type = new TypeToken<List<String>>() {
+        }.getType();
+
+        assertEquals(value, codec.read(new ByteArrayInputStream(bos.toByteArray()), type));
+    }
+
+    @Test
+    public void testUnknownCompression() throws Exception {
+        ValueCodec codec = new ValueCodec(gsonSerializer, Collections.<BucketSerializer>emptyList());
+
+        try {
+            codec.read(new ByteArrayInputStream(new byte[]{(byte) (0x80 | 0x60 | GsonSerializer.ID), 1}), String.class);
+            fail("Should throw an exception");
+        } catch (IOException e) {
+            assertEquals("Unknown compression id 3", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGsonSerializerRequired() throws Exception {
+        new ValueCodec(binarySerializer, Collections.<BucketSerializer>emptyList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSerializerId() throws Exception {
+        new ValueCodec(new IdSerializer(40), Arrays.<BucketSerializer>asList(gsonSerializer));
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder sb = new StringBuilder(value.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(value);
+        }
+
+        return sb.toString();
+    }
+
+    private static final class IdSerializer implements BucketSerializer {
+
+        private final int id;
+
+        IdSerializer(int id) {
+            this.id = id;
+        }
+
+        @Override public int getId() {
+            return id;
+        }
+
+        @Override public void serialize(Object object, OutputStream os) {
+        }
+
+        @Override public <T> T deserialize(InputStream is, Type typeOfT) {
+            return null;
+        }
+    }
+}
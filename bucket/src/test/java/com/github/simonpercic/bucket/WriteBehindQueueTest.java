@@ -0,0 +1,267 @@
+package com.github.simonpercic.bucket;
+
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class WriteBehindQueueTest {
+
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final List<String> written = new ArrayList<>();
+    private final TestScheduler scheduler = new TestScheduler();
+
+    private WriteBehindQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = create(10, new RecordingWriter());
+    }
+
+    private WriteBehindQueue create(int maxPendingWrites, WriteBehindQueue.Writer writer) {
+        WriteBehindQueue writeBehindQueue = new WriteBehindQueue(maxPendingWrites, FLUSH_INTERVAL_MILLIS);
+        writeBehindQueue.start(writer, scheduler);
+        return writeBehindQueue;
+    }
+
+    @Test
+    public void testCoalesced() throws Exception {
+        queue.enqueue("key", "value1", CacheInputStream.NO_EXPIRY);
+        queue.enqueue("key", "value2", CacheInputStream.NO_EXPIRY);
+        queue.enqueue("other", "value3", CacheInputStream.NO_EXPIRY);
+
+        assertEquals("value2", queue.get("key").value);
+
+        queue.flush();
+
+        assertEquals(2, written.size());
+        assertEquals("key=value2", written.get(0));
+        assertEquals("other=value3", written.get(1));
+
+        assertNull(queue.get("key"));
+    }
+
+    @Test
+    public void testFlushedOnInterval() throws Exception {
+        queue.enqueue("key", "value", CacheInputStream.NO_EXPIRY);
+
+        scheduler.advanceTimeBy(FLUSH_INTERVAL_MILLIS - 1, TimeUnit.MILLISECONDS);
+        assertTrue(written.isEmpty());
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertEquals(1, written.size());
+    }
+
+    @Test
+    public void testFlushedWhenFull() throws Exception {
+        queue = create(2, new RecordingWriter());
+
+        queue.enqueue("key1", "value", CacheInputStream.NO_EXPIRY);
+        queue.enqueue("key1", "value", CacheInputStream.NO_EXPIRY);
+        assertTrue(written.isEmpty());
+
+        queue.enqueue("key2", "value", CacheInputStream.NO_EXPIRY);
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        queue.enqueue("key1", "value", CacheInputStream.NO_EXPIRY);
+        queue.enqueue("key2", "value", CacheInputStream.NO_EXPIRY);
+        queue.enqueue("key3", "value", CacheInputStream.NO_EXPIRY);
+
+        queue.remove("key1");
+        queue.removeAll(Collections.singletonList("key2"));
+
+        queue.flush();
+
+        assertEquals(1, written.size());
+        assertEquals("key3=value", written.get(0));
+    }
+
+    @Test
+    public void testFailedWritesDropped() throws Exception {
+        queue = create(10, new WriteBehindQueue.Writer() {
+            @Override public void write(String key, Object value, long expiresAt) throws IOException {
+                if (key.equals("failing")) {
+                    throw new IOException("failed");
+                }
+
+                written.add(key + "=" + value);
+            }
+        });
+
+        queue.enqueue("failing", "value", CacheInputStream.NO_EXPIRY);
+        queue.enqueue("key", "value", CacheInputStream.NO_EXPIRY);
+
+        try {
+            queue.flush();
+            fail("Should throw an exception");
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        assertEquals(1, written.size());
+        assertNull(queue.get("failing"));
+    }
+
+    @Test
+    public void testPutWhileFlushing() throws Exception {
+        queue = create(10, new WriteBehindQueue.Writer() {
+            @Override public void write(String key, Object value, long expiresAt) throws IOException {
+                written.add(key + "=" + value);
+
+                if (value.equals("value1")) {
+                    queue.enqueue(key, "value2", CacheInputStream.NO_EXPIRY);
+                }
+            }
+        });
+
+        queue.enqueue("key", "value1", CacheInputStream.NO_EXPIRY);
+        queue.flush();
+
+        WriteBehindQueue.PendingWrite pending = queue.get("key");
+        assertNotNull(pending);
+        assertEquals("value2", pending.value);
+    }
+
+    @Test
+    public void testRemovedAfterSnapshotNotWritten() throws Exception {
+        queue = create(10, new WriteBehindQueue.Writer() {
+            @Override public void write(String key, Object value, long expiresAt) throws IOException {
+                written.add(key + "=" + value);
+
+                if (key.equals("key1")) {
+                    queue.remove("key2");
+                }
+            }
+        });
+
+        queue.enqueue("key1", "value", CacheInputStream.NO_EXPIRY);
+        queue.enqueue("key2", "value", CacheInputStream.NO_EXPIRY);
+        queue.flush();
+
+        assertEquals(Collections.singletonList("key1=value"), written);
+    }
+
+    @Test
+    public void testRemoveWaitsForWrite() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean writeFinished = new AtomicBoolean();
+
+        queue = create(10, new WriteBehindQueue.Writer() {
+            @Override public void write(String key, Object value, long expiresAt) throws IOException {
+                writing.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+
+                writeFinished.set(true);
+            }
+        });
+
+        queue.enqueue("key", "value", CacheInputStream.NO_EXPIRY);
+
+        Thread flushThread = new Thread(new Runnable() {
+            @Override public void run() {
+                try {
+                    queue.flush();
+                } catch (IOException ignored) {
+                    // asserted by the write flag
+                }
+            }
+        });
+        flushThread.start();
+        writing.await();
+
+        Thread releaseThread = new Thread(new Runnable() {
+            @Override public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                    // released early
+                }
+
+                release.countDown();
+            }
+        });
+        releaseThread.start();
+
+        queue.remove("key");
+        assertTrue(writeFinished.get());
+
+        flushThread.join();
+        releaseThread.join();
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        queue.enqueue("key1", "value", CacheInputStream.NO_EXPIRY);
+
+        queue.stop();
+        assertEquals(Collections.singletonList("key1=value"), written);
+
+        queue.enqueue("key2", "value", CacheInputStream.NO_EXPIRY);
+        assertEquals(2, written.size());
+        assertNull(queue.get("key2"));
+
+        written.clear();
+        scheduler.advanceTimeBy(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    public void testPendingWriteExpiry() throws Exception {
+        WriteBehindQueue.PendingWrite pending = new WriteBehindQueue.PendingWrite("value", 100);
+
+        assertTrue(pending.isExpired(100));
+        assertFalse(pending.isExpired(99));
+        assertTrue(pending.isInstance(CharSequence.class));
+        assertFalse(pending.isInstance(Integer.class));
+    }
+
+    @Test
+    public void testPendingWriteGenericType() throws Exception {
+        WriteBehindQueue.PendingWrite pending = new WriteBehindQueue.PendingWrite(Arrays.asList("value"), 100);
+
+        Type stringsType = new TypeToken<List<String>>() {
+        }.getType();
+
+        assertTrue(pending.isInstance(List.class));
+        assertFalse(pending.isInstance(stringsType));
+    }
+
+    private final class RecordingWriter implements WriteBehindQueue.Writer {
+
+        @Override public void write(String key, Object value, long expiresAt) {
+            written.add(key + "=" + value);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.simonpercic.bucket.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class HexUtilsTest {
+
+    @Test
+    public void testToHexLongs() throws Exception {
+        assertEquals("00000000000000000000000000000000", HexUtils.toHex(0, 0));
+        assertEquals("000000000000000affffffffffffffff", HexUtils.toHex(10, -1));
+    }
+
+    @Test
+    public void testToHexStripLeadingZeros() throws Exception {
+        assertEquals("f01", HexUtils.toHexStripLeadingZeros(new byte[]{0, 0x0f, 0x01}));
+        assertEquals("ab00", HexUtils.toHexStripLeadingZeros(new byte[]{(byte) 0xab, 0}));
+    }
+
+    @Test
+    public void testToHexStripLeadingZerosAllZero() throws Exception {
+        assertEquals("0", HexUtils.toHexStripLeadingZeros(new byte[]{0, 0}));
+    }
+}